@@ -32,6 +32,7 @@ android {
 
 dependencies {
 
+    implementation(project(":sourcesync-sdk-ui"))
     implementation(libs.androidx.leanback)
     implementation(libs.glide)
 }
\ No newline at end of file
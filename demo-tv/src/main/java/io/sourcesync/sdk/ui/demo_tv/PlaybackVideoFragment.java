@@ -2,19 +2,44 @@ package io.sourcesync.sdk.ui.demo_tv;
 
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.leanback.app.VideoSupportFragment;
 import androidx.leanback.app.VideoSupportFragmentGlueHost;
 import androidx.leanback.media.MediaPlayerAdapter;
 import androidx.leanback.media.PlaybackTransportControlGlue;
 import androidx.leanback.widget.PlaybackControlsRow;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.sourcesync.android.Activation;
+import io.sourcesync.android.render.ActivationMetrics;
+import io.sourcesync.android.timeline.ActivationCue;
+import io.sourcesync.android.timeline.ActivationTimeline;
+import io.sourcesync.android.timeline.ActivationTimelineBinder;
+import io.sourcesync.android.timeline.PreparationScheduler;
+
 /**
  * Handles video playback with media controls.
  */
 public class PlaybackVideoFragment extends VideoSupportFragment {
+    private static final String TAG = "PlaybackVideoFragment";
 
     private PlaybackTransportControlGlue<MediaPlayerAdapter> mTransportControlGlue;
+    private ActivationTimeline mTimeline;
+    private Activation mActivation;
+    private ActivationTimelineBinder mTimelineBinder;
+    private PreparationScheduler mPreparationScheduler;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -29,7 +54,20 @@ public class PlaybackVideoFragment extends VideoSupportFragment {
         MediaPlayerAdapter playerAdapter = new MediaPlayerAdapter(getContext());
         playerAdapter.setRepeatAction(PlaybackControlsRow.RepeatAction.INDEX_NONE);
 
-        mTransportControlGlue = new PlaybackTransportControlGlue<>(getContext(), playerAdapter);
+        mTimeline = new ActivationTimeline(createDemoCues(movie));
+
+        mTransportControlGlue = new PlaybackTransportControlGlue<MediaPlayerAdapter>(getContext(), playerAdapter) {
+            @Override
+            protected void onUpdateProgress() {
+                super.onUpdateProgress();
+                // Seeks surface here as position jumps, so the timeline needs no extra hook
+                if (mPreparationScheduler != null && isPrepared()) {
+                    long position = getCurrentPosition();
+                    mPreparationScheduler.onPositionChanged(position);
+                    mTimeline.onPositionChanged(position);
+                }
+            }
+        };
         mTransportControlGlue.setHost(glueHost);
         mTransportControlGlue.setTitle(movie.getTitle());
         mTransportControlGlue.setSubtitle(movie.getDescription());
@@ -37,6 +75,40 @@ public class PlaybackVideoFragment extends VideoSupportFragment {
         playerAdapter.setDataSource(Uri.parse(movie.getVideoUrl()));
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        mActivation = new Activation(requireContext());
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT,
+                Gravity.BOTTOM | Gravity.START);
+        ((ViewGroup) view).addView(mActivation, params);
+
+        mPreparationScheduler = new PreparationScheduler(mTimeline, mActivation);
+        mTimelineBinder = new ActivationTimelineBinder(mActivation,
+                cue -> Log.d(TAG, "Activation clicked: " + cue.id),
+                mPreparationScheduler);
+        mTimelineBinder.enableLatencyCompensation(mTimeline);
+        mTimeline.addListener(mTimelineBinder);
+        ActivationMetrics.getInstance().setListener((cueId, skewMs) ->
+                Log.d(TAG, "Cue " + cueId + " visible with " + skewMs + "ms skew, "
+                        + ActivationMetrics.getInstance().getCueSkew()));
+    }
+
+    @Override
+    public void onDestroyView() {
+        mTimeline.clear();
+        mTimeline.removeListener(mTimelineBinder);
+        mTimelineBinder = null;
+        ActivationMetrics.getInstance().setListener(null);
+        mPreparationScheduler.release();
+        mPreparationScheduler = null;
+        mActivation = null;
+        super.onDestroyView();
+    }
+
     @Override
     public void onPause() {
         super.onPause();
@@ -44,4 +116,19 @@ public class PlaybackVideoFragment extends VideoSupportFragment {
             mTransportControlGlue.pause();
         }
     }
-}
\ No newline at end of file
+
+    private static List<ActivationCue> createDemoCues(Movie movie) {
+        List<ActivationCue> cues = new ArrayList<>();
+        try {
+            cues.add(new ActivationCue("intro", 5_000L, 15_000L, new JSONObject()
+                    .put("title", movie.getTitle())
+                    .put("subtitle", "Press select to learn more")));
+            cues.add(new ActivationCue("studio", 30_000L, 45_000L, new JSONObject()
+                    .put("title", movie.getStudio())
+                    .put("subtitle", "More from this studio")));
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to build demo cues", e);
+        }
+        return cues;
+    }
+}
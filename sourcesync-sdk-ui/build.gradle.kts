@@ -9,11 +9,23 @@ android {
 
     defaultConfig {
         minSdk = 24
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    buildFeatures {
+        buildConfig = true
     }
 
     buildTypes {
+        debug {
+            // SdkLog keeps every level in debug builds
+            buildConfigField("int", "LOG_LEVEL", "2")
+        }
         release {
             isMinifyEnabled = false
+            // Levels below this are compiled out of SdkLog; -Psourcesync.logLevel=2 keeps render traces
+            buildConfigField("int", "LOG_LEVEL", (findProperty("sourcesync.logLevel") ?: "4").toString())
         }
     }
     
@@ -22,6 +34,20 @@ android {
         targetCompatibility = JavaVersion.VERSION_17
     }
     
+    sourceSets {
+        // Generated worst-case templates, shared by unit tests and on-device benchmarks
+        getByName("test").resources.srcDir("stress-corpus")
+        getByName("androidTest").assets.srcDir("stress-corpus")
+        // Template generators and fakes for both test source sets, kept out of the AAR
+        getByName("test").java.srcDir("src/testFixtures/java")
+        getByName("androidTest").java.srcDir("src/testFixtures/java")
+    }
+
+    testOptions {
+        // android.util.Log calls in SDK code are no-ops under JVM unit tests
+        unitTests.isReturnDefaultValues = true
+    }
+
     publishing {
         singleVariant("release") {
             withSourcesJar()
@@ -32,6 +58,8 @@ android {
 
 dependencies {
     implementation("androidx.appcompat:appcompat:1.6.1")
+    testImplementation(libs.junit)
+    androidTestImplementation(libs.androidx.junit)
 }
 
 publishing {
@@ -0,0 +1,71 @@
+package io.sourcesync.android;
+
+import android.content.Context;
+import android.widget.FrameLayout;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import io.sourcesync.android.render.RenderPlan;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the child views {@link ActivationHost} adds, removes and stacks, which JVM unit
+ * tests cannot see.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ActivationHostViewTest {
+    private static RenderPlan plan(String title) throws Exception {
+        return RenderPlan.forPreview(new JSONObject().put("title", title));
+    }
+
+    @Test
+    public void showHideAndSlotReplacementChangeTheChildViews() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            try {
+                ActivationHost host = new ActivationHost(context);
+
+                Activation product = host.show("product", ActivationHost.Slot.LOWER_THIRD, 0, plan("Product"), null);
+                Activation poll = host.show("poll", ActivationHost.Slot.TOP_RIGHT, 1, plan("Poll"), null);
+                assertEquals(2, host.getChildCount());
+                assertSame(host, product.getParent());
+                assertSame(host, poll.getParent());
+                assertEquals(ActivationHost.Slot.TOP_RIGHT.gravity,
+                    ((FrameLayout.LayoutParams) poll.getLayoutParams()).gravity);
+
+                // Children are drawn in z-order, the highest last
+                assertSame(product, host.getChildAt(0));
+                assertSame(poll, host.getChildAt(1));
+                host.setZ("product", 2);
+                assertSame(poll, host.getChildAt(0));
+                assertSame(product, host.getChildAt(1));
+
+                // A new overlay in an occupied slot replaces the one there
+                Activation offer = host.show("offer", ActivationHost.Slot.LOWER_THIRD, 0, plan("Offer"), null);
+                assertNull(host.get("product"));
+                assertEquals(2, host.getChildCount());
+                assertSame(host, offer.getParent());
+                assertEquals(List.of("offer", "poll"), host.getVisibleIds());
+                assertSame(offer, host.getChildAt(0));
+
+                assertTrue(host.hide("poll"));
+                assertNull(poll.getParent());
+                assertEquals(1, host.getChildCount());
+                assertFalse(host.hide("poll"));
+
+                host.hideAll();
+                assertEquals(0, host.getChildCount());
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+}
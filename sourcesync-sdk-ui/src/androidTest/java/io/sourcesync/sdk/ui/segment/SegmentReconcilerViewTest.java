@@ -0,0 +1,95 @@
+package io.sourcesync.android.segment;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import io.sourcesync.android.segment.factory.SegmentProcessorFactory;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reconciles templates into real views, which the JVM tests of
+ * {@link SegmentReconciler#match} cannot do.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SegmentReconcilerViewTest {
+    /** Renders its content as text, or nothing when there is none. */
+    private static class BadgeProcessor implements SegmentProcessor {
+        @Override
+        public View processSegment(Context context, JSONObject segment) {
+            String content = segment.optString("content");
+            if (content.isEmpty()) return null;
+            TextView view = new TextView(context);
+            view.setText(content);
+            view.setLayoutParams(new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT));
+            return view;
+        }
+
+        @Override
+        public String getSegmentType() {
+            return "badge";
+        }
+    }
+
+    private static JSONObject segment(String type, String content) throws Exception {
+        return new JSONObject().put("type", type).put("content", content);
+    }
+
+    private static JSONArray column(String second, String badge) throws Exception {
+        JSONArray children = new JSONArray()
+            .put(segment("text", "First"))
+            .put(segment("badge", ""))
+            .put(segment("poll", "No processor"))
+            .put(segment("text", second))
+            .put(segment("badge", badge));
+        return new JSONArray().put(new JSONObject().put("type", "column").put("children", children));
+    }
+
+    private static String textAt(LinearLayout column, int index) {
+        return ((TextView) column.getChildAt(index)).getText().toString();
+    }
+
+    @Test
+    public void childrenWithoutViewsDoNotShiftTheirSiblings() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            try {
+                LinearLayout root = new LinearLayout(context);
+                root.setOrientation(LinearLayout.VERTICAL);
+                SegmentProcessorFactory factory = new SegmentProcessorFactory(root);
+                factory.registerProcessor(new BadgeProcessor());
+                SegmentReconciler reconciler = new SegmentReconciler(factory, root);
+
+                reconciler.reconcile(column("Second", "New"));
+                LinearLayout column = (LinearLayout) root.getChildAt(0);
+                assertEquals(3, column.getChildCount());
+                View second = column.getChildAt(1);
+
+                SegmentReconciler.Stats stats = reconciler.reconcile(column("Second, edited", "Sale"));
+                assertSame(column, root.getChildAt(0));
+                assertEquals(3, column.getChildCount());
+                assertSame(second, column.getChildAt(1));
+                assertEquals("First", textAt(column, 0));
+                assertEquals("Second, edited", textAt(column, 1));
+                assertEquals("Sale", textAt(column, 2));
+                // The edited text in place, the badge rebuilt
+                assertEquals(1, stats.updated);
+                assertEquals(1, stats.inserted);
+                assertEquals(1, stats.removed);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+}
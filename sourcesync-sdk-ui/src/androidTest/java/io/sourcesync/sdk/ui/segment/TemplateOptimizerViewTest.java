@@ -0,0 +1,185 @@
+package io.sourcesync.android.segment;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import io.sourcesync.android.components.ActivationPreview;
+import io.sourcesync.android.segment.factory.SegmentProcessorFactory;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Builds templates as written and as optimized, and compares where their text ends up on
+ * screen, which the JVM tests of {@link TemplateOptimizer} cannot check.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TemplateOptimizerViewTest {
+    private static final int WIDTH = 1000;
+
+    private static final String PARAGRAPHS =
+        "[{\"type\":\"text\",\"content\":\"Title\",\"attributes\":{\"alignment\":\"left\"}},"
+        + "{\"type\":\"text\",\"content\":\"Subtitle\",\"attributes\":{\"alignment\":\"left\"}}]";
+
+    /**
+     * A row of two 40% columns, the first wrapping a single row. The weights do not add up
+     * to 1, so a row sized from the root's width would land somewhere else.
+     */
+    private static JSONArray columns(String alignment, String first) throws Exception {
+        return new JSONArray("[{\"type\":\"row\",\"children\":["
+            + "{\"type\":\"column\",\"attributes\":{\"width\":\"40%\"},\"children\":["
+            + "{\"type\":\"row\",\"attributes\":{\"alignment\":\"" + alignment + "\"},\"children\":["
+            + "{\"type\":\"text\",\"content\":\"" + first + "\"},{\"type\":\"text\",\"content\":\"B\"}]}]},"
+            + "{\"type\":\"column\",\"attributes\":{\"width\":\"40%\"},\"children\":["
+            + "{\"type\":\"text\",\"content\":\"C\"}]}]}]");
+    }
+
+    /** A row whose columns have no width, each wrapping a single row. */
+    private static JSONArray unsizedColumns() throws Exception {
+        return new JSONArray("[{\"type\":\"row\",\"children\":["
+            + "{\"type\":\"column\",\"children\":[{\"type\":\"row\",\"children\":["
+            + "{\"type\":\"text\",\"content\":\"A\"},{\"type\":\"text\",\"content\":\"B\"}]}]},"
+            + "{\"type\":\"column\",\"children\":[{\"type\":\"row\",\"children\":["
+            + "{\"type\":\"text\",\"content\":\"C\"}]}]}]}]");
+    }
+
+    private static LinearLayout root(Context context) {
+        LinearLayout root = new LinearLayout(context);
+        root.setOrientation(LinearLayout.VERTICAL);
+        return root;
+    }
+
+    private static void layout(ViewGroup root) {
+        root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+            View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        root.layout(0, 0, WIDTH, root.getMeasuredHeight());
+    }
+
+    /** Every text view under {@code root} in drawing order, with its bounds in the root. */
+    private static List<Rect> textBounds(ViewGroup root, List<String> texts) {
+        List<Rect> bounds = new ArrayList<>();
+        collect(root, root, bounds, texts);
+        return bounds;
+    }
+
+    private static void collect(ViewGroup root, View view, List<Rect> bounds, List<String> texts) {
+        if (view instanceof TextView) {
+            int left = 0;
+            int top = 0;
+            for (View v = view; v != root; v = (View) v.getParent()) {
+                left += v.getLeft();
+                top += v.getTop();
+            }
+            bounds.add(new Rect(left, top, left + view.getWidth(), top + view.getHeight()));
+            texts.add(((TextView) view).getText().toString());
+        } else if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                collect(root, group.getChildAt(i), bounds, texts);
+            }
+        }
+    }
+
+    @Test
+    public void collapsedColumnsLayOutTheSameBeforeAndAfterAnUpdate() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            try {
+                LinearLayout asWritten = root(context);
+                LinearLayout optimized = root(context);
+                SegmentReconciler plain = new SegmentReconciler(new SegmentProcessorFactory(asWritten), asWritten);
+                SegmentReconciler collapsed = new SegmentReconciler(new SegmentProcessorFactory(optimized), optimized);
+                TemplateOptimizer optimizer = new TemplateOptimizer();
+
+                plain.reconcile(columns("left", "A"));
+                collapsed.reconcile(optimizer.optimize(columns("left", "A")));
+                assertEquals(1, optimizer.getLastStats().collapsed);
+                assertSameText(asWritten, optimized);
+
+                // Rebinding the collapsed row in place must keep its share of the parent row
+                plain.reconcile(columns("right", "A longer"));
+                collapsed.reconcile(optimizer.optimize(columns("right", "A longer")));
+                assertEquals(0, collapsed.getLastStats().inserted);
+                assertSameText(asWritten, optimized);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    @Test
+    public void rowsInColumnsInARowBuildAsPreviewsAndKeepTheirLayout() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            try {
+                // Previews build with no parent container to size rows against
+                new ActivationPreview(context, new JSONObject().put("template", columns("left", "A")));
+                new ActivationPreview(context, new JSONObject().put("template", unsizedColumns()));
+
+                LinearLayout asWritten = root(context);
+                LinearLayout optimized = root(context);
+                new SegmentReconciler(new SegmentProcessorFactory(asWritten), asWritten)
+                    .reconcile(unsizedColumns());
+                TemplateOptimizer optimizer = new TemplateOptimizer();
+                new SegmentReconciler(new SegmentProcessorFactory(optimized), optimized)
+                    .reconcile(optimizer.optimize(unsizedColumns()));
+                assertEquals(0, optimizer.getLastStats().collapsed);
+                assertSameText(asWritten, optimized);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    @Test
+    public void adjacentTextIsOnlyMergedWhenAskedTo() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            try {
+                LinearLayout asWritten = root(context);
+                LinearLayout optimized = root(context);
+                new SegmentReconciler(new SegmentProcessorFactory(asWritten), asWritten)
+                    .reconcile(new JSONArray(PARAGRAPHS));
+                new SegmentReconciler(new SegmentProcessorFactory(optimized), optimized)
+                    .reconcile(new TemplateOptimizer().optimize(new JSONArray(PARAGRAPHS)));
+                assertSameText(asWritten, optimized);
+
+                LinearLayout merged = root(context);
+                new SegmentReconciler(new SegmentProcessorFactory(merged), merged)
+                    .reconcile(new TemplateOptimizer().setMergeText(true).optimize(new JSONArray(PARAGRAPHS)));
+                layout(merged);
+                List<String> texts = new ArrayList<>();
+                List<Rect> bounds = textBounds(merged, texts);
+                assertEquals(List.of("Title\nSubtitle"), texts);
+                assertEquals(0, bounds.get(0).top);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    private static void assertSameText(ViewGroup expected, ViewGroup actual) {
+        layout(expected);
+        layout(actual);
+        List<String> expectedTexts = new ArrayList<>();
+        List<String> actualTexts = new ArrayList<>();
+        List<Rect> expectedBounds = textBounds(expected, expectedTexts);
+        List<Rect> actualBounds = textBounds(actual, actualTexts);
+        assertEquals(expectedTexts, actualTexts);
+        assertEquals(expectedBounds, actualBounds);
+    }
+}
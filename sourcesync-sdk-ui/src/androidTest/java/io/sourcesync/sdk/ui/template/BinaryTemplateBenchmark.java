@@ -0,0 +1,71 @@
+package io.sourcesync.android.template;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import io.sourcesync.android.testing.StressCorpus;
+
+import org.json.JSONArray;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares org.json parsing with the binary template encoding on every stress corpus
+ * case: encoded size, time to a full org.json tree, and time to read every value
+ * straight from the binary buffer. Results go to {@code adb logcat -s SourceSync.bench}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BinaryTemplateBenchmark {
+    private static final String TAG = "SourceSync.bench";
+    private static final int ITERATIONS = 20;
+
+    @Test
+    public void decodeAgainstOrgJson() throws Exception {
+        for (StressCorpus corpus : StressCorpus.values()) {
+            String json = corpus.generate().json;
+            byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+            byte[] binary = BinaryTemplateEncoder.encode(jsonBytes);
+
+            long orgJson = best(() -> new JSONArray(new String(jsonBytes, StandardCharsets.UTF_8)));
+            long binaryToJson = best(() -> BinaryTemplate.wrap(binary).root().toJsonArray());
+            long binaryWalk = best(() -> walk(BinaryTemplate.wrap(binary).root()));
+
+            assertTrue(binary.length < jsonBytes.length);
+            Log.i(TAG, corpus.name() + ": json " + jsonBytes.length + "B, binary " + binary.length
+                + "B; org.json " + orgJson + "us, binary->org.json " + binaryToJson
+                + "us, binary walk " + binaryWalk + "us");
+        }
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static long best(Task task) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            task.run();
+            best = Math.min(best, SystemClock.elapsedRealtimeNanos() - start);
+        }
+        return best / 1000;
+    }
+
+    private static int walk(BinaryTemplate.Value value) {
+        int count = 1;
+        if (value.isObject() || value.isArray()) {
+            for (BinaryTemplate.Value child : value.children()) {
+                count += walk(child);
+            }
+        } else {
+            value.asString();
+        }
+        return count;
+    }
+}
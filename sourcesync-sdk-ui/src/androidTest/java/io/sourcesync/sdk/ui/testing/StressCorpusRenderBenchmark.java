@@ -0,0 +1,108 @@
+package io.sourcesync.android.testing;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import io.sourcesync.android.components.ActivationDetail;
+import io.sourcesync.android.render.RenderWatchdog;
+import io.sourcesync.android.segment.TemplateLimits;
+
+import org.json.JSONArray;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renders every stress corpus case through {@link ActivationDetail} on the main thread and
+ * logs construction time and resulting view count, so processor scaling limits can be
+ * compared across devices with {@code adb logcat -s SourceSync.bench}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StressCorpusRenderBenchmark {
+    private static final String TAG = "SourceSync.bench";
+    private static final int ITERATIONS = 5;
+
+    private TemplateLimits limits;
+    private long budgetMs;
+
+    @Before
+    public void buildWholeTemplates() {
+        // Measure full builds: no truncation, and no slices deferred to later frames
+        limits = TemplateLimits.getDefault();
+        budgetMs = RenderWatchdog.getInstance().getBudgetMs();
+        TemplateLimits.setDefault(new TemplateLimits()
+            .maxDepth(Integer.MAX_VALUE)
+            .maxSegments(Integer.MAX_VALUE)
+            .maxTextLength(Integer.MAX_VALUE)
+            .maxImages(Integer.MAX_VALUE)
+            .maxImageBytes(Long.MAX_VALUE));
+        RenderWatchdog.getInstance().setBudgetMs(60_000L);
+    }
+
+    @After
+    public void restoreLimits() {
+        TemplateLimits.setDefault(limits);
+        RenderWatchdog.getInstance().setBudgetMs(budgetMs);
+    }
+
+    @Test
+    public void renderCorpus() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        for (StressCorpus corpus : StressCorpus.values()) {
+            JSONArray template = new JSONArray(readAsset(corpus.fileName));
+            long[] best = { Long.MAX_VALUE };
+            int[] views = { 0 };
+
+            for (int i = 0; i < ITERATIONS; i++) {
+                InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+                    long start = SystemClock.elapsedRealtimeNanos();
+                    ActivationDetail detail = new ActivationDetail(context, template, () -> {});
+                    best[0] = Math.min(best[0], SystemClock.elapsedRealtimeNanos() - start);
+                    views[0] = countViews(detail);
+                });
+            }
+
+            assertTrue(views[0] > 0);
+            Log.i(TAG, corpus.name() + ": best " + (best[0] / 1000) + "us over "
+                + ITERATIONS + " runs, " + views[0] + " views");
+        }
+    }
+
+    private static String readAsset(String name) throws IOException {
+        Context testContext = InstrumentationRegistry.getInstrumentation().getContext();
+        try (InputStream in = testContext.getAssets().open(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static int countViews(View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                count += countViews(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+}
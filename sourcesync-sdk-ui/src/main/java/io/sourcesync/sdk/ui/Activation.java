@@ -4,56 +4,478 @@ import android.content.Context;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONException;
+import android.os.SystemClock;
+import io.sourcesync.android.analytics.AnalyticsEvent;
+import io.sourcesync.android.analytics.EventPipeline;
 import io.sourcesync.android.components.ActivationPreview;
 import io.sourcesync.android.components.ActivationDetail;
+import io.sourcesync.android.font.TypefaceRegistry;
+import io.sourcesync.android.image.ImageLoader;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.render.AsyncRender;
+import io.sourcesync.android.render.RenderLatencyEstimator;
+import io.sourcesync.android.render.RenderPlan;
+import io.sourcesync.android.render.RenderWatchdog;
+import io.sourcesync.android.resource.ManagedResource;
+import io.sourcesync.android.resource.ResourceManager;
+import io.sourcesync.android.segment.factory.SegmentProcessorRegistry;
+import io.sourcesync.android.template.BinaryTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+public class Activation extends FrameLayout implements ManagedResource {
+    private static final String TAG = "SourceSync.activation";
+
+    /**
+     * Accounts for what open details cost, such as an {@link ActivationHost}'s caps.
+     */
+    interface DetailBudget {
+        /** Whether the detail planned in {@code plan} may open; it replaces any open one. */
+        boolean admit(Activation activation, RenderPlan plan);
+
+        /** The detail of {@code activation} was closed. */
+        void release(Activation activation);
+    }
 
-public class Activation extends FrameLayout {
     private ActivationPreview previewView;
+    private OnClickListener previewClicks;
     private ActivationDetail detailView;
+    // Kept so a detail released while hidden can be rebuilt when shown again
+    private JSONArray detailTemplate;
+    private Runnable detailOnClose;
+    private boolean detailReleased;
+    // Async shows not mounted yet; a newer show or hide cancels them
+    private CompletableFuture<Void> pendingPreview;
+    private CompletableFuture<Void> pendingDetail;
+    private CompletableFuture<Void> pendingUpdate;
+    private EventPipeline events;
+    private SegmentProcessorRegistry processors;
+    private DetailBudget detailBudget;
+    private String activationId;
+    private String previewId;
+    private String detailId;
+    private long previewShownAt;
+    private long detailOpenedAt;
 
     public Activation(Context context) {
         super(context);
+        ResourceManager.getInstance().attach(context);
+        ResourceManager.getInstance().register(this);
+        RenderWatchdog.getInstance().attach(context);
+        TypefaceRegistry.getInstance().attach(context);
+    }
+
+    /**
+     * Record impressions, dwell times and preview clicks to {@code events}. Pass null to stop.
+     */
+    public void setEventPipeline(EventPipeline events) {
+        this.events = events;
+    }
+
+    /**
+     * Look segment types up in {@code processors} before the built-in processors, for
+     * previews and details shown from now on. Pass null to use only the built-in ones.
+     */
+    public void setProcessorRegistry(SegmentProcessorRegistry processors) {
+        this.processors = processors;
+    }
+
+    void setDetailBudget(DetailBudget detailBudget) {
+        this.detailBudget = detailBudget;
+    }
+
+    /**
+     * Id that events for the next preview or detail are attributed to.
+     */
+    public void setActivationId(String activationId) {
+        this.activationId = activationId;
     }
 
     public void showPreview(JSONObject previewData, OnClickListener onClickListener) {
         try {
+            showPreview(RenderPlan.forPreview(previewData), onClickListener);
+        } catch (JSONException e) {
+            throw new RuntimeException("Invalid preview data", e);
+        }
+    }
+
+    /**
+     * Show a preview from a plan made ahead of time, see {@link RenderPlan}.
+     */
+    public void showPreview(RenderPlan plan, OnClickListener onClickListener) {
+        cancel(pendingPreview);
+        mountPreview(plan, onClickListener);
+    }
+
+    /**
+     * Parse and plan preview JSON on a background thread, then show it on the main thread.
+     * Cancelling the returned future, or showing or hiding another preview first, drops it
+     * without touching the views; invalid data completes it exceptionally.
+     */
+    public CompletableFuture<Void> showPreviewAsync(String previewJson, OnClickListener onClickListener) {
+        return showPreviewAsync(RenderPlan.forPreviewAsync(previewJson), onClickListener);
+    }
+
+    /**
+     * Show a preview once {@code plan} completes, on the main thread.
+     */
+    public CompletableFuture<Void> showPreviewAsync(CompletableFuture<RenderPlan> plan,
+                                                    OnClickListener onClickListener) {
+        cancel(pendingPreview);
+        CompletableFuture<Void> handle = AsyncRender.mount(plan, this::post, ready -> {
+            pendingPreview = null;
+            mountPreview(ready, onClickListener);
+        });
+        pendingPreview = handle;
+        return handle;
+    }
+
+    private void mountPreview(RenderPlan plan, OnClickListener onClickListener) {
+        try {
+            long startNanos = System.nanoTime() - plan.getMainThreadNanos();
             if (previewView != null) {
-                removeView(previewView);
+                release(previewView);
+                endPreviewImpression();
             }
-            previewView = new ActivationPreview(getContext(), previewData);
-            previewView.setOnClickListener(onClickListener);
+            previewView = new ActivationPreview(getContext(), plan, processors);
+            previewClicks = trackClicks(onClickListener);
+            previewView.setOnClickListener(previewClicks);
             addView(previewView);
+            startPreviewImpression();
+            RenderLatencyEstimator.getInstance().measureUntilFirstDraw(previewView, startNanos);
+        } catch (JSONException e) {
+            throw new RuntimeException("Invalid preview data", e);
+        }
+    }
+
+    /**
+     * Replace the preview on screen with a new version of its data. It keeps its click
+     * listener and its impression, so no events are recorded.
+     *
+     * @return false if no preview is showing
+     */
+    public boolean updatePreview(JSONObject previewData) {
+        if (previewView == null) return false;
+        try {
+            ActivationPreview updated = new ActivationPreview(getContext(), RenderPlan.forPreview(previewData), processors);
+            updated.setOnClickListener(previewClicks);
+            updated.setVisibility(previewView.getVisibility());
+            int index = indexOfChild(previewView);
+            release(previewView);
+            addView(updated, index);
+            previewView = updated;
+            return true;
         } catch (JSONException e) {
             throw new RuntimeException("Invalid preview data", e);
         }
     }
 
+    /**
+     * Show a preview from a binary template value, see {@link BinaryTemplate}. It is
+     * converted and planned on a background thread and shown on the main thread, as with
+     * {@link #showPreviewAsync(String, OnClickListener)}.
+     */
+    public CompletableFuture<Void> showPreview(BinaryTemplate.Value previewData, OnClickListener onClickListener) {
+        return showPreviewAsync(RenderPlan.forPreviewAsync(previewData), onClickListener);
+    }
+
+    /**
+     * Build a preview ahead of time. The returned view is attached but invisible, so that
+     * {@link #showPreparedPreview} only has to flip its visibility.
+     */
+    public ActivationPreview preparePreview(JSONObject previewData) {
+        try {
+            return preparePreview(RenderPlan.forPreview(previewData));
+        } catch (JSONException e) {
+            throw new RuntimeException("Invalid preview data", e);
+        }
+    }
+
+    /**
+     * Build a preview ahead of time from a plan made ahead of time, possibly off the main
+     * thread, so only view building is left for the main thread.
+     */
+    public ActivationPreview preparePreview(RenderPlan plan) {
+        try {
+            long startNanos = System.nanoTime();
+            ActivationPreview prepared = new ActivationPreview(getContext(), plan, processors);
+            prepared.setVisibility(View.INVISIBLE);
+            addView(prepared);
+            RenderLatencyEstimator.getInstance().measureUntilFirstDraw(prepared, startNanos);
+            return prepared;
+        } catch (JSONException e) {
+            throw new RuntimeException("Invalid preview data", e);
+        }
+    }
+
+    public void showPreparedPreview(ActivationPreview prepared, OnClickListener onClickListener) {
+        if (previewView != null && previewView != prepared) {
+            release(previewView);
+        }
+        if (previewView != null) {
+            endPreviewImpression();
+        }
+        if (prepared.getParent() != this) {
+            addView(prepared);
+        }
+        previewView = prepared;
+        previewClicks = trackClicks(onClickListener);
+        previewView.setOnClickListener(previewClicks);
+        previewView.setVisibility(detailView != null ? View.GONE : View.VISIBLE);
+        startPreviewImpression();
+    }
+
+    /**
+     * Drop a preview returned by {@link #preparePreview} that will not be shown.
+     */
+    public void discardPreparedPreview(ActivationPreview prepared) {
+        if (prepared != previewView) {
+            release(prepared);
+        }
+    }
+
+    public void hidePreview() {
+        cancel(pendingPreview);
+        if (previewView != null) {
+            release(previewView);
+            previewView = null;
+            previewClicks = null;
+            endPreviewImpression();
+        }
+    }
+
     public void showDetail(JSONObject detailData, Runnable onClose) {
         try {
+            showDetail(RenderPlan.forDetail(detailData.getJSONArray("template")), onClose);
+        } catch (JSONException e) {
+            throw new RuntimeException("Invalid detail data", e);
+        }
+    }
+
+    /**
+     * Show a detail from a plan made ahead of time, see {@link RenderPlan}.
+     */
+    public void showDetail(RenderPlan plan, Runnable onClose) {
+        cancel(pendingDetail);
+        mountDetail(plan, onClose);
+    }
+
+    /**
+     * Parse and plan detail JSON on a background thread, then show it on the main thread.
+     * Cancelling the returned future, or showing or hiding another detail first, drops it
+     * without touching the views; invalid data completes it exceptionally.
+     */
+    public CompletableFuture<Void> showDetailAsync(String detailJson, Runnable onClose) {
+        return showDetailAsync(RenderPlan.forDetailAsync(detailJson), onClose);
+    }
+
+    /**
+     * Show a detail once {@code plan} completes, on the main thread.
+     */
+    public CompletableFuture<Void> showDetailAsync(CompletableFuture<RenderPlan> plan, Runnable onClose) {
+        cancel(pendingDetail);
+        CompletableFuture<Void> handle = AsyncRender.mount(plan, this::post, ready -> {
+            pendingDetail = null;
+            mountDetail(ready, onClose);
+        });
+        pendingDetail = handle;
+        return handle;
+    }
+
+    private void mountDetail(RenderPlan plan, Runnable onClose) {
+        if (detailBudget != null && !detailBudget.admit(this, plan)) {
+            SdkLog.w(TAG, "Not showing detail of {}: over the overlay limits", activationId);
+            return;
+        }
+        if (detailView != null || detailReleased) {
+            releaseDetail();
+            endDetailImpression();
+        }
+        if (previewView != null) {
+            previewView.setVisibility(View.GONE);
+        }
+        detailTemplate = plan.template;
+        detailOnClose = onClose;
+        detailView = new ActivationDetail(getContext(), plan, onClose, processors);
+        addView(detailView);
+        startDetailImpression();
+    }
+
+    /**
+     * Show a detail from a binary template value, see {@link BinaryTemplate}. It is
+     * converted and planned on a background thread and shown on the main thread, as with
+     * {@link #showDetailAsync(String, Runnable)}.
+     */
+    public CompletableFuture<Void> showDetail(BinaryTemplate.Value detailData, Runnable onClose) {
+        return showDetailAsync(RenderPlan.forDetailAsync(detailData), onClose);
+    }
+
+    /**
+     * Update the detail on screen to a new version of its template in place, keeping views
+     * and loaded images for the segments that did not change.
+     *
+     * @return false if no detail is showing
+     */
+    public boolean updateDetail(JSONObject detailData) {
+        if (detailView == null && !detailReleased) return false;
+        cancel(pendingUpdate);
+        try {
+            detailTemplate = detailData.getJSONArray("template");
             if (detailView != null) {
-                removeView(detailView);
-            }
-            if (previewView != null) {
-                previewView.setVisibility(View.GONE);
+                detailView.updateTemplate(detailTemplate);
             }
-            detailView = new ActivationDetail(getContext(), 
-                detailData.getJSONArray("template"), 
-                onClose);
-            addView(detailView);
+            return true;
         } catch (JSONException e) {
             throw new RuntimeException("Invalid detail data", e);
         }
     }
 
+    /**
+     * Update the detail on screen from a binary template value. It is converted and planned
+     * on a background thread and applied on the main thread, unless the detail has been
+     * hidden or replaced by then.
+     *
+     * @return false if no detail is showing
+     */
+    public boolean updateDetail(BinaryTemplate.Value detailData) {
+        if (detailView == null && !detailReleased) return false;
+        cancel(pendingUpdate);
+        pendingUpdate = AsyncRender.mount(RenderPlan.forDetailAsync(detailData), this::post, plan -> {
+            pendingUpdate = null;
+            detailTemplate = plan.template;
+            if (detailView != null) {
+                detailView.updateTemplate(plan);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Id of the activation whose detail is open, or null if none is.
+     */
+    public String getOpenDetailId() {
+        return detailView != null || detailReleased ? detailId : null;
+    }
+
     public void hideDetail() {
-        if (detailView != null) {
-            removeView(detailView);
-            detailView = null;
+        cancel(pendingDetail);
+        if (detailView != null || detailReleased) {
+            releaseDetail();
+            endDetailImpression();
+            if (detailBudget != null) {
+                detailBudget.release(this);
+            }
         }
         if (previewView != null) {
             previewView.setVisibility(View.VISIBLE);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public String getResourceName() {
+        return "activation views";
+    }
+
+    @Override
+    public long getResourceBytes() {
+        // Bitmaps are accounted for by the image cache
+        return 0L;
+    }
+
+    @Override
+    public int getResourceCount() {
+        return getChildCount();
+    }
+
+    /**
+     * At {@link ResourceManager#TIER_ALL} an open detail that is not on screen is torn
+     * down and rebuilt from its template when the window becomes visible again.
+     */
+    @Override
+    public void trimResources(int tier) {
+        if (tier < ResourceManager.TIER_ALL || detailView == null || isShown()) return;
+        release(detailView);
+        detailView = null;
+        detailReleased = true;
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if (visibility == View.VISIBLE && detailReleased) {
+            detailReleased = false;
+            detailView = new ActivationDetail(getContext(), detailTemplate, detailOnClose, processors);
+            addView(detailView);
+        }
+    }
+
+    private void releaseDetail() {
+        cancel(pendingUpdate);
+        if (detailView != null) {
+            release(detailView);
+        }
+        detailView = null;
+        detailReleased = false;
+        detailTemplate = null;
+        detailOnClose = null;
+    }
+
+    private static void cancel(CompletableFuture<Void> pending) {
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    /**
+     * Remove a view tree for good, letting go of its bitmaps and pending image loads.
+     */
+    private void release(View view) {
+        removeView(view);
+        ImageLoader.releaseImages(view);
+    }
+
+    private OnClickListener trackClicks(OnClickListener onClickListener) {
+        String id = activationId;
+        return v -> {
+            if (events != null) {
+                events.record(AnalyticsEvent.click(id, "preview"));
+            }
+            if (onClickListener != null) {
+                onClickListener.onClick(v);
+            }
+        };
+    }
+
+    private void startPreviewImpression() {
+        previewId = activationId;
+        previewShownAt = SystemClock.elapsedRealtime();
+        if (events != null) {
+            events.record(AnalyticsEvent.of(AnalyticsEvent.PREVIEW_SHOWN, previewId));
+        }
+    }
+
+    private void endPreviewImpression() {
+        if (events != null) {
+            events.record(AnalyticsEvent.dwell(AnalyticsEvent.PREVIEW_DWELL, previewId,
+                SystemClock.elapsedRealtime() - previewShownAt));
+        }
+    }
+
+    private void startDetailImpression() {
+        detailId = activationId;
+        detailOpenedAt = SystemClock.elapsedRealtime();
+        if (events != null) {
+            events.record(AnalyticsEvent.of(AnalyticsEvent.DETAIL_OPENED, detailId));
+        }
+    }
+
+    private void endDetailImpression() {
+        if (events != null) {
+            events.record(AnalyticsEvent.dwell(AnalyticsEvent.DETAIL_DWELL, detailId,
+                SystemClock.elapsedRealtime() - detailOpenedAt));
+        }
+    }
+}
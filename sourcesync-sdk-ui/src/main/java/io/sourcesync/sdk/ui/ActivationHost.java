@@ -0,0 +1,355 @@
+package io.sourcesync.android;
+
+import android.content.Context;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import io.sourcesync.android.analytics.EventPipeline;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.render.AsyncRender;
+import io.sourcesync.android.render.RenderPlan;
+import io.sourcesync.android.segment.factory.SegmentProcessorRegistry;
+import io.sourcesync.android.segment.processors.ButtonSegmentProcessor;
+import io.sourcesync.android.segment.processors.TextSegmentProcessor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shows several activations at once, such as a lower-third product and a corner poll, each
+ * in a {@link Slot} of the host and stacked by z-order.
+ *
+ * Every activation shown here looks segment types up in one {@link SegmentProcessorRegistry},
+ * which holds one text and one button processor for all of them. Rows, columns and images
+ * measure against their own container, so each activation keeps its own processors for
+ * those unless the integrator registers replacements. Images load through the shared
+ * {@link io.sourcesync.android.image.ImageLoader}, and the containers of hidden
+ * activations are reused.
+ *
+ * The host caps how many overlays are visible and what they cost together: the segment
+ * count and estimated image bytes of their previews and of any detail opened on them.
+ * An overlay, or a detail, that would go over a cap first replaces the one in its slot,
+ * then hides the overlays with the lowest z-order, oldest first, but never one above
+ * itself. If that is not enough it is not shown.
+ */
+public class ActivationHost extends FrameLayout {
+    private static final String TAG = "SourceSync.host";
+
+    /**
+     * Where an overlay sits in the host: its gravity and its width as a fraction of the
+     * host's. Overlays are as tall as their content unless the gravity fills vertically.
+     */
+    public static class Slot {
+        public static final Slot FULL = new Slot("full", Gravity.FILL, 1f);
+        public static final Slot LOWER_THIRD = new Slot("lower-third", Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL, 1f);
+        public static final Slot TOP_LEFT = new Slot("top-left", Gravity.TOP | Gravity.START, 0.35f);
+        public static final Slot TOP_RIGHT = new Slot("top-right", Gravity.TOP | Gravity.END, 0.35f);
+        public static final Slot BOTTOM_LEFT = new Slot("bottom-left", Gravity.BOTTOM | Gravity.START, 0.35f);
+        public static final Slot BOTTOM_RIGHT = new Slot("bottom-right", Gravity.BOTTOM | Gravity.END, 0.35f);
+
+        public final String name;
+        public final int gravity;
+        public final float width;
+
+        public Slot(String name, int gravity, float width) {
+            this.name = name;
+            this.gravity = gravity;
+            this.width = Math.max(0f, Math.min(1f, width));
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * An overlay being shown, or asking to be.
+     */
+    static class Entry {
+        final String id;
+        final Slot slot;
+        int z;
+        final long sequence;
+        final int segments;
+        final long imageBytes;
+        // Cost of the detail open on this overlay, if any
+        int detailSegments;
+        long detailImageBytes;
+        Activation view;
+
+        Entry(String id, Slot slot, int z, long sequence, int segments, long imageBytes) {
+            this.id = id;
+            this.slot = slot;
+            this.z = z;
+            this.sequence = sequence;
+            this.segments = segments;
+            this.imageBytes = imageBytes;
+        }
+
+        int totalSegments() {
+            return segments + detailSegments;
+        }
+
+        long totalImageBytes() {
+            return imageBytes + detailImageBytes;
+        }
+    }
+
+    private static final Comparator<Entry> STACKING =
+        Comparator.comparingInt((Entry entry) -> entry.z).thenComparingLong(entry -> entry.sequence);
+
+    private final SegmentProcessorRegistry processors = new SegmentProcessorRegistry();
+    private final Activation.DetailBudget detailBudget = new Activation.DetailBudget() {
+        @Override
+        public boolean admit(Activation activation, RenderPlan plan) {
+            return admitDetail(activation, plan);
+        }
+
+        @Override
+        public void release(Activation activation) {
+            Entry entry = entryFor(activation);
+            if (entry != null) {
+                entry.detailSegments = 0;
+                entry.detailImageBytes = 0L;
+            }
+        }
+    };
+    private final Map<String, Entry> overlays = new LinkedHashMap<>();
+    private final ArrayDeque<Activation> pool = new ArrayDeque<>();
+    private EventPipeline events;
+    private int maxVisible = 3;
+    private int maxSegments = 600;
+    private long maxImageBytes = 64L * 1024 * 1024;
+    private long sequence;
+
+    public ActivationHost(Context context) {
+        super(context);
+        // Stateless, so one instance serves every activation
+        processors.register(new TextSegmentProcessor());
+        processors.register(new ButtonSegmentProcessor());
+    }
+
+    /**
+     * Processors shared by every activation in this host. Processors registered here
+     * replace the built-in ones for that segment type.
+     */
+    public SegmentProcessorRegistry getProcessorRegistry() {
+        return processors;
+    }
+
+    public void setEventPipeline(EventPipeline events) {
+        this.events = events;
+        for (Entry entry : overlays.values()) {
+            entry.view.setEventPipeline(events);
+        }
+    }
+
+    /** Overlays visible at once. */
+    public void setMaxVisible(int count) { this.maxVisible = Math.max(1, count); }
+
+    /** Segments of all visible overlays together, after optimization. */
+    public void setMaxSegments(int count) { this.maxSegments = Math.max(1, count); }
+
+    /** Estimated decoded image bytes of all visible overlays together. */
+    public void setMaxImageBytes(long bytes) { this.maxImageBytes = Math.max(0L, bytes); }
+
+    /**
+     * Show the preview planned in {@code plan} as overlay {@code id}, replacing an overlay
+     * with the same id or in the same slot. Call on the main thread.
+     *
+     * @return the activation showing it, for opening its detail, or null if it did not fit
+     */
+    public Activation show(String id, Slot slot, int z, RenderPlan plan, OnClickListener onClickListener) {
+        Entry incoming = new Entry(id, slot, z, sequence++, plan.optimizerStats.nodesAfter,
+            plan.guardReport != null ? plan.guardReport.imageBytes : 0L);
+        List<String> evicted = evictions(overlays.values(), incoming, maxVisible, maxSegments, maxImageBytes);
+        if (evicted == null) {
+            SdkLog.w(TAG, "Not showing {} in {}: over the overlay limits", id, slot);
+            return null;
+        }
+        for (String hidden : evicted) {
+            hide(hidden);
+        }
+
+        Activation view = pool.isEmpty() ? new Activation(getContext()) : pool.poll();
+        view.setProcessorRegistry(processors);
+        view.setDetailBudget(detailBudget);
+        view.setEventPipeline(events);
+        view.setActivationId(id);
+        incoming.view = view;
+        overlays.put(id, incoming);
+        addView(view, new LayoutParams(LayoutParams.MATCH_PARENT, fillsHeight(slot)
+            ? LayoutParams.MATCH_PARENT : LayoutParams.WRAP_CONTENT, slot.gravity));
+        view.showPreview(plan, onClickListener);
+        restack();
+        return view;
+    }
+
+    /**
+     * Plan preview JSON in the background and show it as overlay {@code id} on the main
+     * thread. The future completes with the activation, or null if it did not fit.
+     */
+    public CompletableFuture<Activation> showAsync(String id, Slot slot, int z, String previewJson,
+                                                   OnClickListener onClickListener) {
+        CompletableFuture<Activation> result = new CompletableFuture<>();
+        CompletableFuture<Void> mount = AsyncRender.mount(RenderPlan.forPreviewAsync(previewJson), this::post,
+            plan -> result.complete(show(id, slot, z, plan, onClickListener)));
+        mount.whenComplete((done, error) -> {
+            if (error != null) result.completeExceptionally(error);
+        });
+        result.whenComplete((shown, error) -> {
+            if (result.isCancelled()) mount.cancel(false);
+        });
+        return result;
+    }
+
+    public Activation get(String id) {
+        Entry entry = overlays.get(id);
+        return entry != null ? entry.view : null;
+    }
+
+    /**
+     * Move overlay {@code id} above the overlays with a lower z-order.
+     */
+    public void setZ(String id, int z) {
+        Entry entry = overlays.get(id);
+        if (entry == null) return;
+        entry.z = z;
+        restack();
+    }
+
+    /**
+     * Hide overlay {@code id}, keeping its container for the next overlay shown.
+     *
+     * @return false if it was not showing
+     */
+    public boolean hide(String id) {
+        Entry entry = overlays.remove(id);
+        if (entry == null) return false;
+        Activation view = entry.view;
+        view.hideDetail();
+        view.hidePreview();
+        view.setDetailBudget(null);
+        view.setActivationId(null);
+        removeView(view);
+        if (pool.size() < maxVisible) {
+            pool.add(view);
+        }
+        return true;
+    }
+
+    public void hideAll() {
+        for (String id : new ArrayList<>(overlays.keySet())) {
+            hide(id);
+        }
+    }
+
+    /**
+     * Ids of the overlays showing, bottom first.
+     */
+    public List<String> getVisibleIds() {
+        List<Entry> stacked = new ArrayList<>(overlays.values());
+        stacked.sort(STACKING);
+        List<String> ids = new ArrayList<>(stacked.size());
+        for (Entry entry : stacked) {
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        for (Entry entry : overlays.values()) {
+            ViewGroup.LayoutParams params = entry.view.getLayoutParams();
+            params.width = entry.slot.width >= 1f ? LayoutParams.MATCH_PARENT : Math.round(width * entry.slot.width);
+        }
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    /**
+     * Make room for the detail planned in {@code plan} on {@code activation}, which replaces
+     * its open detail, hiding other overlays as {@link #show} would.
+     */
+    private boolean admitDetail(Activation activation, RenderPlan plan) {
+        Entry entry = entryFor(activation);
+        if (entry == null) return true;
+        Entry incoming = new Entry(entry.id, entry.slot, entry.z, entry.sequence, entry.segments, entry.imageBytes);
+        incoming.detailSegments = plan.optimizerStats.nodesAfter;
+        incoming.detailImageBytes = plan.guardReport != null ? plan.guardReport.imageBytes : 0L;
+        List<String> evicted = evictions(overlays.values(), incoming, maxVisible, maxSegments, maxImageBytes);
+        if (evicted == null) return false;
+        for (String hidden : evicted) {
+            if (!hidden.equals(entry.id)) hide(hidden);
+        }
+        entry.detailSegments = incoming.detailSegments;
+        entry.detailImageBytes = incoming.detailImageBytes;
+        return true;
+    }
+
+    private Entry entryFor(Activation activation) {
+        for (Entry entry : overlays.values()) {
+            if (entry.view == activation) return entry;
+        }
+        return null;
+    }
+
+    private void restack() {
+        List<Entry> stacked = new ArrayList<>(overlays.values());
+        stacked.sort(STACKING);
+        for (Entry entry : stacked) {
+            entry.view.bringToFront();
+        }
+        invalidate();
+    }
+
+    private static boolean fillsHeight(Slot slot) {
+        return (slot.gravity & Gravity.FILL_VERTICAL) == Gravity.FILL_VERTICAL;
+    }
+
+    /**
+     * Ids to hide so {@code incoming} fits the caps, or null if it cannot. An overlay with
+     * the same id or slot is always replaced; after that, overlays are hidden lowest
+     * z-order and oldest first, skipping any above {@code incoming}.
+     */
+    static List<String> evictions(Collection<Entry> showing, Entry incoming, int maxVisible,
+                                  int maxSegments, long maxImageBytes) {
+        if (incoming.totalSegments() > maxSegments || incoming.totalImageBytes() > maxImageBytes) return null;
+
+        List<String> evicted = new ArrayList<>();
+        List<Entry> kept = new ArrayList<>();
+        for (Entry entry : showing) {
+            if (entry.id.equals(incoming.id) || entry.slot == incoming.slot) {
+                evicted.add(entry.id);
+            } else {
+                kept.add(entry);
+            }
+        }
+        kept.sort(STACKING);
+
+        int count = kept.size() + 1;
+        int segments = incoming.totalSegments();
+        long imageBytes = incoming.totalImageBytes();
+        for (Entry entry : kept) {
+            segments += entry.totalSegments();
+            imageBytes += entry.totalImageBytes();
+        }
+        for (Entry entry : kept) {
+            if (count <= maxVisible && segments <= maxSegments && imageBytes <= maxImageBytes) break;
+            if (entry.z > incoming.z) return null;
+            evicted.add(entry.id);
+            count--;
+            segments -= entry.totalSegments();
+            imageBytes -= entry.totalImageBytes();
+        }
+        if (count > maxVisible || segments > maxSegments || imageBytes > maxImageBytes) return null;
+        return evicted;
+    }
+}
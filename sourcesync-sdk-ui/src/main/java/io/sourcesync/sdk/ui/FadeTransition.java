@@ -3,7 +3,7 @@ package io.sourcesync.android.activation.transitions;
 import android.view.View;
 import android.view.animation.AlphaAnimation;
 import android.view.animation.Animation;
-import android.util.Log;
+import io.sourcesync.android.log.SdkLog;
 
 public class FadeTransition implements ActivationTransition {
     private static final String TAG = "SourceSync.trans.fade";
@@ -11,14 +11,14 @@ public class FadeTransition implements ActivationTransition {
 
     @Override
     public void exitDetail(View detailView, View previewView, Runnable onComplete) {
-        Log.d(TAG, String.format("Starting exitDetail - preview parent: %s, visibility: %d",
-            previewView.getParent(), previewView.getVisibility()));
+        SdkLog.d(TAG, "Starting exitDetail - preview parent: {}, visibility: {}",
+            previewView.getParent(), previewView.getVisibility());
 
         // Try forcing visibility
         previewView.setAlpha(1f);
         previewView.setVisibility(View.VISIBLE);
 
-        Log.d(TAG, "Preview forced visible, running onComplete");
+        SdkLog.d(TAG, "Preview forced visible, running onComplete");
         if (onComplete != null) {
             onComplete.run();
         }
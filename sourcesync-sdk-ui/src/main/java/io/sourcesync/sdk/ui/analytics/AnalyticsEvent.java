@@ -0,0 +1,85 @@
+package io.sourcesync.android.analytics;
+
+/**
+ * One interaction or impression, serialised as a single JSON line in the event queue.
+ */
+public class AnalyticsEvent {
+    public static final String PREVIEW_SHOWN = "preview_shown";
+    public static final String PREVIEW_DWELL = "preview_dwell";
+    public static final String DETAIL_OPENED = "detail_opened";
+    public static final String DETAIL_DWELL = "detail_dwell";
+    public static final String CLICK = "click";
+
+    public final String type;
+    public final String activationId;
+    public final long timestampMs;
+    /** Time on screen for dwell events, otherwise -1. */
+    public final long durationMs;
+    /** What was clicked, e.g. {@code "preview"}, or null. */
+    public final String target;
+
+    public AnalyticsEvent(String type, String activationId, long timestampMs, long durationMs, String target) {
+        this.type = type;
+        this.activationId = activationId;
+        this.timestampMs = timestampMs;
+        this.durationMs = durationMs;
+        this.target = target;
+    }
+
+    public static AnalyticsEvent of(String type, String activationId) {
+        return new AnalyticsEvent(type, activationId, System.currentTimeMillis(), -1L, null);
+    }
+
+    public static AnalyticsEvent dwell(String type, String activationId, long durationMs) {
+        return new AnalyticsEvent(type, activationId, System.currentTimeMillis(), durationMs, null);
+    }
+
+    public static AnalyticsEvent click(String activationId, String target) {
+        return new AnalyticsEvent(CLICK, activationId, System.currentTimeMillis(), -1L, target);
+    }
+
+    /**
+     * JSON object on one line; {@code sessionId} identifies the pipeline instance.
+     */
+    String toJson(String sessionId) {
+        StringBuilder out = new StringBuilder(128);
+        out.append("{\"type\":");
+        quote(out, type);
+        out.append(",\"activationId\":");
+        quote(out, activationId);
+        out.append(",\"time\":").append(timestampMs);
+        if (durationMs >= 0) {
+            out.append(",\"durationMs\":").append(durationMs);
+        }
+        if (target != null) {
+            out.append(",\"target\":");
+            quote(out, target);
+        }
+        out.append(",\"sessionId\":");
+        quote(out, sessionId);
+        out.append('}');
+        return out.toString();
+    }
+
+    private static void quote(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                default:
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,193 @@
+package io.sourcesync.android.analytics;
+
+import io.sourcesync.android.executor.SdkExecutors;
+import io.sourcesync.android.log.SdkLog;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records impression and click events to an on-disk {@link EventQueue} and delivers them
+ * in batches through an {@link EventTransport}.
+ *
+ * A batch is sent when {@link #setMaxBatchEvents} events are waiting or every
+ * {@link #setFlushIntervalMs}, whichever comes first, so the radio wakes once per batch
+ * rather than once per event. Events written before the process died are sent by the
+ * next pipeline opened on the same directory. A failed send is retried at the next flush,
+ * with the interval doubling (up to an hour) while the transport keeps failing. Full
+ * batches wait for the timer while it is backing off.
+ */
+public class EventPipeline {
+    private static final String TAG = "SourceSync.events";
+    private static final long MAX_BACKOFF_MS = 60L * 60L * 1000L;
+
+    private final EventQueue queue;
+    private final EventTransport transport;
+    private final Executor executor;
+    private final String sessionId = UUID.randomUUID().toString();
+    private int maxBatchEvents = 50;
+    private int maxBatchBytes = 64 * 1024;
+    private long flushIntervalMs = 30_000L;
+    private long currentIntervalMs = flushIntervalMs;
+    private ScheduledFuture<?> timer;
+    private int timerGeneration;
+    private boolean backingOff;
+    private boolean closed;
+
+    public EventPipeline(File directory, EventTransport transport) throws IOException {
+        this(directory, transport, SdkExecutors.getInstance().newSerialExecutor("events", 1024));
+    }
+
+    /**
+     * @param executor runs all queue I/O and sends; must execute tasks one at a time
+     */
+    public EventPipeline(File directory, EventTransport transport, Executor executor)
+            throws IOException {
+        this.queue = new EventQueue(directory);
+        this.transport = transport;
+        this.executor = executor;
+        schedule(flushIntervalMs);
+    }
+
+    public synchronized void setMaxBatchEvents(int maxBatchEvents) {
+        this.maxBatchEvents = Math.max(1, maxBatchEvents);
+    }
+
+    /**
+     * Upper bound on the uncompressed size of one batch.
+     */
+    public synchronized void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = Math.max(1, maxBatchBytes);
+    }
+
+    public synchronized void setFlushIntervalMs(long flushIntervalMs) {
+        this.flushIntervalMs = Math.max(1L, flushIntervalMs);
+        schedule(this.flushIntervalMs);
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Queue an event. Safe to call from any thread; the disk write happens in the background.
+     */
+    public void record(AnalyticsEvent event) {
+        String json = event.toJson(sessionId);
+        executor.execute(() -> {
+            try {
+                queue.append(json);
+                // While backing off, the timer alone retries
+                if (queue.size() >= maxBatchEvents && !isBackingOff()) {
+                    sendPending(false);
+                }
+            } catch (IOException e) {
+                SdkLog.w(TAG, "Could not queue {} event", event.type, e);
+            }
+        });
+    }
+
+    /**
+     * Send everything queued now, e.g. when the app goes to the background.
+     *
+     * @return completes with the number of events delivered
+     */
+    public Future<Integer> flush() {
+        FutureTask<Integer> task = new FutureTask<>(() -> sendPending(false));
+        executor.execute(task);
+        return task;
+    }
+
+    public int pendingCount() throws Exception {
+        FutureTask<Integer> task = new FutureTask<>(queue::size);
+        executor.execute(task);
+        return task.get();
+    }
+
+    /**
+     * Stop the flush timer. Queued events stay on disk for the next pipeline.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (timer != null) timer.cancel(false);
+    }
+
+    /**
+     * Send every queued batch and pick the next flush interval. A send from the timer leaves
+     * rescheduling to {@code onTimer}; any other send reschedules only if the interval
+     * changed.
+     */
+    private int sendPending(boolean fromTimer) {
+        int sent = 0;
+        try {
+            while (true) {
+                EventQueue.Batch batch = queue.peek(maxBatchEvents, maxBatchBytes);
+                if (batch.isEmpty()) break;
+                transport.send(gzip(batch), batch.records.size());
+                queue.commit(batch);
+                sent += batch.records.size();
+            }
+            retime(flushIntervalMs, false, fromTimer);
+        } catch (IOException e) {
+            SdkLog.w(TAG, "Event delivery failed, {} sent before the failure", sent, e);
+            retime(Math.min(currentIntervalMs * 2, Math.max(MAX_BACKOFF_MS, flushIntervalMs)), true, fromTimer);
+        }
+        return sent;
+    }
+
+    private synchronized boolean isBackingOff() {
+        return backingOff;
+    }
+
+    private synchronized void retime(long intervalMs, boolean failed, boolean fromTimer) {
+        backingOff = failed;
+        if (intervalMs == currentIntervalMs) return;
+        if (fromTimer) {
+            currentIntervalMs = intervalMs;
+        } else {
+            schedule(intervalMs);
+        }
+    }
+
+    private synchronized void schedule(long intervalMs) {
+        if (closed) return;
+        if (timer != null) timer.cancel(false);
+        currentIntervalMs = intervalMs;
+        int generation = ++timerGeneration;
+        timer = SdkExecutors.getInstance().schedule(executor, () -> onTimer(generation), intervalMs);
+    }
+
+    /**
+     * The only place a timer reschedules itself. A timer that was replaced after it fired
+     * but before it ran does nothing, so there is only ever one chain.
+     */
+    private void onTimer(int generation) {
+        synchronized (this) {
+            if (closed || generation != timerGeneration) return;
+        }
+        sendPending(true);
+        synchronized (this) {
+            if (generation == timerGeneration) schedule(currentIntervalMs);
+        }
+    }
+
+    private static byte[] gzip(EventQueue.Batch batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write('[');
+            for (int i = 0; i < batch.records.size(); i++) {
+                if (i > 0) out.write(',');
+                out.write(batch.records.get(i).getBytes(StandardCharsets.UTF_8));
+            }
+            out.write(']');
+        }
+        return bytes.toByteArray();
+    }
+}
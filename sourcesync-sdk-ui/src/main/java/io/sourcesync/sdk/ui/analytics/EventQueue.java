@@ -0,0 +1,247 @@
+package io.sourcesync.android.analytics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only, newline-delimited record file with a separately persisted read offset.
+ *
+ * Records are appended and fsynced, so they survive process death. Consumers
+ * {@link #peek} a batch and {@link #commit} it once it has been delivered; until then it
+ * is handed out again, so delivery is at least once. A record torn by a crash
+ * mid-append has no trailing newline and is dropped on open. Consumed space is reclaimed
+ * by copying the unconsumed tail into a new generation of the file once it is the
+ * smaller half; the offset file names the live generation, so switching is one atomic
+ * rename and a crash mid-compaction leaves the old generation in use.
+ *
+ * Not thread-safe; the pipeline confines it to one thread.
+ */
+public class EventQueue {
+    private static final String DATA_PREFIX = "events-";
+    private static final String DATA_SUFFIX = ".log";
+    private static final String OFFSET = "events.offset";
+
+    /**
+     * Records read by {@link #peek}, and where the queue resumes once they are committed.
+     */
+    public static class Batch {
+        public final List<String> records;
+        final long endOffset;
+
+        Batch(List<String> records, long endOffset) {
+            this.records = records;
+            this.endOffset = endOffset;
+        }
+
+        public boolean isEmpty() {
+            return records.isEmpty();
+        }
+    }
+
+    private final File directory;
+    private final File offsetFile;
+    private File data;
+    private long generation;
+    private long readOffset;
+    private int pending = -1;
+
+    public EventQueue(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        this.directory = directory;
+        offsetFile = new File(directory, OFFSET);
+        loadOffset();
+        data = dataFile(generation);
+        if (readOffset > data.length()) {
+            readOffset = 0;
+        }
+        deleteOtherGenerations();
+        repairTornTail();
+    }
+
+    public void append(String record) throws IOException {
+        if (record.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Records must be a single line");
+        }
+        byte[] bytes = (record + "\n").getBytes(StandardCharsets.UTF_8);
+        try (FileOutputStream out = new FileOutputStream(data, true)) {
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        if (pending >= 0) pending++;
+    }
+
+    /**
+     * Up to {@code maxRecords} unconsumed records totalling at most {@code maxBytes}
+     * (always at least one record if any are pending).
+     */
+    public Batch peek(int maxRecords, int maxBytes) throws IOException {
+        List<String> records = new ArrayList<>();
+        long offset = readOffset;
+        long length = data.length();
+        if (offset >= length) {
+            return new Batch(records, offset);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(data, "r")) {
+            file.seek(offset);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            int bytes = 0;
+            byte[] buffer = new byte[8192];
+            long position = offset;
+            outer:
+            while (position < length) {
+                int read = file.read(buffer, 0, (int) Math.min(buffer.length, length - position));
+                if (read <= 0) break;
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+                    int size = line.size() + 1;
+                    if (!records.isEmpty() && bytes + size > maxBytes) break outer;
+                    records.add(line.toString(StandardCharsets.UTF_8.name()));
+                    line.reset();
+                    bytes += size;
+                    offset += size;
+                    if (records.size() >= maxRecords) break outer;
+                }
+                position += read;
+            }
+        }
+        return new Batch(records, offset);
+    }
+
+    /**
+     * Mark a batch from {@link #peek} as delivered.
+     */
+    public void commit(Batch batch) throws IOException {
+        if (batch.endOffset <= readOffset) return;
+        readOffset = batch.endOffset;
+        if (pending >= 0) pending = Math.max(0, pending - batch.records.size());
+
+        long length = data.length();
+        if (readOffset >= length || readOffset > length / 2) {
+            compact();
+        } else {
+            saveOffset();
+        }
+    }
+
+    /**
+     * Number of unconsumed records. Counted from disk on first use.
+     */
+    public int size() throws IOException {
+        if (pending < 0) {
+            pending = 0;
+            Batch batch;
+            long offset = readOffset;
+            do {
+                batch = peekFrom(offset);
+                pending += batch.records.size();
+                offset = batch.endOffset;
+            } while (!batch.isEmpty());
+        }
+        return pending;
+    }
+
+    private Batch peekFrom(long offset) throws IOException {
+        long saved = readOffset;
+        readOffset = offset;
+        try {
+            return peek(1024, Integer.MAX_VALUE);
+        } finally {
+            readOffset = saved;
+        }
+    }
+
+    /**
+     * Move the unconsumed tail into the next generation and switch to it.
+     */
+    private void compact() throws IOException {
+        File next = dataFile(generation + 1);
+        try (RandomAccessFile in = new RandomAccessFile(data, "r");
+             FileOutputStream out = new FileOutputStream(next)) {
+            in.seek(readOffset);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            out.getFD().sync();
+        }
+        File previous = data;
+        generation++;
+        readOffset = 0;
+        data = next;
+        saveOffset();
+        // Left behind if this fails; deleteOtherGenerations() removes it on the next open
+        previous.delete();
+    }
+
+    private void repairTornTail() throws IOException {
+        long length = data.length();
+        if (length == 0) return;
+        try (RandomAccessFile file = new RandomAccessFile(data, "rw")) {
+            long end = length;
+            while (end > readOffset) {
+                file.seek(end - 1);
+                if (file.read() == '\n') break;
+                end--;
+            }
+            if (end != length) {
+                file.setLength(end);
+            }
+        }
+    }
+
+    private void loadOffset() {
+        if (!offsetFile.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(offsetFile))) {
+            generation = in.readLong();
+            readOffset = in.readLong();
+        } catch (IOException e) {
+            generation = 0L;
+            readOffset = 0L;
+        }
+    }
+
+    private File dataFile(long generation) {
+        return new File(directory, DATA_PREFIX + generation + DATA_SUFFIX);
+    }
+
+    private void deleteOtherGenerations() {
+        File[] files = directory.listFiles((dir, name) ->
+            name.startsWith(DATA_PREFIX) && name.endsWith(DATA_SUFFIX));
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.equals(data)) file.delete();
+        }
+    }
+
+    private void saveOffset() throws IOException {
+        File temp = new File(offsetFile.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeLong(generation);
+            out.writeLong(readOffset);
+            out.flush();
+            stream.getFD().sync();
+        }
+        // rename(2) replaces the old offset file in one step
+        if (!temp.renameTo(offsetFile) && !(offsetFile.delete() && temp.renameTo(offsetFile))) {
+            throw new IOException("Could not replace " + offsetFile);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package io.sourcesync.android.analytics;
+
+import java.io.IOException;
+
+/**
+ * Delivers one batch of events. The body is a gzip-compressed JSON array of event
+ * objects. Throwing leaves the batch queued for the next flush.
+ */
+public interface EventTransport {
+    void send(byte[] gzippedBody, int eventCount) throws IOException;
+}
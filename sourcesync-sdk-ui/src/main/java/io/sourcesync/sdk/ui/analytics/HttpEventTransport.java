@@ -0,0 +1,43 @@
+package io.sourcesync.android.analytics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * POSTs each batch to a collector endpoint with {@code Content-Encoding: gzip}. Any 2xx
+ * response counts as delivered.
+ */
+public class HttpEventTransport implements EventTransport {
+    private static final int TIMEOUT_MS = 15_000;
+
+    private final String url;
+
+    public HttpEventTransport(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public void send(byte[] gzippedBody, int eventCount) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setFixedLengthStreamingMode(gzippedBody.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(gzippedBody);
+            }
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw new IOException("Collector returned HTTP " + status);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package io.sourcesync.android.cache;
+
+import io.sourcesync.android.executor.SdkExecutors;
+import io.sourcesync.android.log.SdkLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches activation templates over HTTP and keeps them on disk with their validators.
+ *
+ * A cached template is returned straight away. Once it is older than its max age
+ * (the origin's {@code Cache-Control: max-age}, or {@link #setDefaultMaxAgeMs}) it is
+ * still returned, and a conditional request using its ETag / Last-Modified is sent on
+ * the background executor. A 304 only refreshes the stored timestamp; a 200 replaces
+ * the entry and is reported to the {@link Listener}. Only a cache miss waits for the
+ * network.
+ *
+ * Entries are written to a temporary file and renamed into place, so a crash mid-write
+ * never leaves a truncated template behind.
+ */
+public class TemplateCache {
+    private static final String TAG = "SourceSync.cache";
+    private static final int FORMAT = 1;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 15_000;
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    public interface Listener {
+        /**
+         * A background revalidation fetched a newer template. Called on the cache's executor.
+         */
+        void onTemplateUpdated(String url, byte[] body);
+    }
+
+    /**
+     * A template body and where it came from.
+     */
+    public static class Result {
+        public final byte[] body;
+        /** Served from disk without waiting for the network. */
+        public final boolean fromCache;
+        /** Served from disk past its max age; a revalidation has been started. */
+        public final boolean stale;
+
+        Result(byte[] body, boolean fromCache, boolean stale) {
+            this.body = body;
+            this.fromCache = fromCache;
+            this.stale = stale;
+        }
+    }
+
+    private static class Entry {
+        String url;
+        String etag;
+        String lastModified;
+        long storedAtMs;
+        long maxAgeMs;
+        byte[] body;
+
+        boolean isFresh(long nowMs) {
+            return nowMs - storedAtMs < maxAgeMs;
+        }
+    }
+
+    private final File directory;
+    private final Executor executor;
+    private final Set<String> revalidating = new HashSet<>();
+    private long defaultMaxAgeMs = 60_000L;
+    private long maxBytes = 10L * 1024 * 1024;
+    private Listener listener;
+
+    public TemplateCache(File directory) {
+        this(directory, SdkExecutors.getInstance().io());
+    }
+
+    /**
+     * @param executor runs background revalidation; a direct executor makes it synchronous
+     */
+    public TemplateCache(File directory, Executor executor) {
+        this.directory = directory;
+        this.executor = executor;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            SdkLog.w(TAG, "Could not create cache directory {}", directory);
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Max age for responses that do not carry {@code Cache-Control: max-age}.
+     */
+    public void setDefaultMaxAgeMs(long maxAgeMs) {
+        this.defaultMaxAgeMs = Math.max(0L, maxAgeMs);
+    }
+
+    /**
+     * Disk budget; the least recently stored entries are removed beyond it.
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Return the template at {@code url}, from disk when possible. Blocks on the network
+     * only when nothing is cached.
+     */
+    public Result get(String url) throws IOException {
+        Entry entry = read(url);
+        if (entry != null) {
+            boolean stale = !entry.isFresh(System.currentTimeMillis());
+            if (stale) {
+                revalidateAsync(url);
+            }
+            return new Result(entry.body, true, stale);
+        }
+        Entry fetched = fetch(url, null);
+        return new Result(fetched.body, false, false);
+    }
+
+    /**
+     * The cached body regardless of age, or null. Never touches the network.
+     */
+    public byte[] peek(String url) {
+        Entry entry = read(url);
+        return entry != null ? entry.body : null;
+    }
+
+    /**
+     * Start a conditional request for {@code url} unless one is already in flight.
+     */
+    public void revalidateAsync(String url) {
+        synchronized (revalidating) {
+            if (!revalidating.add(url)) return;
+        }
+        executor.execute(() -> {
+            try {
+                Entry current = read(url);
+                Entry result = fetch(url, current);
+                if (result != current && listener != null) {
+                    listener.onTemplateUpdated(url, result.body);
+                }
+            } catch (IOException e) {
+                SdkLog.w(TAG, "Revalidation failed for {}", url, e);
+            } finally {
+                synchronized (revalidating) {
+                    revalidating.remove(url);
+                }
+            }
+        });
+    }
+
+    public void remove(String url) {
+        File file = fileFor(url);
+        if (file.exists() && !file.delete()) {
+            SdkLog.w(TAG, "Could not remove {}", file);
+        }
+    }
+
+    public void clear() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.delete()) {
+                SdkLog.w(TAG, "Could not remove {}", file);
+            }
+        }
+    }
+
+    /**
+     * Request {@code url}, conditionally when {@code cached} has validators. Returns
+     * {@code cached} itself on a 304.
+     */
+    private Entry fetch(String url, Entry cached) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setUseCaches(false);
+            if (cached != null && cached.etag != null) {
+                connection.setRequestProperty("If-None-Match", cached.etag);
+            }
+            if (cached != null && cached.lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", cached.lastModified);
+            }
+
+            int status = connection.getResponseCode();
+            long maxAgeMs = parseMaxAge(connection.getHeaderField("Cache-Control"));
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                cached.storedAtMs = System.currentTimeMillis();
+                cached.maxAgeMs = maxAgeMs;
+                String etag = connection.getHeaderField("ETag");
+                if (etag != null) cached.etag = etag;
+                write(cached);
+                return cached;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + " for " + url);
+            }
+
+            Entry entry = new Entry();
+            entry.url = url;
+            entry.etag = connection.getHeaderField("ETag");
+            entry.lastModified = connection.getHeaderField("Last-Modified");
+            entry.storedAtMs = System.currentTimeMillis();
+            entry.maxAgeMs = maxAgeMs;
+            try (InputStream in = connection.getInputStream()) {
+                entry.body = readFully(in);
+            }
+            write(entry);
+            return entry;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private long parseMaxAge(String cacheControl) {
+        if (cacheControl != null) {
+            String value = cacheControl.toLowerCase(Locale.ROOT);
+            if (value.contains("no-cache") || value.contains("no-store")) {
+                return 0L;
+            }
+            Matcher matcher = MAX_AGE.matcher(value);
+            if (matcher.find()) {
+                return Long.parseLong(matcher.group(1)) * 1000L;
+            }
+        }
+        return defaultMaxAgeMs;
+    }
+
+    private Entry read(String url) {
+        File file = fileFor(url);
+        if (!file.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != FORMAT) return null;
+            Entry entry = new Entry();
+            entry.url = in.readUTF();
+            if (!url.equals(entry.url)) return null;
+            entry.etag = readNullable(in);
+            entry.lastModified = readNullable(in);
+            entry.storedAtMs = in.readLong();
+            entry.maxAgeMs = in.readLong();
+            entry.body = new byte[in.readInt()];
+            in.readFully(entry.body);
+            return entry;
+        } catch (IOException e) {
+            SdkLog.w(TAG, "Discarding unreadable cache entry {}", file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private synchronized void write(Entry entry) {
+        File file = fileFor(entry.url);
+        File temp = new File(directory, file.getName() + ".tmp");
+        try {
+            try (FileOutputStream stream = new FileOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(stream)) {
+                out.writeInt(FORMAT);
+                out.writeUTF(entry.url);
+                writeNullable(out, entry.etag);
+                writeNullable(out, entry.lastModified);
+                out.writeLong(entry.storedAtMs);
+                out.writeLong(entry.maxAgeMs);
+                out.writeInt(entry.body.length);
+                out.write(entry.body);
+                out.flush();
+                stream.getFD().sync();
+            }
+            rename(temp, file);
+        } catch (IOException e) {
+            SdkLog.w(TAG, "Could not store {}", entry.url, e);
+            temp.delete();
+            return;
+        }
+        trim(file);
+    }
+
+    /**
+     * Move {@code from} over {@code to}. On Android a rename replaces the target in one
+     * step; where it cannot, the target is deleted first.
+     */
+    private static void rename(File from, File to) throws IOException {
+        if (from.renameTo(to)) return;
+        if (to.delete() && from.renameTo(to)) return;
+        throw new IOException("Could not rename " + from + " to " + to);
+    }
+
+    private void trim(File keep) {
+        File[] files = directory.listFiles((dir, name) -> !name.endsWith(".tmp"));
+        if (files == null) return;
+        long total = 0;
+        for (File file : files) total += file.length();
+        if (total <= maxBytes) return;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (total <= maxBytes) break;
+            if (file.equals(keep)) continue;
+            long length = file.length();
+            if (file.delete()) total -= length;
+        }
+    }
+
+    private File fileFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return new File(directory, name.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
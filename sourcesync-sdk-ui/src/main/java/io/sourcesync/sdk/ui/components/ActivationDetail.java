@@ -9,21 +9,54 @@ import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
-import android.view.View;
+import android.view.KeyEvent;
 import android.view.MotionEvent;
-import android.util.Log;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.focus.FocusNavigator;
+import io.sourcesync.android.image.ViewportImageLoader;
+import io.sourcesync.android.render.RenderPlan;
+import io.sourcesync.android.render.RenderWatchdog;
+import io.sourcesync.android.segment.processors.ImageSegmentProcessor;
 import io.sourcesync.android.segment.factory.SegmentProcessorFactory;
-import io.sourcesync.android.segment.SegmentProcessor;
+import io.sourcesync.android.segment.factory.SegmentProcessorRegistry;
+import io.sourcesync.android.segment.SegmentReconciler;
 import io.sourcesync.android.segment.LayoutUtils;
+import io.sourcesync.android.segment.TemplateGuard;
+import io.sourcesync.android.segment.TemplateOptimizer;
 
 public class ActivationDetail extends FrameLayout {
     private static final String TAG = "ActivationDetail";
     private SegmentProcessorFactory processorFactory;
+    private final SegmentReconciler reconciler;
+    private TemplateOptimizer.Stats templateStats;
+    private TemplateGuard.Report guardReport;
+    private RenderWatchdog.Session renderSession;
     private final LinearLayout contentContainer;
     private final ScrollView scrollView;
+    private final ViewportImageLoader imageLoader;
+    private final FocusNavigator focusNavigator;
 
     public ActivationDetail(Context context, JSONArray template, Runnable onClose) {
+        this(context, plan(template), onClose);
+    }
+
+    public ActivationDetail(Context context, JSONArray template, Runnable onClose,
+                            SegmentProcessorRegistry processors) {
+        this(context, plan(template), onClose, processors);
+    }
+
+    /**
+     * Build a detail from a plan made ahead of time, possibly off the main thread.
+     */
+    public ActivationDetail(Context context, RenderPlan plan, Runnable onClose) {
+        this(context, plan, onClose, null);
+    }
+
+    /**
+     * Build a detail whose segments are looked up in {@code processors} first.
+     */
+    public ActivationDetail(Context context, RenderPlan plan, Runnable onClose,
+                            SegmentProcessorRegistry processors) {
         super(context);
         
         // Semi-transparent background
@@ -55,8 +88,12 @@ public class ActivationDetail extends FrameLayout {
         int padding = LayoutUtils.dpToPx(getContext(), 16);
         contentContainer.setPadding(padding, padding, padding, padding);
 
-        // Initialize processor factory
-        processorFactory = new SegmentProcessorFactory(contentContainer);
+        // Initialize processor factory; images load in the order they scroll into view
+        imageLoader = new ViewportImageLoader(scrollView);
+        processorFactory = new SegmentProcessorFactory(contentContainer, processors);
+        processorFactory.registerProcessor(new ImageSegmentProcessor(contentContainer, imageLoader));
+        reconciler = new SegmentReconciler(processorFactory, contentContainer);
+        focusNavigator = new FocusNavigator(contentContainer);
 
         // Assemble the view hierarchy
         scrollView.addView(contentContainer);
@@ -77,7 +114,9 @@ public class ActivationDetail extends FrameLayout {
         addView(mainContainer);
 
         // Process template
-        processTemplate(template);
+        if (plan != null) {
+            applyPlan(plan);
+        }
     }
 
     @Override
@@ -92,24 +131,96 @@ public class ActivationDetail extends FrameLayout {
         return false;
     }
 
-    private void processTemplate(JSONArray template) {
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        if (event.getRepeatCount() > 0) {
+            // Held D-pad: hold image decodes back until scrolling settles
+            imageLoader.onKeyRepeat();
+        }
+        // D-pad moves between segments from a precomputed index, not a hierarchy search
+        return focusNavigator.onKeyEvent(event) || super.dispatchKeyEvent(event);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        imageLoader.onDetached();
+    }
+
+    /**
+     * Apply a new version of the template, changing only the views whose segments changed.
+     */
+    public SegmentReconciler.Stats updateTemplate(JSONArray template) {
+        RenderPlan plan = plan(template);
+        if (plan != null) {
+            applyPlan(plan);
+        }
+        return reconciler.getLastStats();
+    }
+
+    /**
+     * Apply a new version of the template planned ahead of time, possibly off the main
+     * thread, changing only the views whose segments changed.
+     */
+    public SegmentReconciler.Stats updateTemplate(RenderPlan plan) {
+        applyPlan(plan);
+        return reconciler.getLastStats();
+    }
+
+    /**
+     * How much the optimizer reduced the last template applied.
+     */
+    public TemplateOptimizer.Stats getTemplateStats() {
+        return templateStats;
+    }
+
+    /**
+     * Why the last template applied was cut to fit the template limits, if it was.
+     */
+    public TemplateGuard.Report getGuardReport() {
+        return guardReport;
+    }
+
+    /**
+     * Whether the first template has stopped building, with every segment built or after one
+     * failed; a heavy template may take a few frames.
+     */
+    public boolean isRenderFinished() {
+        return renderSession == null || renderSession.isFinished();
+    }
+
+    private static RenderPlan plan(JSONArray template) {
+        try {
+            // Held to the template limits and optimized before any view is built or changed
+            return RenderPlan.forDetail(template);
+        } catch (JSONException e) {
+            SdkLog.e(TAG, "Error processing detail template", e);
+            return null;
+        }
+    }
+
+    private void applyPlan(RenderPlan plan) {
+        if (renderSession != null) {
+            // A newer template supersedes a first build still in progress
+            renderSession.cancel();
+        }
+        guardReport = plan.guardReport;
+        templateStats = plan.optimizerStats;
+        JSONArray template = plan.template;
         try {
-            for (int i = 0; i < template.length(); i++) {
-                JSONObject segment = template.getJSONObject(i);
-                String segmentType = segment.getString("type");
-                
-                SegmentProcessor processor = processorFactory.getProcessor(segmentType);
-                if (processor != null) {
-                    View segmentView = processor.processSegment(getContext(), segment);
-                    if (segmentView != null) {
-                        contentContainer.addView(segmentView);
-                    }
-                } else {
-                    Log.w(TAG, "No processor found for segment type: " + segmentType);
-                }
+            if (reconciler.isEmpty()) {
+                // First build: segments past the main-thread budget are built in later frames.
+                // Updates touch only what changed and are not timed
+                RenderWatchdog.Session session = RenderWatchdog.getInstance().begin("detail", plan.getMainThreadNanos());
+                renderSession = session;
+                session.run(this, template, index -> reconciler.append(template.getJSONObject(index)));
+            } else {
+                renderSession = null;
+                reconciler.reconcile(template);
             }
+            SdkLog.d(TAG, "Template optimized: {}", templateStats);
         } catch (JSONException e) {
-            Log.e(TAG, "Error processing detail template", e);
+            SdkLog.e(TAG, "Error processing detail template", e);
         }
     }
-}
\ No newline at end of file
+}
@@ -3,29 +3,53 @@ package io.sourcesync.android.components;
 import android.content.Context;
 import android.widget.LinearLayout;
 import android.view.Gravity;
-import android.graphics.Color;
 import android.view.View;
 import android.widget.FrameLayout;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONException;
-import android.util.Log;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.render.RenderPlan;
+import io.sourcesync.android.render.RenderWatchdog;
 import io.sourcesync.android.segment.factory.SegmentProcessorFactory;
+import io.sourcesync.android.segment.factory.SegmentProcessorRegistry;
 import io.sourcesync.android.segment.SegmentProcessor;
 import io.sourcesync.android.segment.LayoutUtils;
+import io.sourcesync.android.segment.TemplateGuard;
+import io.sourcesync.android.segment.TemplateOptimizer;
 
 public class ActivationPreview extends LinearLayout {
     private static final String TAG = "ActivationPreview";
     private LinearLayout contentContainer;
     private final SegmentProcessorFactory processorFactory;
+    private final RenderPlan plan;
+    private RenderWatchdog.Session renderSession;
 
     public ActivationPreview(Context context, JSONObject previewData) throws JSONException {
+        this(context, RenderPlan.forPreview(previewData));
+    }
+
+    /**
+     * Build a preview from a plan made ahead of time, possibly off the main thread.
+     */
+    public ActivationPreview(Context context, RenderPlan plan) throws JSONException {
+        this(context, plan, null);
+    }
+
+    /**
+     * Build a preview whose segments are looked up in {@code processors} first.
+     */
+    public ActivationPreview(Context context, RenderPlan plan, SegmentProcessorRegistry processors)
+            throws JSONException {
         super(context);
-        this.processorFactory = new SegmentProcessorFactory(contentContainer);
-        initializeView(previewData);
+        this.processorFactory = new SegmentProcessorFactory(contentContainer, processors);
+        this.plan = plan;
+        initializeView();
     }
 
-    private void initializeView(JSONObject previewData) throws JSONException {
+    private void initializeView() throws JSONException {
+        // Planning on the main thread counts towards the first slice
+        renderSession = RenderWatchdog.getInstance().begin("preview", plan.getMainThreadNanos());
         setOrientation(LinearLayout.VERTICAL);
 
         // Create content container
@@ -35,17 +59,7 @@ public class ActivationPreview extends LinearLayout {
             LinearLayout.LayoutParams.MATCH_PARENT,
             LinearLayout.LayoutParams.WRAP_CONTENT
         ));
-
-        // Apply background color and opacity
-        float opacity = (float) previewData.optDouble("backgroundOpacity", 0.66);
-        String backgroundColor = previewData.optString("backgroundColor", "#000000");
-        int color = Color.parseColor(backgroundColor);
-        contentContainer.setBackgroundColor(Color.argb(
-            (int)(opacity * 255),
-            Color.red(color),
-            Color.green(color),
-            Color.blue(color)
-        ));
+        contentContainer.setBackgroundColor(plan.backgroundColor);
 
         // Add padding
         int padding = LayoutUtils.dpToPx(getContext(), 16);
@@ -55,59 +69,47 @@ public class ActivationPreview extends LinearLayout {
         setClickable(true);
         setFocusable(true);
 
-        // Process template if provided
-        if (previewData.has("template")) {
-            processTemplate(previewData.getJSONArray("template"));
-        } else {
-            // Use default template if none provided
-            processTemplate(createDefaultTemplate(previewData));
-        }
+        processTemplate(plan.template);
+    }
+
+    /**
+     * Why the preview's template was cut or replaced, or null if it had none.
+     */
+    public TemplateGuard.Report getGuardReport() {
+        return plan.guardReport;
+    }
+
+    /**
+     * How much the optimizer reduced the template this preview was built from.
+     */
+    public TemplateOptimizer.Stats getTemplateStats() {
+        return plan.optimizerStats;
+    }
+
+    /**
+     * Whether every segment has been built; a heavy template may take a few frames.
+     */
+    public boolean isRenderFinished() {
+        return renderSession.isFinished();
     }
 
     private void processTemplate(JSONArray template) throws JSONException {
-        for (int i = 0; i < template.length(); i++) {
-            JSONObject segment = template.getJSONObject(i);
-            String segmentType = segment.getString("type");
-            
-            SegmentProcessor processor = processorFactory.getProcessor(segmentType);
-            if (processor != null) {
-                View segmentView = processor.processSegment(getContext(), segment);
-                if (segmentView != null) {
-                    contentContainer.addView(segmentView);
-                }
-            } else {
-                Log.w(TAG, "No processor found for segment type: " + segmentType);
-            }
-        }
+        SdkLog.d(TAG, "Template optimized: {}", plan.optimizerStats);
+        // Segments past the main-thread budget are built in later frames
+        renderSession.run(this, template, index -> buildSegment(template.getJSONObject(index)));
     }
 
-    private JSONArray createDefaultTemplate(JSONObject previewData) throws JSONException {
-        JSONArray template = new JSONArray();
-        
-        // Add title if present
-        if (previewData.has("title")) {
-            template.put(new JSONObject()
-                .put("type", "text")
-                .put("content", previewData.getString("title"))
-                .put("attributes", new JSONObject()
-                    .put("size", "lg")
-                    .put("color", "#FFFFFF")
-                    .put("weight", "bold")
-                    .put("alignment", "left")));
-        }
-        
-        // Add subtitle if present
-        if (previewData.has("subtitle")) {
-            template.put(new JSONObject()
-                .put("type", "text")
-                .put("content", previewData.getString("subtitle"))
-                .put("attributes", new JSONObject()
-                    .put("size", "md")
-                    .put("color", "#CCCCCC")
-                    .put("style", "italic")
-                    .put("alignment", "left")));
+    private void buildSegment(JSONObject segment) throws JSONException {
+        String segmentType = segment.getString("type");
+
+        SegmentProcessor processor = processorFactory.getProcessor(segmentType);
+        if (processor != null) {
+            View segmentView = processor.processSegment(getContext(), segment);
+            if (segmentView != null) {
+                contentContainer.addView(segmentView);
+            }
+        } else {
+            SdkLog.w(TAG, "No processor found for segment type: {}", segmentType);
         }
-        
-        return template;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package io.sourcesync.android.executor;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The SDK's execution layer. All SDK background work runs on one of:
+ * <ul>
+ *   <li>{@link #io()} for network and disk, which mostly waits,</li>
+ *   <li>{@link #cpu()} for parsing and decoding, sized to the cores,</li>
+ *   <li>{@link #main()} for posting results to the main thread,</li>
+ * </ul>
+ * plus serial executors from {@link #newSerialExecutor} that share the I/O threads. Each
+ * is a {@link TaskExecutor}, so background queues are bounded and their depth and wait times can be
+ * read from {@link #getStats()}. The main queue is the exception: callers rely on their
+ * results being posted, so it never drops work.
+ *
+ * Host apps that manage their own threads can install executors before using the SDK:
+ * <pre>
+ * SdkExecutors.setInstance(new SdkExecutors(appIoExecutor, appCpuExecutor, mainExecutor));
+ * </pre>
+ * The SDK still bounds and measures the work it hands to them.
+ */
+public class SdkExecutors {
+    private static final int IO_CONCURRENCY = 4;
+    private static final int IO_QUEUE = 128;
+    private static final int CPU_QUEUE = 64;
+    private static SdkExecutors instance;
+
+    private final Executor ioDelegate;
+    private final TaskExecutor io;
+    private final TaskExecutor cpu;
+    private final TaskExecutor main;
+    private final List<TaskExecutor> all = new ArrayList<>();
+    private final List<ExecutorService> owned = new ArrayList<>();
+    private ScheduledExecutorService timer;
+
+    public static synchronized SdkExecutors getInstance() {
+        if (instance == null) {
+            instance = new SdkExecutors();
+        }
+        return instance;
+    }
+
+    /**
+     * Replace the executors used by SDK components created from now on.
+     */
+    public static synchronized void setInstance(SdkExecutors executors) {
+        instance = executors;
+    }
+
+    /**
+     * SDK-owned thread pools at background priority, and the main looper.
+     */
+    public SdkExecutors() {
+        this(null, null, null);
+    }
+
+    /**
+     * Run SDK work on the given executors. Any argument may be null to keep the default.
+     */
+    public SdkExecutors(Executor io, Executor cpu, Executor main) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int cpuConcurrency = Math.max(1, Math.min(4, cores - 1));
+
+        ioDelegate = io != null ? io : own(Executors.newCachedThreadPool(threads("SourceSyncIO")));
+        Executor cpuDelegate = cpu != null ? cpu : own(Executors.newCachedThreadPool(threads("SourceSyncCPU")));
+        Executor mainDelegate = main != null ? main : mainLooper();
+
+        this.io = register(new TaskExecutor("io", ioDelegate, IO_CONCURRENCY, IO_QUEUE));
+        this.cpu = register(new TaskExecutor("cpu", cpuDelegate, cpuConcurrency, CPU_QUEUE));
+        // One at a time: the main thread cannot run more, and queued posts show up as depth
+        this.main = register(new TaskExecutor("main", mainDelegate, 1, TaskExecutor.UNBOUNDED));
+    }
+
+    public TaskExecutor io() {
+        return io;
+    }
+
+    public TaskExecutor cpu() {
+        return cpu;
+    }
+
+    public TaskExecutor main() {
+        return main;
+    }
+
+    /**
+     * An executor that runs its tasks one at a time in order on the I/O threads, for
+     * components that confine state such as a file to a single thread.
+     */
+    public TaskExecutor newSerialExecutor(String name, int maxQueued) {
+        return register(new TaskExecutor(name, ioDelegate, 1, maxQueued));
+    }
+
+    /**
+     * Run {@code task} on {@code target} after a delay. The shared timer thread only hands
+     * tasks over, so it never blocks on SDK work.
+     */
+    public ScheduledFuture<?> schedule(Executor target, Runnable task, long delayMs) {
+        return timer().schedule(() -> target.execute(task), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized List<TaskExecutor.Stats> getStats() {
+        List<TaskExecutor.Stats> stats = new ArrayList<>(all.size());
+        for (TaskExecutor executor : all) {
+            stats.add(executor.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Drop queued work and stop the threads this instance created. Injected executors are
+     * left to their owner.
+     */
+    public synchronized void shutdown() {
+        for (TaskExecutor executor : all) {
+            executor.clear();
+        }
+        for (ExecutorService service : owned) {
+            service.shutdown();
+        }
+        if (timer != null) {
+            timer.shutdown();
+        }
+    }
+
+    private synchronized ScheduledExecutorService timer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(threads("SourceSyncTimer"));
+        }
+        return timer;
+    }
+
+    private synchronized TaskExecutor register(TaskExecutor executor) {
+        all.add(executor);
+        return executor;
+    }
+
+    private ExecutorService own(ExecutorService service) {
+        owned.add(service);
+        return service;
+    }
+
+    /**
+     * Posts to the main looper. A post the looper refuses, because it is quitting, is
+     * rejected so the task is told it was dropped.
+     */
+    private static Executor mainLooper() {
+        Handler handler = new Handler(Looper.getMainLooper());
+        return task -> {
+            if (!handler.post(task)) {
+                throw new RejectedExecutionException("Main looper is quitting");
+            }
+        };
+    }
+
+    private static ThreadFactory threads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
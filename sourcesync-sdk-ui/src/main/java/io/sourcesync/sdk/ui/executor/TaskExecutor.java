@@ -0,0 +1,284 @@
+package io.sourcesync.android.executor;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executor with a bounded, prioritised queue in front of a delegate that does the actual
+ * running. At most {@code maxConcurrency} tasks are handed to the delegate at once; the
+ * rest wait here, highest priority first and oldest first within a priority.
+ *
+ * When the queue is full the oldest task of the lowest priority is dropped to make room,
+ * or the new task itself if it has lower priority than everything queued. Tasks queued
+ * with a collapse key replace a still-queued task with the same key in place, so only the
+ * latest of several requests for the same thing runs. Dropped and replaced tasks that
+ * implement {@link Droppable} are told, so callers waiting on them can move on. A queue of
+ * {@link #UNBOUNDED} size never drops work.
+ */
+public class TaskExecutor implements Executor {
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+    private static final int PRIORITIES = 3;
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    /**
+     * A task that wants to know when it will not run.
+     */
+    public interface Droppable extends Runnable {
+        void onDropped();
+    }
+
+    /**
+     * Counters since creation, and the current queue depth.
+     */
+    public static class Stats {
+        public final String name;
+        public final int queued;
+        public final int peakQueued;
+        public final int running;
+        public final long submitted;
+        public final long completed;
+        public final long dropped;
+        public final long collapsed;
+        public final long meanWaitMs;
+        public final long maxWaitMs;
+
+        Stats(String name, int queued, int peakQueued, int running, long submitted, long completed,
+              long dropped, long collapsed, long meanWaitMs, long maxWaitMs) {
+            this.name = name;
+            this.queued = queued;
+            this.peakQueued = peakQueued;
+            this.running = running;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.dropped = dropped;
+            this.collapsed = collapsed;
+            this.meanWaitMs = meanWaitMs;
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s queued=%d peak=%d running=%d submitted=%d completed=%d"
+                    + " dropped=%d collapsed=%d wait=%d/%dms",
+                name, queued, peakQueued, running, submitted, completed, dropped, collapsed,
+                meanWaitMs, maxWaitMs);
+        }
+    }
+
+    private static class Entry {
+        Runnable task;
+        int priority;
+        final Object collapseKey;
+        final long enqueuedNanos;
+
+        Entry(Runnable task, int priority, Object collapseKey) {
+            this.task = task;
+            this.priority = priority;
+            this.collapseKey = collapseKey;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    private final String name;
+    private final Executor delegate;
+    private final int maxConcurrency;
+    private final int maxQueued;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Entry>[] queues = new ArrayDeque[PRIORITIES];
+    private final Map<Object, Entry> byKey = new HashMap<>();
+    private int queued;
+    private int running;
+
+    private int peakQueued;
+    private long submitted;
+    private long completed;
+    private long dropped;
+    private long collapsed;
+    private long started;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    public TaskExecutor(String name, Executor delegate, int maxConcurrency, int maxQueued) {
+        this.name = name;
+        this.delegate = delegate;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxQueued = Math.max(1, maxQueued);
+        for (int i = 0; i < PRIORITIES; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        execute(task, PRIORITY_NORMAL, null);
+    }
+
+    /**
+     * @param collapseKey if non-null, replaces a queued task with an equal key
+     * @return false if the task was dropped straight away because the queue is full of
+     *         higher-priority work
+     */
+    public boolean execute(Runnable task, int priority, Object collapseKey) {
+        priority = Math.max(PRIORITY_LOW, Math.min(PRIORITY_HIGH, priority));
+        Runnable replaced = null;
+        Runnable evicted = null;
+        boolean accepted = true;
+        synchronized (this) {
+            submitted++;
+            Entry existing = collapseKey != null ? byKey.get(collapseKey) : null;
+            if (existing != null && existing.priority >= priority) {
+                replaced = existing.task;
+                existing.task = task;
+                collapsed++;
+            } else {
+                if (existing != null) {
+                    // Re-queue at the higher priority
+                    remove(existing);
+                    replaced = existing.task;
+                    collapsed++;
+                }
+                if (queued >= maxQueued) {
+                    Entry victim = lowestOldest();
+                    if (victim.priority <= priority) {
+                        remove(victim);
+                        evicted = victim.task;
+                        dropped++;
+                    } else {
+                        evicted = task;
+                        dropped++;
+                        accepted = false;
+                    }
+                }
+                if (accepted) {
+                    Entry entry = new Entry(task, priority, collapseKey);
+                    queues[priority].addLast(entry);
+                    if (collapseKey != null) byKey.put(collapseKey, entry);
+                    queued++;
+                    peakQueued = Math.max(peakQueued, queued);
+                }
+            }
+        }
+        notifyDropped(replaced);
+        notifyDropped(evicted);
+        dispatch();
+        return accepted;
+    }
+
+    /**
+     * Move the queued task with {@code collapseKey} to {@code priority}, behind the tasks
+     * already waiting there.
+     *
+     * @return false if no task with that key is queued, for example because it has started
+     */
+    public boolean reprioritize(Object collapseKey, int priority) {
+        priority = Math.max(PRIORITY_LOW, Math.min(PRIORITY_HIGH, priority));
+        synchronized (this) {
+            Entry entry = byKey.get(collapseKey);
+            if (entry == null) return false;
+            if (entry.priority != priority) {
+                queues[entry.priority].remove(entry);
+                entry.priority = priority;
+                queues[priority].addLast(entry);
+            }
+        }
+        return true;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(name, queued, peakQueued, running, submitted, completed, dropped, collapsed,
+            started > 0 ? totalWaitNanos / started / 1_000_000L : 0L, maxWaitNanos / 1_000_000L);
+    }
+
+    /**
+     * Drop everything still queued. Running tasks finish normally.
+     */
+    public void clear() {
+        ArrayDeque<Runnable> cleared = new ArrayDeque<>();
+        synchronized (this) {
+            for (ArrayDeque<Entry> queue : queues) {
+                for (Entry entry : queue) cleared.add(entry.task);
+                queue.clear();
+            }
+            byKey.clear();
+            dropped += queued;
+            queued = 0;
+        }
+        for (Runnable task : cleared) {
+            notifyDropped(task);
+        }
+    }
+
+    private void dispatch() {
+        while (true) {
+            Entry next;
+            synchronized (this) {
+                if (running >= maxConcurrency || queued == 0) return;
+                next = highestOldest();
+                remove(next);
+                running++;
+                long waitNanos = System.nanoTime() - next.enqueuedNanos;
+                started++;
+                totalWaitNanos += waitNanos;
+                maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            }
+            Runnable task = next.task;
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        synchronized (TaskExecutor.this) {
+                            running--;
+                            completed++;
+                        }
+                        dispatch();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    running--;
+                    dropped++;
+                }
+                notifyDropped(task);
+                return;
+            }
+        }
+    }
+
+    private Entry highestOldest() {
+        for (int i = PRIORITIES - 1; i >= 0; i--) {
+            if (!queues[i].isEmpty()) return queues[i].peekFirst();
+        }
+        return null;
+    }
+
+    private Entry lowestOldest() {
+        for (int i = 0; i < PRIORITIES; i++) {
+            if (!queues[i].isEmpty()) return queues[i].peekFirst();
+        }
+        return null;
+    }
+
+    private void remove(Entry entry) {
+        queues[entry.priority].remove(entry);
+        if (entry.collapseKey != null && byKey.get(entry.collapseKey) == entry) {
+            byKey.remove(entry.collapseKey);
+        }
+        queued--;
+    }
+
+    private static void notifyDropped(Runnable task) {
+        if (task instanceof Droppable) {
+            ((Droppable) task).onDropped();
+        }
+    }
+}
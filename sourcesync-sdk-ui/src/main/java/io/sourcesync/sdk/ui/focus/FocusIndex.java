@@ -0,0 +1,248 @@
+package io.sourcesync.android.focus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index of focusable items that answers "which item is next in this direction"
+ * without walking the view hierarchy.
+ *
+ * Items are kept in four lists sorted by each edge, so a search only visits items on the
+ * correct side of the source and stops as soon as the remaining ones are too far away to
+ * win. Scoring follows the framework's focus search: distance along the direction counts
+ * 13 times more than distance across it, and items overlapping the source on the cross
+ * axis (in its "beam") have no cross distance.
+ *
+ * @param <T> the item type, used as a {@link HashMap} key
+ */
+public class FocusIndex<T> {
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+
+    private static final long MAJOR_WEIGHT = 13L;
+
+    private static class Node<T> {
+        final T item;
+        int left, top, right, bottom;
+
+        Node(T item) {
+            this.item = item;
+        }
+
+        int centerX() {
+            return (left + right) / 2;
+        }
+
+        int centerY() {
+            return (top + bottom) / 2;
+        }
+    }
+
+    private final Map<T, Node<T>> nodes = new HashMap<>();
+    // Ascending by top, bottom, left and right edge respectively
+    private final List<Node<T>> byTop = new ArrayList<>();
+    private final List<Node<T>> byBottom = new ArrayList<>();
+    private final List<Node<T>> byLeft = new ArrayList<>();
+    private final List<Node<T>> byRight = new ArrayList<>();
+
+    private static final int TOP = 0;
+    private static final int BOTTOM = 1;
+    private static final int LEFT_EDGE = 2;
+    private static final int RIGHT_EDGE = 3;
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean contains(T item) {
+        return nodes.containsKey(item);
+    }
+
+    /**
+     * A copy of the indexed items, in no particular order.
+     */
+    public List<T> items() {
+        return new ArrayList<>(nodes.keySet());
+    }
+
+    /**
+     * Add {@code item}, or move it if it is already indexed.
+     *
+     * @return true if the index changed
+     */
+    public boolean put(T item, int left, int top, int right, int bottom) {
+        Node<T> node = nodes.get(item);
+        if (node != null) {
+            if (node.left == left && node.top == top && node.right == right && node.bottom == bottom) {
+                return false;
+            }
+            unlink(node);
+        } else {
+            node = new Node<>(item);
+            nodes.put(item, node);
+        }
+        node.left = left;
+        node.top = top;
+        node.right = right;
+        node.bottom = bottom;
+        insert(byTop, node, TOP);
+        insert(byBottom, node, BOTTOM);
+        insert(byLeft, node, LEFT_EDGE);
+        insert(byRight, node, RIGHT_EDGE);
+        return true;
+    }
+
+    public boolean remove(T item) {
+        Node<T> node = nodes.remove(item);
+        if (node == null) return false;
+        unlink(node);
+        return true;
+    }
+
+    public void clear() {
+        nodes.clear();
+        byTop.clear();
+        byBottom.clear();
+        byLeft.clear();
+        byRight.clear();
+    }
+
+    /**
+     * The best item to move to from {@code from} in {@code direction}, or null if there is
+     * none or {@code from} is not indexed.
+     */
+    public T next(T from, int direction) {
+        Node<T> source = nodes.get(from);
+        if (source == null) return null;
+
+        Node<T> best = null;
+        long bestScore = Long.MAX_VALUE;
+        switch (direction) {
+            case DOWN:
+                // Candidates start below the source's top edge, nearest first
+                for (int i = firstAfter(byTop, source.top, TOP); i < byTop.size(); i++) {
+                    Node<T> candidate = byTop.get(i);
+                    long major = Math.max(0, candidate.top - source.bottom);
+                    if (MAJOR_WEIGHT * major * major >= bestScore) break;
+                    if (candidate == source || candidate.bottom <= source.bottom) continue;
+                    long score = score(major, source.left, source.right, candidate.left,
+                        candidate.right, source.centerX(), candidate.centerX());
+                    if (score < bestScore) {
+                        best = candidate;
+                        bestScore = score;
+                    }
+                }
+                break;
+            case UP:
+                for (int i = lastBefore(byBottom, source.bottom, BOTTOM); i >= 0; i--) {
+                    Node<T> candidate = byBottom.get(i);
+                    long major = Math.max(0, source.top - candidate.bottom);
+                    if (MAJOR_WEIGHT * major * major >= bestScore) break;
+                    if (candidate == source || candidate.top >= source.top) continue;
+                    long score = score(major, source.left, source.right, candidate.left,
+                        candidate.right, source.centerX(), candidate.centerX());
+                    if (score < bestScore) {
+                        best = candidate;
+                        bestScore = score;
+                    }
+                }
+                break;
+            case RIGHT:
+                for (int i = firstAfter(byLeft, source.left, LEFT_EDGE); i < byLeft.size(); i++) {
+                    Node<T> candidate = byLeft.get(i);
+                    long major = Math.max(0, candidate.left - source.right);
+                    if (MAJOR_WEIGHT * major * major >= bestScore) break;
+                    if (candidate == source || candidate.right <= source.right) continue;
+                    long score = score(major, source.top, source.bottom, candidate.top,
+                        candidate.bottom, source.centerY(), candidate.centerY());
+                    if (score < bestScore) {
+                        best = candidate;
+                        bestScore = score;
+                    }
+                }
+                break;
+            case LEFT:
+                for (int i = lastBefore(byRight, source.right, RIGHT_EDGE); i >= 0; i--) {
+                    Node<T> candidate = byRight.get(i);
+                    long major = Math.max(0, source.left - candidate.right);
+                    if (MAJOR_WEIGHT * major * major >= bestScore) break;
+                    if (candidate == source || candidate.left >= source.left) continue;
+                    long score = score(major, source.top, source.bottom, candidate.top,
+                        candidate.bottom, source.centerY(), candidate.centerY());
+                    if (score < bestScore) {
+                        best = candidate;
+                        bestScore = score;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown direction " + direction);
+        }
+        return best != null ? best.item : null;
+    }
+
+    /**
+     * Items overlapping the source across the direction ("in its beam") score on distance
+     * along the direction alone.
+     */
+    private static long score(long major, int sourceStart, int sourceEnd, int start, int end,
+                              int sourceCenter, int center) {
+        boolean inBeam = start < sourceEnd && end > sourceStart;
+        long minor = inBeam ? 0 : Math.abs(center - sourceCenter);
+        return MAJOR_WEIGHT * major * major + minor * minor;
+    }
+
+    private void unlink(Node<T> node) {
+        byTop.remove(node);
+        byBottom.remove(node);
+        byLeft.remove(node);
+        byRight.remove(node);
+    }
+
+    private static <T> void insert(List<Node<T>> list, Node<T> node, int edge) {
+        list.add(firstAfter(list, edge(node, edge), edge), node);
+    }
+
+    /** Index of the first node whose edge is greater than {@code value}. */
+    private static <T> int firstAfter(List<Node<T>> list, int value, int edge) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (edge(list.get(mid), edge) <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Index of the last node whose edge is less than {@code value}. */
+    private static <T> int lastBefore(List<Node<T>> list, int value, int edge) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (edge(list.get(mid), edge) < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    private static int edge(Node<?> node, int edge) {
+        switch (edge) {
+            case TOP: return node.top;
+            case BOTTOM: return node.bottom;
+            case LEFT_EDGE: return node.left;
+            default: return node.right;
+        }
+    }
+}
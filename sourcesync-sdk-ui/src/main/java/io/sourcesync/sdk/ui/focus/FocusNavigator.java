@@ -0,0 +1,91 @@
+package io.sourcesync.android.focus;
+
+import android.graphics.Rect;
+import android.view.KeyEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Moves D-pad focus between the focusable views under a root using a {@link FocusIndex},
+ * instead of the framework's search over the whole hierarchy on every key press.
+ *
+ * The index is brought up to date on the first key press after a layout: views that
+ * moved, appeared or went away are updated individually. Presses the index cannot answer,
+ * such as leaving the root, fall through to the framework.
+ */
+public class FocusNavigator {
+    private final ViewGroup root;
+    private final FocusIndex<View> index = new FocusIndex<>();
+    private final Rect rect = new Rect();
+    private boolean stale = true;
+
+    public FocusNavigator(ViewGroup root) {
+        this.root = root;
+        root.addOnLayoutChangeListener((v, left, top, right, bottom,
+                                        oldLeft, oldTop, oldRight, oldBottom) -> stale = true);
+    }
+
+    /**
+     * Handle a D-pad key press, typically from {@code dispatchKeyEvent}.
+     *
+     * @return true if focus was moved and the event consumed
+     */
+    public boolean onKeyEvent(KeyEvent event) {
+        if (event.getAction() != KeyEvent.ACTION_DOWN) return false;
+        int direction = directionFor(event.getKeyCode());
+        if (direction < 0) return false;
+
+        View focused = root.findFocus();
+        if (focused == null) return false;
+        if (stale) {
+            refresh();
+        }
+        View next = index.next(focused, direction);
+        return next != null && next.requestFocus();
+    }
+
+    /**
+     * Re-read positions now, rather than on the next key press.
+     */
+    public void refresh() {
+        Set<View> seen = new HashSet<>();
+        collect(root, seen);
+        for (View view : index.items()) {
+            if (!seen.contains(view)) index.remove(view);
+        }
+        stale = false;
+    }
+
+    public int getIndexedCount() {
+        return index.size();
+    }
+
+    private void collect(View view, Set<View> seen) {
+        if (view.getVisibility() != View.VISIBLE) return;
+        if (view != root && view.isFocusable()) {
+            rect.set(0, 0, view.getWidth(), view.getHeight());
+            root.offsetDescendantRectToMyCoords(view, rect);
+            index.put(view, rect.left, rect.top, rect.right, rect.bottom);
+            seen.add(view);
+        }
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                collect(group.getChildAt(i), seen);
+            }
+        }
+    }
+
+    static int directionFor(int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.KEYCODE_DPAD_UP: return FocusIndex.UP;
+            case KeyEvent.KEYCODE_DPAD_DOWN: return FocusIndex.DOWN;
+            case KeyEvent.KEYCODE_DPAD_LEFT: return FocusIndex.LEFT;
+            case KeyEvent.KEYCODE_DPAD_RIGHT: return FocusIndex.RIGHT;
+            default: return -1;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package io.sourcesync.android.font;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.widget.TextView;
+
+import io.sourcesync.android.cache.TemplateCache;
+import io.sourcesync.android.executor.SdkExecutors;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.render.AsyncRender;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Typefaces for the {@code font} attribute of text and button segments.
+ *
+ * A font is a family registered with {@link #register}, a source given directly
+ * ({@code asset:fonts/Brand.ttf}, {@code file:/path/Brand.otf} or an http(s) URL), or a
+ * system family such as {@code serif}. Each family and weight is loaded once, on the
+ * background executor, and kept for the life of the process. Fonts from a URL are fetched
+ * through a {@link TemplateCache}, so they are revalidated rather than downloaded again
+ * on the next launch.
+ *
+ * {@link #apply} shows a view in its current typeface until the font has loaded, then
+ * swaps it in on the main thread. Only that view is measured again; nothing is rebuilt.
+ */
+public class TypefaceRegistry {
+    private static final String TAG = "SourceSync.fonts";
+    private static final String BOLD = "bold";
+    private static final String NORMAL = "normal";
+
+    private static TypefaceRegistry instance;
+
+    /**
+     * Reads a typeface from a source.
+     */
+    interface Loader {
+        Typeface load(String source) throws IOException;
+    }
+
+    private final Executor executor;
+    private final Loader loader;
+    private final Map<String, String> sources = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Typeface>> loads = new ConcurrentHashMap<>();
+    // Font each view last asked for, so a late load does not overwrite a newer font
+    private final Map<TextView, String> requested = new WeakHashMap<>();
+    private Context context;
+    private TemplateCache cache;
+
+    public static synchronized TypefaceRegistry getInstance() {
+        if (instance == null) {
+            instance = new TypefaceRegistry(SdkExecutors.getInstance().io(), null);
+        }
+        return instance;
+    }
+
+    TypefaceRegistry(Executor executor, Loader loader) {
+        this.executor = executor;
+        this.loader = loader != null ? loader : this::loadSource;
+    }
+
+    /**
+     * Give the registry the application {@code context} belongs to, for assets and the
+     * download cache. Repeated calls are ignored.
+     */
+    public synchronized void attach(Context context) {
+        if (this.context != null || context == null) return;
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+    }
+
+    /**
+     * Make {@code family} in templates refer to the regular weight at {@code source}.
+     */
+    public void register(String family, String source) {
+        register(family, NORMAL, source);
+    }
+
+    /**
+     * Make {@code family} at {@code weight}, "normal" or "bold", refer to {@code source}.
+     * Without a bold source, bold text uses a synthetic bold of the regular one.
+     */
+    public void register(String family, String weight, String source) {
+        String key = key(family, BOLD.equalsIgnoreCase(weight));
+        sources.put(key, source);
+        loads.remove(key);
+    }
+
+    /**
+     * The typeface for {@code font} if it has loaded, otherwise null. Starts loading it.
+     */
+    public Typeface getLoaded(String font, boolean bold) {
+        CompletableFuture<Typeface> load = load(font, bold);
+        return load.isDone() && !load.isCompletedExceptionally() ? load.join() : null;
+    }
+
+    /**
+     * Load {@code font} at the given weight. Requests for the same family and weight share
+     * one load; a failed load is tried again on the next request.
+     */
+    public CompletableFuture<Typeface> load(String font, boolean bold) {
+        String key = key(font, bold);
+        CompletableFuture<Typeface> load = loads.get(key);
+        if (load != null) return load;
+
+        // A synthetic bold waits on the regular load, which must be looked up before
+        // computeIfAbsent: the map cannot be updated from inside it
+        CompletableFuture<Typeface> regular = emboldens(font, bold) ? load(font, false) : null;
+        Object[] created = new Object[1];
+        load = loads.computeIfAbsent(key, k -> {
+            CompletableFuture<Typeface> started = start(font, bold, regular);
+            created[0] = started;
+            return started;
+        });
+        if (created[0] == load) {
+            CompletableFuture<Typeface> started = load;
+            started.whenComplete((typeface, error) -> {
+                if (error != null) {
+                    loads.remove(key, started);
+                    SdkLog.w(TAG, "Could not load font {}", font, error);
+                }
+            });
+        }
+        return load;
+    }
+
+    /**
+     * Show {@code view} in {@code font}: straight away if loaded, otherwise in its current
+     * typeface until the font arrives. Call on the main thread.
+     */
+    public void apply(TextView view, String font, boolean bold) {
+        String key = key(font, bold);
+        requested.put(view, key);
+        Typeface loaded = getLoaded(font, bold);
+        if (loaded != null) {
+            view.setTypeface(loaded);
+            return;
+        }
+        load(font, bold).thenAccept(typeface -> {
+            if (typeface == null) return;
+            view.post(() -> {
+                if (key.equals(requested.get(view))) {
+                    view.setTypeface(typeface);
+                }
+            });
+        });
+    }
+
+    /**
+     * Whether bold {@code font} has no cut of its own and is made from the regular one.
+     */
+    private boolean emboldens(String font, boolean bold) {
+        return bold && !sources.containsKey(key(font, true))
+            && (sources.containsKey(key(font, false)) || isSource(font));
+    }
+
+    private CompletableFuture<Typeface> start(String font, boolean bold, CompletableFuture<Typeface> regular) {
+        if (regular != null) {
+            // No bold cut: embolden the regular one
+            return regular.thenApply(typeface -> Typeface.create(typeface, Typeface.BOLD));
+        }
+        String source = sources.get(key(font, bold));
+        if (source == null && isSource(font)) {
+            source = font;
+        }
+        if (source == null) {
+            // A family the system provides
+            return CompletableFuture.completedFuture(Typeface.create(font, bold ? Typeface.BOLD : Typeface.NORMAL));
+        }
+        String from = source;
+        return AsyncRender.supply(() -> loader.load(from), executor);
+    }
+
+    static String key(String font, boolean bold) {
+        return font.trim().toLowerCase(Locale.ROOT) + "|" + (bold ? BOLD : NORMAL);
+    }
+
+    static boolean isSource(String font) {
+        String lower = font.toLowerCase(Locale.ROOT);
+        return lower.startsWith("asset:") || lower.startsWith("file:") || lower.startsWith("http://")
+            || lower.startsWith("https://") || lower.endsWith(".ttf") || lower.endsWith(".otf");
+    }
+
+    private Typeface loadSource(String source) throws IOException {
+        Context context;
+        synchronized (this) {
+            context = this.context;
+        }
+        if (context == null) {
+            throw new IOException("TypefaceRegistry is not attached to a context");
+        }
+        String lower = source.toLowerCase(Locale.ROOT);
+        Typeface typeface;
+        if (lower.startsWith("http://") || lower.startsWith("https://")) {
+            typeface = Typeface.createFromFile(download(context, source));
+        } else if (lower.startsWith("file:")) {
+            typeface = Typeface.createFromFile(new File(source.substring("file:".length())));
+        } else {
+            String path = lower.startsWith("asset:") ? source.substring("asset:".length()) : source;
+            typeface = Typeface.createFromAsset(context.getAssets(), path);
+        }
+        if (typeface == null) {
+            throw new IOException("Not a font: " + source);
+        }
+        return typeface;
+    }
+
+    /**
+     * Fetch {@code url} through the cache and keep its bytes in a file, which is what
+     * {@link Typeface} loads from before API 26.
+     */
+    private File download(Context context, String url) throws IOException {
+        TemplateCache cache;
+        synchronized (this) {
+            if (this.cache == null) {
+                this.cache = new TemplateCache(new File(context.getCacheDir(), "sourcesync-fonts"), executor);
+            }
+            cache = this.cache;
+        }
+        TemplateCache.Result result = cache.get(url);
+        byte[] body = result.body;
+
+        File directory = new File(context.getCacheDir(), "sourcesync-typefaces");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File file = new File(directory, hash(url) + ".font");
+        if (!result.fromCache || file.length() != body.length) {
+            File temp = new File(directory, file.getName() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(body);
+            }
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+        return file;
+    }
+
+    private static String hash(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xf, 16))
+                    .append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
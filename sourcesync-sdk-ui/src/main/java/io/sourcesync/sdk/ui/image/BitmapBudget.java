@@ -0,0 +1,219 @@
+package io.sourcesync.android.image;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Accounts for every bitmap the SDK has decoded and still holds, whether it sits in the
+ * memory cache, is bound to an image view, or both, and decides how a new image is
+ * decoded so the total stays within a byte budget.
+ *
+ * A decode that would go over the budget first asks the owner to evict cached bitmaps
+ * that no view is showing, then falls back to RGB_565 and to halving the resolution
+ * until it fits. Bitmaps are keyed by identity, so callers pass the bitmap itself.
+ */
+public class BitmapBudget {
+    /** Never downscale below this many pixels on the longer side. */
+    public static final int MIN_DIMENSION = 64;
+
+    public interface Evictor {
+        /**
+         * Evict cached bitmaps that are not bound to a view until the budget has at least
+         * {@code bytes} free or nothing more can be evicted.
+         */
+        void evict(long bytes);
+    }
+
+    public interface Listener {
+        void onDownscaled(String url, int width, int height, DecodePlan plan);
+    }
+
+    public static class DecodePlan {
+        public final int sampleSize;
+        public final boolean rgb565;
+        public final long bytes;
+
+        DecodePlan(int sampleSize, boolean rgb565, long bytes) {
+            this.sampleSize = sampleSize;
+            this.rgb565 = rgb565;
+            this.bytes = bytes;
+        }
+
+        public boolean isReduced() {
+            return sampleSize > 1 || rgb565;
+        }
+
+        @Override
+        public String toString() {
+            return "1/" + sampleSize + (rgb565 ? " in RGB_565" : "");
+        }
+    }
+
+    public static class Stats {
+        public final long budgetBytes;
+        public final long usedBytes;
+        public final long peakBytes;
+        public final int bitmaps;
+        public final long downscaled;
+        public final long evictions;
+
+        Stats(long budgetBytes, long usedBytes, long peakBytes, int bitmaps, long downscaled,
+              long evictions) {
+            this.budgetBytes = budgetBytes;
+            this.usedBytes = usedBytes;
+            this.peakBytes = peakBytes;
+            this.bitmaps = bitmaps;
+            this.downscaled = downscaled;
+            this.evictions = evictions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%dKB peak=%dKB bitmaps=%d downscaled=%d evictions=%d",
+                usedBytes / 1024, budgetBytes / 1024, peakBytes / 1024, bitmaps, downscaled,
+                evictions);
+        }
+    }
+
+    private static class Entry {
+        final long bytes;
+        boolean cached;
+        int bound;
+
+        Entry(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private final Map<Object, Entry> entries = new IdentityHashMap<>();
+    private long budgetBytes;
+    private long usedBytes;
+    private long peakBytes;
+    private long downscaled;
+    private long evictions;
+    private Listener listener;
+
+    public BitmapBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(budgetBytes, usedBytes, peakBytes, entries.size(), downscaled, evictions);
+    }
+
+    /**
+     * Choose how to decode a {@code width} x {@code height} image, evicting through
+     * {@code evictor} if the full-quality decode does not fit.
+     */
+    public DecodePlan plan(String url, int width, int height, Evictor evictor) {
+        long full = bytesFor(width, height, 1, false);
+        if (full <= available()) {
+            return new DecodePlan(1, false, full);
+        }
+        if (evictor != null) {
+            evictor.evict(full);
+            if (full <= available()) {
+                return new DecodePlan(1, false, full);
+            }
+        }
+
+        DecodePlan plan = reduce(width, height, available());
+        synchronized (this) {
+            downscaled++;
+        }
+        Listener l = listener;
+        if (l != null) {
+            l.onDownscaled(url, width, height, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * The best quality that fits in {@code available} bytes: RGB_565 first, then halving
+     * the resolution, stopping at {@link #MIN_DIMENSION}.
+     */
+    static DecodePlan reduce(int width, int height, long available) {
+        int sampleSize = 1;
+        long bytes = bytesFor(width, height, sampleSize, true);
+        while (bytes > available && Math.max(width, height) / (sampleSize * 2) >= MIN_DIMENSION) {
+            sampleSize *= 2;
+            bytes = bytesFor(width, height, sampleSize, true);
+        }
+        return new DecodePlan(sampleSize, true, bytes);
+    }
+
+    static long bytesFor(int width, int height, int sampleSize, boolean rgb565) {
+        long w = (width + sampleSize - 1) / sampleSize;
+        long h = (height + sampleSize - 1) / sampleSize;
+        return w * h * (rgb565 ? 2 : 4);
+    }
+
+    public synchronized void onCached(Object bitmap, long bytes) {
+        entry(bitmap, bytes).cached = true;
+    }
+
+    public synchronized void onEvicted(Object bitmap) {
+        Entry entry = entries.get(bitmap);
+        if (entry == null) return;
+        entry.cached = false;
+        evictions++;
+        releaseIfUnused(bitmap, entry);
+    }
+
+    public synchronized void onBound(Object bitmap, long bytes) {
+        entry(bitmap, bytes).bound++;
+    }
+
+    public synchronized void onUnbound(Object bitmap) {
+        Entry entry = entries.get(bitmap);
+        if (entry == null) return;
+        entry.bound = Math.max(0, entry.bound - 1);
+        releaseIfUnused(bitmap, entry);
+    }
+
+    /**
+     * Whether a view holds the bitmap, so evicting it from the cache would free nothing.
+     */
+    public synchronized boolean isBound(Object bitmap) {
+        Entry entry = entries.get(bitmap);
+        return entry != null && entry.bound > 0;
+    }
+
+    private synchronized long available() {
+        return budgetBytes - usedBytes;
+    }
+
+    private Entry entry(Object bitmap, long bytes) {
+        Entry entry = entries.get(bitmap);
+        if (entry == null) {
+            entry = new Entry(bytes);
+            entries.put(bitmap, entry);
+            usedBytes += bytes;
+            peakBytes = Math.max(peakBytes, usedBytes);
+        }
+        return entry;
+    }
+
+    private void releaseIfUnused(Object bitmap, Entry entry) {
+        if (!entry.cached && entry.bound == 0) {
+            entries.remove(bitmap);
+            usedBytes -= entry.bytes;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.sourcesync.android.image;
+
+/**
+ * Decoder for BlurHash strings (https://blurha.sh): a few dozen characters describing a
+ * blurred version of an image as a handful of DCT components, small enough to ship in a
+ * template and decode synchronously while the real image downloads.
+ */
+public final class BlurHash {
+    private static final String ALPHABET =
+        "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    private BlurHash() {}
+
+    public static boolean isValid(String hash) {
+        if (hash == null || hash.length() < 6) return false;
+        for (int i = 0; i < hash.length(); i++) {
+            if (ALPHABET.indexOf(hash.charAt(i)) < 0) return false;
+        }
+        int sizeFlag = decode83(hash, 0, 1);
+        int numX = sizeFlag % 9 + 1;
+        int numY = sizeFlag / 9 + 1;
+        return hash.length() == 4 + 2 * numX * numY;
+    }
+
+    /**
+     * Decode {@code hash} to {@code width} x {@code height} opaque ARGB pixels.
+     *
+     * @param punch contrast multiplier for the AC components, 1 for the encoded contrast
+     * @throws IllegalArgumentException if the hash is malformed
+     */
+    public static int[] decode(String hash, int width, int height, float punch) {
+        if (!isValid(hash)) {
+            throw new IllegalArgumentException("Invalid BlurHash: " + hash);
+        }
+        int sizeFlag = decode83(hash, 0, 1);
+        int numX = sizeFlag % 9 + 1;
+        int numY = sizeFlag / 9 + 1;
+        float maxValue = (decode83(hash, 1, 2) + 1) / 166f * punch;
+
+        float[][] colors = new float[numX * numY][];
+        colors[0] = decodeDc(decode83(hash, 2, 6));
+        for (int i = 1; i < colors.length; i++) {
+            colors[i] = decodeAc(decode83(hash, 4 + i * 2, 6 + i * 2), maxValue);
+        }
+
+        double[] cosX = cosines(width, numX);
+        double[] cosY = cosines(height, numY);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float r = 0f, g = 0f, b = 0f;
+                for (int j = 0; j < numY; j++) {
+                    double basisY = cosY[y * numY + j];
+                    for (int i = 0; i < numX; i++) {
+                        float basis = (float) (cosX[x * numX + i] * basisY);
+                        float[] color = colors[j * numX + i];
+                        r += color[0] * basis;
+                        g += color[1] * basis;
+                        b += color[2] * basis;
+                    }
+                }
+                pixels[y * width + x] = 0xFF000000
+                    | linearToSrgb(r) << 16 | linearToSrgb(g) << 8 | linearToSrgb(b);
+            }
+        }
+        return pixels;
+    }
+
+    private static double[] cosines(int size, int components) {
+        double[] table = new double[size * components];
+        for (int p = 0; p < size; p++) {
+            for (int c = 0; c < components; c++) {
+                table[p * components + c] = Math.cos(Math.PI * p * c / size);
+            }
+        }
+        return table;
+    }
+
+    private static int decode83(String hash, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 83 + ALPHABET.indexOf(hash.charAt(i));
+        }
+        return value;
+    }
+
+    private static float[] decodeDc(int value) {
+        return new float[] {
+            srgbToLinear(value >> 16), srgbToLinear((value >> 8) & 255), srgbToLinear(value & 255)
+        };
+    }
+
+    private static float[] decodeAc(int value, float maxValue) {
+        return new float[] {
+            signedSquare((value / (19 * 19) - 9) / 9f) * maxValue,
+            signedSquare((value / 19 % 19 - 9) / 9f) * maxValue,
+            signedSquare((value % 19 - 9) / 9f) * maxValue
+        };
+    }
+
+    private static float signedSquare(float value) {
+        return Math.copySign(value * value, value);
+    }
+
+    private static float srgbToLinear(int value) {
+        float v = value / 255f;
+        return v <= 0.04045f ? v / 12.92f : (float) Math.pow((v + 0.055f) / 1.055f, 2.4f);
+    }
+
+    private static int linearToSrgb(float value) {
+        float v = Math.max(0f, Math.min(1f, value));
+        return v <= 0.0031308f
+            ? (int) (v * 12.92f * 255f + 0.5f)
+            : (int) ((1.055f * Math.pow(v, 1 / 2.4f) - 0.055f) * 255f + 0.5f);
+    }
+}
@@ -0,0 +1,48 @@
+package io.sourcesync.android.image;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds image decodes back while paused, for example while the user flings through a
+ * scrolling detail, so the CPU goes to drawing frames. Downloads are not affected.
+ * Decodes held back are started in order on {@link #resume()}.
+ */
+public class DecodeGate {
+    private final List<Runnable> parked = new ArrayList<>();
+    private boolean paused;
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        List<Runnable> released;
+        synchronized (this) {
+            if (!paused) return;
+            paused = false;
+            released = new ArrayList<>(parked);
+            parked.clear();
+        }
+        for (Runnable decode : released) {
+            decode.run();
+        }
+    }
+
+    public synchronized int getParkedCount() {
+        return parked.size();
+    }
+
+    /**
+     * @return true if {@code decode} was held back, false if it should start now
+     */
+    synchronized boolean park(Runnable decode) {
+        if (!paused) return false;
+        parked.add(decode);
+        return true;
+    }
+}
@@ -0,0 +1,443 @@
+package io.sourcesync.android.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.TransitionDrawable;
+import android.util.LruCache;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import io.sourcesync.android.executor.SdkExecutors;
+import io.sourcesync.android.executor.TaskExecutor;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.resource.ManagedResource;
+import io.sourcesync.android.resource.ResourceManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads segment images in the background and keeps decoded bitmaps in a memory cache, so
+ * images prefetched ahead of a cue are bound synchronously when the view is built.
+ *
+ * Downloads run on the SDK's I/O executor and decoding on its CPU executor. A newer
+ * request for the same view replaces one still queued, and prefetches run at low
+ * priority so they are the first work dropped when the queues back up.
+ *
+ * Every bitmap the loader has decoded and that is still cached or shown counts against a
+ * {@link BitmapBudget}, a quarter of the heap by default. An image that does not fit
+ * evicts cached bitmaps no view is showing, and is otherwise decoded in RGB_565 or at a
+ * lower resolution.
+ *
+ * The memory cache is registered with {@link ResourceManager}: it is halved when memory
+ * runs low and emptied when the system is close to killing the app.
+ */
+public class ImageLoader implements ManagedResource {
+    private static final String TAG = "SourceSync.image";
+    private static final int CROSS_FADE_MS = 200;
+    private static ImageLoader instance;
+
+    private final TaskExecutor ioExecutor;
+    private final TaskExecutor cpuExecutor;
+    private final TaskExecutor mainExecutor;
+    private final AtomicBoolean isActive = new AtomicBoolean(true);
+    private final LruCache<String, Bitmap> memoryCache;
+    private final BitmapBudget budget;
+    // Bitmaps bound to views, released when the view is rebound, released or collected
+    private final Map<ImageView, Binding> bindings = new WeakHashMap<>();
+    private final ReferenceQueue<ImageView> collectedViews = new ReferenceQueue<>();
+
+    private static class Binding extends WeakReference<ImageView> {
+        final Bitmap bitmap;
+
+        Binding(ImageView view, Bitmap bitmap, ReferenceQueue<ImageView> queue) {
+            super(view, queue);
+            this.bitmap = bitmap;
+        }
+    }
+
+    public static synchronized ImageLoader getInstance() {
+        if (instance == null) {
+            instance = new ImageLoader(SdkExecutors.getInstance());
+        }
+        return instance;
+    }
+
+    private ImageLoader(SdkExecutors executors) {
+        ioExecutor = executors.io();
+        cpuExecutor = executors.cpu();
+        mainExecutor = executors.main();
+
+        budget = new BitmapBudget(Runtime.getRuntime().maxMemory() / 4);
+        // An eighth of the heap, measured in KB
+        int cacheSize = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        memoryCache = new LruCache<String, Bitmap>(cacheSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) {
+                    budget.onEvicted(oldValue);
+                }
+            }
+        };
+        ResourceManager.getInstance().register(this);
+    }
+
+    public Bitmap getCached(String url) {
+        return memoryCache.get(url);
+    }
+
+    /**
+     * The byte budget for decoded bitmaps, to read its usage or change its size.
+     */
+    public BitmapBudget getBudget() {
+        return budget;
+    }
+
+    public void loadImage(String url, ImageView imageView) {
+        loadImage(url, imageView, null);
+    }
+
+    /**
+     * @param placeholder shown until the image arrives, then cross-faded to it; an image
+     *                    already in the memory cache is bound straight away
+     */
+    public void loadImage(String url, ImageView imageView, Drawable placeholder) {
+        loadImage(url, imageView, placeholder, TaskExecutor.PRIORITY_NORMAL, null);
+    }
+
+    /**
+     * @param priority a {@code TaskExecutor.PRIORITY_*} for the download and decode
+     * @param gate     if non-null, holds the decode back while the gate is paused
+     */
+    public void loadImage(String url, ImageView imageView, Drawable placeholder, int priority,
+                          DecodeGate gate) {
+        imageView.setTag(url);
+
+        Bitmap cached = memoryCache.get(url);
+        if (cached != null) {
+            bind(imageView, cached, null);
+            imageView.setBackgroundColor(Color.TRANSPARENT);
+            return;
+        }
+        if (placeholder != null) {
+            unbind(imageView);
+            imageView.setImageDrawable(placeholder);
+        }
+
+        WeakReference<ImageView> imageViewRef = new WeakReference<>(imageView);
+        Callback callback = new Callback() {
+            @Override
+            public void onLoaded(Bitmap bitmap) {
+                ImageView view = imageViewRef.get();
+                if (view != null && url.equals(view.getTag())) {
+                    bind(view, bitmap, placeholder);
+                    view.setBackgroundColor(Color.TRANSPARENT);
+                }
+            }
+
+            @Override
+            public void onFailed() {
+                ImageView view = imageViewRef.get();
+                if (view != null && url.equals(view.getTag())) {
+                    view.setBackgroundColor(Color.GRAY);
+                }
+            }
+        };
+        // Keyed on the view: rebinding it before the download starts replaces the request
+        load(url, priority, imageView, callback, gate);
+    }
+
+    /**
+     * Change the priority of a view's load if its download has not started yet.
+     *
+     * @return false if nothing is queued for the view
+     */
+    public boolean reprioritize(ImageView imageView, int priority) {
+        return ioExecutor.reprioritize(imageView, priority);
+    }
+
+    /**
+     * Download and decode an image into the memory cache without binding it to a view.
+     * The callback runs on the main thread whether the fetch succeeded, failed or was
+     * dropped under load. If it can no longer run there, because the loader was shut down
+     * or the main queue dropped it, an {@code onComplete} that is a
+     * {@link TaskExecutor.Droppable} is told instead, on any thread.
+     */
+    public void prefetch(String url, Runnable onComplete) {
+        Callback callback = new Callback() {
+            @Override
+            public void onLoaded(Bitmap bitmap) {
+                if (onComplete != null) onComplete.run();
+            }
+
+            @Override
+            public void onFailed() {
+                if (onComplete != null) onComplete.run();
+            }
+
+            @Override
+            public void onLost() {
+                if (onComplete instanceof TaskExecutor.Droppable) {
+                    ((TaskExecutor.Droppable) onComplete).onDropped();
+                }
+            }
+        };
+        if (memoryCache.get(url) != null) {
+            mainExecutor.execute(onComplete != null ? onComplete : () -> {});
+            return;
+        }
+        load(url, TaskExecutor.PRIORITY_LOW, "prefetch:" + url, callback, null);
+    }
+
+    private interface Callback {
+        void onLoaded(Bitmap bitmap);
+        void onFailed();
+
+        /**
+         * Neither result will be delivered. Called on any thread.
+         */
+        default void onLost() {}
+    }
+
+    private void load(String url, int priority, Object collapseKey, Callback callback, DecodeGate gate) {
+        ioExecutor.execute(new Stage(callback) {
+            @Override
+            public void run() {
+                if (!isActive.get()) {
+                    callback.onLost();
+                    return;
+                }
+                Bitmap cached = memoryCache.get(url);
+                if (cached != null) {
+                    deliver(callback, cached);
+                    return;
+                }
+                byte[] bytes;
+                try {
+                    bytes = download(url);
+                } catch (IOException e) {
+                    SdkLog.e(TAG, "Error loading image: {}", url, e);
+                    fail(callback);
+                    return;
+                }
+                Runnable startDecode = () -> cpuExecutor.execute(new Stage(callback) {
+                    @Override
+                    public void run() {
+                        if (!isActive.get()) {
+                            callback.onLost();
+                            return;
+                        }
+                        Bitmap bitmap = decode(url, bytes);
+                        if (bitmap == null) {
+                            SdkLog.e(TAG, "Could not decode image: {}", url);
+                            fail(callback);
+                            return;
+                        }
+                        // Account before caching, so an immediate eviction is matched
+                        budget.onCached(bitmap, bitmap.getByteCount());
+                        memoryCache.put(url, bitmap);
+                        deliver(callback, bitmap);
+                    }
+                }, priority, null);
+                if (gate == null || !gate.park(startDecode)) {
+                    startDecode.run();
+                }
+            }
+        }, priority, collapseKey);
+    }
+
+    /**
+     * A pipeline step that reports failure if the executor drops it.
+     */
+    private abstract class Stage implements TaskExecutor.Droppable {
+        private final Callback callback;
+
+        Stage(Callback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onDropped() {
+            fail(callback);
+        }
+    }
+
+    private Bitmap decode(String url, byte[] bytes) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        expungeCollectedViews();
+        BitmapBudget.DecodePlan plan = budget.plan(url, options.outWidth, options.outHeight, this::evictUnbound);
+        if (plan.isReduced()) {
+            SdkLog.w(TAG, "Decoding {} at {} to stay within the bitmap budget ({})", url, plan, budget.getStats());
+        }
+        options = new BitmapFactory.Options();
+        options.inSampleSize = plan.sampleSize;
+        options.inPreferredConfig = plan.rgb565 ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    /**
+     * Evict cached bitmaps that no view shows, least recently used first, until
+     * {@code bytes} fit in the budget.
+     */
+    private void evictUnbound(long bytes) {
+        for (Map.Entry<String, Bitmap> entry : memoryCache.snapshot().entrySet()) {
+            if (budget.getBudgetBytes() - budget.getUsedBytes() >= bytes) return;
+            if (!budget.isBound(entry.getValue())) {
+                memoryCache.remove(entry.getKey());
+            }
+        }
+    }
+
+    private void bind(ImageView view, Bitmap bitmap, Drawable fadeFrom) {
+        synchronized (bindings) {
+            expungeCollectedViews();
+            Binding previous = bindings.get(view);
+            if (previous != null && previous.bitmap == bitmap) return;
+            if (previous != null) {
+                previous.clear();
+                budget.onUnbound(previous.bitmap);
+            }
+            bindings.put(view, new Binding(view, bitmap, collectedViews));
+            budget.onBound(bitmap, bitmap.getByteCount());
+        }
+        if (fadeFrom == null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        TransitionDrawable transition = new TransitionDrawable(new Drawable[] {
+            fadeFrom, new BitmapDrawable(view.getResources(), bitmap)
+        });
+        transition.setCrossFadeEnabled(true);
+        view.setImageDrawable(transition);
+        transition.startTransition(CROSS_FADE_MS);
+    }
+
+    private void unbind(ImageView view) {
+        synchronized (bindings) {
+            Binding previous = bindings.remove(view);
+            if (previous != null) {
+                // Cleared so it is not reported again when the view is collected
+                previous.clear();
+                budget.onUnbound(previous.bitmap);
+            }
+        }
+    }
+
+    private void expungeCollectedViews() {
+        synchronized (bindings) {
+            Binding collected;
+            while ((collected = (Binding) collectedViews.poll()) != null) {
+                budget.onUnbound(collected.bitmap);
+            }
+        }
+    }
+
+    private void deliver(Callback callback, Bitmap bitmap) {
+        post(callback, () -> callback.onLoaded(bitmap));
+    }
+
+    private void fail(Callback callback) {
+        post(callback, callback::onFailed);
+    }
+
+    private void post(Callback callback, Runnable result) {
+        if (!isActive.get()) {
+            callback.onLost();
+            return;
+        }
+        mainExecutor.execute(new TaskExecutor.Droppable() {
+            @Override
+            public void run() {
+                result.run();
+            }
+
+            @Override
+            public void onDropped() {
+                callback.onLost();
+            }
+        });
+    }
+
+    private static byte[] download(String url) throws IOException {
+        try (InputStream in = new URL(url).openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Detach the bitmaps from every image view under {@code root} and cancel their pending
+     * loads, for view trees that are being thrown away. Cached bitmaps stay cached.
+     */
+    public static void releaseImages(View root) {
+        if (root instanceof ImageView) {
+            ImageView imageView = (ImageView) root;
+            imageView.setTag(null);
+            imageView.setImageDrawable(null);
+            getInstance().unbind(imageView);
+        } else if (root instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) root;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                releaseImages(group.getChildAt(i));
+            }
+        }
+    }
+
+    @Override
+    public String getResourceName() {
+        return "image cache";
+    }
+
+    @Override
+    public long getResourceBytes() {
+        return budget.getUsedBytes();
+    }
+
+    @Override
+    public int getResourceCount() {
+        return memoryCache.snapshot().size();
+    }
+
+    @Override
+    public void trimResources(int tier) {
+        if (tier >= ResourceManager.TIER_ALL) {
+            memoryCache.evictAll();
+        } else if (tier >= ResourceManager.TIER_CACHES) {
+            memoryCache.trimToSize(memoryCache.size() / 2);
+        }
+    }
+
+    /**
+     * Stop delivering results. Queued and running loads finish without touching views.
+     */
+    public void shutdown() {
+        isActive.set(false);
+    }
+}
@@ -0,0 +1,50 @@
+package io.sourcesync.android.image;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+import io.sourcesync.android.log.SdkLog;
+
+/**
+ * Placeholders shown by image segments until their image is loaded, from the segment's
+ * {@code placeholder} attribute: either a dominant color ({@code "#3A5F7D"}) or a
+ * BlurHash string. BlurHashes are decoded to a small bitmap on first use and cached, so
+ * building a view never waits on anything but a few microseconds of arithmetic.
+ */
+public final class ImagePlaceholder {
+    private static final String TAG = "SourceSync.image";
+    private static final int SIZE = 32;
+    private static final LruCache<String, Bitmap> decoded = new LruCache<>(64);
+
+    private ImagePlaceholder() {}
+
+    /**
+     * @return the placeholder drawable, or null if {@code placeholder} is empty or invalid
+     */
+    public static Drawable create(Resources resources, String placeholder) {
+        if (placeholder == null || placeholder.isEmpty()) return null;
+        if (placeholder.charAt(0) == '#') {
+            try {
+                return new ColorDrawable(Color.parseColor(placeholder));
+            } catch (IllegalArgumentException e) {
+                SdkLog.w(TAG, "Invalid placeholder color: {}", placeholder);
+                return null;
+            }
+        }
+        if (!BlurHash.isValid(placeholder)) {
+            SdkLog.w(TAG, "Invalid placeholder hash: {}", placeholder);
+            return null;
+        }
+        Bitmap bitmap = decoded.get(placeholder);
+        if (bitmap == null) {
+            int[] pixels = BlurHash.decode(placeholder, SIZE, SIZE, 1f);
+            bitmap = Bitmap.createBitmap(pixels, SIZE, SIZE, Bitmap.Config.ARGB_8888);
+            decoded.put(placeholder, bitmap);
+        }
+        return new BitmapDrawable(resources, bitmap);
+    }
+}
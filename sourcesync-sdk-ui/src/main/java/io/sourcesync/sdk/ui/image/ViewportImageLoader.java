@@ -0,0 +1,211 @@
+package io.sourcesync.android.image;
+
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.widget.ImageView;
+import android.widget.ScrollView;
+
+import io.sourcesync.android.executor.TaskExecutor;
+import io.sourcesync.android.segment.LayoutUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the images inside a {@link ScrollView} in viewport order instead of template
+ * order. Once the views are laid out, images on screen are requested at high priority,
+ * images within one screen of the viewport at normal priority and the rest at low
+ * priority, nearest first. Scrolling re-orders downloads that have not started yet.
+ *
+ * During a fling or a held D-pad key, decodes are held back until scrolling has been
+ * still for {@link #SETTLE_MS}, so the CPU goes to drawing frames.
+ *
+ * All methods are expected to be called from the main thread.
+ */
+public class ViewportImageLoader {
+    public static final long SETTLE_MS = 150L;
+    private static final int FLING_DP_PER_MS = 3;
+
+    private static class Request {
+        final String url;
+        final Drawable placeholder;
+        int priority = -1;
+
+        Request(String url, Drawable placeholder) {
+            this.url = url;
+            this.placeholder = placeholder;
+        }
+    }
+
+    private static class Placement {
+        final ImageView view;
+        final int distance;
+        final int priority;
+
+        Placement(ImageView view, int distance, int priority) {
+            this.view = view;
+            this.distance = distance;
+            this.priority = priority;
+        }
+    }
+
+    private final ScrollView scrollView;
+    private final ImageLoader imageLoader;
+    private final DecodeGate gate = new DecodeGate();
+    private final Map<ImageView, Request> requests = new LinkedHashMap<>();
+    private final int flingPxPerMs;
+    private final Runnable settle = this::onSettled;
+    private boolean updateScheduled;
+    private int lastScrollY;
+    private long lastScrollTime;
+
+    public ViewportImageLoader(ScrollView scrollView) {
+        this.scrollView = scrollView;
+        this.imageLoader = ImageLoader.getInstance();
+        this.flingPxPerMs = LayoutUtils.dpToPx(scrollView.getContext(), FLING_DP_PER_MS);
+        scrollView.setOnScrollChangeListener((v, scrollX, scrollY, oldScrollX, oldScrollY) ->
+            onScrolled(scrollY));
+        scrollView.addOnLayoutChangeListener((v, left, top, right, bottom,
+                                             oldLeft, oldTop, oldRight, oldBottom) -> scheduleUpdate());
+    }
+
+    /**
+     * Load {@code url} into {@code imageView} once its position is known. A cached image is
+     * bound straight away, and the placeholder, if any, is shown until the image arrives.
+     */
+    public void request(String url, ImageView imageView, Drawable placeholder) {
+        if (imageLoader.getCached(url) != null) {
+            requests.remove(imageView);
+            imageLoader.loadImage(url, imageView);
+            return;
+        }
+        imageView.setTag(url);
+        if (placeholder != null) {
+            imageView.setImageDrawable(placeholder);
+        }
+        requests.put(imageView, new Request(url, placeholder));
+        scheduleUpdate();
+    }
+
+    /**
+     * Call for repeated key events, such as a held D-pad direction.
+     */
+    public void onKeyRepeat() {
+        holdDecodes();
+    }
+
+    /**
+     * Stop holding decodes back, for when the scroll view leaves the screen.
+     */
+    public void onDetached() {
+        scrollView.removeCallbacks(settle);
+        gate.resume();
+    }
+
+    public DecodeGate getDecodeGate() {
+        return gate;
+    }
+
+    /**
+     * Priority for a view spanning {@code top}..{@code bottom} in scroll coordinates.
+     */
+    static int priorityFor(int top, int bottom, int viewportTop, int viewportBottom) {
+        int lookahead = viewportBottom - viewportTop;
+        if (bottom >= viewportTop && top <= viewportBottom) return TaskExecutor.PRIORITY_HIGH;
+        if (bottom >= viewportTop - lookahead && top <= viewportBottom + lookahead) {
+            return TaskExecutor.PRIORITY_NORMAL;
+        }
+        return TaskExecutor.PRIORITY_LOW;
+    }
+
+    static int distanceTo(int top, int bottom, int viewportTop, int viewportBottom) {
+        if (bottom < viewportTop) return viewportTop - bottom;
+        if (top > viewportBottom) return top - viewportBottom;
+        return 0;
+    }
+
+    private void onScrolled(int scrollY) {
+        long now = SystemClock.uptimeMillis();
+        long elapsed = Math.max(1L, now - lastScrollTime);
+        boolean fast = Math.abs(scrollY - lastScrollY) > flingPxPerMs * elapsed;
+        lastScrollY = scrollY;
+        lastScrollTime = now;
+
+        if (fast || gate.isPaused()) {
+            holdDecodes();
+        } else {
+            scheduleUpdate();
+        }
+    }
+
+    private void holdDecodes() {
+        gate.pause();
+        scrollView.removeCallbacks(settle);
+        scrollView.postDelayed(settle, SETTLE_MS);
+    }
+
+    private void onSettled() {
+        gate.resume();
+        update();
+    }
+
+    private void scheduleUpdate() {
+        if (updateScheduled || requests.isEmpty()) return;
+        updateScheduled = true;
+        scrollView.post(() -> {
+            updateScheduled = false;
+            update();
+        });
+    }
+
+    private void update() {
+        int viewportHeight = scrollView.getHeight();
+        // Wait for layout; the layout listener schedules another pass
+        if (gate.isPaused() || viewportHeight == 0) return;
+        int viewportTop = scrollView.getScrollY();
+        int viewportBottom = viewportTop + viewportHeight;
+
+        List<Placement> placements = new ArrayList<>(requests.size());
+        Rect rect = new Rect();
+        Iterator<Map.Entry<ImageView, Request>> it = requests.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ImageView, Request> entry = it.next();
+            ImageView view = entry.getKey();
+            // Rebound to another image, or released along with its tree
+            if (!entry.getValue().url.equals(view.getTag())) {
+                it.remove();
+                continue;
+            }
+            rect.set(0, 0, view.getWidth(), view.getHeight());
+            try {
+                scrollView.offsetDescendantRectToMyCoords(view, rect);
+            } catch (IllegalArgumentException e) {
+                // Not in the scroll view any more
+                it.remove();
+                continue;
+            }
+            placements.add(new Placement(view,
+                distanceTo(rect.top, rect.bottom, viewportTop, viewportBottom),
+                priorityFor(rect.top, rect.bottom, viewportTop, viewportBottom)));
+        }
+        placements.sort(Comparator.comparingInt(p -> p.distance));
+
+        for (Placement placement : placements) {
+            Request request = requests.get(placement.view);
+            if (request.priority < 0) {
+                imageLoader.loadImage(request.url, placement.view, request.placeholder,
+                    placement.priority, gate);
+            } else if (!imageLoader.reprioritize(placement.view, placement.priority)) {
+                // Download under way or finished, nothing left to order
+                requests.remove(placement.view);
+                continue;
+            }
+            request.priority = placement.priority;
+        }
+    }
+}
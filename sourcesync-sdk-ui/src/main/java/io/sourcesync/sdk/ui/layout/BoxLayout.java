@@ -0,0 +1,235 @@
+package io.sourcesync.android.layout;
+
+import io.sourcesync.android.segment.SegmentSize;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lays out a segment tree without Android views. Given a viewport size and a way to
+ * measure text and images, it works out a {@link Frame} for every segment by the same
+ * rules the segment processors give their views:
+ * <ul>
+ *   <li>The viewport and columns stack their children vertically; rows stack them
+ *       horizontally. A spaced row or column leaves 8 dp between children.</li>
+ *   <li>Widths are a percentage of the parent. In a row, children without a width take
+ *       their measured width, and columns without one share what is left equally. In a
+ *       column, buttons and images take their measured width and everything else fills
+ *       the column.</li>
+ *   <li>Heights are a percentage of the parent's height when it has one, otherwise of the
+ *       viewport's. Everything else is as tall as its content.</li>
+ *   <li>Alignment places children in the space left over. Rows and columns center by
+ *       default, as do buttons and images in a column, which follow their own alignment
+ *       rather than the column's. A left or right aligned row puts its children at the top.</li>
+ * </ul>
+ * Layout is a pure function of its inputs, so it can run on any thread, and its frames can
+ * be cached per viewport size and handed to whichever renderer draws them.
+ */
+public class BoxLayout {
+    private static final int SPACING_DP = 8;
+
+    public interface Measurer {
+        /**
+         * Size of a text, button, image or app-defined segment's content when at most
+         * {@code maxWidth} wide: wrapped text, or an image's own size. Called on the thread
+         * doing the layout.
+         */
+        SegmentSize measure(LayoutNode node, int maxWidth);
+    }
+
+    /**
+     * A frame being laid out, positioned relative to its parent until the tree is done.
+     */
+    private static class Box {
+        final LayoutNode node;
+        final List<Box> children = new ArrayList<>();
+        int x;
+        int y;
+        int width;
+        int height;
+
+        Box(LayoutNode node, int width) {
+            this.node = node;
+            this.width = width;
+        }
+
+        Frame toFrame(int parentX, int parentY) {
+            int left = parentX + x;
+            int top = parentY + y;
+            List<Frame> frames = new ArrayList<>(children.size());
+            for (Box child : children) {
+                frames.add(child.toFrame(left, top));
+            }
+            return new Frame(node, left, top, width, height, frames);
+        }
+    }
+
+    private final int spacing;
+    private final Measurer measurer;
+
+    /**
+     * @param density display density, to convert spacing from dp to pixels
+     */
+    public BoxLayout(float density, Measurer measurer) {
+        this.spacing = Math.round(SPACING_DP * density);
+        this.measurer = measurer;
+    }
+
+    /**
+     * Lay {@code segments} out in a viewport of the given size. The returned frame is the
+     * viewport, as tall as its content, with a child frame per segment.
+     */
+    public Frame layout(List<LayoutNode> segments, int viewportWidth, int viewportHeight) {
+        Box root = new Box(null, Math.max(0, viewportWidth));
+        stackVertically(root, segments, false, "left", -1, Math.max(0, viewportHeight));
+        return root.toFrame(0, 0);
+    }
+
+    private Box place(LayoutNode node, int width, int fixedHeight, int viewportHeight) {
+        Box box = new Box(node, width);
+        String type = node.getType();
+        if ("row".equals(type)) {
+            stackHorizontally(box, fixedHeight, viewportHeight);
+        } else if ("column".equals(type)) {
+            String alignment = node.getAlignment() != null ? node.getAlignment() : "center";
+            stackVertically(box, node.getChildren(), node.isSpaced(), alignment, fixedHeight, viewportHeight);
+        } else {
+            box.height = fixedHeight >= 0 ? fixedHeight : measurer.measure(node, width).height;
+        }
+        return box;
+    }
+
+    private void stackVertically(Box box, List<LayoutNode> children, boolean spaced, String alignment,
+                                 int fixedHeight, int viewportHeight) {
+        int gap = spaced ? spacing : 0;
+        int y = 0;
+        for (LayoutNode child : children) {
+            int width = widthInColumn(child, box.width);
+            Box placed = place(child, width, heightOf(child, fixedHeight, viewportHeight), viewportHeight);
+            placed.x = offset(wrapsContent(child) ? child.getAlignment() : alignment, box.width - width);
+            placed.y = y;
+            box.children.add(placed);
+            y += placed.height + gap;
+        }
+        int content = children.isEmpty() ? 0 : y - gap;
+        box.height = fixedHeight >= 0 ? fixedHeight : content;
+
+        if (fixedHeight > content && box.node != null && centers(alignment)) {
+            for (Box child : box.children) {
+                child.y += (fixedHeight - content) / 2;
+            }
+        }
+    }
+
+    private void stackHorizontally(Box box, int fixedHeight, int viewportHeight) {
+        LayoutNode row = box.node;
+        List<LayoutNode> children = row.getChildren();
+        int count = children.size();
+        int gap = row.isSpaced() ? spacing : 0;
+        int available = Math.max(0, box.width - gap * Math.max(0, count - 1));
+
+        // Percentages first, then measured children, then columns share the rest
+        int[] widths = new int[count];
+        int remaining = available;
+        int sharing = 0;
+        for (int i = 0; i < count; i++) {
+            LayoutNode child = children.get(i);
+            if (child.getWidth() != null) {
+                widths[i] = Math.round(child.getWidth() * available);
+                remaining -= widths[i];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            LayoutNode child = children.get(i);
+            if (child.getWidth() != null) continue;
+            if ("column".equals(child.getType())) {
+                sharing++;
+            } else {
+                widths[i] = preferredWidth(child, Math.max(0, remaining));
+                remaining -= widths[i];
+            }
+        }
+        int shared = 0;
+        for (int i = 0; i < count && sharing > 0; i++) {
+            LayoutNode child = children.get(i);
+            if (child.getWidth() == null && "column".equals(child.getType())) {
+                int share = Math.max(0, remaining) * (shared + 1) / sharing
+                    - Math.max(0, remaining) * shared / sharing;
+                widths[i] = share;
+                shared++;
+            }
+        }
+
+        int used = gap * Math.max(0, count - 1);
+        for (int width : widths) {
+            used += width;
+        }
+        String alignment = row.getAlignment();
+        int x = offset(alignment, box.width - used);
+        int tallest = 0;
+        for (int i = 0; i < count; i++) {
+            LayoutNode child = children.get(i);
+            Box placed = place(child, widths[i], heightOf(child, fixedHeight, viewportHeight), viewportHeight);
+            placed.x = x;
+            box.children.add(placed);
+            tallest = Math.max(tallest, placed.height);
+            x += widths[i] + gap;
+        }
+        box.height = fixedHeight >= 0 ? fixedHeight : tallest;
+
+        for (Box child : box.children) {
+            child.y = centers(alignment) ? (box.height - child.height) / 2 : 0;
+        }
+    }
+
+    private int widthInColumn(LayoutNode child, int columnWidth) {
+        if (child.getWidth() != null) {
+            return Math.round(child.getWidth() * columnWidth);
+        }
+        return wrapsContent(child) ? preferredWidth(child, columnWidth) : columnWidth;
+    }
+
+    /**
+     * How wide {@code node} would like to be, at most {@code maxWidth}.
+     */
+    private int preferredWidth(LayoutNode node, int maxWidth) {
+        if (node.getWidth() != null) {
+            return Math.round(node.getWidth() * maxWidth);
+        }
+        String type = node.getType();
+        int gap = node.isSpaced() ? spacing : 0;
+        int width = 0;
+        if ("row".equals(type)) {
+            for (LayoutNode child : node.getChildren()) {
+                width += preferredWidth(child, maxWidth) + gap;
+            }
+            width = Math.max(0, width - gap);
+        } else if ("column".equals(type)) {
+            for (LayoutNode child : node.getChildren()) {
+                width = Math.max(width, preferredWidth(child, maxWidth));
+            }
+        } else {
+            width = measurer.measure(node, maxWidth).width;
+        }
+        return Math.max(0, Math.min(maxWidth, width));
+    }
+
+    private static int heightOf(LayoutNode child, int parentHeight, int viewportHeight) {
+        if (child.getHeight() == null) return -1;
+        return Math.round(child.getHeight() * (parentHeight >= 0 ? parentHeight : viewportHeight));
+    }
+
+    private static boolean wrapsContent(LayoutNode node) {
+        return "button".equals(node.getType()) || "image".equals(node.getType());
+    }
+
+    private static boolean centers(String alignment) {
+        return !"left".equalsIgnoreCase(String.valueOf(alignment))
+            && !"right".equalsIgnoreCase(String.valueOf(alignment));
+    }
+
+    private static int offset(String alignment, int free) {
+        if (free <= 0 || "left".equalsIgnoreCase(String.valueOf(alignment))) return 0;
+        if ("right".equalsIgnoreCase(String.valueOf(alignment))) return free;
+        return free / 2;
+    }
+}
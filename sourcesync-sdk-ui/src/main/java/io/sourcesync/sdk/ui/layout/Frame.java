@@ -0,0 +1,39 @@
+package io.sourcesync.android.layout;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where a segment goes, in pixels from the top left corner of the viewport.
+ */
+public class Frame {
+    /** The segment laid out, or null for the viewport itself. */
+    public final LayoutNode node;
+    public final int x;
+    public final int y;
+    public final int width;
+    public final int height;
+    public final List<Frame> children;
+
+    Frame(LayoutNode node, int x, int y, int width, int height, List<Frame> children) {
+        this.node = node;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.children = Collections.unmodifiableList(children);
+    }
+
+    public int getRight() {
+        return x + width;
+    }
+
+    public int getBottom() {
+        return y + height;
+    }
+
+    @Override
+    public String toString() {
+        return (node != null ? node.getType() : "viewport") + " [" + x + "," + y + " " + width + "x" + height + "]";
+    }
+}
@@ -0,0 +1,124 @@
+package io.sourcesync.android.layout;
+
+import io.sourcesync.android.segment.LayoutUtils;
+import io.sourcesync.android.segment.SegmentAttributes;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parts of a segment that decide its box: its type, percentage size, alignment,
+ * spacing and children. Text content and font size are kept for the measurer. Nodes are
+ * usually read from a template with {@link #fromTemplate}; the setters return the node so
+ * trees can also be declared inline.
+ */
+public class LayoutNode {
+    private final String type;
+    private String content = "";
+    private String fontSize;
+    private boolean bold;
+    private Float width;
+    private Float height;
+    private String alignment;
+    private boolean spaced;
+    private JSONObject segment;
+    private final List<LayoutNode> children = new ArrayList<>();
+
+    public LayoutNode(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Read the layout of every segment in {@code template}, keeping the source segments.
+     */
+    public static List<LayoutNode> fromTemplate(JSONArray template) throws JSONException {
+        List<LayoutNode> nodes = new ArrayList<>();
+        for (int i = 0; template != null && i < template.length(); i++) {
+            JSONObject segment = template.optJSONObject(i);
+            if (segment != null) {
+                nodes.add(fromSegment(segment));
+            }
+        }
+        return nodes;
+    }
+
+    static LayoutNode fromSegment(JSONObject segment) throws JSONException {
+        LayoutNode node = new LayoutNode(segment.optString("type"));
+        node.segment = segment;
+
+        JSONArray spans = segment.optJSONArray("spans");
+        if (spans != null) {
+            // One paragraph per span, as the text processor shows them
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < spans.length(); i++) {
+                if (i > 0) text.append('\n');
+                text.append(spans.getJSONObject(i).optString("content"));
+            }
+            node.content = text.toString();
+        } else {
+            node.content = segment.optString("content");
+        }
+
+        JSONObject attributesJson = segment.optJSONObject("attributes");
+        if (attributesJson != null) {
+            SegmentAttributes attributes = SegmentAttributes.fromJson(attributesJson);
+            node.fontSize = attributes.fontSize;
+            node.bold = "bold".equals(attributes.weight);
+            node.alignment = attributes.alignment;
+            node.spaced = attributes.spacing != null;
+            if (attributes.width != null) node.width = LayoutUtils.percentageToDecimal(attributes.width);
+            if (attributes.height != null) node.height = LayoutUtils.percentageToDecimal(attributes.height);
+        }
+
+        node.children.addAll(fromTemplate(segment.optJSONArray("children")));
+        return node;
+    }
+
+    /** Text shown by a text or button segment, or the URL of an image. */
+    public LayoutNode content(String content) { this.content = content != null ? content : ""; return this; }
+
+    /** Font size token such as "md", for the measurer. */
+    public LayoutNode fontSize(String fontSize) { this.fontSize = fontSize; return this; }
+
+    public LayoutNode bold(boolean bold) { this.bold = bold; return this; }
+
+    /** Width as a fraction of the parent's width, 0 to 1. */
+    public LayoutNode width(float fraction) { this.width = fraction; return this; }
+
+    /** Height as a fraction of the parent's height, 0 to 1. */
+    public LayoutNode height(float fraction) { this.height = fraction; return this; }
+
+    /** "left", "center" or "right". */
+    public LayoutNode alignment(String alignment) { this.alignment = alignment; return this; }
+
+    /** Whether a row or column puts a gap between its children. */
+    public LayoutNode spaced(boolean spaced) { this.spaced = spaced; return this; }
+
+    public LayoutNode add(LayoutNode child) { children.add(child); return this; }
+
+    public String getType() { return type; }
+
+    public String getContent() { return content; }
+
+    public String getFontSize() { return fontSize; }
+
+    public boolean isBold() { return bold; }
+
+    /** Width fraction, or null to size by type. */
+    public Float getWidth() { return width; }
+
+    /** Height fraction, or null to size by content. */
+    public Float getHeight() { return height; }
+
+    public String getAlignment() { return alignment; }
+
+    public boolean isSpaced() { return spaced; }
+
+    /** The segment this node was read from, or null for nodes built in code. */
+    public JSONObject getSegment() { return segment; }
+
+    public List<LayoutNode> getChildren() { return Collections.unmodifiableList(children); }
+}
@@ -0,0 +1,107 @@
+package io.sourcesync.android.live;
+
+import io.sourcesync.android.Activation;
+import io.sourcesync.android.manifest.ManifestEntry;
+import io.sourcesync.android.timeline.ActivationTimeline;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies batches of live updates to the current set of activations and keeps an
+ * {@link ActivationTimeline} in step. Runs on the main thread, where the batcher delivers.
+ *
+ * An update that only changes an activation's content is copied into the cue already on
+ * the timeline, which reports it through {@link ActivationTimeline#updateCue}. An active
+ * cue therefore does not exit and enter again, which would flash its preview and restart
+ * its impression, and an open detail for it is updated in place. Adds, removes and timing
+ * changes re-index the timeline once per batch.
+ */
+public class LiveTimelineUpdater implements UpdateBatcher.Listener {
+    public interface Listener {
+        /**
+         * Called after the timeline has been updated, e.g. to refresh an open detail with
+         * {@code Activation.updateDetail}.
+         */
+        void onApplied(List<LiveUpdate> updates);
+    }
+
+    private final ActivationTimeline timeline;
+    private final Map<String, ManifestEntry> entries = new LinkedHashMap<>();
+    private Listener listener;
+    private Activation activation;
+
+    public LiveTimelineUpdater(ActivationTimeline timeline, Collection<ManifestEntry> initial) {
+        this.timeline = timeline;
+        for (ManifestEntry entry : initial) {
+            entries.put(entry.id, entry);
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Update the detail open on {@code activation}, if it belongs to an activation whose
+     * content changes, through {@link Activation#updateDetail}.
+     */
+    public void setActivation(Activation activation) {
+        this.activation = activation;
+    }
+
+    /**
+     * The current version of an activation, or null if it has been removed.
+     */
+    public ManifestEntry get(String id) {
+        return entries.get(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void onUpdates(List<LiveUpdate> updates) {
+        boolean reindex = false;
+        List<ManifestEntry> changed = new ArrayList<>();
+        for (LiveUpdate update : updates) {
+            if (update.type == LiveUpdate.Type.REMOVE) {
+                reindex |= entries.remove(update.id) != null;
+                continue;
+            }
+            ManifestEntry current = entries.get(update.id);
+            if (current != null && current.startMs == update.entry.startMs && current.endMs == update.entry.endMs) {
+                if (!samePayload(current, update.entry)) {
+                    current.updatePayload(update.entry);
+                    if (!changed.contains(current)) changed.add(current);
+                }
+            } else {
+                entries.put(update.id, update.entry);
+                reindex = true;
+            }
+        }
+        if (reindex) {
+            timeline.setCues(entries.values());
+        }
+        for (ManifestEntry entry : changed) {
+            // A cue removed or re-timed later in the batch is no longer on the timeline
+            if (entries.get(entry.id) != entry) continue;
+            timeline.updateCue(entry);
+            if (activation != null && entry.id.equals(activation.getOpenDetailId()) && entry.hasDetail()) {
+                activation.updateDetail(entry.getDetailData());
+            }
+        }
+        if (listener != null) {
+            listener.onApplied(updates);
+        }
+    }
+
+    static boolean samePayload(ManifestEntry a, ManifestEntry b) {
+        return Arrays.equals(a.getRawPreview(), b.getRawPreview())
+            && Arrays.equals(a.getRawDetail(), b.getRawDetail());
+    }
+}
@@ -0,0 +1,85 @@
+package io.sourcesync.android.live;
+
+import io.sourcesync.android.manifest.JsonScanner;
+import io.sourcesync.android.manifest.ManifestEntry;
+import io.sourcesync.android.manifest.ManifestLoader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One activation change pushed by the server. The event type names the change and the
+ * data is the activation in manifest form:
+ *
+ * <pre>
+ * id: 42
+ * event: add
+ * data: {"id":"promo","start":5000,"end":15000,"preview":{...},"detail":{...}}
+ *
+ * event: remove
+ * data: {"id":"promo"}
+ * </pre>
+ *
+ * {@code add} and {@code update} are both applied as an upsert.
+ */
+public class LiveUpdate {
+    public enum Type { ADD, UPDATE, REMOVE }
+
+    public final Type type;
+    /** Activation id. */
+    public final String id;
+    /** Stream event id this update arrived with, or null. */
+    public final String eventId;
+    /** The new activation, or null for {@link Type#REMOVE}. */
+    public final ManifestEntry entry;
+
+    public LiveUpdate(Type type, String id, String eventId, ManifestEntry entry) {
+        this.type = type;
+        this.id = id;
+        this.eventId = eventId;
+        this.entry = entry;
+    }
+
+    /**
+     * Parse a server-sent event, or return null if its type is not an activation change.
+     */
+    public static LiveUpdate parse(String eventId, String eventType, String data) throws IOException {
+        Type type;
+        switch (eventType) {
+            case "add": type = Type.ADD; break;
+            case "update": type = Type.UPDATE; break;
+            case "remove": type = Type.REMOVE; break;
+            default: return null;
+        }
+
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        if (type == Type.REMOVE) {
+            return new LiveUpdate(type, readId(bytes), eventId, null);
+        }
+        ManifestEntry entry = ManifestLoader.readActivation(new ByteArrayInputStream(bytes));
+        return new LiveUpdate(type, entry.id, eventId, entry);
+    }
+
+    private static String readId(byte[] json) throws IOException {
+        JsonScanner scanner = new JsonScanner(new ByteArrayInputStream(json));
+        String id = null;
+        scanner.beginObject();
+        while (scanner.hasNext()) {
+            if ("id".equals(scanner.nextName())) {
+                id = scanner.nextString();
+            } else {
+                scanner.skipValue();
+            }
+        }
+        scanner.endObject();
+        if (id == null) {
+            throw new IOException("Remove event without an activation id");
+        }
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + id;
+    }
+}
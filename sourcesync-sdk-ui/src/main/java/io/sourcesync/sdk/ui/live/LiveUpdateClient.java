@@ -0,0 +1,189 @@
+package io.sourcesync.android.live;
+
+import io.sourcesync.android.log.SdkLog;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Streams activation changes from a server-sent events endpoint into an
+ * {@link UpdateBatcher}.
+ *
+ * The same endpoint may instead behave as a long poll: hold the request until there are
+ * events, answer with them in event-stream format and close. A response that delivered
+ * events is followed by an immediate reconnect; failures back off exponentially with
+ * full jitter, starting from the server's {@code retry:} hint when it sent one. Every
+ * reconnect carries {@code Last-Event-ID} so the server can resume the stream, and
+ * {@link #getLastEventId()} can be persisted to resume across launches.
+ */
+public class LiveUpdateClient {
+    private static final String TAG = "SourceSync.live";
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    // Long enough for a long poll or a keep-alive comment; shorter detects dead connections
+    private static final int READ_TIMEOUT_MS = 90_000;
+
+    private final String url;
+    private final UpdateBatcher batcher;
+    private final Random random = new Random();
+    private final SseParser parser;
+    private long minReconnectMs = 1_000L;
+    private long maxReconnectMs = 60_000L;
+    private volatile boolean running;
+    private volatile HttpURLConnection connection;
+    private Thread thread;
+    private int eventsThisConnection;
+
+    public LiveUpdateClient(String url, UpdateBatcher batcher) {
+        this.url = url;
+        this.batcher = batcher;
+        this.parser = new SseParser(this::onEvent);
+    }
+
+    /**
+     * Bounds for the reconnect backoff. The first retry waits up to {@code minMs}, doubling
+     * per consecutive failure up to {@code maxMs}.
+     */
+    public void setReconnectDelays(long minMs, long maxMs) {
+        this.minReconnectMs = Math.max(0L, minMs);
+        this.maxReconnectMs = Math.max(this.minReconnectMs, maxMs);
+    }
+
+    /**
+     * Resume after this event id on the first connection. Call before {@link #start()}.
+     */
+    public void setLastEventId(String lastEventId) {
+        synchronized (parser) {
+            parser.setLastEventId(lastEventId);
+        }
+    }
+
+    public String getLastEventId() {
+        synchronized (parser) {
+            return parser.getLastEventId();
+        }
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "SourceSyncLive");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        HttpURLConnection current = connection;
+        if (current != null) {
+            current.disconnect();
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        int failures = 0;
+        while (running) {
+            boolean delivered;
+            try {
+                delivered = connectOnce();
+                failures = delivered ? 0 : failures;
+            } catch (IOException | RuntimeException e) {
+                // stop() disconnects under the reader, which can surface as either
+                if (!running) break;
+                SdkLog.w(TAG, "Live update connection failed", e);
+                delivered = false;
+                failures++;
+            }
+            if (!running) break;
+            if (delivered) continue;
+
+            try {
+                Thread.sleep(backoffMs(Math.max(failures, 1)));
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return whether the connection delivered at least one event
+     */
+    private boolean connectOnce() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        this.connection = connection;
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setUseCaches(false);
+            connection.setRequestProperty("Accept", "text/event-stream");
+            connection.setRequestProperty("Cache-Control", "no-cache");
+            String lastEventId = getLastEventId();
+            if (lastEventId != null) {
+                connection.setRequestProperty("Last-Event-ID", lastEventId);
+            }
+
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NO_CONTENT) {
+                // Long poll timed out with nothing to say
+                return false;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + " from " + url);
+            }
+
+            eventsThisConnection = 0;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while (running && (line = reader.readLine()) != null) {
+                    synchronized (parser) {
+                        parser.feedLine(line);
+                    }
+                }
+            } finally {
+                synchronized (parser) {
+                    parser.reset();
+                }
+            }
+            return eventsThisConnection > 0;
+        } finally {
+            connection.disconnect();
+            this.connection = null;
+        }
+    }
+
+    // Called with the parser lock held
+    private void onEvent(String id, String type, String data) {
+        try {
+            LiveUpdate update = LiveUpdate.parse(id, type, data);
+            if (update != null) {
+                eventsThisConnection++;
+                batcher.add(update);
+            }
+        } catch (IOException e) {
+            SdkLog.w(TAG, "Ignoring malformed {} event {}", type, id, e);
+        }
+    }
+
+    private long backoffMs(int failures) {
+        long retryMs;
+        synchronized (parser) {
+            retryMs = parser.getRetryMs();
+        }
+        long base = retryMs >= 0 ? retryMs : minReconnectMs;
+        long ceiling = base << Math.min(failures - 1, 16);
+        ceiling = Math.min(Math.max(ceiling, base), maxReconnectMs);
+        return ceiling <= 0 ? 0 : (long) (random.nextDouble() * ceiling);
+    }
+}
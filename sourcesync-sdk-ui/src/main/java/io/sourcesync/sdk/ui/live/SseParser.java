@@ -0,0 +1,103 @@
+package io.sourcesync.android.live;
+
+/**
+ * Line-oriented parser for {@code text/event-stream} as specified by the HTML server-sent
+ * events standard. Feed it one line at a time, without the line terminator; events are
+ * dispatched on the blank line that ends them.
+ */
+public class SseParser {
+    public interface Handler {
+        /**
+         * @param id the last event id seen on the stream so far, or null
+         * @param type the event type, {@code "message"} when the event did not name one
+         */
+        void onEvent(String id, String type, String data);
+    }
+
+    private final Handler handler;
+    private final StringBuilder data = new StringBuilder();
+    private String type;
+    private String lastEventId;
+    private long retryMs = -1L;
+    private boolean hasData;
+
+    public SseParser(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Start from a previously seen id so a resumed stream reports it until a new one arrives.
+     */
+    public void setLastEventId(String lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * Reconnection delay most recently requested by the server, or -1.
+     */
+    public long getRetryMs() {
+        return retryMs;
+    }
+
+    public void feedLine(String line) {
+        if (line.isEmpty()) {
+            dispatch();
+            return;
+        }
+        if (line.charAt(0) == ':') {
+            return; // comment, used by servers as a keep-alive
+        }
+
+        int colon = line.indexOf(':');
+        String field = colon < 0 ? line : line.substring(0, colon);
+        String value = "";
+        if (colon >= 0) {
+            int start = colon + 1;
+            if (start < line.length() && line.charAt(start) == ' ') start++;
+            value = line.substring(start);
+        }
+
+        switch (field) {
+            case "data":
+                if (hasData) data.append('\n');
+                data.append(value);
+                hasData = true;
+                break;
+            case "event":
+                type = value;
+                break;
+            case "id":
+                if (value.indexOf('\0') < 0) lastEventId = value;
+                break;
+            case "retry":
+                try {
+                    retryMs = Long.parseLong(value);
+                } catch (NumberFormatException ignored) {
+                    // Not all digits: ignored per the specification
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Drop a partially received event, e.g. when the connection drops mid-event.
+     */
+    public void reset() {
+        data.setLength(0);
+        hasData = false;
+        type = null;
+    }
+
+    private void dispatch() {
+        if (hasData) {
+            handler.onEvent(lastEventId, type != null && !type.isEmpty() ? type : "message", data.toString());
+        }
+        reset();
+    }
+}
@@ -0,0 +1,82 @@
+package io.sourcesync.android.live;
+
+import android.view.Choreographer;
+import io.sourcesync.android.executor.SdkExecutors;
+import io.sourcesync.android.executor.TaskExecutor;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects updates arriving from the network thread and hands them to the UI once per
+ * frame. Several changes to the same activation within a frame collapse to the last one,
+ * so a burst costs one timeline rebuild however many events it contained.
+ */
+public class UpdateBatcher {
+    public interface Listener {
+        /**
+         * One frame's worth of updates, at most one per activation, in arrival order.
+         */
+        void onUpdates(List<LiveUpdate> updates);
+    }
+
+    /**
+     * Runs a task at the next frame. The default posts a Choreographer frame callback
+     * on the main thread.
+     */
+    public interface FrameScheduler {
+        void scheduleFrame(Runnable task);
+    }
+
+    private final Listener listener;
+    private final FrameScheduler scheduler;
+    private final Object lock = new Object();
+    private Map<String, LiveUpdate> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+
+    public UpdateBatcher(Listener listener) {
+        this(listener, mainThreadFrames());
+    }
+
+    public UpdateBatcher(Listener listener, FrameScheduler scheduler) {
+        this.listener = listener;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Queue an update from any thread.
+     */
+    public void add(LiveUpdate update) {
+        boolean schedule;
+        synchronized (lock) {
+            // Re-inserting moves the activation to the end so the batch keeps arrival order
+            pending.remove(update.id);
+            pending.put(update.id, update);
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (schedule) {
+            scheduler.scheduleFrame(this::flush);
+        }
+    }
+
+    private void flush() {
+        Map<String, LiveUpdate> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            scheduled = false;
+        }
+        if (!batch.isEmpty()) {
+            listener.onUpdates(new ArrayList<>(batch.values()));
+        }
+    }
+
+    private static FrameScheduler mainThreadFrames() {
+        TaskExecutor main = SdkExecutors.getInstance().main();
+        return task -> main.execute(() ->
+            Choreographer.getInstance().postFrameCallback(frameTimeNanos -> task.run()),
+            TaskExecutor.PRIORITY_HIGH, null);
+    }
+}
@@ -0,0 +1,208 @@
+package io.sourcesync.android.log;
+
+import android.util.Log;
+
+import io.sourcesync.sdk.ui.BuildConfig;
+
+import java.util.function.Supplier;
+
+/**
+ * Logging for the SDK, cheap enough to leave on the render path.
+ *
+ * A message is only built when its level is enabled, both in this build and at runtime.
+ * {@link #COMPILED_LEVEL} comes from the build: debug builds keep every level, release
+ * builds keep {@link #INFO} and up unless built with {@code -Psourcesync.logLevel=2}.
+ * Calls below it are constant-false checks that R8 and the JIT remove. Above it,
+ * {@link #setLevel} decides at runtime, and defaults to {@link #DEBUG}, so render traces
+ * logged at {@link #VERBOSE} need turning on.
+ *
+ * Messages take {@code {}} placeholders, filled in order from the arguments, or a
+ * {@link Supplier}. A {@link Throwable} passed last to a warning or error is logged as
+ * its cause, with its stack trace, rather than filling a placeholder. Neither formats nor
+ * concatenates anything while the level is off. Pass non-capturing lambdas or values
+ * already at hand, so a call at a disabled level allocates nothing. Enabled messages go to the {@link Sink}, which is
+ * {@code android.util.Log} unless replaced.
+ */
+public final class SdkLog {
+    public static final int VERBOSE = Log.VERBOSE;
+    public static final int DEBUG = Log.DEBUG;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int ERROR = Log.ERROR;
+    /** Level that disables all logging. */
+    public static final int NONE = Log.ASSERT + 1;
+
+    /** Lowest level compiled into this build. */
+    public static final int COMPILED_LEVEL = BuildConfig.LOG_LEVEL;
+
+    /**
+     * Where enabled messages go. Called on the thread that logged.
+     */
+    public interface Sink {
+        void log(int level, String tag, String message, Throwable error);
+    }
+
+    private static final Sink ANDROID_SINK = (level, tag, message, error) -> {
+        if (error != null) {
+            message = message + '\n' + Log.getStackTraceString(error);
+        }
+        Log.println(level, tag, message);
+    };
+
+    private static volatile int level = Math.max(COMPILED_LEVEL, DEBUG);
+    private static volatile Sink sink = ANDROID_SINK;
+
+    private SdkLog() {}
+
+    /**
+     * Log {@code level} and up, as far as this build allows; {@link #NONE} logs nothing.
+     */
+    public static void setLevel(int level) {
+        SdkLog.level = level;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    /**
+     * Send messages to {@code sink}, or back to {@code android.util.Log} if null.
+     */
+    public static void setSink(Sink sink) {
+        SdkLog.sink = sink != null ? sink : ANDROID_SINK;
+    }
+
+    /**
+     * Whether messages at {@code level} are logged, for guarding work a message needs
+     * that placeholders cannot defer.
+     */
+    public static boolean isLoggable(int level) {
+        return level >= COMPILED_LEVEL && level >= SdkLog.level;
+    }
+
+    public static void v(String tag, String message) {
+        if (VERBOSE >= COMPILED_LEVEL && isLoggable(VERBOSE)) write(VERBOSE, tag, message, null);
+    }
+
+    public static void v(String tag, String pattern, Object arg) {
+        if (VERBOSE >= COMPILED_LEVEL && isLoggable(VERBOSE)) write(VERBOSE, tag, format(pattern, arg), null);
+    }
+
+    public static void v(String tag, String pattern, Object arg1, Object arg2) {
+        if (VERBOSE >= COMPILED_LEVEL && isLoggable(VERBOSE)) write(VERBOSE, tag, format(pattern, arg1, arg2), null);
+    }
+
+    /** Numeric arguments are only boxed once the message is enabled. */
+    public static void v(String tag, String pattern, long arg1, long arg2) {
+        if (VERBOSE >= COMPILED_LEVEL && isLoggable(VERBOSE)) write(VERBOSE, tag, format(pattern, arg1, arg2), null);
+    }
+
+    public static void v(String tag, Supplier<String> message) {
+        if (VERBOSE >= COMPILED_LEVEL && isLoggable(VERBOSE)) write(VERBOSE, tag, message.get(), null);
+    }
+
+    public static void d(String tag, String message) {
+        if (DEBUG >= COMPILED_LEVEL && isLoggable(DEBUG)) write(DEBUG, tag, message, null);
+    }
+
+    public static void d(String tag, String pattern, Object arg) {
+        if (DEBUG >= COMPILED_LEVEL && isLoggable(DEBUG)) write(DEBUG, tag, format(pattern, arg), null);
+    }
+
+    public static void d(String tag, String pattern, Object arg1, Object arg2) {
+        if (DEBUG >= COMPILED_LEVEL && isLoggable(DEBUG)) write(DEBUG, tag, format(pattern, arg1, arg2), null);
+    }
+
+    /** Numeric arguments are only boxed once the message is enabled. */
+    public static void d(String tag, String pattern, long arg1, long arg2) {
+        if (DEBUG >= COMPILED_LEVEL && isLoggable(DEBUG)) write(DEBUG, tag, format(pattern, arg1, arg2), null);
+    }
+
+    public static void d(String tag, Supplier<String> message) {
+        if (DEBUG >= COMPILED_LEVEL && isLoggable(DEBUG)) write(DEBUG, tag, message.get(), null);
+    }
+
+    public static void i(String tag, String message) {
+        if (isLoggable(INFO)) write(INFO, tag, message, null);
+    }
+
+    public static void i(String tag, String pattern, Object arg) {
+        if (isLoggable(INFO)) write(INFO, tag, format(pattern, arg), null);
+    }
+
+    public static void i(String tag, String pattern, Object arg1, Object arg2) {
+        if (isLoggable(INFO)) write(INFO, tag, format(pattern, arg1, arg2), null);
+    }
+
+    public static void i(String tag, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(INFO)) write(INFO, tag, format(pattern, arg1, arg2, arg3), null);
+    }
+
+    public static void w(String tag, String message) {
+        if (isLoggable(WARN)) write(WARN, tag, message, null);
+    }
+
+    public static void w(String tag, String message, Throwable error) {
+        if (isLoggable(WARN)) write(WARN, tag, message, error);
+    }
+
+    public static void w(String tag, String pattern, Object arg) {
+        if (isLoggable(WARN)) write(WARN, tag, format(pattern, arg), null);
+    }
+
+    public static void w(String tag, String pattern, Object arg, Throwable error) {
+        if (isLoggable(WARN)) write(WARN, tag, format(pattern, arg), error);
+    }
+
+    public static void w(String tag, String pattern, Object arg1, Object arg2) {
+        if (isLoggable(WARN)) write(WARN, tag, format(pattern, arg1, arg2), null);
+    }
+
+    public static void w(String tag, String pattern, Object arg1, Object arg2, Throwable error) {
+        if (isLoggable(WARN)) write(WARN, tag, format(pattern, arg1, arg2), error);
+    }
+
+    public static void w(String tag, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(WARN)) write(WARN, tag, format(pattern, arg1, arg2, arg3), null);
+    }
+
+    public static void e(String tag, String message) {
+        if (isLoggable(ERROR)) write(ERROR, tag, message, null);
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        if (isLoggable(ERROR)) write(ERROR, tag, message, error);
+    }
+
+    public static void e(String tag, String pattern, Object arg) {
+        if (isLoggable(ERROR)) write(ERROR, tag, format(pattern, arg), null);
+    }
+
+    public static void e(String tag, String pattern, Object arg, Throwable error) {
+        if (isLoggable(ERROR)) write(ERROR, tag, format(pattern, arg), error);
+    }
+
+    public static void e(String tag, String pattern, Object arg1, Object arg2, Throwable error) {
+        if (isLoggable(ERROR)) write(ERROR, tag, format(pattern, arg1, arg2), error);
+    }
+
+    /**
+     * Replace each {@code {}} in {@code pattern} with the next argument. Placeholders past
+     * the last argument are left as they are.
+     */
+    static String format(String pattern, Object... args) {
+        StringBuilder out = new StringBuilder(pattern.length() + 16 * args.length);
+        int start = 0;
+        for (Object arg : args) {
+            int at = pattern.indexOf("{}", start);
+            if (at < 0) break;
+            out.append(pattern, start, at).append(arg);
+            start = at + 2;
+        }
+        return out.append(pattern, start, pattern.length()).toString();
+    }
+
+    private static void write(int level, String tag, String message, Throwable error) {
+        sink.log(level, tag, message, error);
+    }
+}
@@ -0,0 +1,46 @@
+package io.sourcesync.android.manifest;
+
+import io.sourcesync.android.timeline.ActivationTimeline;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All activations for one video, indexed by id. Time lookups go through the
+ * {@link ActivationTimeline} built by {@link #createTimeline()}.
+ */
+public class ActivationManifest {
+    private final String videoId;
+    private final List<ManifestEntry> entries;
+    private final Map<String, ManifestEntry> byId;
+
+    public ActivationManifest(String videoId, List<ManifestEntry> entries) {
+        this.videoId = videoId;
+        this.entries = Collections.unmodifiableList(entries);
+        this.byId = new HashMap<>(entries.size() * 2);
+        for (ManifestEntry entry : entries) {
+            byId.put(entry.id, entry);
+        }
+    }
+
+    public String getVideoId() {
+        return videoId;
+    }
+
+    public List<ManifestEntry> getEntries() {
+        return entries;
+    }
+
+    public ManifestEntry get(String id) {
+        return byId.get(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public ActivationTimeline createTimeline() {
+        return new ActivationTimeline(entries);
+    }
+}
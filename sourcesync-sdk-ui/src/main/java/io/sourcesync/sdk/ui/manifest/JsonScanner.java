@@ -0,0 +1,325 @@
+package io.sourcesync.android.manifest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal pull parser over UTF-8 JSON bytes. Unlike a tree parser it never materialises
+ * more than the current token, and {@link #readRawValue()} can lift out a whole nested
+ * value as its original bytes so it can be parsed later, or never.
+ */
+public class JsonScanner {
+    private static final int MAX_DEPTH = 256;
+
+    public enum Token { OBJECT, ARRAY, STRING, NUMBER, BOOLEAN, NULL, END_CONTAINER, END_DOCUMENT }
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    private long offset;
+
+    private final boolean[] isArray = new boolean[MAX_DEPTH];
+    private final boolean[] needsComma = new boolean[MAX_DEPTH];
+    private int depth;
+
+    public JsonScanner(InputStream in) {
+        this.in = in;
+    }
+
+    public void beginObject() throws IOException {
+        beforeValue();
+        expect('{');
+        push(false);
+    }
+
+    public void endObject() throws IOException {
+        expect('}');
+        depth--;
+    }
+
+    public void beginArray() throws IOException {
+        beforeValue();
+        expect('[');
+        push(true);
+    }
+
+    public void endArray() throws IOException {
+        expect(']');
+        depth--;
+    }
+
+    /**
+     * Whether the current object or array has another member.
+     */
+    public boolean hasNext() throws IOException {
+        int c = peekNonWhitespace();
+        return c != '}' && c != ']' && c != -1;
+    }
+
+    public String nextName() throws IOException {
+        if (depth == 0 || isArray[depth]) {
+            throw syntaxError("Name outside of object");
+        }
+        if (needsComma[depth]) {
+            expect(',');
+        }
+        needsComma[depth] = true;
+        String name = readString();
+        expect(':');
+        return name;
+    }
+
+    public String nextString() throws IOException {
+        beforeValue();
+        return readString();
+    }
+
+    public long nextLong() throws IOException {
+        beforeValue();
+        String literal = readLiteral();
+        try {
+            return Long.parseLong(literal);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(literal);
+            } catch (NumberFormatException ignored) {
+                throw syntaxError("Expected a number but was " + literal);
+            }
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+        beforeValue();
+        String literal = readLiteral();
+        if ("true".equals(literal)) return true;
+        if ("false".equals(literal)) return false;
+        throw syntaxError("Expected a boolean but was " + literal);
+    }
+
+    /**
+     * The kind of the next value, without consuming it. Call {@link #nextName()} first
+     * inside objects.
+     */
+    public Token peekToken() throws IOException {
+        int c = peekNonWhitespace();
+        if (depth > 0 && isArray[depth] && needsComma[depth] && c == ',') {
+            position++;
+            needsComma[depth] = false;
+            c = peekNonWhitespace();
+        }
+        switch (c) {
+            case -1: return Token.END_DOCUMENT;
+            case '{': return Token.OBJECT;
+            case '[': return Token.ARRAY;
+            case '}': case ']': return Token.END_CONTAINER;
+            case '"': return Token.STRING;
+            case 't': case 'f': return Token.BOOLEAN;
+            case 'n': return Token.NULL;
+            default: return Token.NUMBER;
+        }
+    }
+
+    /**
+     * The next number exactly as written, so callers can choose integer or floating point.
+     */
+    public String nextNumberLiteral() throws IOException {
+        beforeValue();
+        return readLiteral();
+    }
+
+    /**
+     * True if the next value is the literal {@code null}, without consuming it.
+     */
+    public boolean peekNull() throws IOException {
+        return peekNonWhitespace() == 'n';
+    }
+
+    public void skipValue() throws IOException {
+        beforeValue();
+        scanValue(null);
+    }
+
+    /**
+     * The next value exactly as it appears in the input.
+     */
+    public byte[] readRawValue() throws IOException {
+        beforeValue();
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        scanValue(sink);
+        return sink.toByteArray();
+    }
+
+    /**
+     * Bytes consumed so far, for error messages and progress reporting.
+     */
+    public long getOffset() {
+        return offset + position;
+    }
+
+    private void push(boolean array) throws IOException {
+        if (++depth >= MAX_DEPTH) {
+            throw syntaxError("Nesting too deep");
+        }
+        isArray[depth] = array;
+        needsComma[depth] = false;
+    }
+
+    private void beforeValue() throws IOException {
+        if (depth > 0 && isArray[depth]) {
+            if (needsComma[depth]) {
+                expect(',');
+            }
+            needsComma[depth] = true;
+        }
+    }
+
+    private void scanValue(ByteArrayOutputStream sink) throws IOException {
+        int c = peekNonWhitespace();
+        if (c == '"') {
+            copyString(sink);
+            return;
+        }
+        if (c != '{' && c != '[') {
+            byte[] literal = readLiteral().getBytes(StandardCharsets.UTF_8);
+            if (sink != null) sink.write(literal, 0, literal.length);
+            return;
+        }
+
+        int nesting = 0;
+        do {
+            c = peek();
+            if (c == -1) throw syntaxError("Unterminated value");
+            if (c == '"') {
+                copyString(sink);
+                continue;
+            }
+            position++;
+            if (sink != null) sink.write(c);
+            if (c == '{' || c == '[') nesting++;
+            else if (c == '}' || c == ']') nesting--;
+        } while (nesting > 0);
+    }
+
+    private void copyString(ByteArrayOutputStream sink) throws IOException {
+        expect('"');
+        if (sink != null) sink.write('"');
+        while (true) {
+            int c = read();
+            if (c == -1) throw syntaxError("Unterminated string");
+            if (sink != null) sink.write(c);
+            if (c == '"') return;
+            if (c == '\\') {
+                int escaped = read();
+                if (escaped == -1) throw syntaxError("Unterminated string");
+                if (sink != null) sink.write(escaped);
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        while (true) {
+            int c = read();
+            if (c == -1) throw syntaxError("Unterminated string");
+            if (c == '"') break;
+            if (c != '\\') {
+                bytes.write(c);
+                continue;
+            }
+            int escaped = read();
+            switch (escaped) {
+                case '"': case '\\': case '/': bytes.write(escaped); break;
+                case 'b': bytes.write('\b'); break;
+                case 'f': bytes.write('\f'); break;
+                case 'n': bytes.write('\n'); break;
+                case 'r': bytes.write('\r'); break;
+                case 't': bytes.write('\t'); break;
+                case 'u':
+                    int codePoint = readHex4();
+                    if (Character.isHighSurrogate((char) codePoint) && peek() == '\\') {
+                        read();
+                        if (read() != 'u') throw syntaxError("Expected low surrogate");
+                        codePoint = Character.toCodePoint((char) codePoint, (char) readHex4());
+                    }
+                    byte[] encoded = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+                    bytes.write(encoded, 0, encoded.length);
+                    break;
+                default:
+                    throw syntaxError("Invalid escape");
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private int readHex4() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) throw syntaxError("Invalid unicode escape");
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private String readLiteral() throws IOException {
+        peekNonWhitespace();
+        StringBuilder literal = new StringBuilder();
+        while (true) {
+            int c = peek();
+            if (c == -1 || c == ',' || c == '}' || c == ']' || c == ':' || isWhitespace(c)) break;
+            literal.append((char) c);
+            position++;
+        }
+        if (literal.length() == 0) throw syntaxError("Expected a value");
+        return literal.toString();
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = peekNonWhitespace();
+        if (c != expected) {
+            throw syntaxError("Expected '" + expected + "' but was "
+                + (c == -1 ? "end of input" : "'" + (char) c + "'"));
+        }
+        position++;
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        while (true) {
+            int c = peek();
+            if (!isWhitespace(c)) return c;
+            position++;
+        }
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position] & 0xff;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position++] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) return false;
+        limit = read;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at byte " + getOffset());
+    }
+}
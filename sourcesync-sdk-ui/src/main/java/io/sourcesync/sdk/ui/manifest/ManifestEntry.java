@@ -0,0 +1,89 @@
+package io.sourcesync.android.manifest;
+
+import io.sourcesync.android.timeline.ActivationCue;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One activation from a manifest. Preview and detail payloads are held as their original
+ * UTF-8 bytes and only parsed into {@link JSONObject}s when asked for; parsed trees are
+ * kept softly so the runtime can drop them again under memory pressure.
+ */
+public class ManifestEntry extends ActivationCue {
+    private byte[] previewJson;
+    private byte[] detailJson;
+    private SoftReference<JSONObject> preview;
+    private SoftReference<JSONObject> detail;
+
+    public ManifestEntry(String id, long startMs, long endMs, byte[] previewJson, byte[] detailJson) {
+        super(id, startMs, endMs, null);
+        this.previewJson = previewJson;
+        this.detailJson = detailJson;
+    }
+
+    /**
+     * @throws IllegalStateException if the stored preview is not a valid JSON object
+     */
+    @Override
+    public synchronized JSONObject getPreviewData() {
+        JSONObject data = preview != null ? preview.get() : null;
+        if (data == null && previewJson != null) {
+            data = parse(previewJson, "preview");
+            preview = new SoftReference<>(data);
+        }
+        return data;
+    }
+
+    /**
+     * Data for {@code Activation.showDetail}, or null when the activation has no detail.
+     */
+    public synchronized JSONObject getDetailData() {
+        JSONObject data = detail != null ? detail.get() : null;
+        if (data == null && detailJson != null) {
+            data = parse(detailJson, "detail");
+            detail = new SoftReference<>(data);
+        }
+        return data;
+    }
+
+    public synchronized boolean hasDetail() {
+        return detailJson != null;
+    }
+
+    public synchronized byte[] getRawPreview() {
+        return previewJson;
+    }
+
+    public synchronized byte[] getRawDetail() {
+        return detailJson;
+    }
+
+    /**
+     * Take the payloads of {@code newer}, a later version of this activation, keeping this
+     * instance and so its place in timelines.
+     */
+    public synchronized void updatePayload(ManifestEntry newer) {
+        previewJson = newer.getRawPreview();
+        detailJson = newer.getRawDetail();
+        preview = null;
+        detail = null;
+    }
+
+    /**
+     * Bytes retained for this entry's payloads while unparsed.
+     */
+    public synchronized int getCompactSize() {
+        return (previewJson != null ? previewJson.length : 0)
+            + (detailJson != null ? detailJson.length : 0);
+    }
+
+    private JSONObject parse(byte[] json, String part) {
+        try {
+            return new JSONObject(new String(json, StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new IllegalStateException("Invalid " + part + " for activation " + id, e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.sourcesync.android.manifest;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streams an activation manifest:
+ *
+ * <pre>
+ * {
+ *   "version": 1,
+ *   "videoId": "...",
+ *   "activations": [
+ *     { "id": "...", "start": 5000, "end": 15000, "preview": {...}, "detail": {...} }
+ *   ]
+ * }
+ * </pre>
+ *
+ * Times are in milliseconds of media time. {@code preview} is what
+ * {@code Activation.showPreview} takes and {@code detail} what {@code showDetail} takes.
+ * Both are copied out as raw bytes rather than parsed, so loading cost and retained
+ * memory stay proportional to the manifest size rather than its tree size.
+ */
+public class ManifestLoader {
+    public static final int SUPPORTED_VERSION = 1;
+
+    public interface EntryCallback {
+        void onEntry(ManifestEntry entry);
+    }
+
+    private ManifestLoader() {}
+
+    public static ActivationManifest load(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return load(in);
+        }
+    }
+
+    public static ActivationManifest load(InputStream in) throws IOException {
+        List<ManifestEntry> entries = new ArrayList<>();
+        String videoId = stream(in, entries::add);
+        return new ActivationManifest(videoId, entries);
+    }
+
+    /**
+     * Parse the manifest and hand each activation to {@code callback} as soon as it has
+     * been read. The stream is not closed.
+     *
+     * @return the manifest's video id, or null if it has none
+     */
+    public static String stream(InputStream in, EntryCallback callback) throws IOException {
+        JsonScanner scanner = new JsonScanner(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        Set<String> seenIds = new HashSet<>();
+        String videoId = null;
+
+        scanner.beginObject();
+        while (scanner.hasNext()) {
+            switch (scanner.nextName()) {
+                case "version":
+                    long version = scanner.nextLong();
+                    if (version > SUPPORTED_VERSION) {
+                        throw new IOException("Unsupported manifest version " + version);
+                    }
+                    break;
+                case "videoId":
+                    videoId = scanner.nextString();
+                    break;
+                case "activations":
+                    scanner.beginArray();
+                    while (scanner.hasNext()) {
+                        ManifestEntry entry = readEntry(scanner);
+                        if (!seenIds.add(entry.id)) {
+                            throw new IOException("Duplicate activation id " + entry.id);
+                        }
+                        callback.onEntry(entry);
+                    }
+                    scanner.endArray();
+                    break;
+                default:
+                    scanner.skipValue();
+                    break;
+            }
+        }
+        scanner.endObject();
+        return videoId;
+    }
+
+    /**
+     * Parse a single activation object, as found in the manifest's {@code activations}.
+     */
+    public static ManifestEntry readActivation(InputStream in) throws IOException {
+        return readEntry(new JsonScanner(in instanceof BufferedInputStream ? in : new BufferedInputStream(in)));
+    }
+
+    private static ManifestEntry readEntry(JsonScanner scanner) throws IOException {
+        String id = null;
+        long start = -1L;
+        long end = -1L;
+        byte[] preview = null;
+        byte[] detail = null;
+
+        scanner.beginObject();
+        while (scanner.hasNext()) {
+            String name = scanner.nextName();
+            if (scanner.peekNull()) {
+                scanner.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "id": id = scanner.nextString(); break;
+                case "start": start = scanner.nextLong(); break;
+                case "end": end = scanner.nextLong(); break;
+                case "preview": preview = scanner.readRawValue(); break;
+                case "detail": detail = scanner.readRawValue(); break;
+                default: scanner.skipValue(); break;
+            }
+        }
+        scanner.endObject();
+
+        if (id == null || start < 0 || end <= start || preview == null) {
+            throw new IOException("Activation " + id + " needs an id, a start before its end"
+                + " and a preview (near byte " + scanner.getOffset() + ")");
+        }
+        return new ManifestEntry(id, start, end, preview, detail);
+    }
+}
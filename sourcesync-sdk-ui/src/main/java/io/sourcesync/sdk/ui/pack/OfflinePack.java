@@ -0,0 +1,213 @@
+package io.sourcesync.android.pack;
+
+import io.sourcesync.android.manifest.ActivationManifest;
+import io.sourcesync.android.manifest.ManifestEntry;
+import io.sourcesync.android.template.BinaryManifestEntry;
+import io.sourcesync.android.template.BinaryTemplate;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read side of the offline activation pack written by {@link OfflinePackBuilder}.
+ *
+ * <pre>
+ * header   magic "SSPK", version:u16, flags:u16, count:i32, videoIdOffset:i32,
+ *          indexOffset:i64, idOrderOffset:i64                               (32 bytes)
+ * ids      (length:u16 utf8)*
+ * index    count x (startMs:i64 endMs:i64 blobOffset:i64 blobLength:i32 idOffset:i32),
+ *          sorted by start time                                         (32 bytes each)
+ * idOrder  count x i32 index positions sorted by id bytes
+ * blobs    one binary template per activation: {"preview": ..., "detail": ...}
+ * </pre>
+ *
+ * The file is memory-mapped, so {@link #open} only reads the header and fetching one
+ * activation touches its index record, its id and its own blob pages. Blobs are read in
+ * place through {@link BinaryTemplate}.
+ */
+public class OfflinePack {
+    static final byte[] MAGIC = { 'S', 'S', 'P', 'K' };
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 32;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int videoIdOffset;
+    private final int indexOffset;
+    private final int idOrderOffset;
+
+    private OfflinePack(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE) {
+            throw new IOException("Truncated activation pack");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) {
+                throw new IOException("Not an activation pack");
+            }
+        }
+        int version = buffer.getShort(4) & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported activation pack version " + version);
+        }
+        count = buffer.getInt(8);
+        videoIdOffset = buffer.getInt(12);
+        indexOffset = (int) buffer.getLong(16);
+        idOrderOffset = (int) buffer.getLong(24);
+        if (count < 0 || (long) indexOffset + (long) count * RECORD_SIZE > buffer.limit()
+                || (long) idOrderOffset + (long) count * 4 > buffer.limit()) {
+            throw new IOException("Corrupt activation pack header");
+        }
+    }
+
+    public static OfflinePack open(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new OfflinePack(mapped);
+        }
+    }
+
+    /**
+     * Read a pack that is already in memory, e.g. from an asset.
+     */
+    public static OfflinePack wrap(ByteBuffer buffer) throws IOException {
+        return new OfflinePack(buffer.slice());
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public String getVideoId() {
+        return videoIdOffset < 0 ? null : readId(videoIdOffset);
+    }
+
+    /**
+     * Activation by position in start-time order.
+     */
+    public PackEntry get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Activation " + index + " of " + count);
+        }
+        int record = indexOffset + index * RECORD_SIZE;
+        return new PackEntry(
+            readId(buffer.getInt(record + 28)),
+            buffer.getLong(record),
+            buffer.getLong(record + 8),
+            (int) buffer.getLong(record + 16),
+            buffer.getInt(record + 24));
+    }
+
+    /**
+     * Activation by id in O(log n), or null.
+     */
+    public PackEntry find(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int index = buffer.getInt(idOrderOffset + mid * 4);
+            int cmp = compareId(buffer.getInt(indexOffset + index * RECORD_SIZE + 28), key);
+            if (cmp == 0) return get(index);
+            if (cmp < 0) lo = mid + 1; else hi = mid - 1;
+        }
+        return null;
+    }
+
+    /**
+     * Every activation as a manifest. Only index records are read; blobs stay unmapped
+     * until an entry's preview or detail is requested.
+     */
+    public ActivationManifest toManifest() {
+        List<ManifestEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(get(i));
+        }
+        return new ActivationManifest(getVideoId(), entries);
+    }
+
+    private String readId(int offset) {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int compareId(int offset, byte[] key) {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        int shared = Math.min(length, key.length);
+        for (int i = 0; i < shared; i++) {
+            int cmp = Integer.compare(buffer.get(offset + 2 + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    /**
+     * An activation whose blob is decoded from the mapped pack on first use.
+     */
+    public class PackEntry extends BinaryManifestEntry {
+        private final int blobOffset;
+        private final int blobLength;
+        private BinaryTemplate blob;
+
+        PackEntry(String id, long startMs, long endMs, int blobOffset, int blobLength) {
+            super(id, startMs, endMs);
+            this.blobOffset = blobOffset;
+            this.blobLength = blobLength;
+        }
+
+        public synchronized BinaryTemplate getBlob() {
+            if (blob == null) {
+                ByteBuffer view = buffer.duplicate();
+                view.position(blobOffset);
+                view.limit(blobOffset + blobLength);
+                try {
+                    blob = BinaryTemplate.wrap(view.slice());
+                } catch (IOException e) {
+                    throw new IllegalStateException("Corrupt blob for activation " + id, e);
+                }
+            }
+            return blob;
+        }
+
+        @Override
+        protected BinaryTemplate.Value loadPreview() {
+            return getBlob().root().get("preview");
+        }
+
+        @Override
+        protected BinaryTemplate.Value loadDetail() {
+            BinaryTemplate.Value detail = getBlob().root().get("detail");
+            return detail != null && !detail.isNull() ? detail : null;
+        }
+
+        /**
+         * Serve the newer payloads and let go of this entry's blob from the pack.
+         */
+        @Override
+        public void updatePayload(ManifestEntry newer) {
+            super.updatePayload(newer);
+            synchronized (this) {
+                blob = null;
+            }
+        }
+
+        @Override
+        public int getCompactSize() {
+            return isUpdated() ? super.getCompactSize() : blobLength;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.sourcesync.android.pack;
+
+import io.sourcesync.android.manifest.ActivationManifest;
+import io.sourcesync.android.manifest.ManifestEntry;
+import io.sourcesync.android.manifest.ManifestLoader;
+import io.sourcesync.android.template.BinaryTemplateEncoder;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes an {@link OfflinePack} from an activation manifest. Plain Java, so it can run
+ * on a build machine:
+ *
+ * <pre>
+ * java -cp sourcesync-sdk-ui.jar:json.jar io.sourcesync.android.pack.OfflinePackBuilder \
+ *     manifest.json activations.sspk
+ * </pre>
+ */
+public class OfflinePackBuilder {
+    private OfflinePackBuilder() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: OfflinePackBuilder <manifest.json> <output.sspk>");
+            System.exit(2);
+        }
+        ActivationManifest manifest = ManifestLoader.load(new File(args[0]));
+        File output = new File(args[1]);
+        build(manifest, output);
+        System.out.println("Wrote " + manifest.size() + " activations, " + output.length()
+            + " bytes to " + output);
+    }
+
+    public static void build(ActivationManifest manifest, File output) throws IOException {
+        File temp = new File(output.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            write(manifest, out);
+        }
+        if (!temp.renameTo(output)) {
+            if (!output.delete() || !temp.renameTo(output)) {
+                throw new IOException("Could not move pack into place at " + output);
+            }
+        }
+    }
+
+    public static void write(ActivationManifest manifest, OutputStream out) throws IOException {
+        List<ManifestEntry> entries = new ArrayList<>(manifest.getEntries());
+        entries.sort(Comparator.comparingLong((ManifestEntry entry) -> entry.startMs));
+        int count = entries.size();
+
+        // Ids, and the video id, each as u16 length + UTF-8
+        ByteBuffer ids = ByteBuffer.allocate(idAreaSize(manifest, entries));
+        int[] idOffsets = new int[count];
+        int videoIdOffset = -1;
+        if (manifest.getVideoId() != null) {
+            videoIdOffset = OfflinePack.HEADER_SIZE + ids.position();
+            putId(ids, manifest.getVideoId());
+        }
+        for (int i = 0; i < count; i++) {
+            idOffsets[i] = OfflinePack.HEADER_SIZE + ids.position();
+            putId(ids, entries.get(i).id);
+        }
+
+        int indexOffset = align8(OfflinePack.HEADER_SIZE + ids.capacity());
+        int idOrderOffset = indexOffset + count * OfflinePack.RECORD_SIZE;
+        long blobOffset = align8(idOrderOffset + count * 4);
+
+        byte[][] blobs = new byte[count][];
+        ByteBuffer index = ByteBuffer.allocate(count * OfflinePack.RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            ManifestEntry entry = entries.get(i);
+            blobs[i] = BinaryTemplateEncoder.encodeActivation(entry);
+            index.putLong(entry.startMs);
+            index.putLong(entry.endMs);
+            index.putLong(blobOffset);
+            index.putInt(blobs[i].length);
+            index.putInt(idOffsets[i]);
+            blobOffset += blobs[i].length;
+        }
+        if (blobOffset > Integer.MAX_VALUE) {
+            throw new IOException("Activation pack larger than 2GB");
+        }
+
+        Integer[] byId = new Integer[count];
+        for (int i = 0; i < count; i++) byId[i] = i;
+        byte[][] idBytes = new byte[count][];
+        for (int i = 0; i < count; i++) idBytes[i] = entries.get(i).id.getBytes(StandardCharsets.UTF_8);
+        Arrays.sort(byId, (a, b) -> compareUnsigned(idBytes[a], idBytes[b]));
+        ByteBuffer idOrder = ByteBuffer.allocate(count * 4);
+        for (int position : byId) idOrder.putInt(position);
+
+        ByteBuffer header = ByteBuffer.allocate(OfflinePack.HEADER_SIZE);
+        header.put(OfflinePack.MAGIC);
+        header.putShort((short) OfflinePack.VERSION);
+        header.putShort((short) 0);
+        header.putInt(count);
+        header.putInt(videoIdOffset);
+        header.putLong(indexOffset);
+        header.putLong(idOrderOffset);
+
+        out.write(header.array());
+        out.write(ids.array());
+        pad(out, indexOffset - OfflinePack.HEADER_SIZE - ids.capacity());
+        out.write(index.array());
+        out.write(idOrder.array());
+        pad(out, align8(idOrderOffset + count * 4) - idOrderOffset - count * 4);
+        for (byte[] blob : blobs) {
+            out.write(blob);
+        }
+    }
+
+    private static int idAreaSize(ActivationManifest manifest, List<ManifestEntry> entries) throws IOException {
+        int size = manifest.getVideoId() != null ? idSize(manifest.getVideoId()) : 0;
+        for (ManifestEntry entry : entries) {
+            size += idSize(entry.id);
+        }
+        return size;
+    }
+
+    private static int idSize(String id) throws IOException {
+        int length = id.getBytes(StandardCharsets.UTF_8).length;
+        if (length > 0xFFFF) {
+            throw new IOException("Id longer than 65535 bytes: " + id.substring(0, 32) + "...");
+        }
+        return 2 + length;
+    }
+
+    private static void putId(ByteBuffer ids, String id) {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        ids.putShort((short) bytes.length);
+        ids.put(bytes);
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        int shared = Math.min(a.length, b.length);
+        for (int i = 0; i < shared; i++) {
+            int cmp = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    private static int align8(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    private static void pad(OutputStream out, int bytes) throws IOException {
+        for (int i = 0; i < bytes; i++) {
+            out.write(0);
+        }
+    }
+}
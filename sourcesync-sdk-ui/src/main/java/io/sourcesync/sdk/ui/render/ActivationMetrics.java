@@ -0,0 +1,106 @@
+package io.sourcesync.android.render;
+
+import android.os.Build;
+import java.util.Arrays;
+
+/**
+ * Process-wide render timing metrics. The cue-to-visible skew is the signed difference
+ * between the frame an activation became visible in and the media time it was cued for;
+ * negative values mean early. Summaries carry the device model so they can be compared
+ * per device when reported.
+ */
+public class ActivationMetrics {
+    private static final int WINDOW = 128;
+    private static ActivationMetrics instance;
+
+    public interface Listener {
+        void onCueSkew(String cueId, long skewMs);
+    }
+
+    /**
+     * Snapshot of one metric over the most recent samples.
+     */
+    public static class Summary {
+        public final String deviceModel;
+        public final long count;
+        public final long minMs;
+        public final long maxMs;
+        public final long meanMs;
+        public final long p50Ms;
+        public final long p95Ms;
+
+        Summary(String deviceModel, long count, long min, long max, long mean, long p50, long p95) {
+            this.deviceModel = deviceModel;
+            this.count = count;
+            this.minMs = min;
+            this.maxMs = max;
+            this.meanMs = mean;
+            this.p50Ms = p50;
+            this.p95Ms = p95;
+        }
+
+        @Override
+        public String toString() {
+            return deviceModel + " n=" + count + " mean=" + meanMs + "ms p50=" + p50Ms
+                + "ms p95=" + p95Ms + "ms min=" + minMs + "ms max=" + maxMs + "ms";
+        }
+    }
+
+    private static class Window {
+        final long[] samples = new long[WINDOW];
+        long count;
+
+        void add(long value) {
+            samples[(int) (count++ % WINDOW)] = value;
+        }
+
+        Summary summarize(String deviceModel) {
+            int size = (int) Math.min(count, WINDOW);
+            if (size == 0) return new Summary(deviceModel, 0, 0, 0, 0, 0, 0);
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            long sum = 0;
+            for (long value : sorted) sum += value;
+            return new Summary(deviceModel, count, sorted[0], sorted[size - 1], sum / size,
+                sorted[size / 2], sorted[Math.min(size - 1, (int) Math.ceil(size * 0.95) - 1)]);
+        }
+    }
+
+    private final String deviceModel = Build.MANUFACTURER + " " + Build.MODEL;
+    private final Window renderLatency = new Window();
+    private final Window cueSkew = new Window();
+    private volatile Listener listener;
+
+    public static synchronized ActivationMetrics getInstance() {
+        if (instance == null) {
+            instance = new ActivationMetrics();
+        }
+        return instance;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized void recordRenderLatency(long latencyMs) {
+        renderLatency.add(latencyMs);
+    }
+
+    public void recordCueSkew(String cueId, long skewMs) {
+        synchronized (this) {
+            cueSkew.add(skewMs);
+        }
+        Listener current = listener;
+        if (current != null) {
+            current.onCueSkew(cueId, skewMs);
+        }
+    }
+
+    public synchronized Summary getRenderLatency() {
+        return renderLatency.summarize(deviceModel);
+    }
+
+    public synchronized Summary getCueSkew() {
+        return cueSkew.summarize(deviceModel);
+    }
+}
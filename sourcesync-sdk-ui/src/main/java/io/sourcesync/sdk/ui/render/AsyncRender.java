@@ -0,0 +1,86 @@
+package io.sourcesync.android.render;
+
+import io.sourcesync.android.executor.TaskExecutor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Plumbing for rendering in two steps: preparing on a background thread, then mounting
+ * on the main thread. Cancelling the handle returned by {@link #mount} skips whichever
+ * step has not started yet.
+ */
+public class AsyncRender {
+    /**
+     * Work that may throw, such as parsing JSON.
+     */
+    public interface Task<T> {
+        T call() throws Exception;
+    }
+
+    private AsyncRender() {}
+
+    /**
+     * Run {@code task} on {@code executor}. Exceptions complete the future exceptionally,
+     * as does the task being dropped by a full {@link TaskExecutor}, and a future cancelled
+     * before the task starts never runs it.
+     */
+    public static <T> CompletableFuture<T> supply(Task<T> task, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(new TaskExecutor.Droppable() {
+            @Override
+            public void run() {
+                if (future.isDone()) return;
+                try {
+                    future.complete(task.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onDropped() {
+                // An overloaded SDK executor must not leave the caller waiting forever
+                future.completeExceptionally(new RejectedExecutionException("Dropped by " + executor));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Pass the result of {@code prepared} to {@code mount} on {@code main}. The returned
+     * handle completes once mounted, or exceptionally if preparing or mounting failed.
+     * Cancelling it also cancels {@code prepared}.
+     */
+    public static <T> CompletableFuture<Void> mount(CompletableFuture<T> prepared, Executor main,
+                                                    Consumer<T> mount) {
+        CompletableFuture<Void> handle = new CompletableFuture<>();
+        prepared.whenComplete((value, error) -> main.execute(() -> {
+            if (handle.isDone()) return;
+            if (error != null) {
+                handle.completeExceptionally(unwrap(error));
+                return;
+            }
+            try {
+                mount.accept(value);
+                handle.complete(null);
+            } catch (RuntimeException e) {
+                handle.completeExceptionally(e);
+            }
+        }));
+        handle.whenComplete((value, error) -> {
+            if (error instanceof CancellationException) {
+                prepared.cancel(false);
+            }
+        });
+        return handle;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -0,0 +1,63 @@
+package io.sourcesync.android.render;
+
+import android.view.Choreographer;
+
+/**
+ * Runs an action in the Choreographer frame whose vsync is closest to a target time, so
+ * that a prepared view becomes visible on the frame its cue asks for rather than
+ * whenever the next position update happens to arrive. Must be created on the main thread.
+ */
+public class FrameAlignedReveal implements Choreographer.FrameCallback {
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    public interface Action {
+        /**
+         * @param frameTimeNanos vsync time of the frame the action runs in
+         */
+        void run(long frameTimeNanos);
+    }
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final long targetNanos;
+    private final Action action;
+    private boolean cancelled;
+
+    private FrameAlignedReveal(long targetNanos, Action action) {
+        this.targetNanos = targetNanos;
+        this.action = action;
+    }
+
+    /**
+     * @param targetNanos {@link System#nanoTime()} based time the action should become visible
+     */
+    public static FrameAlignedReveal schedule(long targetNanos, Action action) {
+        FrameAlignedReveal reveal = new FrameAlignedReveal(targetNanos, action);
+        reveal.postNext(System.nanoTime());
+        return reveal;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        choreographer.removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (cancelled) return;
+        if (frameTimeNanos + FRAME_NANOS / 2 >= targetNanos) {
+            action.run(frameTimeNanos);
+        } else {
+            postNext(frameTimeNanos);
+        }
+    }
+
+    private void postNext(long nowNanos) {
+        long remaining = targetNanos - nowNanos;
+        // Sleep through long waits instead of waking every frame
+        if (remaining > 2 * FRAME_NANOS) {
+            choreographer.postFrameCallbackDelayed(this, (remaining - FRAME_NANOS) / 1_000_000L);
+        } else {
+            choreographer.postFrameCallback(this);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.sourcesync.android.render;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Running estimate of how long it takes this device to get a freshly built activation
+ * view to its first draw. Uses the same smoothed mean plus deviation scheme as TCP
+ * round-trip estimation, so a few slow renders raise the estimate quickly while the
+ * occasional outlier does not dominate it.
+ */
+public class RenderLatencyEstimator {
+    private static final long INITIAL_ESTIMATE_MS = 120L;
+    private static final float GAIN = 0.125f;
+    private static final float DEVIATION_GAIN = 0.25f;
+
+    private static RenderLatencyEstimator instance;
+
+    private float smoothedMs = INITIAL_ESTIMATE_MS;
+    private float deviationMs = INITIAL_ESTIMATE_MS / 2f;
+    private int samples;
+
+    public static synchronized RenderLatencyEstimator getInstance() {
+        if (instance == null) {
+            instance = new RenderLatencyEstimator();
+        }
+        return instance;
+    }
+
+    public synchronized void record(long latencyMs) {
+        if (samples == 0) {
+            smoothedMs = latencyMs;
+            deviationMs = latencyMs / 2f;
+        } else {
+            float error = latencyMs - smoothedMs;
+            smoothedMs += GAIN * error;
+            deviationMs += DEVIATION_GAIN * (Math.abs(error) - deviationMs);
+        }
+        samples++;
+        ActivationMetrics.getInstance().recordRenderLatency(latencyMs);
+    }
+
+    /**
+     * Conservative render time to plan around: the smoothed mean plus two deviations.
+     */
+    public synchronized long getEstimateMs() {
+        return Math.round(smoothedMs + 2f * deviationMs);
+    }
+
+    public synchronized int getSampleCount() {
+        return samples;
+    }
+
+    /**
+     * Record the time from {@code startNanos} (a {@link System#nanoTime()} value taken
+     * before the view was built) until the view's tree is about to draw for the first time.
+     */
+    public void measureUntilFirstDraw(View view, long startNanos) {
+        ViewTreeObserver observer = view.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                ViewTreeObserver current = view.getViewTreeObserver();
+                if (current.isAlive()) {
+                    current.removeOnPreDrawListener(this);
+                }
+                record((System.nanoTime() - startNanos) / 1_000_000L);
+                return true;
+            }
+        });
+    }
+}
@@ -0,0 +1,170 @@
+package io.sourcesync.android.render;
+
+import android.graphics.Color;
+import android.os.Looper;
+
+import io.sourcesync.android.executor.SdkExecutors;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.segment.TemplateGuard;
+import io.sourcesync.android.segment.TemplateLimits;
+import io.sourcesync.android.segment.TemplateOptimizer;
+import io.sourcesync.android.template.BinaryTemplate;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Everything about a preview or detail that can be worked out without views: the template
+ * held to {@link TemplateLimits} and optimized, and the preview's background. Plans can be
+ * made on any thread, so the main thread only has to build views from them.
+ */
+public class RenderPlan {
+    private static final String TAG = "SourceSync.plan";
+
+    /** The template to build, already guarded and optimized. */
+    public final JSONArray template;
+    /** Why the template was cut or replaced, or null if the preview had none. */
+    public final TemplateGuard.Report guardReport;
+    public final TemplateOptimizer.Stats optimizerStats;
+    /** Preview background as an ARGB color; unused by details. */
+    public final int backgroundColor;
+    private final long mainThreadNanos;
+
+    private RenderPlan(JSONArray template, TemplateGuard.Report guardReport,
+                       TemplateOptimizer.Stats optimizerStats, int backgroundColor, long startNanos) {
+        this.template = template;
+        this.guardReport = guardReport;
+        this.optimizerStats = optimizerStats;
+        this.backgroundColor = backgroundColor;
+        this.mainThreadNanos = Looper.getMainLooper().isCurrentThread() ? System.nanoTime() - startNanos : 0L;
+    }
+
+    /**
+     * Time spent planning on the main thread, which counts towards the first render slice.
+     */
+    public long getMainThreadNanos() {
+        return mainThreadNanos;
+    }
+
+    /**
+     * Plan a preview. A preview whose template is over the limits falls back to its title
+     * and subtitle when it has them.
+     */
+    public static RenderPlan forPreview(JSONObject previewData) throws JSONException {
+        long startNanos = System.nanoTime();
+        TemplateLimits limits = TemplateLimits.getDefault();
+
+        float opacity = (float) previewData.optDouble("backgroundOpacity", 0.66);
+        int color = Color.parseColor(previewData.optString("backgroundColor", "#000000"));
+        int backgroundColor = Color.argb(
+            (int)(opacity * 255),
+            Color.red(color),
+            Color.green(color),
+            Color.blue(color)
+        );
+
+        TemplateGuard.Report guardReport = null;
+        JSONArray template = null;
+        if (previewData.has("template")) {
+            TemplateGuard.Result guarded = TemplateGuard.apply(previewData.getJSONArray("template"), limits);
+            guardReport = guarded.report;
+            template = guarded.template;
+            if (!guardReport.isWithinLimits()) {
+                boolean titled = previewData.has("title") || previewData.has("subtitle");
+                SdkLog.w(TAG, titled ? "Preview template {}; showing title and subtitle instead"
+                    : "Preview template {}; showing what fits", guardReport);
+                if (titled) template = null;
+            }
+        }
+        if (template == null) {
+            // Use default template if none provided
+            template = TemplateGuard.apply(createDefaultTemplate(previewData), limits).template;
+        }
+
+        TemplateOptimizer optimizer = new TemplateOptimizer();
+        JSONArray optimized = optimizer.optimize(template);
+        return new RenderPlan(optimized, guardReport, optimizer.getLastStats(), backgroundColor, startNanos);
+    }
+
+    /**
+     * Plan a detail, or an update to one, from its template.
+     */
+    public static RenderPlan forDetail(JSONArray template) throws JSONException {
+        long startNanos = System.nanoTime();
+        TemplateGuard.Result guarded = TemplateGuard.apply(template, TemplateLimits.getDefault());
+        if (!guarded.report.isWithinLimits()) {
+            SdkLog.w(TAG, "Detail template {}; showing what fits", guarded.report);
+        }
+        TemplateOptimizer optimizer = new TemplateOptimizer();
+        JSONArray optimized = optimizer.optimize(guarded.template);
+        return new RenderPlan(optimized, guarded.report, optimizer.getLastStats(), 0, startNanos);
+    }
+
+    /**
+     * Parse and plan preview JSON on the SDK's background executor. Invalid JSON completes
+     * the future exceptionally.
+     */
+    public static CompletableFuture<RenderPlan> forPreviewAsync(String previewJson) {
+        return AsyncRender.supply(() -> forPreview(new JSONObject(previewJson)),
+            SdkExecutors.getInstance().cpu());
+    }
+
+    /**
+     * Parse detail JSON, an object with a {@code "template"} array, and plan it on the
+     * SDK's background executor. Invalid JSON completes the future exceptionally.
+     */
+    public static CompletableFuture<RenderPlan> forDetailAsync(String detailJson) {
+        return AsyncRender.supply(() -> forDetail(new JSONObject(detailJson).getJSONArray("template")),
+            SdkExecutors.getInstance().cpu());
+    }
+
+    /**
+     * Convert a binary preview to JSON and plan it on the SDK's background executor, so
+     * neither step runs on the main thread.
+     */
+    public static CompletableFuture<RenderPlan> forPreviewAsync(BinaryTemplate.Value previewData) {
+        return AsyncRender.supply(() -> forPreview(previewData.toJsonObject()),
+            SdkExecutors.getInstance().cpu());
+    }
+
+    /**
+     * Convert a binary detail, an object with a {@code "template"} array, to JSON and plan
+     * it on the SDK's background executor.
+     */
+    public static CompletableFuture<RenderPlan> forDetailAsync(BinaryTemplate.Value detailData) {
+        return AsyncRender.supply(() -> forDetail(detailData.get("template").toJsonArray()),
+            SdkExecutors.getInstance().cpu());
+    }
+
+    private static JSONArray createDefaultTemplate(JSONObject previewData) throws JSONException {
+        JSONArray template = new JSONArray();
+
+        // Add title if present
+        if (previewData.has("title")) {
+            template.put(new JSONObject()
+                .put("type", "text")
+                .put("content", previewData.getString("title"))
+                .put("attributes", new JSONObject()
+                    .put("size", "lg")
+                    .put("color", "#FFFFFF")
+                    .put("weight", "bold")
+                    .put("alignment", "left")));
+        }
+
+        // Add subtitle if present
+        if (previewData.has("subtitle")) {
+            template.put(new JSONObject()
+                .put("type", "text")
+                .put("content", previewData.getString("subtitle"))
+                .put("attributes", new JSONObject()
+                    .put("size", "md")
+                    .put("color", "#CCCCCC")
+                    .put("style", "italic")
+                    .put("alignment", "left")));
+        }
+
+        return template;
+    }
+}
@@ -0,0 +1,366 @@
+package io.sourcesync.android.render;
+
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.view.Display;
+import android.view.View;
+
+import io.sourcesync.android.executor.SdkExecutors;
+import io.sourcesync.android.log.SdkLog;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps template rendering on the main thread within a time budget per slice.
+ *
+ * Previews and details build their top-level segments through a {@link Session}. Once a
+ * slice has used up the budget, the remaining segments are built in later slices posted to
+ * the host view, so a heavy activation appears over a few frames instead of blocking input
+ * and playback. A session that overran the budget is reported to the {@link Listener} with
+ * a fingerprint of its template and the slowest segments, and so is one that stopped
+ * because a segment failed to build.
+ *
+ * The budget defaults to two frames of the default display, so 33 ms at 60 Hz. A single
+ * top-level segment is never split, so a slice can still overrun by the cost of one
+ * segment; {@link io.sourcesync.android.segment.TemplateLimits} bounds that cost.
+ */
+public class RenderWatchdog {
+    private static final String TAG = "SourceSync.watchdog";
+    private static final int BUDGET_FRAMES = 2;
+    private static final int REPORTED_SEGMENTS = 5;
+
+    private static RenderWatchdog instance;
+
+    public interface Listener {
+        /**
+         * Called on a background thread once an over-budget render has finished.
+         */
+        void onBudgetExceeded(Report report);
+
+        /**
+         * Called on a background thread when a segment failed to build and the segments
+         * after it were left unbuilt.
+         */
+        default void onRenderFailed(Report report, JSONException error) {}
+    }
+
+    /**
+     * Building one top-level segment, by its index in the template.
+     */
+    public interface Step {
+        void build(int index) throws JSONException;
+    }
+
+    /**
+     * Main-thread cost of one top-level segment.
+     */
+    public static class SegmentCost {
+        public final int index;
+        public final String type;
+        public final int nodes;
+        public final long micros;
+
+        SegmentCost(int index, String type, int nodes, long micros) {
+            this.index = index;
+            this.type = type;
+            this.nodes = nodes;
+            this.micros = micros;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + index + " " + type + " nodes=" + nodes + " " + micros + "us";
+        }
+    }
+
+    /**
+     * A render that went over its budget.
+     */
+    public static class Report {
+        public final String surface;
+        public final String fingerprint;
+        public final long budgetMs;
+        /** Main-thread time of the longest slice. */
+        public final long longestSliceMs;
+        /** Main-thread time of all slices together. */
+        public final long totalMs;
+        public final int slices;
+        public final int segments;
+        /** The most expensive segments, slowest first. */
+        public final List<SegmentCost> slowest;
+        /** Index of the segment that failed to build, or -1. */
+        public final int failedSegment;
+
+        Report(String surface, String fingerprint, long budgetMs, long longestSliceMs, long totalMs,
+               int slices, int segments, List<SegmentCost> slowest, int failedSegment) {
+            this.surface = surface;
+            this.fingerprint = fingerprint;
+            this.budgetMs = budgetMs;
+            this.longestSliceMs = longestSliceMs;
+            this.totalMs = totalMs;
+            this.slices = slices;
+            this.segments = segments;
+            this.slowest = slowest;
+            this.failedSegment = failedSegment;
+        }
+
+        @Override
+        public String toString() {
+            return surface + " " + fingerprint + " longest slice " + longestSliceMs + "ms of "
+                + budgetMs + "ms budget, " + totalMs + "ms over " + slices + " slices, "
+                + segments + " segments, slowest " + slowest
+                + (failedSegment >= 0 ? ", failed at #" + failedSegment : "");
+        }
+    }
+
+    /**
+     * One template being rendered. Sessions are confined to the main thread.
+     */
+    public class Session {
+        private final String surface;
+        private final long budgetNanos = RenderWatchdog.this.budgetNanos;
+        private long sliceStart;
+        private long longestSlice;
+        private long total;
+        private int slices;
+        private long[] costs = new long[0];
+        private JSONArray template;
+        private boolean cancelled;
+        private boolean finished;
+        private boolean failed;
+
+        Session(String surface, long spentNanos) {
+            this.surface = surface;
+            this.sliceStart = clock.getAsLong() - spentNanos;
+        }
+
+        /**
+         * Build the segments of {@code template} with {@code step}, continuing on {@code host}
+         * in later slices if the budget runs out. Time since {@link #begin} counts towards
+         * the first slice.
+         */
+        public void run(View host, JSONArray template, Step step) throws JSONException {
+            this.template = template;
+            run(template.length(), step, host::post);
+        }
+
+        /**
+         * Stop building, for when the template is replaced or the view released.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Whether building has stopped, with every segment built or after one failed.
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        void run(int count, Step step, Executor continuation) throws JSONException {
+            costs = new long[count];
+            slice(0, count, step, continuation);
+        }
+
+        private void slice(int from, int count, Step step, Executor continuation) throws JSONException {
+            int index = from;
+            long now = clock.getAsLong();
+            // Always make progress, even when the first slice arrives over budget
+            while (index < count && (index == from || now - sliceStart < budgetNanos)) {
+                try {
+                    step.build(index);
+                } catch (JSONException e) {
+                    endSlice(clock.getAsLong());
+                    finished = true;
+                    failed = true;
+                    report(index, e);
+                    throw e;
+                }
+                long after = clock.getAsLong();
+                costs[index++] = after - now;
+                now = after;
+            }
+            endSlice(now);
+
+            if (index < count) {
+                int next = index;
+                continuation.execute(() -> {
+                    if (cancelled) return;
+                    sliceStart = clock.getAsLong();
+                    try {
+                        slice(next, count, step, continuation);
+                    } catch (JSONException e) {
+                        // Already logged and reported as a failed render
+                    }
+                });
+                return;
+            }
+            finished = true;
+            if (longestSlice > budgetNanos) {
+                report(-1, null);
+            }
+        }
+
+        private void endSlice(long now) {
+            long elapsed = now - sliceStart;
+            longestSlice = Math.max(longestSlice, elapsed);
+            total += elapsed;
+            slices++;
+        }
+
+        /**
+         * Report an overrun, or a failure at {@code failedSegment} if {@code error} is set.
+         */
+        private void report(int failedSegment, JSONException error) {
+            long[] costs = this.costs;
+            JSONArray template = this.template;
+            long budgetMs = budgetNanos / 1_000_000L;
+            long longestMs = longestSlice / 1_000_000L;
+            long totalMs = total / 1_000_000L;
+            int slices = this.slices;
+            // Fingerprinting serializes the template, so it is kept off the main thread
+            reporter.execute(() -> {
+                Report report = new Report(surface, fingerprint(template), budgetMs, longestMs,
+                    totalMs, slices, costs.length, slowest(template, costs), failedSegment);
+                Listener current = listener;
+                if (error != null) {
+                    SdkLog.w(TAG, "Render failed: {}", report, error);
+                    if (current != null) {
+                        current.onRenderFailed(report, error);
+                    }
+                    return;
+                }
+                SdkLog.w(TAG, "Render over budget: {}", report);
+                if (current != null) {
+                    current.onBudgetExceeded(report);
+                }
+            });
+        }
+    }
+
+    private final LongSupplier clock;
+    private final Executor reporter;
+    private volatile long budgetNanos = budgetForRefreshRate(60f) * 1_000_000L;
+    private volatile Listener listener;
+    private boolean attached;
+
+    public static synchronized RenderWatchdog getInstance() {
+        if (instance == null) {
+            instance = new RenderWatchdog(System::nanoTime, SdkExecutors.getInstance().cpu());
+        }
+        return instance;
+    }
+
+    RenderWatchdog(LongSupplier clock, Executor reporter) {
+        this.clock = clock;
+        this.reporter = reporter;
+    }
+
+    /**
+     * Size the budget to the refresh rate of the device's default display, once.
+     */
+    public synchronized void attach(Context context) {
+        if (attached || context == null) return;
+        attached = true;
+        DisplayManager displays = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        Display display = displays != null ? displays.getDisplay(Display.DEFAULT_DISPLAY) : null;
+        if (display != null) {
+            setBudgetMs(budgetForRefreshRate(display.getRefreshRate()));
+        }
+    }
+
+    public void setBudgetMs(long budgetMs) {
+        this.budgetNanos = Math.max(1L, budgetMs) * 1_000_000L;
+    }
+
+    public long getBudgetMs() {
+        return budgetNanos / 1_000_000L;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Start timing a render of {@code surface}, such as "preview" or "detail".
+     */
+    public Session begin(String surface) {
+        return new Session(surface, 0L);
+    }
+
+    /**
+     * Start timing a render whose first slice has already used {@code spentNanos} of the
+     * main thread, such as for planning it.
+     */
+    public Session begin(String surface, long spentNanos) {
+        return new Session(surface, spentNanos);
+    }
+
+    static long budgetForRefreshRate(float refreshRate) {
+        float hz = refreshRate >= 1f ? refreshRate : 60f;
+        return Math.max(1L, Math.round(BUDGET_FRAMES * 1000f / hz));
+    }
+
+    static List<SegmentCost> slowest(JSONArray template, long[] costs) {
+        List<Integer> order = new ArrayList<>(costs.length);
+        for (int i = 0; i < costs.length; i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingLong((Integer i) -> costs[i]).reversed());
+
+        List<SegmentCost> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(REPORTED_SEGMENTS, order.size()); i++) {
+            int index = order.get(i);
+            JSONObject segment = template != null ? template.optJSONObject(index) : null;
+            result.add(new SegmentCost(index,
+                segment != null ? segment.optString("type") : "",
+                segment != null ? countNodes(segment) : 0,
+                costs[index] / 1_000L));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static int countNodes(JSONObject segment) {
+        int count = 1;
+        JSONArray children = segment.optJSONArray("children");
+        for (int i = 0; children != null && i < children.length(); i++) {
+            JSONObject child = children.optJSONObject(i);
+            if (child != null) count += countNodes(child);
+        }
+        return count;
+    }
+
+    /**
+     * Short, stable identifier for a template, to group reports of the same campaign.
+     */
+    static String fingerprint(JSONArray template) {
+        if (template == null) return "unknown";
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(template.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.sourcesync.android.resource;
+
+/**
+ * Something the SDK holds in memory that can be given back under memory pressure, such as
+ * a cache, a pool or views built ahead of time. Register it with {@link ResourceManager}.
+ */
+public interface ManagedResource {
+    /**
+     * Name shown in {@link ResourceManager#getUsage()}.
+     */
+    String getResourceName();
+
+    /**
+     * Approximate heap bytes currently held, or 0 if the resource cannot tell.
+     */
+    long getResourceBytes();
+
+    /**
+     * Number of items currently held (bitmaps, views, entries).
+     */
+    int getResourceCount();
+
+    /**
+     * Release memory for the given {@code ResourceManager.TIER_*}. Higher tiers include
+     * everything released by the lower ones. Called on the main thread.
+     */
+    void trimResources(int tier);
+}
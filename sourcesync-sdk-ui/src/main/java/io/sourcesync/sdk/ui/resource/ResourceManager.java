@@ -0,0 +1,180 @@
+package io.sourcesync.android.resource;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import io.sourcesync.android.log.SdkLog;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Tracks the memory held by the SDK's caches, pools and prebuilt views and releases it
+ * in tiers when the system asks the app to trim memory. On low-memory TV devices the
+ * video player and the overlay share one heap, so the SDK gives back what it can rebuild
+ * before the player is put under pressure.
+ *
+ * <ul>
+ *   <li>{@link #TIER_SPECULATIVE}: work done ahead of time, such as prepared previews.</li>
+ *   <li>{@link #TIER_CACHES}: caches are shrunk to half.</li>
+ *   <li>{@link #TIER_ALL}: everything that can be rebuilt, including hidden view trees.</li>
+ * </ul>
+ *
+ * {@link io.sourcesync.android.Activation} attaches the manager to the application the
+ * first time it is created. Resources are held weakly, so registering does not keep them
+ * alive.
+ */
+public class ResourceManager implements ComponentCallbacks2 {
+    private static final String TAG = "SourceSync.resources";
+
+    public static final int TIER_NONE = 0;
+    public static final int TIER_SPECULATIVE = 1;
+    public static final int TIER_CACHES = 2;
+    public static final int TIER_ALL = 3;
+
+    private static ResourceManager instance;
+
+    public static class Usage {
+        public final String name;
+        public final long bytes;
+        public final int count;
+
+        Usage(String name, long bytes, int count) {
+            this.name = name;
+            this.bytes = bytes;
+            this.count = count;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + bytes / 1024 + "KB (" + count + ")";
+        }
+    }
+
+    private final List<WeakReference<ManagedResource>> resources = new ArrayList<>();
+    private Context attachedTo;
+
+    public static synchronized ResourceManager getInstance() {
+        if (instance == null) {
+            instance = new ResourceManager();
+        }
+        return instance;
+    }
+
+    /**
+     * Start receiving trim callbacks for the application {@code context} belongs to.
+     * Repeated calls are ignored.
+     */
+    public synchronized void attach(Context context) {
+        if (attachedTo != null || context == null) return;
+        attachedTo = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        attachedTo.registerComponentCallbacks(this);
+    }
+
+    /**
+     * Stop receiving trim callbacks, for example when the host tears down its player.
+     */
+    public synchronized void detach() {
+        if (attachedTo == null) return;
+        attachedTo.unregisterComponentCallbacks(this);
+        attachedTo = null;
+    }
+
+    public synchronized void register(ManagedResource resource) {
+        for (WeakReference<ManagedResource> ref : resources) {
+            if (ref.get() == resource) return;
+        }
+        resources.add(new WeakReference<>(resource));
+    }
+
+    public synchronized void unregister(ManagedResource resource) {
+        Iterator<WeakReference<ManagedResource>> it = resources.iterator();
+        while (it.hasNext()) {
+            ManagedResource registered = it.next().get();
+            if (registered == null || registered == resource) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * The tier a {@link ComponentCallbacks2} trim level maps to.
+     */
+    public static int tierFor(int trimLevel) {
+        if (trimLevel >= TRIM_MEMORY_MODERATE) return TIER_ALL;
+        if (trimLevel >= TRIM_MEMORY_BACKGROUND) return TIER_CACHES;
+        if (trimLevel >= TRIM_MEMORY_UI_HIDDEN) return TIER_SPECULATIVE;
+        if (trimLevel >= TRIM_MEMORY_RUNNING_CRITICAL) return TIER_ALL;
+        if (trimLevel >= TRIM_MEMORY_RUNNING_LOW) return TIER_CACHES;
+        if (trimLevel >= TRIM_MEMORY_RUNNING_MODERATE) return TIER_SPECULATIVE;
+        return TIER_NONE;
+    }
+
+    /**
+     * Release memory at {@code tier} in every registered resource. Call on the main thread.
+     */
+    public void trim(int tier) {
+        if (tier <= TIER_NONE) return;
+        for (ManagedResource resource : snapshot()) {
+            try {
+                resource.trimResources(tier);
+            } catch (RuntimeException e) {
+                SdkLog.w(TAG, "Failed to trim {}", resource.getResourceName(), e);
+            }
+        }
+    }
+
+    public List<Usage> getUsage() {
+        List<ManagedResource> current = snapshot();
+        List<Usage> usage = new ArrayList<>(current.size());
+        for (ManagedResource resource : current) {
+            usage.add(new Usage(resource.getResourceName(), resource.getResourceBytes(),
+                resource.getResourceCount()));
+        }
+        return usage;
+    }
+
+    /**
+     * Approximate heap bytes held by the SDK across all registered resources.
+     */
+    public long getTotalBytes() {
+        long total = 0L;
+        for (ManagedResource resource : snapshot()) {
+            total += resource.getResourceBytes();
+        }
+        return total;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        int tier = tierFor(level);
+        if (tier != TIER_NONE) {
+            SdkLog.i(TAG, "Trim level {}, releasing tier {} from {} bytes", level, tier, getTotalBytes());
+        }
+        trim(tier);
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(TIER_ALL);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private synchronized List<ManagedResource> snapshot() {
+        List<ManagedResource> current = new ArrayList<>(resources.size());
+        Iterator<WeakReference<ManagedResource>> it = resources.iterator();
+        while (it.hasNext()) {
+            ManagedResource resource = it.next().get();
+            if (resource == null) {
+                it.remove();
+            } else {
+                current.add(resource);
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,16 @@
+package io.sourcesync.android.segment;
+
+import android.content.Context;
+import android.view.View;
+import org.json.JSONObject;
+import org.json.JSONException;
+
+/**
+ * A processor whose views hold child segments, one child view per child segment in order.
+ */
+public interface ContainerSegmentProcessor extends SegmentProcessor {
+    /**
+     * Apply the layout params this container gives a child view built from {@code childSegment}.
+     */
+    void layoutChild(Context context, View child, JSONObject childSegment) throws JSONException;
+}
@@ -2,7 +2,9 @@ package io.sourcesync.android.segment;
 
 import org.json.JSONObject;
 import org.json.JSONException;
-import android.util.Log;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
 
 public class SegmentAttributes {
     private static final String TAG = "SourceSync.SegmentAttrs";
@@ -20,6 +22,7 @@ public class SegmentAttributes {
     public String height;    // Stores percentage (e.g. "100%")
     public String alignment;
     public String contentMode;
+    public String placeholder; // Dominant color or BlurHash shown while an image loads
 
     public static SegmentAttributes fromJson(JSONObject json) throws JSONException {
         SegmentAttributes attrs = new SegmentAttributes();
@@ -34,6 +37,7 @@ public class SegmentAttributes {
         if (json.has("textColor")) attrs.textColor = json.getString("textColor");
         if (json.has("alignment")) attrs.alignment = json.getString("alignment");
         if (json.has("contentMode")) attrs.contentMode = json.getString("contentMode");
+        if (json.has("placeholder")) attrs.placeholder = json.getString("placeholder");
 
         // Handle size tokens
         if (json.has("size")) {
@@ -85,4 +89,21 @@ public class SegmentAttributes {
 
         return attrs;
     }
+
+    /**
+     * Whether two attribute objects set the same keys, so re-applying {@code b} over views
+     * styled from {@code a} leaves nothing from {@code a} behind. Either may be null.
+     */
+    public static boolean haveSameKeys(JSONObject a, JSONObject b) {
+        if (a == null || b == null) return a == b;
+        if (a.length() != b.length()) return false;
+        Set<String> keys = new HashSet<>();
+        for (Iterator<String> it = a.keys(); it.hasNext(); ) {
+            keys.add(it.next());
+        }
+        for (Iterator<String> it = b.keys(); it.hasNext(); ) {
+            if (!keys.contains(it.next())) return false;
+        }
+        return true;
+    }
 }
@@ -0,0 +1,294 @@
+package io.sourcesync.android.segment;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.segment.factory.SegmentProcessorFactory;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a view hierarchy in step with a segment template that changes over time.
+ *
+ * Children are matched between the old and new template by their optional {@code "key"},
+ * or otherwise by type and position among unkeyed siblings of that type. Matched segments
+ * whose content or attributes changed are updated in place through
+ * {@link UpdatableSegmentProcessor}; only segments that appear, disappear or cannot be
+ * updated in place have views created or removed. Unchanged images are never reloaded.
+ */
+public class SegmentReconciler {
+    private static final String TAG = "SourceSync.reconcile";
+
+    /**
+     * What the last {@link #reconcile} call did to the views.
+     */
+    public static class Stats {
+        public int unchanged;
+        public int updated;
+        public int inserted;
+        public int removed;
+        public int moved;
+
+        @Override
+        public String toString() {
+            return String.format("unchanged=%d updated=%d inserted=%d removed=%d moved=%d",
+                unchanged, updated, inserted, removed, moved);
+        }
+    }
+
+    private static class Node {
+        final String type;
+        JSONObject segment;
+        View view;
+        List<Node> children;
+
+        Node(String type, JSONObject segment, View view) {
+            this.type = type;
+            this.segment = segment;
+            this.view = view;
+        }
+    }
+
+    private final SegmentProcessorFactory processorFactory;
+    private final ViewGroup root;
+    private List<Node> nodes = new ArrayList<>();
+    private Stats stats = new Stats();
+
+    public SegmentReconciler(SegmentProcessorFactory processorFactory, ViewGroup root) {
+        this.processorFactory = processorFactory;
+        this.root = root;
+    }
+
+    public Stats getLastStats() {
+        return stats;
+    }
+
+    /**
+     * Bring the root's children in line with {@code template}. The first call builds
+     * everything; later calls touch only what changed.
+     */
+    public Stats reconcile(JSONArray template) throws JSONException {
+        stats = new Stats();
+        nodes = reconcileChildren(root, null, nodes, template);
+        return stats;
+    }
+
+    /**
+     * Build one more top-level segment after those already on screen, for a first build
+     * spread over several frames. Later {@link #reconcile} calls treat it like any other.
+     */
+    public void append(JSONObject segment) throws JSONException {
+        Node node = build(root.getContext(), null, segment.getString("type"), segment);
+        if (node == null) return;
+        root.addView(node.view, nodes.size());
+        nodes.add(node);
+        stats.inserted++;
+    }
+
+    /**
+     * Whether no segment has been built yet.
+     */
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    private List<Node> reconcileChildren(ViewGroup parent, ContainerSegmentProcessor container,
+                                         List<Node> previous, JSONArray segments) throws JSONException {
+        Context context = parent.getContext();
+        int count = segments != null ? segments.length() : 0;
+        List<String> types = new ArrayList<>(count);
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            JSONObject segment = segments.getJSONObject(i);
+            types.add(segment.getString("type"));
+            keys.add(keyOf(segment));
+        }
+        int[] matches = match(identities(previous), identities(types, keys));
+
+        boolean[] kept = new boolean[previous.size()];
+        for (int match : matches) {
+            if (match >= 0) kept[match] = true;
+        }
+        for (int i = 0; i < previous.size(); i++) {
+            if (!kept[i]) {
+                parent.removeView(previous.get(i).view);
+                stats.removed++;
+            }
+        }
+
+        List<Node> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            JSONObject segment = segments.getJSONObject(i);
+            int position = result.size();
+            Node node;
+            if (matches[i] >= 0) {
+                node = update(parent, container, previous.get(matches[i]), segment);
+                if (node == null) continue;
+                if (parent.getChildAt(position) != node.view) {
+                    parent.removeView(node.view);
+                    parent.addView(node.view, position);
+                    stats.moved++;
+                }
+            } else {
+                node = build(context, container, types.get(i), segment);
+                if (node == null) continue;
+                parent.addView(node.view, position);
+                stats.inserted++;
+            }
+            result.add(node);
+        }
+        return result;
+    }
+
+    /**
+     * Bring a matched node in line with {@code segment}, returning the node now in its
+     * place, or null if the segment rebuilt to no view.
+     */
+    private Node update(ViewGroup parent, ContainerSegmentProcessor container, Node node,
+                        JSONObject segment) throws JSONException {
+        Context context = parent.getContext();
+        if (sameOwnData(node.segment, segment)) {
+            stats.unchanged++;
+        } else {
+            SegmentProcessor processor = processorFactory.getProcessor(node.type);
+            boolean inPlace = processor instanceof UpdatableSegmentProcessor
+                && ((UpdatableSegmentProcessor) processor).updateSegment(context, node.view, node.segment, segment);
+            if (!inPlace) {
+                // Replace the whole subtree at the same index
+                Node rebuilt = build(context, container, node.type, segment);
+                int index = parent.indexOfChild(node.view);
+                parent.removeView(node.view);
+                stats.removed++;
+                if (rebuilt != null) {
+                    parent.addView(rebuilt.view, index);
+                    stats.inserted++;
+                }
+                return rebuilt;
+            }
+            if (container != null) {
+                container.layoutChild(context, node.view, segment);
+            }
+            stats.updated++;
+        }
+
+        node.segment = segment;
+        if (node.children != null) {
+            ContainerSegmentProcessor childContainer = containerFor(node.type);
+            node.children = reconcileChildren((ViewGroup) node.view, childContainer, node.children,
+                segment.optJSONArray("children"));
+        }
+        return node;
+    }
+
+    /**
+     * Build the views for {@code segment}. A container's own view is built without its
+     * children, which are then built here one by one, so each child node holds the view
+     * made for it even when a child before it produced no view.
+     */
+    private Node build(Context context, ContainerSegmentProcessor container, String type,
+                       JSONObject segment) throws JSONException {
+        SegmentProcessor processor = processorFactory.getProcessor(type);
+        if (processor == null) {
+            SdkLog.w(TAG, "No processor found for segment type: {}", type);
+            return null;
+        }
+        boolean isContainer = processor instanceof ContainerSegmentProcessor;
+        View view = processor.processSegment(context, isContainer ? withoutChildren(segment) : segment);
+        if (view == null) return null;
+        if (container != null) {
+            container.layoutChild(context, view, segment);
+        }
+        Node node = new Node(type, segment, view);
+        if (isContainer) {
+            node.children = new ArrayList<>();
+            ViewGroup group = (ViewGroup) view;
+            JSONArray children = segment.optJSONArray("children");
+            for (int i = 0; children != null && i < children.length(); i++) {
+                JSONObject child = children.getJSONObject(i);
+                Node childNode = build(context, (ContainerSegmentProcessor) processor,
+                    child.getString("type"), child);
+                if (childNode == null) continue;
+                group.addView(childNode.view);
+                node.children.add(childNode);
+            }
+        }
+        return node;
+    }
+
+    private static JSONObject withoutChildren(JSONObject segment) throws JSONException {
+        JSONObject copy = new JSONObject();
+        Iterator<String> names = segment.keys();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (!"children".equals(name)) copy.put(name, segment.get(name));
+        }
+        return copy;
+    }
+
+    private ContainerSegmentProcessor containerFor(String type) {
+        SegmentProcessor processor = processorFactory.getProcessor(type);
+        return processor instanceof ContainerSegmentProcessor ? (ContainerSegmentProcessor) processor : null;
+    }
+
+    /**
+     * Whether two segments render the same, ignoring their children.
+     */
+    private static boolean sameOwnData(JSONObject a, JSONObject b) {
+        return a.optString("content").equals(b.optString("content"))
+            && String.valueOf(a.optJSONObject("attributes")).equals(String.valueOf(b.optJSONObject("attributes")))
+            && String.valueOf(a.optJSONArray("spans")).equals(String.valueOf(b.optJSONArray("spans")));
+    }
+
+    private static String keyOf(JSONObject segment) {
+        return segment.has("key") ? segment.optString("key") : null;
+    }
+
+    private static List<String> identities(List<Node> nodes) {
+        List<String> types = new ArrayList<>(nodes.size());
+        List<String> keys = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            types.add(node.type);
+            keys.add(keyOf(node.segment));
+        }
+        return identities(types, keys);
+    }
+
+    /**
+     * Identity of each sibling: its key when it has one, otherwise its type and how many
+     * unkeyed siblings of that type precede it. Repeated identities get a counter appended.
+     */
+    static List<String> identities(List<String> types, List<String> keys) {
+        Map<String, Integer> seen = new HashMap<>();
+        List<String> result = new ArrayList<>(types.size());
+        for (int i = 0; i < types.size(); i++) {
+            String base = keys.get(i) != null ? "key:" + keys.get(i) : "type:" + types.get(i);
+            int occurrence = seen.merge(base, 1, Integer::sum) - 1;
+            // A key that is reused for a different type is a different segment
+            result.add(base + "#" + occurrence + (keys.get(i) != null ? ":" + types.get(i) : ""));
+        }
+        return result;
+    }
+
+    /**
+     * For each new identity, the index of the old sibling with the same identity, or -1.
+     */
+    static int[] match(List<String> previous, List<String> next) {
+        Map<String, Integer> index = new HashMap<>(previous.size() * 2);
+        for (int i = 0; i < previous.size(); i++) {
+            index.put(previous.get(i), i);
+        }
+        int[] matches = new int[next.size()];
+        for (int i = 0; i < next.size(); i++) {
+            Integer match = index.get(next.get(i));
+            matches[i] = match != null ? match : -1;
+        }
+        return matches;
+    }
+}
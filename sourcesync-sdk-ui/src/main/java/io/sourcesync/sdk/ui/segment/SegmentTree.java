@@ -0,0 +1,31 @@
+package io.sourcesync.android.segment;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.util.List;
+
+/**
+ * Read-only helpers for walking a segment template without building views.
+ */
+public class SegmentTree {
+    private SegmentTree() {}
+
+    /**
+     * Append the URL of every image segment in the template, depth first.
+     */
+    public static void collectImageUrls(JSONArray segments, List<String> out) {
+        if (segments == null) return;
+        for (int i = 0; i < segments.length(); i++) {
+            JSONObject segment = segments.optJSONObject(i);
+            if (segment == null) continue;
+
+            if ("image".equals(segment.optString("type"))) {
+                String url = segment.optString("content");
+                if (url != null && !url.isEmpty()) {
+                    out.add(url);
+                }
+            }
+            collectImageUrls(segment.optJSONArray("children"), out);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package io.sourcesync.android.segment;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Holds a template to {@link TemplateLimits} before any views are built.
+ *
+ * The template is walked depth first in document order, counting each segment against the
+ * limits as it is reached, and never looking past the depth or segment limit. A template
+ * within every limit is returned as-is. Otherwise the result keeps what fit: segments past
+ * the depth or count limit are dropped with their children, images past the image limits
+ * are dropped and text is cut where the text budget runs out. The {@link Report} says
+ * which limits were hit, so callers can log it or fall back to a simpler template.
+ */
+public class TemplateGuard {
+    /**
+     * Outcome of checking one template.
+     */
+    public static class Report {
+        public final List<String> violations;
+        public final int segments;
+        public final int depth;
+        public final int textLength;
+        public final int images;
+        public final long imageBytes;
+
+        Report(Budget budget) {
+            this.violations = Collections.unmodifiableList(new ArrayList<>(budget.violations));
+            this.segments = budget.segments;
+            this.depth = budget.deepest;
+            this.textLength = budget.textLength;
+            this.images = budget.images;
+            this.imageBytes = budget.imageBytes;
+        }
+
+        public boolean isWithinLimits() {
+            return violations.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return (isWithinLimits() ? "within limits" : "exceeded " + violations)
+                + ": segments=" + segments + " depth=" + depth + " text=" + textLength
+                + " images=" + images + " imageBytes=" + imageBytes;
+        }
+    }
+
+    /**
+     * The template to render, and what was cut from it.
+     */
+    public static class Result {
+        public final JSONArray template;
+        public final Report report;
+
+        Result(JSONArray template, Report report) {
+            this.template = template;
+            this.report = report;
+        }
+    }
+
+    /**
+     * Running totals for one walk. Each method counts a segment property against its limit
+     * and says how much of it may be kept.
+     */
+    static class Budget {
+        final TemplateLimits limits;
+        final List<String> violations = new ArrayList<>();
+        int segments;
+        int deepest;
+        int textLength;
+        int images;
+        long imageBytes;
+        boolean exhausted;
+
+        Budget(TemplateLimits limits) {
+            this.limits = limits;
+        }
+
+        /**
+         * Whether a segment at {@code depth} (1 for top-level) may be kept. Once the segment
+         * limit is reached no further segment is.
+         */
+        boolean enter(int depth) {
+            if (exhausted) return false;
+            if (depth > limits.maxDepth) {
+                violate("maxDepth " + limits.maxDepth);
+                return false;
+            }
+            if (segments >= limits.maxSegments) {
+                violate("maxSegments " + limits.maxSegments);
+                exhausted = true;
+                return false;
+            }
+            segments++;
+            deepest = Math.max(deepest, depth);
+            return true;
+        }
+
+        /**
+         * How many of {@code length} characters of content fit in what is left of the text
+         * budget.
+         */
+        int text(int length) {
+            int allowed = Math.min(length, limits.maxTextLength - textLength);
+            if (allowed < length) {
+                violate("maxTextLength " + limits.maxTextLength);
+            }
+            textLength += allowed;
+            return allowed;
+        }
+
+        /**
+         * Whether an image of an estimated {@code bytes} may be kept.
+         */
+        boolean image(long bytes) {
+            if (images >= limits.maxImages) {
+                violate("maxImages " + limits.maxImages);
+                return false;
+            }
+            if (imageBytes + bytes > limits.maxImageBytes) {
+                violate("maxImageBytes " + limits.maxImageBytes);
+                return false;
+            }
+            images++;
+            imageBytes += bytes;
+            return true;
+        }
+
+        private void violate(String limit) {
+            if (!violations.contains(limit)) {
+                violations.add(limit);
+            }
+        }
+    }
+
+    private TemplateGuard() {}
+
+    public static Result apply(JSONArray template, TemplateLimits limits) throws JSONException {
+        Budget budget = new Budget(limits);
+        walk(template, 1, budget, false);
+        Report report = new Report(budget);
+        if (report.isWithinLimits()) {
+            return new Result(template, report);
+        }
+        // Only a template over its limits pays for a copy
+        return new Result(walk(template, 1, new Budget(limits), true), report);
+    }
+
+    private static JSONArray walk(JSONArray segments, int depth, Budget budget, boolean copy)
+            throws JSONException {
+        JSONArray kept = copy ? new JSONArray() : null;
+        for (int i = 0; i < segments.length(); i++) {
+            JSONObject segment = segments.optJSONObject(i);
+            if (segment == null) continue;
+            if (!budget.enter(depth)) {
+                if (budget.exhausted) break;
+                continue;
+            }
+            JSONObject checked = check(segment, depth, budget, copy);
+            if (checked != null && kept != null) {
+                kept.put(checked);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * The parts of {@code segment} that fit the budget, or null to drop it. Without
+     * {@code copy} the segment itself is returned and nothing is cut.
+     */
+    private static JSONObject check(JSONObject segment, int depth, Budget budget, boolean copy)
+            throws JSONException {
+        String type = segment.optString("type");
+        JSONObject result = copy ? shallowCopy(segment) : segment;
+
+        if ("image".equals(type)) {
+            JSONObject attributes = segment.optJSONObject("attributes");
+            JSONObject size = attributes != null ? attributes.optJSONObject("size") : null;
+            long bytes = budget.limits.estimateImageBytes(
+                size != null ? size.optString("width", null) : null,
+                size != null ? size.optString("height", null) : null);
+            if (!budget.image(bytes)) return null;
+        } else if (segment.has("spans")) {
+            // Spans are kept or dropped whole
+            int length = spansLength(segment.getJSONArray("spans"));
+            if (budget.text(length) < length) return null;
+        } else if (("text".equals(type) || "button".equals(type)) && segment.has("content")) {
+            String content = segment.optString("content");
+            int allowed = budget.text(content.length());
+            if (allowed == 0 && !content.isEmpty()) return null;
+            if (allowed < content.length() && copy) {
+                result.put("content", content.substring(0, allowed));
+            }
+        }
+
+        JSONArray children = segment.optJSONArray("children");
+        if (children != null) {
+            JSONArray kept = walk(children, depth + 1, budget, copy);
+            if (copy) {
+                result.put("children", kept);
+            }
+        }
+        return result;
+    }
+
+    private static int spansLength(JSONArray spans) throws JSONException {
+        int length = 0;
+        for (int i = 0; i < spans.length(); i++) {
+            length += spans.getJSONObject(i).optString("content").length();
+        }
+        return length;
+    }
+
+    private static JSONObject shallowCopy(JSONObject segment) throws JSONException {
+        JSONObject copy = new JSONObject();
+        for (Iterator<String> it = segment.keys(); it.hasNext(); ) {
+            String name = it.next();
+            copy.put(name, segment.get(name));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,79 @@
+package io.sourcesync.android.segment;
+
+/**
+ * Upper bounds on how expensive a template may be to render, checked by
+ * {@link TemplateGuard} before any views are built. With the defaults a template costs at
+ * most 400 views, 12 levels of nested layouts, 20,000 characters of text and 24 images
+ * holding an estimated 48 MB once decoded. Every setter returns the limits so they can be
+ * declared inline.
+ */
+public class TemplateLimits {
+    private static TemplateLimits defaultLimits = new TemplateLimits();
+
+    int maxDepth = 12;
+    int maxSegments = 400;
+    int maxTextLength = 20_000;
+    int maxImages = 24;
+    long maxImageBytes = 48L * 1024 * 1024;
+    int assumedImageWidth = 1280;
+    int assumedImageHeight = 720;
+
+    /**
+     * Limits applied by previews and details.
+     */
+    public static synchronized TemplateLimits getDefault() {
+        return defaultLimits;
+    }
+
+    public static synchronized void setDefault(TemplateLimits limits) {
+        defaultLimits = limits;
+    }
+
+    /** Nesting depth; 1 means a flat template. Deeper segments are dropped with their children. */
+    public TemplateLimits maxDepth(int depth) { this.maxDepth = Math.max(1, depth); return this; }
+
+    /** Total number of segments, containers included. Segments past it are dropped. */
+    public TemplateLimits maxSegments(int count) { this.maxSegments = Math.max(1, count); return this; }
+
+    /** Characters of text and button content in the whole template. Text past it is cut. */
+    public TemplateLimits maxTextLength(int length) { this.maxTextLength = Math.max(0, length); return this; }
+
+    /** Number of image segments. Images past it are dropped. */
+    public TemplateLimits maxImages(int count) { this.maxImages = Math.max(0, count); return this; }
+
+    /** Estimated decoded size of all images, see {@link #assumedImageSize}. */
+    public TemplateLimits maxImageBytes(long bytes) { this.maxImageBytes = Math.max(0L, bytes); return this; }
+
+    /**
+     * Decoded size assumed for an image that fills its container, since the real size is
+     * only known once it is downloaded. Images with a percentage size count that share.
+     */
+    public TemplateLimits assumedImageSize(int width, int height) {
+        this.assumedImageWidth = Math.max(1, width);
+        this.assumedImageHeight = Math.max(1, height);
+        return this;
+    }
+
+    public int getMaxDepth() { return maxDepth; }
+
+    public int getMaxSegments() { return maxSegments; }
+
+    public int getMaxTextLength() { return maxTextLength; }
+
+    public int getMaxImages() { return maxImages; }
+
+    public long getMaxImageBytes() { return maxImageBytes; }
+
+    /**
+     * Estimated ARGB_8888 size of an image with the given percentage size attributes,
+     * either of which may be null.
+     */
+    public long estimateImageBytes(String widthPercent, String heightPercent) {
+        return 4L * scale(assumedImageWidth, widthPercent) * scale(assumedImageHeight, heightPercent);
+    }
+
+    private static long scale(int dimension, String percent) {
+        if (!LayoutUtils.isValidPercentage(percent)) return dimension;
+        return Math.max(1L, Math.round(dimension * LayoutUtils.percentageToDecimal(percent)));
+    }
+}
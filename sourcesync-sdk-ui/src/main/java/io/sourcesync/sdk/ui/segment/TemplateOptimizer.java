@@ -0,0 +1,423 @@
+package io.sourcesync.android.segment;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites a segment template into one that renders the same with fewer views, between
+ * parsing and view building. Templates from the visual editor tend to carry redundant
+ * structure, and every row, column and text segment costs a view.
+ *
+ * By default only rewrites whose result lays out identically under the built-in
+ * processors are made:
+ * <ul>
+ *   <li>A row holding a single full-width text or row, inside a vertical parent, is
+ *       replaced by that child.</li>
+ *   <li>A column with a percentage width holding a single row, inside a row, becomes
+ *       that row with the column's width. Inside a row, a row's percentage width is a
+ *       layout weight, the same one the column had.</li>
+ *   <li>Rows and columns with no children in a vertical parent, and images without a URL,
+ *       are dropped.</li>
+ * </ul>
+ * With {@link #setMergeText}, runs of adjacent text segments in a vertical parent that
+ * share their paragraph attributes (alignment, font and so on) also become one text
+ * segment with a {@code "spans"} array, one span per original segment. That is not exact:
+ * font padding and line spacing apply once to the merged view instead of to each, so
+ * lines sit slightly closer together.
+ *
+ * Keyed segments are never merged, so live updates still find them. Segments of other
+ * types, including app-registered ones, are passed through untouched.
+ */
+public class TemplateOptimizer {
+    /** Attributes that style a run of characters rather than the whole text view. */
+    static final Set<String> SPAN_ATTRIBUTES = new HashSet<>(Arrays.asList(
+        "size", "fontSize", "color", "weight", "style", "underline"));
+
+    /**
+     * What the last {@link #optimize} call removed.
+     */
+    public static class Stats {
+        public int nodesBefore;
+        public int nodesAfter;
+        public int collapsed;
+        public int merged;
+        public int dropped;
+
+        @Override
+        public String toString() {
+            return String.format("nodes %d -> %d (collapsed=%d merged=%d dropped=%d)",
+                nodesBefore, nodesAfter, collapsed, merged, dropped);
+        }
+    }
+
+    /**
+     * The parts of a segment the optimizer reasons about. Nodes that are not rewritten keep
+     * their source segment and are emitted as-is.
+     */
+    static class Node {
+        String type;
+        String key;
+        String content;
+        Map<String, Object> attributes;
+        List<Node> children;
+        List<Node> spans;
+        JSONObject source;
+        boolean dirty;
+
+        Node(String type) {
+            this.type = type;
+        }
+
+        Node(String type, String content, Map<String, Object> attributes) {
+            this.type = type;
+            this.content = content;
+            this.attributes = attributes;
+        }
+
+        Node child(Node child) {
+            if (children == null) children = new ArrayList<>();
+            children.add(child);
+            return this;
+        }
+    }
+
+    private static volatile boolean defaultMergeText;
+
+    private boolean mergeText = defaultMergeText;
+    private Stats stats = new Stats();
+
+    /**
+     * Whether optimizers created from now on, including those planning previews and
+     * details, merge adjacent text. Off unless set.
+     */
+    public static void setDefaultMergeText(boolean mergeText) {
+        defaultMergeText = mergeText;
+    }
+
+    /**
+     * Merge runs of adjacent text into one text view, trading exact line spacing for
+     * fewer views.
+     */
+    public TemplateOptimizer setMergeText(boolean mergeText) {
+        this.mergeText = mergeText;
+        return this;
+    }
+
+    public Stats getLastStats() {
+        return stats;
+    }
+
+    /**
+     * Return an optimized copy of {@code template}. Unchanged segments are shared with the
+     * input, which is not modified.
+     */
+    public JSONArray optimize(JSONArray template) throws JSONException {
+        List<Node> nodes = new ArrayList<>(template.length());
+        for (int i = 0; i < template.length(); i++) {
+            nodes.add(fromJson(template.getJSONObject(i)));
+        }
+        stats = new Stats();
+        List<Node> optimized = optimize(nodes, mergeText, stats);
+
+        JSONArray result = new JSONArray();
+        for (Node node : optimized) {
+            result.put(toJson(node));
+        }
+        return result;
+    }
+
+    /**
+     * Optimize top-level segments, which sit in a vertical container.
+     */
+    static List<Node> optimize(List<Node> nodes, boolean mergeText, Stats stats) {
+        stats.nodesBefore += count(nodes);
+        List<Node> result = optimizeChildren(nodes, true, mergeText, stats);
+        stats.nodesAfter += count(result);
+        return result;
+    }
+
+    private static List<Node> optimizeChildren(List<Node> siblings, boolean vertical, boolean mergeText,
+                                               Stats stats) {
+        List<Node> result = new ArrayList<>(siblings.size());
+        for (Node node : siblings) {
+            if (isContainer(node) && node.children != null) {
+                List<Node> children = optimizeChildren(node.children, "column".equals(node.type), mergeText, stats);
+                boolean changed = children.size() != node.children.size();
+                for (int i = 0; !changed && i < children.size(); i++) {
+                    changed = children.get(i) != node.children.get(i) || children.get(i).dirty;
+                }
+                if (changed) {
+                    node.children = children;
+                    node.dirty = true;
+                }
+            }
+
+            Node collapsed;
+            while ((collapsed = collapse(node, vertical)) != node) {
+                node = collapsed;
+                stats.collapsed++;
+            }
+
+            if (isEmpty(node, vertical)) {
+                stats.dropped++;
+                continue;
+            }
+
+            Node previous = result.isEmpty() ? null : result.get(result.size() - 1);
+            if (mergeText && vertical && canMerge(previous, node)) {
+                result.set(result.size() - 1, merge(previous, node));
+                stats.merged++;
+                continue;
+            }
+            result.add(node);
+        }
+        return result;
+    }
+
+    /**
+     * The node that replaces {@code node} with one less level of nesting, or {@code node}
+     * itself if it cannot be collapsed.
+     */
+    static Node collapse(Node node, boolean vertical) {
+        if (!isContainer(node) || node.children == null || node.children.size() != 1) return node;
+        Node child = node.children.get(0);
+        if (node.key != null && child.key != null) return node;
+
+        if (vertical && "row".equals(node.type)) {
+            // A full-width child fills the row exactly, so the row's gravity has no effect
+            if (!onlyKeys(node.attributes, "alignment", "spacing")) return node;
+            boolean fillsRow = ("text".equals(child.type) && child.attributes != null
+                    || "row".equals(child.type))
+                && !hasWidth(child.attributes);
+            if (!fillsRow) return node;
+            if (node.key != null) {
+                child.key = node.key;
+                child.dirty = true;
+            }
+            return child;
+        }
+
+        if (!vertical && "column".equals(node.type) && "row".equals(child.type)) {
+            // The row fills the column's width and sets its height, so it can take the
+            // column's place with the column's share of the parent row
+            if (!onlyKeys(node.attributes, "width", "alignment", "spacing")) return node;
+            Object width = node.attributes != null ? node.attributes.get("width") : null;
+            // A column without a width takes a weight of 1, which no row width gives exactly
+            if (width == null || !LayoutUtils.isValidPercentage(String.valueOf(width))) return node;
+            if (hasWidth(child.attributes) || hasKey(child.attributes, "height")) return node;
+
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            if (child.attributes != null) attributes.putAll(child.attributes);
+            // The parent row's layoutChild turns the width into the column's weight, and bind
+            // keeps it when the row is updated in place
+            attributes.put("width", width);
+            child.attributes = attributes;
+            if (node.key != null) child.key = node.key;
+            child.dirty = true;
+            return child;
+        }
+        return node;
+    }
+
+    /**
+     * Whether {@code node} renders nothing and takes no space in its parent.
+     */
+    static boolean isEmpty(Node node, boolean vertical) {
+        if (node.key != null) return false;
+        if ("image".equals(node.type)) {
+            return (node.content == null || node.content.isEmpty()) && !hasKey(node.attributes, "size");
+        }
+        // In a row, an empty row or column still claims width from its siblings
+        return vertical && isContainer(node) && (node.children == null || node.children.isEmpty());
+    }
+
+    /**
+     * Whether two adjacent text segments in a vertical parent can share one text view.
+     */
+    static boolean canMerge(Node a, Node b) {
+        if (a == null || !"text".equals(a.type) || !"text".equals(b.type)) return false;
+        if (a.key != null || b.key != null || a.children != null || b.children != null) return false;
+        if (a.content == null || b.content == null) return false;
+        // Percentage widths become weights, which do not stack in one view
+        if (hasWidth(a.attributes) || hasWidth(b.attributes)) return false;
+        return paragraphAttributes(a.attributes).equals(paragraphAttributes(b.attributes));
+    }
+
+    static Node merge(Node a, Node b) {
+        Node merged = new Node("text");
+        merged.attributes = new LinkedHashMap<>(paragraphAttributes(a.attributes));
+        merged.spans = new ArrayList<>();
+        addSpans(merged.spans, a);
+        addSpans(merged.spans, b);
+        StringBuilder content = new StringBuilder();
+        for (Node span : merged.spans) {
+            if (content.length() > 0) content.append('\n');
+            content.append(span.content);
+        }
+        merged.content = content.toString();
+        merged.dirty = true;
+        return merged;
+    }
+
+    private static void addSpans(List<Node> out, Node text) {
+        Map<String, Object> defaults = spanAttributes(text.attributes);
+        if (text.spans == null) {
+            out.add(new Node("span", text.content, defaults));
+            return;
+        }
+        for (Node span : text.spans) {
+            Map<String, Object> attributes = new LinkedHashMap<>(defaults);
+            if (span.attributes != null) attributes.putAll(span.attributes);
+            out.add(new Node("span", span.content, attributes));
+        }
+    }
+
+    private static Map<String, String> paragraphAttributes(Map<String, Object> attributes) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (attributes == null) return result;
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            if (!isSpanAttribute(entry.getKey(), entry.getValue())) {
+                result.put(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Object> spanAttributes(Map<String, Object> attributes) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (attributes == null) return result;
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            if (isSpanAttribute(entry.getKey(), entry.getValue())) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private static boolean isSpanAttribute(String key, Object value) {
+        // "size" is a font size token, or a width and height object that sizes the view
+        return SPAN_ATTRIBUTES.contains(key) && (!"size".equals(key) || value instanceof String);
+    }
+
+    private static boolean hasWidth(Map<String, Object> attributes) {
+        if (attributes == null) return false;
+        Object size = attributes.get("size");
+        return attributes.containsKey("width") || (size != null && !(size instanceof String));
+    }
+
+    private static boolean hasKey(Map<String, Object> attributes, String key) {
+        return attributes != null && attributes.containsKey(key);
+    }
+
+    private static boolean onlyKeys(Map<String, Object> attributes, String... allowed) {
+        if (attributes == null) return true;
+        Set<String> keys = new HashSet<>(attributes.keySet());
+        keys.removeAll(Arrays.asList(allowed));
+        return keys.isEmpty();
+    }
+
+    private static boolean isContainer(Node node) {
+        return "row".equals(node.type) || "column".equals(node.type);
+    }
+
+    static int count(List<Node> nodes) {
+        int count = 0;
+        for (Node node : nodes) {
+            count++;
+            if (node.children != null) count += count(node.children);
+        }
+        return count;
+    }
+
+    private static Node fromJson(JSONObject segment) throws JSONException {
+        Node node = new Node(segment.optString("type", null));
+        node.source = segment;
+        node.key = segment.has("key") ? segment.optString("key") : null;
+        node.content = segment.has("content") ? segment.optString("content") : null;
+        node.attributes = toMap(segment.optJSONObject("attributes"));
+
+        JSONArray children = segment.optJSONArray("children");
+        if (children != null) {
+            node.children = new ArrayList<>(children.length());
+            for (int i = 0; i < children.length(); i++) {
+                node.children.add(fromJson(children.getJSONObject(i)));
+            }
+        }
+        JSONArray spans = segment.optJSONArray("spans");
+        if (spans != null) {
+            node.spans = new ArrayList<>(spans.length());
+            for (int i = 0; i < spans.length(); i++) {
+                JSONObject span = spans.getJSONObject(i);
+                node.spans.add(new Node("span", span.optString("content"),
+                    toMap(span.optJSONObject("attributes"))));
+            }
+        }
+        return node;
+    }
+
+    private static JSONObject toJson(Node node) throws JSONException {
+        if (!node.dirty && node.source != null) return node.source;
+
+        JSONObject segment = new JSONObject();
+        if (node.source != null) {
+            // Keep fields the optimizer does not know about
+            for (Iterator<String> it = node.source.keys(); it.hasNext(); ) {
+                String name = it.next();
+                segment.put(name, node.source.get(name));
+            }
+        }
+        segment.put("type", node.type);
+        segment.remove("key");
+        if (node.key != null) segment.put("key", node.key);
+        if (node.content != null) segment.put("content", node.content);
+        segment.remove("attributes");
+        if (node.attributes != null) segment.put("attributes", toJson(node.attributes));
+
+        segment.remove("children");
+        if (node.children != null) {
+            JSONArray children = new JSONArray();
+            for (Node child : node.children) {
+                children.put(toJson(child));
+            }
+            segment.put("children", children);
+        }
+        segment.remove("spans");
+        if (node.spans != null) {
+            JSONArray spans = new JSONArray();
+            for (Node span : node.spans) {
+                spans.put(new JSONObject()
+                    .put("content", span.content)
+                    .put("attributes", toJson(span.attributes)));
+            }
+            segment.put("spans", spans);
+        }
+        return segment;
+    }
+
+    private static Map<String, Object> toMap(JSONObject json) throws JSONException {
+        if (json == null) return null;
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Iterator<String> it = json.keys(); it.hasNext(); ) {
+            String name = it.next();
+            map.put(name, json.get(name));
+        }
+        return map;
+    }
+
+    private static JSONObject toJson(Map<String, Object> map) throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            json.put(entry.getKey(), entry.getValue());
+        }
+        return json;
+    }
+}
@@ -0,0 +1,21 @@
+package io.sourcesync.android.segment;
+
+import android.content.Context;
+import android.view.View;
+import org.json.JSONObject;
+import org.json.JSONException;
+
+/**
+ * A processor that can apply a changed segment to a view it built earlier, so live
+ * template updates do not have to rebuild the view.
+ */
+public interface UpdatableSegmentProcessor extends SegmentProcessor {
+    /**
+     * Update {@code view}, built by {@link #processSegment} from {@code previous}, to show
+     * {@code segment}. Children are reconciled separately.
+     *
+     * @return false if the change cannot be applied in place and the view must be rebuilt
+     */
+    boolean updateSegment(Context context, View view, JSONObject previous, JSONObject segment)
+        throws JSONException;
+}
@@ -10,9 +10,18 @@ import java.util.Map;
 public class SegmentProcessorFactory {
     private final Map<String, SegmentProcessor> processors;
     private final ViewGroup parentContainer;
+    private final SegmentProcessorRegistry shared;
 
     public SegmentProcessorFactory(ViewGroup parentContainer) {
+        this(parentContainer, null);
+    }
+
+    /**
+     * A factory that prefers processors from {@code shared}, if not null, to its own.
+     */
+    public SegmentProcessorFactory(ViewGroup parentContainer, SegmentProcessorRegistry shared) {
         this.parentContainer = parentContainer;
+        this.shared = shared;
         this.processors = new HashMap<>();
         registerDefaultProcessors();
     }
@@ -30,6 +39,7 @@ public class SegmentProcessorFactory {
     }
 
     public SegmentProcessor getProcessor(String segmentType) {
-        return processors.get(segmentType);
+        SegmentProcessor processor = shared != null ? shared.get(segmentType) : null;
+        return processor != null ? processor : processors.get(segmentType);
     }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package io.sourcesync.android.segment.factory;
+
+import io.sourcesync.android.segment.SegmentProcessor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Processors shared by several activations, such as those of one
+ * {@link io.sourcesync.android.ActivationHost}. Each {@link SegmentProcessorFactory} given
+ * the registry looks segment types up here before its built-in processors, so processors
+ * registered once apply to every activation. Shared processors must not keep per-view
+ * state.
+ */
+public class SegmentProcessorRegistry {
+    private final Map<String, SegmentProcessor> processors = new ConcurrentHashMap<>();
+
+    public void register(SegmentProcessor processor) {
+        processors.put(processor.getSegmentType(), processor);
+    }
+
+    public void unregister(String segmentType) {
+        processors.remove(segmentType);
+    }
+
+    public SegmentProcessor get(String segmentType) {
+        return processors.get(segmentType);
+    }
+}
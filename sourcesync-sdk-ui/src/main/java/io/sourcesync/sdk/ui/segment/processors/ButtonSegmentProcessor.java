@@ -5,26 +5,43 @@ import android.graphics.Color;
 import android.view.View;
 import android.widget.Button;
 import android.widget.LinearLayout;
-import io.sourcesync.android.segment.SegmentProcessor;
+import io.sourcesync.android.font.TypefaceRegistry;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.segment.UpdatableSegmentProcessor;
 import io.sourcesync.android.segment.SegmentAttributes;
 import io.sourcesync.android.segment.LayoutUtils;
 import org.json.JSONObject;
 import org.json.JSONException;
-import android.util.Log;
 
-public class ButtonSegmentProcessor implements SegmentProcessor {
+public class ButtonSegmentProcessor implements UpdatableSegmentProcessor {
     private static final String TAG = "ButtonSegmentProcessor";
 
     public ButtonSegmentProcessor() {}
 
     @Override
     public View processSegment(Context context, JSONObject segment) throws JSONException {
+        Button button = new Button(context);
+        bind(button, segment);
+        return button;
+    }
+
+    @Override
+    public boolean updateSegment(Context context, View view, JSONObject previous, JSONObject segment)
+            throws JSONException {
+        if (!SegmentAttributes.haveSameKeys(previous.optJSONObject("attributes"),
+                segment.optJSONObject("attributes"))) {
+            return false;
+        }
+        bind((Button) view, segment);
+        return true;
+    }
+
+    private void bind(Button button, JSONObject segment) throws JSONException {
         String content = segment.getString("content");
         JSONObject attributesJson = segment.optJSONObject("attributes");
         SegmentAttributes attributes = attributesJson != null ?
             SegmentAttributes.fromJson(attributesJson) : null;
 
-        Button button = new Button(context);
         button.setText(content);
 
         if (attributes != null) {
@@ -33,7 +50,7 @@ public class ButtonSegmentProcessor implements SegmentProcessor {
                 try {
                     button.setBackgroundColor(Color.parseColor(attributes.backgroundColor));
                 } catch (IllegalArgumentException e) {
-                    Log.e(TAG, "Invalid background color format: " + attributes.backgroundColor, e);
+                    SdkLog.e(TAG, "Invalid background color format: {}", attributes.backgroundColor, e);
                 }
             }
 
@@ -42,10 +59,14 @@ public class ButtonSegmentProcessor implements SegmentProcessor {
                 try {
                     button.setTextColor(Color.parseColor(attributes.textColor));
                 } catch (IllegalArgumentException e) {
-                    Log.e(TAG, "Invalid text color format: " + attributes.textColor, e);
+                    SdkLog.e(TAG, "Invalid text color format: {}", attributes.textColor, e);
                 }
             }
 
+            if (attributes.font != null) {
+                TypefaceRegistry.getInstance().apply(button, attributes.font, "bold".equals(attributes.weight));
+            }
+
             // Apply font size - using dp values directly
             if (attributes.fontSize != null) {
                 // Map size tokens to dp values
@@ -88,8 +109,6 @@ public class ButtonSegmentProcessor implements SegmentProcessor {
 
             button.setLayoutParams(params);
         }
-
-        return button;
     }
 
     @Override
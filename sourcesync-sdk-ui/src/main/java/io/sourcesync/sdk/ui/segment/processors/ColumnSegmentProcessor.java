@@ -4,16 +4,18 @@ import android.content.Context;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.LinearLayout;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.segment.ContainerSegmentProcessor;
 import io.sourcesync.android.segment.SegmentProcessor;
+import io.sourcesync.android.segment.UpdatableSegmentProcessor;
 import io.sourcesync.android.segment.SegmentAttributes;
 import io.sourcesync.android.segment.LayoutUtils;
 import io.sourcesync.android.segment.factory.SegmentProcessorFactory;
 import org.json.JSONObject;
 import org.json.JSONArray;
 import org.json.JSONException;
-import android.util.Log;
 
-public class ColumnSegmentProcessor implements SegmentProcessor {
+public class ColumnSegmentProcessor implements ContainerSegmentProcessor, UpdatableSegmentProcessor {
     private static final String TAG = "ColumnSegmentProcessor";
     private final SegmentProcessorFactory processorFactory;
     private final ViewGroup parentContainer;
@@ -25,13 +27,65 @@ public class ColumnSegmentProcessor implements SegmentProcessor {
 
     @Override
     public View processSegment(Context context, JSONObject segment) throws JSONException {
+        LinearLayout columnLayout = new LinearLayout(context);
+        columnLayout.setOrientation(LinearLayout.VERTICAL);
+        bind(context, columnLayout, segment);
+
+        // Process children
+        JSONArray children = segment.optJSONArray("children");
+        if (children != null) {
+            for (int i = 0; i < children.length(); i++) {
+                JSONObject childSegment = children.getJSONObject(i);
+                String childType = childSegment.getString("type");
+
+                SegmentProcessor processor = processorFactory.getProcessor(childType);
+                if (processor != null) {
+                    View childView = processor.processSegment(context, childSegment);
+                    if (childView != null) {
+                        layoutChild(context, childView, childSegment);
+                        columnLayout.addView(childView);
+                    }
+                } else {
+                    SdkLog.w(TAG, "No processor found for child segment type: {}", childType);
+                }
+            }
+        }
+
+        return columnLayout;
+    }
+
+    @Override
+    public boolean updateSegment(Context context, View view, JSONObject previous, JSONObject segment)
+            throws JSONException {
+        if (!SegmentAttributes.haveSameKeys(previous.optJSONObject("attributes"),
+                segment.optJSONObject("attributes"))) {
+            return false;
+        }
+        bind(context, (LinearLayout) view, segment);
+        return true;
+    }
+
+    @Override
+    public void layoutChild(Context context, View childView, JSONObject childSegment) throws JSONException {
+        // Handle child's percentage dimensions if specified
+        JSONObject childAttributes = childSegment.optJSONObject("attributes");
+        if (childAttributes != null) {
+            SegmentAttributes childAttrs = SegmentAttributes.fromJson(childAttributes);
+            if (childAttrs.width != null && LayoutUtils.isValidPercentage(childAttrs.width)) {
+                LinearLayout.LayoutParams childParams = (LinearLayout.LayoutParams) childView.getLayoutParams();
+                float weight = LayoutUtils.percentageToDecimal(childAttrs.width);
+                childParams.width = 0; // Use weight instead of fixed width
+                childParams.weight = weight;
+                childView.setLayoutParams(childParams);
+            }
+        }
+    }
+
+    private void bind(Context context, LinearLayout columnLayout, JSONObject segment) throws JSONException {
         JSONObject attributesJson = segment.optJSONObject("attributes");
         SegmentAttributes attributes = attributesJson != null ?
             SegmentAttributes.fromJson(attributesJson) : null;
 
-        LinearLayout columnLayout = new LinearLayout(context);
-        columnLayout.setOrientation(LinearLayout.VERTICAL);
-
         // Set column alignment
         if (attributes != null && attributes.alignment != null) {
             columnLayout.setGravity(LayoutUtils.getGravityFromAlignment(attributes.alignment));
@@ -51,7 +105,7 @@ public class ColumnSegmentProcessor implements SegmentProcessor {
                     weight
                 );
             } else {
-                Log.w(TAG, "Invalid width percentage: " + attributes.width + ". Using WRAP_CONTENT.");
+                SdkLog.w(TAG, "Invalid width percentage: {}. Using WRAP_CONTENT.", attributes.width);
                 columnParams = new LinearLayout.LayoutParams(
                     LinearLayout.LayoutParams.WRAP_CONTENT,
                     LinearLayout.LayoutParams.WRAP_CONTENT
@@ -85,39 +139,6 @@ public class ColumnSegmentProcessor implements SegmentProcessor {
             columnLayout.setShowDividers(LinearLayout.SHOW_DIVIDER_MIDDLE);
             columnLayout.setDividerPadding(spacingPx);
         }
-
-        // Process children
-        JSONArray children = segment.optJSONArray("children");
-        if (children != null) {
-            for (int i = 0; i < children.length(); i++) {
-                JSONObject childSegment = children.getJSONObject(i);
-                String childType = childSegment.getString("type");
-
-                SegmentProcessor processor = processorFactory.getProcessor(childType);
-                if (processor != null) {
-                    View childView = processor.processSegment(context, childSegment);
-                    if (childView != null) {
-                        // Handle child's percentage dimensions if specified
-                        JSONObject childAttributes = childSegment.optJSONObject("attributes");
-                        if (childAttributes != null) {
-                            SegmentAttributes childAttrs = SegmentAttributes.fromJson(childAttributes);
-                            if (childAttrs.width != null && LayoutUtils.isValidPercentage(childAttrs.width)) {
-                                LinearLayout.LayoutParams childParams = (LinearLayout.LayoutParams) childView.getLayoutParams();
-                                float weight = LayoutUtils.percentageToDecimal(childAttrs.width);
-                                childParams.width = 0; // Use weight instead of fixed width
-                                childParams.weight = weight;
-                                childView.setLayoutParams(childParams);
-                            }
-                        }
-                        columnLayout.addView(childView);
-                    }
-                } else {
-                    Log.w(TAG, "No processor found for child segment type: " + childType);
-                }
-            }
-        }
-
-        return columnLayout;
     }
 
     @Override
@@ -1,40 +1,40 @@
 package io.sourcesync.android.segment.processors;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Color;
-import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Looper;
+import android.graphics.drawable.Drawable;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
-import android.util.Log;
 
-import io.sourcesync.android.segment.SegmentProcessor;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.image.ImageLoader;
+import io.sourcesync.android.image.ImagePlaceholder;
+import io.sourcesync.android.image.ViewportImageLoader;
+import io.sourcesync.android.segment.UpdatableSegmentProcessor;
 import io.sourcesync.android.segment.SegmentAttributes;
 import io.sourcesync.android.segment.LayoutUtils;
 
 import org.json.JSONObject;
 import org.json.JSONException;
 
-import java.io.InputStream;
-import java.net.URL;
-import java.lang.ref.WeakReference;
-import java.util.concurrent.atomic.AtomicBoolean;
-
-public class ImageSegmentProcessor implements SegmentProcessor {
+public class ImageSegmentProcessor implements UpdatableSegmentProcessor {
     private static final String TAG = "SourceSync.segment.image";
-    private static ImageLoader imageLoader;
+    private final ImageLoader imageLoader;
     private final ViewGroup parentContainer;
+    private final ViewportImageLoader viewportLoader;
 
     public ImageSegmentProcessor(ViewGroup parentContainer) {
+        this(parentContainer, null);
+    }
+
+    /**
+     * @param viewportLoader if non-null, images are loaded in the order they scroll into view
+     */
+    public ImageSegmentProcessor(ViewGroup parentContainer, ViewportImageLoader viewportLoader) {
         this.parentContainer = parentContainer;
-        if (imageLoader == null) {
-            imageLoader = new ImageLoader();
-        }
+        this.imageLoader = ImageLoader.getInstance();
+        this.viewportLoader = viewportLoader;
     }
 
     @Override
@@ -71,7 +71,7 @@ public class ImageSegmentProcessor implements SegmentProcessor {
                 int parentWidth = parent.getWidth();
                 int parentHeight = parent.getHeight();
 
-                Log.d(TAG, String.format("Post-layout - Parent dimensions: %dx%d", parentWidth, parentHeight));
+                SdkLog.v(TAG, "Post-layout - Parent dimensions: {}x{}", parentWidth, parentHeight);
 
                 if (attributesJson != null) {
                     try {
@@ -82,7 +82,7 @@ public class ImageSegmentProcessor implements SegmentProcessor {
 
                             if (!LayoutUtils.isValidPercentage(widthPercent) ||
                                 !LayoutUtils.isValidPercentage(heightPercent)) {
-                                Log.e(TAG, "Invalid percentage format for image dimensions");
+                                SdkLog.e(TAG, "Invalid percentage format for image dimensions");
                                 return;
                             }
 
@@ -91,8 +91,8 @@ public class ImageSegmentProcessor implements SegmentProcessor {
                             int calculatedHeight = Math.round(parentHeight *
                                 LayoutUtils.percentageToDecimal(heightPercent));
 
-                            Log.d(TAG, String.format("Post-layout - Calculated dimensions: %dx%d",
-                                calculatedWidth, calculatedHeight));
+                            SdkLog.v(TAG, "Post-layout - Calculated dimensions: {}x{}",
+                                calculatedWidth, calculatedHeight);
 
                             LinearLayout.LayoutParams newParams = new LinearLayout.LayoutParams(
                                 calculatedWidth,
@@ -102,7 +102,7 @@ public class ImageSegmentProcessor implements SegmentProcessor {
                             imageView.setLayoutParams(newParams);
                         }
                     } catch (JSONException e) {
-                        Log.e(TAG, "Error parsing size attributes", e);
+                        SdkLog.e(TAG, "Error parsing size attributes", e);
                     }
                 }
             }
@@ -110,68 +110,41 @@ public class ImageSegmentProcessor implements SegmentProcessor {
 
         String imageUrl = segment.optString("content");
         if (imageUrl != null && !imageUrl.isEmpty()) {
-            Log.d(TAG, String.format("Starting image load for URL: %s", imageUrl));
-            imageLoader.loadImage(imageUrl, imageView);
+            SdkLog.v(TAG, "Starting image load for URL: {}", imageUrl);
+            load(imageUrl, imageView, ImagePlaceholder.create(context.getResources(),
+                attributes != null ? attributes.placeholder : null));
         }
 
         return imageView;
     }
 
+    /**
+     * Swaps the image URL in place; the previous bitmap stays up until the new one arrives.
+     * Attribute changes rebuild the view because sizing is resolved after layout.
+     */
     @Override
-    public String getSegmentType() {
-        return "image";
-    }
-
-    private static class ImageLoader {
-        private final HandlerThread handlerThread;
-        private final Handler backgroundHandler;
-        private final Handler mainHandler;
-        private final AtomicBoolean isActive = new AtomicBoolean(true);
-
-        public ImageLoader() {
-            handlerThread = new HandlerThread("ImageLoaderThread");
-            handlerThread.start();
-            backgroundHandler = new Handler(handlerThread.getLooper());
-            mainHandler = new Handler(Looper.getMainLooper());
+    public boolean updateSegment(Context context, View view, JSONObject previous, JSONObject segment) {
+        if (!String.valueOf(previous.optJSONObject("attributes"))
+                .equals(String.valueOf(segment.optJSONObject("attributes")))) {
+            return false;
         }
-
-        public void loadImage(String url, ImageView imageView) {
-            WeakReference<ImageView> imageViewRef = new WeakReference<>(imageView);
-            imageView.setTag(url);
-
-            backgroundHandler.post(() -> {
-                if (!isActive.get()) return;
-
-                try {
-                    InputStream in = new URL(url).openStream();
-                    final Bitmap bitmap = BitmapFactory.decodeStream(in);
-
-                    if (!isActive.get()) return;
-
-                    mainHandler.post(() -> {
-                        ImageView view = imageViewRef.get();
-                        if (view != null && url.equals(view.getTag())) {
-                            view.setImageBitmap(bitmap);
-                            view.setBackgroundColor(Color.TRANSPARENT);
-                        }
-                    });
-                } catch (Exception e) {
-                    Log.e(TAG, "Error loading image: " + url, e);
-                    if (!isActive.get()) return;
-
-                    mainHandler.post(() -> {
-                        ImageView view = imageViewRef.get();
-                        if (view != null && url.equals(view.getTag())) {
-                            view.setBackgroundColor(Color.GRAY);
-                        }
-                    });
-                }
-            });
+        String imageUrl = segment.optString("content");
+        if (imageUrl != null && !imageUrl.isEmpty()) {
+            load(imageUrl, (ImageView) view, null);
         }
+        return true;
+    }
 
-        public void shutdown() {
-            isActive.set(false);
-            handlerThread.quitSafely();
+    private void load(String url, ImageView imageView, Drawable placeholder) {
+        if (viewportLoader != null) {
+            viewportLoader.request(url, imageView, placeholder);
+        } else {
+            imageLoader.loadImage(url, imageView, placeholder);
         }
     }
+
+    @Override
+    public String getSegmentType() {
+        return "image";
+    }
 }
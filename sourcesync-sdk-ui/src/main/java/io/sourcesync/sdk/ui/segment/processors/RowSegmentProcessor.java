@@ -3,7 +3,10 @@ package io.sourcesync.android.segment.processors;
 import android.content.Context;
 import android.widget.LinearLayout;
 import android.view.View;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.segment.ContainerSegmentProcessor;
 import io.sourcesync.android.segment.SegmentProcessor;
+import io.sourcesync.android.segment.UpdatableSegmentProcessor;
 import io.sourcesync.android.segment.SegmentAttributes;
 import io.sourcesync.android.segment.LayoutUtils;
 import io.sourcesync.android.segment.factory.SegmentProcessorFactory;
@@ -11,27 +14,81 @@ import org.json.JSONObject;
 import org.json.JSONArray;
 import org.json.JSONException;
 import android.view.ViewGroup;
-import android.util.Log;
 
-public class RowSegmentProcessor implements SegmentProcessor {
+public class RowSegmentProcessor implements ContainerSegmentProcessor, UpdatableSegmentProcessor {
     private static final String TAG = "RowSegmentProcessor";
     private final SegmentProcessorFactory processorFactory;
-    private final ViewGroup parentContainer;
 
+    /**
+     * {@code parentContainer} is not used: a percentage width is taken from the row's own
+     * parent, which may not exist yet when the row is built.
+     */
     public RowSegmentProcessor(SegmentProcessorFactory processorFactory, ViewGroup parentContainer) {
         this.processorFactory = processorFactory;
-        this.parentContainer = parentContainer;
     }
 
     @Override
     public View processSegment(Context context, JSONObject segment) throws JSONException {
+        LinearLayout rowLayout = new LinearLayout(context);
+        rowLayout.setOrientation(LinearLayout.HORIZONTAL);
+        bind(context, rowLayout, segment);
+
+        // Process children
+        JSONArray children = segment.optJSONArray("children");
+        if (children != null) {
+            for (int i = 0; i < children.length(); i++) {
+                JSONObject childSegment = children.getJSONObject(i);
+                String childType = childSegment.getString("type");
+
+                SegmentProcessor processor = processorFactory.getProcessor(childType);
+                if (processor != null) {
+                    View childView = processor.processSegment(context, childSegment);
+                    if (childView != null) {
+                        rowLayout.addView(childView);
+                        layoutChild(context, childView, childSegment);
+                    }
+                } else {
+                    SdkLog.w(TAG, "No processor found for child segment type: {}", childType);
+                }
+            }
+        }
+
+        return rowLayout;
+    }
+
+    @Override
+    public boolean updateSegment(Context context, View view, JSONObject previous, JSONObject segment)
+            throws JSONException {
+        if (!SegmentAttributes.haveSameKeys(previous.optJSONObject("attributes"),
+                segment.optJSONObject("attributes"))) {
+            return false;
+        }
+        bind(context, (LinearLayout) view, segment);
+        return true;
+    }
+
+    @Override
+    public void layoutChild(Context context, View childView, JSONObject childSegment) throws JSONException {
+        // Handle child's percentage width if specified
+        JSONObject childAttributes = childSegment.optJSONObject("attributes");
+        if (childAttributes != null) {
+            SegmentAttributes childAttrs = SegmentAttributes.fromJson(childAttributes);
+            if (childAttrs.width != null && LayoutUtils.isValidPercentage(childAttrs.width)) {
+                LinearLayout.LayoutParams childParams = new LinearLayout.LayoutParams(
+                    0, // Width will be determined by weight
+                    LinearLayout.LayoutParams.WRAP_CONTENT,
+                    LayoutUtils.percentageToDecimal(childAttrs.width)
+                );
+                childView.setLayoutParams(childParams);
+            }
+        }
+    }
+
+    private void bind(Context context, LinearLayout rowLayout, JSONObject segment) throws JSONException {
         JSONObject attributesJson = segment.optJSONObject("attributes");
         SegmentAttributes attributes = attributesJson != null ?
             SegmentAttributes.fromJson(attributesJson) : null;
 
-        LinearLayout rowLayout = new LinearLayout(context);
-        rowLayout.setOrientation(LinearLayout.HORIZONTAL);
-
         // Set row alignment
         if (attributes != null && attributes.alignment != null) {
             rowLayout.setGravity(LayoutUtils.getGravityFromAlignment(attributes.alignment));
@@ -41,15 +98,22 @@ public class RowSegmentProcessor implements SegmentProcessor {
 
         // Configure layout parameters for the row
         LinearLayout.LayoutParams rowParams;
-        if (attributes != null && attributes.width != null) {
-            // If width is specified as percentage, calculate pixels
-            int parentWidth = parentContainer.getWidth();
-            if (parentWidth == 0) {
-                parentWidth = parentContainer.getMeasuredWidth();
-            }
-            int width = LayoutUtils.percentageToPx(context, attributes.width, parentWidth);
+        View parent = rowLayout.getParent() instanceof View ? (View) rowLayout.getParent() : null;
+        if (attributes != null && attributes.width != null && LayoutUtils.isValidPercentage(attributes.width)
+                && isInRow(rowLayout)) {
+            // Keep the weight layoutChild gave a row inside a row when it is rebound
+            rowParams = new LinearLayout.LayoutParams(
+                0,
+                LinearLayout.LayoutParams.WRAP_CONTENT,
+                LayoutUtils.percentageToDecimal(attributes.width)
+            );
+        } else if (attributes != null && attributes.width != null && LayoutUtils.isValidPercentage(attributes.width)
+                && parent != null && parent.getWidth() > 0) {
+            // Rebinding in a laid-out container: the percentage of the actual parent
+            int width = LayoutUtils.percentageToPx(context, attributes.width, parent.getWidth());
             rowParams = new LinearLayout.LayoutParams(width, LinearLayout.LayoutParams.WRAP_CONTENT);
         } else {
+            // Not attached yet: a parent row's layoutChild turns a percentage into a weight
             rowParams = new LinearLayout.LayoutParams(
                 LinearLayout.LayoutParams.MATCH_PARENT,
                 LinearLayout.LayoutParams.WRAP_CONTENT
@@ -63,41 +127,11 @@ public class RowSegmentProcessor implements SegmentProcessor {
             rowLayout.setShowDividers(LinearLayout.SHOW_DIVIDER_MIDDLE);
             rowLayout.setDividerPadding(spacingPx);
         }
+    }
 
-        // Process children
-        JSONArray children = segment.optJSONArray("children");
-        if (children != null) {
-            for (int i = 0; i < children.length(); i++) {
-                JSONObject childSegment = children.getJSONObject(i);
-                String childType = childSegment.getString("type");
-
-                SegmentProcessor processor = processorFactory.getProcessor(childType);
-                if (processor != null) {
-                    View childView = processor.processSegment(context, childSegment);
-                    if (childView != null) {
-                        rowLayout.addView(childView);
-
-                        // Handle child's percentage width if specified
-                        JSONObject childAttributes = childSegment.optJSONObject("attributes");
-                        if (childAttributes != null) {
-                            SegmentAttributes childAttrs = SegmentAttributes.fromJson(childAttributes);
-                            if (childAttrs.width != null && LayoutUtils.isValidPercentage(childAttrs.width)) {
-                                LinearLayout.LayoutParams childParams = new LinearLayout.LayoutParams(
-                                    0, // Width will be determined by weight
-                                    LinearLayout.LayoutParams.WRAP_CONTENT,
-                                    LayoutUtils.percentageToDecimal(childAttrs.width)
-                                );
-                                childView.setLayoutParams(childParams);
-                            }
-                        }
-                    }
-                } else {
-                    Log.w(TAG, "No processor found for child segment type: " + childType);
-                }
-            }
-        }
-
-        return rowLayout;
+    private static boolean isInRow(View view) {
+        return view.getParent() instanceof LinearLayout
+            && ((LinearLayout) view.getParent()).getOrientation() == LinearLayout.HORIZONTAL;
     }
 
     @Override
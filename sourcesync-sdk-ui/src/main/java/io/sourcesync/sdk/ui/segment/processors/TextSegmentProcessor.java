@@ -11,31 +11,55 @@ import android.text.style.UnderlineSpan;
 import android.view.View;
 import android.widget.LinearLayout;
 import android.widget.TextView;
-import io.sourcesync.android.segment.SegmentProcessor;
+import io.sourcesync.android.font.TypefaceRegistry;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.segment.UpdatableSegmentProcessor;
 import io.sourcesync.android.segment.SegmentAttributes;
 import io.sourcesync.android.segment.LayoutUtils;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONException;
-import android.util.Log;
 
-public class TextSegmentProcessor implements SegmentProcessor {
+public class TextSegmentProcessor implements UpdatableSegmentProcessor {
     private static final String TAG = "TextSegmentProcessor";
 
     public TextSegmentProcessor() {}
 
     @Override
     public View processSegment(Context context, JSONObject segment) throws JSONException {
-        String content = segment.getString("content");
+        TextView textView = new TextView(context);
+        bind(context, textView, segment);
+        return textView;
+    }
+
+    @Override
+    public boolean updateSegment(Context context, View view, JSONObject previous, JSONObject segment)
+            throws JSONException {
+        if (!SegmentAttributes.haveSameKeys(previous.optJSONObject("attributes"),
+                segment.optJSONObject("attributes"))) {
+            return false;
+        }
+        bind(context, (TextView) view, segment);
+        return true;
+    }
+
+    private void bind(Context context, TextView textView, JSONObject segment) throws JSONException {
+        JSONArray spans = segment.optJSONArray("spans");
+        String content = spans != null ? joinSpans(spans) : segment.getString("content");
         JSONObject attributesJson = segment.optJSONObject("attributes");
         SegmentAttributes attributes = attributesJson != null ?
             SegmentAttributes.fromJson(attributesJson) : null;
 
-        TextView textView = new TextView(context);
         SpannableStringBuilder builder = new SpannableStringBuilder(content);
 
         if (attributes != null) {
             applyTextAttributes(context, builder, attributes, 0, content.length());
 
+            if (attributes.font != null) {
+                // Font is paragraph-level; until it loads the view keeps its current typeface
+                TypefaceRegistry.getInstance().apply(textView, attributes.font, "bold".equals(attributes.weight));
+            }
+
             if (attributes.alignment != null) {
                 textView.setGravity(LayoutUtils.getGravityFromAlignment(attributes.alignment));
             }
@@ -57,8 +81,40 @@ public class TextSegmentProcessor implements SegmentProcessor {
             textView.setLayoutParams(params);
         }
 
+        if (spans != null) {
+            applySpans(context, builder, spans);
+        }
         textView.setText(builder);
-        return textView;
+    }
+
+    /**
+     * Text of a multi-span segment: one paragraph per span.
+     */
+    private static String joinSpans(JSONArray spans) throws JSONException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < spans.length(); i++) {
+            if (i > 0) text.append('\n');
+            text.append(spans.getJSONObject(i).optString("content"));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Style each span over the segment-wide attributes. A span is styled together with the
+     * line break after it, so each line keeps the metrics of its own text.
+     */
+    private void applySpans(Context context, SpannableStringBuilder builder, JSONArray spans)
+            throws JSONException {
+        int start = 0;
+        for (int i = 0; i < spans.length(); i++) {
+            JSONObject span = spans.getJSONObject(i);
+            int end = Math.min(builder.length(), start + span.optString("content").length() + 1);
+            JSONObject spanAttributes = span.optJSONObject("attributes");
+            if (spanAttributes != null) {
+                applyTextAttributes(context, builder, SegmentAttributes.fromJson(spanAttributes), start, end);
+            }
+            start = end;
+        }
     }
 
     @Override
@@ -103,7 +159,7 @@ public class TextSegmentProcessor implements SegmentProcessor {
                     SpannableStringBuilder.SPAN_EXCLUSIVE_EXCLUSIVE
                 );
             } catch (IllegalArgumentException e) {
-                Log.e(TAG, "Invalid color format: " + attributes.color, e);
+                SdkLog.e(TAG, "Invalid color format: {}", attributes.color, e);
             }
         }
 
@@ -0,0 +1,84 @@
+package io.sourcesync.android.template;
+
+import java.math.BigDecimal;
+
+/**
+ * Layout of the binary template encoding shared by {@link BinaryTemplateEncoder} and
+ * {@link BinaryTemplate}.
+ *
+ * <pre>
+ * file    := 'S' 'S' 'B' 'T' version:u8 stringCount:varint (length:varint utf8)* value
+ * value   := NULL | FALSE | TRUE
+ *          | INT zigzag:varint | DOUBLE ieee754:8 bytes big-endian | STRING index:varint
+ *          | ARRAY bodyLength:varint count:varint value*
+ *          | OBJECT bodyLength:varint count:varint (keyIndex:varint value)*
+ *          | COLOR_RGB rgb:3 bytes | COLOR_ARGB argb:4 bytes
+ *          | PERCENT hundredths:varint
+ * </pre>
+ *
+ * Strings, including object keys, live once in the string table ordered by frequency.
+ * Container body lengths let readers skip a value without walking it. Color attributes
+ * and percentage widths and heights are stored resolved, so readers get ints and fractions
+ * without parsing; turned back into JSON they come out in canonical form ({@code #RRGGBB},
+ * {@code 50%}). Other strings, such as text content, are stored as written.
+ */
+final class BinaryFormat {
+    static final byte[] MAGIC = { 'S', 'S', 'B', 'T' };
+    static final int VERSION = 1;
+
+    static final int NULL = 0;
+    static final int FALSE = 1;
+    static final int TRUE = 2;
+    static final int INT = 3;
+    static final int DOUBLE = 4;
+    static final int STRING = 5;
+    static final int ARRAY = 6;
+    static final int OBJECT = 7;
+    static final int COLOR_RGB = 8;
+    static final int COLOR_ARGB = 9;
+    static final int PERCENT = 10;
+
+    private BinaryFormat() {}
+
+    /**
+     * Parses {@code #RRGGBB} or {@code #AARRGGBB}, or returns null.
+     */
+    static Long parseColor(String value) {
+        if (value.length() != 7 && value.length() != 9) return null;
+        if (value.charAt(0) != '#') return null;
+        long color = 0;
+        for (int i = 1; i < value.length(); i++) {
+            int digit = Character.digit(value.charAt(i), 16);
+            if (digit < 0) return null;
+            color = (color << 4) | digit;
+        }
+        return color;
+    }
+
+    static String formatColor(int color, boolean hasAlpha) {
+        return hasAlpha
+            ? String.format("#%08X", color)
+            : String.format("#%06X", color & 0xFFFFFF);
+    }
+
+    /**
+     * Parses a percentage with at most two decimals into hundredths of a percent, or
+     * returns -1.
+     */
+    static long parsePercent(String value) {
+        int length = value.length();
+        if (length < 2 || length > 10 || value.charAt(length - 1) != '%') return -1;
+        try {
+            BigDecimal percent = new BigDecimal(value.substring(0, length - 1));
+            if (percent.signum() < 0 || percent.scale() > 2) return -1;
+            return percent.movePointRight(2).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return -1;
+        }
+    }
+
+    static String formatPercent(long hundredths) {
+        if (hundredths % 100 == 0) return (hundredths / 100) + "%";
+        return BigDecimal.valueOf(hundredths, 2).stripTrailingZeros().toPlainString() + "%";
+    }
+}
@@ -0,0 +1,115 @@
+package io.sourcesync.android.template;
+
+import io.sourcesync.android.manifest.ManifestEntry;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Manifest entry whose payloads are cursors into a {@link BinaryTemplate}. Nothing is
+ * decoded until the preview or detail is requested. Subclasses can supply the cursors
+ * lazily by overriding {@link #loadPreview()} and {@link #loadDetail()}.
+ *
+ * After {@link #updatePayload}, every payload comes from the newer version instead; a
+ * JSON-backed update is encoded once so the cursors stay binary.
+ */
+public class BinaryManifestEntry extends ManifestEntry {
+    private final BinaryTemplate.Value preview;
+    private final BinaryTemplate.Value detail;
+    private volatile BinaryManifestEntry updated;
+
+    BinaryManifestEntry(String id, long startMs, long endMs,
+                        BinaryTemplate.Value preview, BinaryTemplate.Value detail) {
+        super(id, startMs, endMs, null, null);
+        this.preview = preview;
+        this.detail = detail != null && !detail.isNull() ? detail : null;
+    }
+
+    protected BinaryManifestEntry(String id, long startMs, long endMs) {
+        this(id, startMs, endMs, null, null);
+    }
+
+    public BinaryTemplate.Value getBinaryPreview() {
+        BinaryManifestEntry newer = updated;
+        return newer != null ? newer.getBinaryPreview() : loadPreview();
+    }
+
+    public BinaryTemplate.Value getBinaryDetail() {
+        BinaryManifestEntry newer = updated;
+        return newer != null ? newer.getBinaryDetail() : loadDetail();
+    }
+
+    protected BinaryTemplate.Value loadPreview() {
+        return preview;
+    }
+
+    /**
+     * The detail cursor, or null when the activation has no detail.
+     */
+    protected BinaryTemplate.Value loadDetail() {
+        return detail;
+    }
+
+    /**
+     * Whether a later version's payloads have replaced the ones this entry was loaded with.
+     */
+    protected boolean isUpdated() {
+        return updated != null;
+    }
+
+    @Override
+    public void updatePayload(ManifestEntry newer) {
+        if (newer instanceof BinaryManifestEntry) {
+            updated = (BinaryManifestEntry) newer;
+            return;
+        }
+        try {
+            BinaryTemplate.Value root = BinaryTemplate.wrap(BinaryTemplateEncoder.encodeActivation(newer)).root();
+            updated = new BinaryManifestEntry(id, startMs, endMs, root.get("preview"), root.get("detail"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid update for activation " + id, e);
+        }
+    }
+
+    @Override
+    public JSONObject getPreviewData() {
+        return toJson(getBinaryPreview(), "preview");
+    }
+
+    @Override
+    public JSONObject getDetailData() {
+        BinaryTemplate.Value detail = getBinaryDetail();
+        return detail != null ? toJson(detail, "detail") : null;
+    }
+
+    @Override
+    public boolean hasDetail() {
+        return getBinaryDetail() != null;
+    }
+
+    @Override
+    public byte[] getRawPreview() {
+        return getBinaryPreview().toJsonString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] getRawDetail() {
+        BinaryTemplate.Value detail = getBinaryDetail();
+        return detail != null ? detail.toJsonString().getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    @Override
+    public int getCompactSize() {
+        BinaryManifestEntry newer = updated;
+        return newer != null ? newer.getCompactSize() : 0;
+    }
+
+    private JSONObject toJson(BinaryTemplate.Value value, String part) {
+        try {
+            return value.toJsonObject();
+        } catch (JSONException e) {
+            throw new IllegalStateException("Invalid " + part + " for activation " + id, e);
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package io.sourcesync.android.template;
+
+import io.sourcesync.android.manifest.ActivationManifest;
+import io.sourcesync.android.manifest.ManifestEntry;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reader for the binary template encoding described in {@link BinaryFormat}.
+ *
+ * Wrapping a buffer only validates the header and records where each string table entry
+ * starts. Values are {@link Value} cursors into the buffer and decode nothing until a
+ * field is read, so the buffer can be a memory-mapped file and untouched parts of a
+ * template are never paged in. Strings are decoded at most once.
+ */
+public class BinaryTemplate {
+    private final ByteBuffer buffer;
+    private final int[] stringOffsets;
+    private final int[] stringLengths;
+    private final String[] strings;
+    private final int rootOffset;
+
+    private BinaryTemplate(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int position = buffer.position();
+        for (byte magic : BinaryFormat.MAGIC) {
+            if (buffer.get(position++) != magic) {
+                throw new IOException("Not a binary template");
+            }
+        }
+        int version = buffer.get(position++) & 0xFF;
+        if (version != BinaryFormat.VERSION) {
+            throw new IOException("Unsupported binary template version " + version);
+        }
+
+        int[] cursor = { position };
+        int count = (int) readVarint(cursor);
+        stringOffsets = new int[count];
+        stringLengths = new int[count];
+        strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            stringLengths[i] = (int) readVarint(cursor);
+            stringOffsets[i] = cursor[0];
+            cursor[0] += stringLengths[i];
+        }
+        rootOffset = cursor[0];
+        if (rootOffset >= buffer.limit()) {
+            throw new IOException("Truncated binary template");
+        }
+    }
+
+    /**
+     * Read from the buffer's current position. The buffer is not copied and must not be
+     * modified while values from it are in use.
+     */
+    public static BinaryTemplate wrap(ByteBuffer buffer) throws IOException {
+        return new BinaryTemplate(buffer);
+    }
+
+    public static BinaryTemplate wrap(byte[] bytes) throws IOException {
+        return new BinaryTemplate(ByteBuffer.wrap(bytes));
+    }
+
+    public Value root() {
+        return new Value(rootOffset);
+    }
+
+    /**
+     * Read a buffer produced by {@link BinaryTemplateEncoder#encodeManifest}. Entries keep
+     * their payloads as cursors into this template.
+     */
+    public ActivationManifest toManifest() throws IOException {
+        Value root = root();
+        Value activations = root.get("activations");
+        if (activations == null || !activations.isArray()) {
+            throw new IOException("Binary template is not a manifest");
+        }
+        Value videoId = root.get("videoId");
+        List<ManifestEntry> entries = new ArrayList<>(activations.size());
+        for (Value activation : activations.children()) {
+            entries.add(new BinaryManifestEntry(
+                activation.get("id").asString(),
+                activation.get("start").asLong(),
+                activation.get("end").asLong(),
+                activation.get("preview"),
+                activation.get("detail")));
+        }
+        return new ActivationManifest(videoId != null ? videoId.asString() : null, entries);
+    }
+
+    private String string(int index) {
+        String value = strings[index];
+        if (value == null) {
+            byte[] bytes = new byte[stringLengths[index]];
+            ByteBuffer view = buffer.duplicate();
+            view.position(stringOffsets[index]);
+            view.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    private long readVarint(int[] cursor) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get(cursor[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+        }
+    }
+
+    private int skip(int offset) {
+        int tag = buffer.get(offset) & 0xFF;
+        int[] cursor = { offset + 1 };
+        switch (tag) {
+            case BinaryFormat.INT:
+            case BinaryFormat.STRING:
+            case BinaryFormat.PERCENT:
+                readVarint(cursor);
+                return cursor[0];
+            case BinaryFormat.DOUBLE:
+                return offset + 9;
+            case BinaryFormat.COLOR_RGB:
+                return offset + 4;
+            case BinaryFormat.COLOR_ARGB:
+                return offset + 5;
+            case BinaryFormat.ARRAY:
+            case BinaryFormat.OBJECT:
+                int length = (int) readVarint(cursor);
+                return cursor[0] + length;
+            default:
+                return offset + 1;
+        }
+    }
+
+    /**
+     * A single value in the template. Cheap to create; holds only an offset.
+     */
+    public final class Value {
+        private final int offset;
+
+        private Value(int offset) {
+            this.offset = offset;
+        }
+
+        private int tag() {
+            return buffer.get(offset) & 0xFF;
+        }
+
+        public boolean isNull() { return tag() == BinaryFormat.NULL; }
+        public boolean isObject() { return tag() == BinaryFormat.OBJECT; }
+        public boolean isArray() { return tag() == BinaryFormat.ARRAY; }
+        public boolean isColor() { return tag() == BinaryFormat.COLOR_RGB || tag() == BinaryFormat.COLOR_ARGB; }
+        public boolean isPercent() { return tag() == BinaryFormat.PERCENT; }
+
+        /**
+         * Number of elements or members; 0 for scalars.
+         */
+        public int size() {
+            if (!isObject() && !isArray()) return 0;
+            int[] cursor = { offset + 1 };
+            readVarint(cursor);
+            return (int) readVarint(cursor);
+        }
+
+        public List<Value> children() {
+            List<Value> children = new ArrayList<>();
+            if (!isObject() && !isArray()) return children;
+            boolean object = isObject();
+            int[] cursor = { offset + 1 };
+            readVarint(cursor);
+            int count = (int) readVarint(cursor);
+            for (int i = 0; i < count; i++) {
+                if (object) readVarint(cursor);
+                children.add(new Value(cursor[0]));
+                cursor[0] = skip(cursor[0]);
+            }
+            return children;
+        }
+
+        public List<String> keys() {
+            List<String> keys = new ArrayList<>();
+            if (!isObject()) return keys;
+            int[] cursor = { offset + 1 };
+            readVarint(cursor);
+            int count = (int) readVarint(cursor);
+            for (int i = 0; i < count; i++) {
+                keys.add(string((int) readVarint(cursor)));
+                cursor[0] = skip(cursor[0]);
+            }
+            return keys;
+        }
+
+        public Value get(int index) {
+            if (!isArray()) return null;
+            int[] cursor = { offset + 1 };
+            readVarint(cursor);
+            int count = (int) readVarint(cursor);
+            if (index < 0 || index >= count) return null;
+            for (int i = 0; i < index; i++) {
+                cursor[0] = skip(cursor[0]);
+            }
+            return new Value(cursor[0]);
+        }
+
+        /**
+         * Member value by key, or null when absent or when this is not an object.
+         */
+        public Value get(String key) {
+            if (!isObject()) return null;
+            int[] cursor = { offset + 1 };
+            readVarint(cursor);
+            int count = (int) readVarint(cursor);
+            for (int i = 0; i < count; i++) {
+                String name = string((int) readVarint(cursor));
+                if (name.equals(key)) return new Value(cursor[0]);
+                cursor[0] = skip(cursor[0]);
+            }
+            return null;
+        }
+
+        public boolean has(String key) {
+            return get(key) != null;
+        }
+
+        /**
+         * The value as text; colors and percentages come back in canonical form.
+         */
+        public String asString() {
+            int[] cursor = { offset + 1 };
+            switch (tag()) {
+                case BinaryFormat.STRING: return string((int) readVarint(cursor));
+                case BinaryFormat.COLOR_RGB: return BinaryFormat.formatColor(asColor(), false);
+                case BinaryFormat.COLOR_ARGB: return BinaryFormat.formatColor(asColor(), true);
+                case BinaryFormat.PERCENT: return BinaryFormat.formatPercent(readVarint(cursor));
+                case BinaryFormat.INT: return Long.toString(asLong());
+                case BinaryFormat.DOUBLE: return Double.toString(asDouble());
+                case BinaryFormat.TRUE: return "true";
+                case BinaryFormat.FALSE: return "false";
+                default: return null;
+            }
+        }
+
+        public long asLong() {
+            switch (tag()) {
+                case BinaryFormat.INT:
+                    long zigzag = readVarint(new int[] { offset + 1 });
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                case BinaryFormat.DOUBLE:
+                    return (long) asDouble();
+                default:
+                    return 0L;
+            }
+        }
+
+        public double asDouble() {
+            if (tag() == BinaryFormat.DOUBLE) {
+                long bits = 0;
+                for (int i = 1; i <= 8; i++) {
+                    bits = (bits << 8) | (buffer.get(offset + i) & 0xFF);
+                }
+                return Double.longBitsToDouble(bits);
+            }
+            return asLong();
+        }
+
+        public boolean asBoolean() {
+            return tag() == BinaryFormat.TRUE;
+        }
+
+        /**
+         * Packed ARGB color; colors stored without alpha are opaque.
+         */
+        public int asColor() {
+            int tag = tag();
+            if (tag != BinaryFormat.COLOR_RGB && tag != BinaryFormat.COLOR_ARGB) return 0;
+            int color = tag == BinaryFormat.COLOR_RGB ? 0xFF : 0;
+            int length = tag == BinaryFormat.COLOR_RGB ? 3 : 4;
+            for (int i = 1; i <= length; i++) {
+                color = (color << 8) | (buffer.get(offset + i) & 0xFF);
+            }
+            return color;
+        }
+
+        /**
+         * A percentage as a fraction, e.g. {@code 0.5f} for 50%.
+         */
+        public float asFraction() {
+            if (tag() != BinaryFormat.PERCENT) return 0f;
+            return readVarint(new int[] { offset + 1 }) / 10000f;
+        }
+
+        /**
+         * Materialise as org.json values for the segment processors.
+         */
+        public Object toJson() throws JSONException {
+            switch (tag()) {
+                case BinaryFormat.NULL:
+                    return JSONObject.NULL;
+                case BinaryFormat.TRUE:
+                case BinaryFormat.FALSE:
+                    return asBoolean();
+                case BinaryFormat.INT:
+                    return asLong();
+                case BinaryFormat.DOUBLE:
+                    return asDouble();
+                case BinaryFormat.ARRAY: {
+                    JSONArray array = new JSONArray();
+                    for (Value child : children()) {
+                        array.put(child.toJson());
+                    }
+                    return array;
+                }
+                case BinaryFormat.OBJECT: {
+                    JSONObject object = new JSONObject();
+                    List<String> keys = keys();
+                    List<Value> children = children();
+                    for (int i = 0; i < keys.size(); i++) {
+                        object.put(keys.get(i), children.get(i).toJson());
+                    }
+                    return object;
+                }
+                default:
+                    return asString();
+            }
+        }
+
+        public JSONObject toJsonObject() throws JSONException {
+            Object json = toJson();
+            if (!(json instanceof JSONObject)) throw new JSONException("Not an object");
+            return (JSONObject) json;
+        }
+
+        public JSONArray toJsonArray() throws JSONException {
+            Object json = toJson();
+            if (!(json instanceof JSONArray)) throw new JSONException("Not an array");
+            return (JSONArray) json;
+        }
+
+        /**
+         * Serialise back to JSON text.
+         */
+        public String toJsonString() {
+            StringBuilder out = new StringBuilder();
+            appendJson(out);
+            return out.toString();
+        }
+
+        private void appendJson(StringBuilder out) {
+            switch (tag()) {
+                case BinaryFormat.NULL:
+                    out.append("null");
+                    break;
+                case BinaryFormat.TRUE:
+                case BinaryFormat.FALSE:
+                case BinaryFormat.INT:
+                case BinaryFormat.DOUBLE:
+                    out.append(asString());
+                    break;
+                case BinaryFormat.ARRAY: {
+                    out.append('[');
+                    List<Value> children = children();
+                    for (int i = 0; i < children.size(); i++) {
+                        if (i > 0) out.append(',');
+                        children.get(i).appendJson(out);
+                    }
+                    out.append(']');
+                    break;
+                }
+                case BinaryFormat.OBJECT: {
+                    out.append('{');
+                    List<String> keys = keys();
+                    List<Value> children = children();
+                    for (int i = 0; i < keys.size(); i++) {
+                        if (i > 0) out.append(',');
+                        quote(out, keys.get(i));
+                        out.append(':');
+                        children.get(i).appendJson(out);
+                    }
+                    out.append('}');
+                    break;
+                }
+                default:
+                    quote(out, asString());
+                    break;
+            }
+        }
+    }
+
+    private static void quote(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,294 @@
+package io.sourcesync.android.template;
+
+import io.sourcesync.android.manifest.ActivationManifest;
+import io.sourcesync.android.manifest.JsonScanner;
+import io.sourcesync.android.manifest.ManifestEntry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes JSON templates, preview/detail payloads or whole manifests into the format
+ * described in {@link BinaryFormat}. Input is read as raw JSON bytes, so nothing here
+ * depends on org.json trees.
+ */
+public class BinaryTemplateEncoder {
+    // Only these attributes are resolved; any other string, such as text content, is kept as written
+    private static final Set<String> COLOR_KEYS = new HashSet<>(Arrays.asList(
+        "color", "textColor", "backgroundColor", "placeholder"));
+    private static final Set<String> DIMENSION_KEYS = new HashSet<>(Arrays.asList("width", "height"));
+
+    private static final class Node {
+        final int tag;
+        long number;
+        double decimal;
+        String string;
+        List<String> keys;
+        List<Node> children;
+
+        Node(int tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Map<String, int[]> frequencies = new HashMap<>();
+
+    private BinaryTemplateEncoder() {}
+
+    public static byte[] encode(String json) throws IOException {
+        return encode(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static byte[] encode(byte[] json) throws IOException {
+        return encode(new ByteArrayInputStream(json));
+    }
+
+    public static byte[] encode(InputStream json) throws IOException {
+        BinaryTemplateEncoder encoder = new BinaryTemplateEncoder();
+        Node root = encoder.read(new JsonScanner(json), null);
+        return encoder.write(root);
+    }
+
+    /**
+     * Encode a manifest as {@code {"videoId": ..., "activations": [...]}} with one string
+     * table shared by every activation. {@link BinaryTemplate#toManifest()} reads it back.
+     */
+    public static byte[] encodeManifest(ActivationManifest manifest) throws IOException {
+        BinaryTemplateEncoder encoder = new BinaryTemplateEncoder();
+        Node root = encoder.object();
+        if (manifest.getVideoId() != null) {
+            encoder.put(root, "videoId", encoder.string(manifest.getVideoId()));
+        }
+        Node activations = new Node(BinaryFormat.ARRAY);
+        activations.children = new ArrayList<>(manifest.size());
+        for (ManifestEntry entry : manifest.getEntries()) {
+            Node activation = encoder.object();
+            encoder.put(activation, "id", encoder.string(entry.id));
+            encoder.put(activation, "start", encoder.integer(entry.startMs));
+            encoder.put(activation, "end", encoder.integer(entry.endMs));
+            encoder.put(activation, "preview", encoder.readBytes(entry.getRawPreview()));
+            if (entry.hasDetail()) {
+                encoder.put(activation, "detail", encoder.readBytes(entry.getRawDetail()));
+            }
+            activations.children.add(activation);
+        }
+        encoder.put(root, "activations", activations);
+        return encoder.write(root);
+    }
+
+    /**
+     * Encode one activation's payloads as a standalone {@code {"preview": ..., "detail": ...}}
+     * template with its own string table, for storage formats that read activations
+     * independently of each other.
+     */
+    public static byte[] encodeActivation(ManifestEntry entry) throws IOException {
+        BinaryTemplateEncoder encoder = new BinaryTemplateEncoder();
+        Node root = encoder.object();
+        encoder.put(root, "preview", encoder.readBytes(entry.getRawPreview()));
+        if (entry.hasDetail()) {
+            encoder.put(root, "detail", encoder.readBytes(entry.getRawDetail()));
+        }
+        return encoder.write(root);
+    }
+
+    private Node readBytes(byte[] json) throws IOException {
+        return read(new JsonScanner(new ByteArrayInputStream(json)), null);
+    }
+
+    private Node read(JsonScanner scanner, String key) throws IOException {
+        switch (scanner.peekToken()) {
+            case OBJECT: {
+                Node node = object();
+                scanner.beginObject();
+                while (scanner.hasNext()) {
+                    String name = scanner.nextName();
+                    put(node, name, read(scanner, name));
+                }
+                scanner.endObject();
+                return node;
+            }
+            case ARRAY: {
+                Node node = new Node(BinaryFormat.ARRAY);
+                node.children = new ArrayList<>();
+                scanner.beginArray();
+                while (scanner.hasNext()) {
+                    node.children.add(read(scanner, null));
+                }
+                scanner.endArray();
+                return node;
+            }
+            case STRING:
+                return resolvedString(key, scanner.nextString());
+            case BOOLEAN:
+                return new Node(scanner.nextBoolean() ? BinaryFormat.TRUE : BinaryFormat.FALSE);
+            case NULL:
+                scanner.skipValue();
+                return new Node(BinaryFormat.NULL);
+            case NUMBER:
+                return number(scanner.nextNumberLiteral());
+            default:
+                throw new IOException("Unexpected end of JSON at byte " + scanner.getOffset());
+        }
+    }
+
+    private Node object() {
+        Node node = new Node(BinaryFormat.OBJECT);
+        node.keys = new ArrayList<>();
+        node.children = new ArrayList<>();
+        return node;
+    }
+
+    private void put(Node object, String key, Node value) {
+        count(key);
+        object.keys.add(key);
+        object.children.add(value);
+    }
+
+    private Node resolvedString(String key, String value) {
+        Long color = COLOR_KEYS.contains(key) ? BinaryFormat.parseColor(value) : null;
+        if (color != null) {
+            Node node = new Node(value.length() == 9 ? BinaryFormat.COLOR_ARGB : BinaryFormat.COLOR_RGB);
+            node.number = color;
+            return node;
+        }
+        long percent = DIMENSION_KEYS.contains(key) ? BinaryFormat.parsePercent(value) : -1;
+        if (percent >= 0) {
+            Node node = new Node(BinaryFormat.PERCENT);
+            node.number = percent;
+            return node;
+        }
+        return string(value);
+    }
+
+    private Node string(String value) {
+        count(value);
+        Node node = new Node(BinaryFormat.STRING);
+        node.string = value;
+        return node;
+    }
+
+    private Node integer(long value) {
+        Node node = new Node(BinaryFormat.INT);
+        node.number = value;
+        return node;
+    }
+
+    private Node number(String literal) throws IOException {
+        if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+            try {
+                return integer(Long.parseLong(literal));
+            } catch (NumberFormatException ignored) {
+                // Too large for a long; fall through to double
+            }
+        }
+        try {
+            Node node = new Node(BinaryFormat.DOUBLE);
+            node.decimal = Double.parseDouble(literal);
+            return node;
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number " + literal);
+        }
+    }
+
+    private void count(String value) {
+        int[] count = frequencies.get(value);
+        if (count == null) {
+            frequencies.put(value, new int[] { 1 });
+        } else {
+            count[0]++;
+        }
+    }
+
+    private byte[] write(Node root) {
+        // Most frequent strings get the smallest indices and therefore one-byte varints
+        List<String> table = new ArrayList<>(frequencies.keySet());
+        table.sort((a, b) -> {
+            int byCount = Integer.compare(frequencies.get(b)[0], frequencies.get(a)[0]);
+            return byCount != 0 ? byCount : a.compareTo(b);
+        });
+        Map<String, Integer> indices = new HashMap<>(table.size() * 2);
+        for (int i = 0; i < table.size(); i++) {
+            indices.put(table.get(i), i);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(BinaryFormat.MAGIC, 0, BinaryFormat.MAGIC.length);
+        out.write(BinaryFormat.VERSION);
+        writeVarint(out, table.size());
+        for (String value : table) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        writeValue(out, root, indices);
+        return out.toByteArray();
+    }
+
+    private void writeValue(ByteArrayOutputStream out, Node node, Map<String, Integer> indices) {
+        out.write(node.tag);
+        switch (node.tag) {
+            case BinaryFormat.INT:
+                writeVarint(out, (node.number << 1) ^ (node.number >> 63));
+                break;
+            case BinaryFormat.DOUBLE:
+                long bits = Double.doubleToLongBits(node.decimal);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) (bits >>> shift));
+                }
+                break;
+            case BinaryFormat.STRING:
+                writeVarint(out, indices.get(node.string));
+                break;
+            case BinaryFormat.COLOR_ARGB:
+                out.write((int) (node.number >>> 24));
+                writeRgb(out, node.number);
+                break;
+            case BinaryFormat.COLOR_RGB:
+                writeRgb(out, node.number);
+                break;
+            case BinaryFormat.PERCENT:
+                writeVarint(out, node.number);
+                break;
+            case BinaryFormat.ARRAY:
+            case BinaryFormat.OBJECT: {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                writeVarint(body, node.children.size());
+                for (int i = 0; i < node.children.size(); i++) {
+                    if (node.tag == BinaryFormat.OBJECT) {
+                        writeVarint(body, indices.get(node.keys.get(i)));
+                    }
+                    writeValue(body, node.children.get(i), indices);
+                }
+                writeVarint(out, body.size());
+                byte[] bytes = body.toByteArray();
+                out.write(bytes, 0, bytes.length);
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private static void writeRgb(ByteArrayOutputStream out, long color) {
+        out.write((int) (color >>> 16));
+        out.write((int) (color >>> 8));
+        out.write((int) color);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
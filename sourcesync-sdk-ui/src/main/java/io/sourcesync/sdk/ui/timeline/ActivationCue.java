@@ -0,0 +1,35 @@
+package io.sourcesync.android.timeline;
+
+import org.json.JSONObject;
+
+/**
+ * An activation scheduled against video time. The cue is active for positions in
+ * {@code [startMs, endMs)}.
+ */
+public class ActivationCue {
+    public final String id;
+    public final long startMs;
+    public final long endMs;
+    private final JSONObject previewData;
+
+    public ActivationCue(String id, long startMs, long endMs, JSONObject previewData) {
+        if (endMs <= startMs) {
+            throw new IllegalArgumentException("Cue " + id + " must end after it starts");
+        }
+        this.id = id;
+        this.startMs = startMs;
+        this.endMs = endMs;
+        this.previewData = previewData;
+    }
+
+    /**
+     * Data passed to {@code Activation.showPreview} when the cue becomes active.
+     */
+    public JSONObject getPreviewData() {
+        return previewData;
+    }
+
+    public boolean isActiveAt(long positionMs) {
+        return positionMs >= startMs && positionMs < endMs;
+    }
+}
@@ -0,0 +1,324 @@
+package io.sourcesync.android.timeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps a set of {@link ActivationCue}s in sync with the playback position and reports
+ * cues entering and leaving the active set.
+ *
+ * Cues are stored twice: as an augmented interval tree over start-sorted cues for
+ * stabbing queries after a seek, and as a time-sorted list of start/end boundaries that a
+ * cursor walks during normal playback. A position update during playback therefore only
+ * touches the boundaries crossed since the previous update, and a seek costs
+ * O(log n + k) for k active cues. Pausing simply stops position updates.
+ *
+ * All methods are expected to be called from the main thread.
+ */
+public class ActivationTimeline {
+    /**
+     * Position jumps larger than this (in media time) are treated as seeks.
+     */
+    public static final long DEFAULT_SEEK_THRESHOLD_MS = 1000L;
+
+    public interface Listener {
+        void onCueEnter(ActivationCue cue);
+        void onCueExit(ActivationCue cue);
+
+        /**
+         * The payload of {@code cue} changed in place, see {@link #updateCue}. The cue may or
+         * may not be active.
+         */
+        default void onCueUpdated(ActivationCue cue) {}
+    }
+
+    private ActivationCue[] cues;           // sorted by start
+    private long[] subtreeMaxEnd;           // implicit balanced tree over cues
+    private long[] boundaryTimes;           // sorted boundary times, starts shifted by the lead
+    private int[] boundaryCues;             // cue index, negated minus one for ends
+
+    private final Set<ActivationCue> active = new LinkedHashSet<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private long seekThresholdMs = DEFAULT_SEEK_THRESHOLD_MS;
+    private float playbackRate = 1f;
+    private long enterLeadMs;
+    private long lastPositionMs = -1L;
+    private int cursor;                     // first boundary strictly after lastPositionMs
+
+    public ActivationTimeline(Collection<? extends ActivationCue> cues) {
+        index(cues);
+    }
+
+    /**
+     * Replace every cue, e.g. after a live update. The active set is resynchronised at
+     * the last position: removed cues exit, and a cue replaced by a new instance exits
+     * and the new instance enters.
+     */
+    public void setCues(Collection<? extends ActivationCue> cues) {
+        index(cues);
+        if (lastPositionMs >= 0) {
+            seekTo(lastPositionMs);
+        }
+    }
+
+    /**
+     * Report that {@code cue}, already on the timeline, has new content but the same
+     * timing. Nothing is re-indexed and the active set does not change; listeners are told
+     * through {@link Listener#onCueUpdated} instead of an exit and enter.
+     */
+    public void updateCue(ActivationCue cue) {
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onCueUpdated(cue);
+        }
+    }
+
+    private void index(Collection<? extends ActivationCue> cues) {
+        this.cues = cues.toArray(new ActivationCue[0]);
+        Arrays.sort(this.cues, Comparator.comparingLong((ActivationCue cue) -> cue.startMs));
+
+        subtreeMaxEnd = new long[this.cues.length];
+        buildMaxEnd(0, this.cues.length - 1);
+
+        boundaryTimes = new long[this.cues.length * 2];
+        boundaryCues = new int[this.cues.length * 2];
+        buildBoundaries();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setSeekThresholdMs(long seekThresholdMs) {
+        this.seekThresholdMs = seekThresholdMs;
+    }
+
+    /**
+     * Playback rate only scales the seek threshold and {@link #millisUntilNextBoundary};
+     * the active set itself depends on media time alone.
+     */
+    public void setPlaybackRate(float playbackRate) {
+        if (playbackRate > 0f) {
+            this.playbackRate = playbackRate;
+        }
+    }
+
+    /**
+     * Enter cues this much media time before their start, e.g. to give a renderer time
+     * to build the preview. Exits are not shifted. Only the boundary list is re-sorted;
+     * the interval tree is unaffected because every start moves by the same amount.
+     */
+    public void setEnterLeadMs(long enterLeadMs) {
+        enterLeadMs = Math.max(0L, enterLeadMs);
+        if (enterLeadMs == this.enterLeadMs) return;
+        this.enterLeadMs = enterLeadMs;
+        buildBoundaries();
+        if (lastPositionMs >= 0) {
+            seekTo(lastPositionMs);
+        }
+    }
+
+    public long getEnterLeadMs() {
+        return enterLeadMs;
+    }
+
+    /**
+     * Last position reported to the timeline, or -1 before the first update.
+     */
+    public long getPositionMs() {
+        return lastPositionMs;
+    }
+
+    public float getPlaybackRate() {
+        return playbackRate;
+    }
+
+    public int size() {
+        return cues.length;
+    }
+
+    public Set<ActivationCue> getActiveCues() {
+        return Collections.unmodifiableSet(active);
+    }
+
+    /**
+     * Report the current playback position. Small forward steps walk the boundary cursor;
+     * backward steps and large jumps are handled as a seek.
+     */
+    public void onPositionChanged(long positionMs) {
+        if (lastPositionMs < 0
+                || positionMs < lastPositionMs
+                || positionMs - lastPositionMs > seekThresholdMs * playbackRate) {
+            seekTo(positionMs);
+            return;
+        }
+
+        Set<ActivationCue> toggled = new LinkedHashSet<>();
+        while (cursor < boundaryTimes.length && boundaryTimes[cursor] <= positionMs) {
+            ActivationCue cue = cues[cueIndex(boundaryCues[cursor])];
+            // A cue that starts and ends inside one step toggles twice and is never shown
+            if (!toggled.remove(cue)) {
+                toggled.add(cue);
+            }
+            cursor++;
+        }
+        lastPositionMs = positionMs;
+
+        List<ActivationCue> entered = new ArrayList<>();
+        List<ActivationCue> exited = new ArrayList<>();
+        for (ActivationCue cue : toggled) {
+            boolean isActive = isActiveAt(cue, positionMs);
+            if (isActive && !active.contains(cue)) {
+                entered.add(cue);
+            } else if (!isActive && active.contains(cue)) {
+                exited.add(cue);
+            }
+        }
+        dispatch(exited, entered);
+    }
+
+    /**
+     * Resynchronise the active set to an arbitrary position with a single stabbing query.
+     */
+    public void seekTo(long positionMs) {
+        Set<ActivationCue> now = new LinkedHashSet<>();
+        collectActive(0, cues.length - 1, positionMs, now);
+
+        List<ActivationCue> exited = new ArrayList<>();
+        for (ActivationCue cue : active) {
+            if (!now.contains(cue)) exited.add(cue);
+        }
+        List<ActivationCue> entered = new ArrayList<>();
+        for (ActivationCue cue : now) {
+            if (!active.contains(cue)) entered.add(cue);
+        }
+
+        lastPositionMs = positionMs;
+        cursor = upperBound(boundaryTimes, positionMs);
+        dispatch(exited, entered);
+    }
+
+    /**
+     * Exit every active cue, e.g. when playback stops or the host is torn down.
+     */
+    public void clear() {
+        List<ActivationCue> exited = new ArrayList<>(active);
+        lastPositionMs = -1L;
+        cursor = 0;
+        dispatch(exited, Collections.emptyList());
+    }
+
+    /**
+     * Wall-clock time until the next cue boundary at the current rate, or -1 if there is
+     * none. Hosts that do not receive frequent position updates can use it to schedule the
+     * next {@link #onPositionChanged} call.
+     */
+    public long millisUntilNextBoundary() {
+        if (lastPositionMs < 0 || cursor >= boundaryTimes.length) return -1L;
+        return (long) Math.ceil((boundaryTimes[cursor] - lastPositionMs) / playbackRate);
+    }
+
+    /**
+     * Cues whose start falls in {@code [fromMs, toMs)}, in start order.
+     */
+    public List<ActivationCue> cuesStartingBetween(long fromMs, long toMs) {
+        List<ActivationCue> result = new ArrayList<>();
+        for (int i = lowerBoundByStart(fromMs); i < cues.length && cues[i].startMs < toMs; i++) {
+            result.add(cues[i]);
+        }
+        return result;
+    }
+
+    private void dispatch(List<ActivationCue> exited, List<ActivationCue> entered) {
+        for (ActivationCue cue : exited) {
+            active.remove(cue);
+            for (Listener listener : new ArrayList<>(listeners)) {
+                listener.onCueExit(cue);
+            }
+        }
+        for (ActivationCue cue : entered) {
+            active.add(cue);
+            for (Listener listener : new ArrayList<>(listeners)) {
+                listener.onCueEnter(cue);
+            }
+        }
+    }
+
+    private boolean isActiveAt(ActivationCue cue, long positionMs) {
+        return positionMs >= cue.startMs - enterLeadMs && positionMs < cue.endMs;
+    }
+
+    private void buildBoundaries() {
+        Integer[] order = new Integer[boundaryTimes.length];
+        for (int i = 0; i < cues.length; i++) {
+            order[i * 2] = i;
+            order[i * 2 + 1] = -i - 1;
+        }
+        // Ends sort before starts at the same instant so back-to-back cues hand over cleanly
+        Arrays.sort(order, (a, b) -> {
+            int byTime = Long.compare(boundaryTime(a), boundaryTime(b));
+            return byTime != 0 ? byTime : Boolean.compare(a >= 0, b >= 0);
+        });
+        for (int i = 0; i < order.length; i++) {
+            boundaryCues[i] = order[i];
+            boundaryTimes[i] = boundaryTime(order[i]);
+        }
+        cursor = upperBound(boundaryTimes, lastPositionMs);
+    }
+
+    private long buildMaxEnd(int lo, int hi) {
+        if (lo > hi) return Long.MIN_VALUE;
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(cues[mid].endMs, Math.max(buildMaxEnd(lo, mid - 1), buildMaxEnd(mid + 1, hi)));
+        subtreeMaxEnd[mid] = max;
+        return max;
+    }
+
+    private void collectActive(int lo, int hi, long positionMs, Set<ActivationCue> out) {
+        if (lo > hi) return;
+        int mid = (lo + hi) >>> 1;
+        if (subtreeMaxEnd[mid] <= positionMs) return;
+        collectActive(lo, mid - 1, positionMs, out);
+        if (cues[mid].startMs - enterLeadMs <= positionMs) {
+            if (cues[mid].endMs > positionMs) out.add(cues[mid]);
+            collectActive(mid + 1, hi, positionMs, out);
+        }
+    }
+
+    private int lowerBoundByStart(long startMs) {
+        int lo = 0;
+        int hi = cues.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cues[mid].startMs < startMs) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int upperBound(long[] values, long key) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] <= key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private long boundaryTime(int boundary) {
+        return boundary >= 0 ? cues[boundary].startMs - enterLeadMs : cues[cueIndex(boundary)].endMs;
+    }
+
+    private static int cueIndex(int boundary) {
+        return boundary >= 0 ? boundary : -boundary - 1;
+    }
+}
@@ -0,0 +1,185 @@
+package io.sourcesync.android.timeline;
+
+import android.view.View.OnClickListener;
+import io.sourcesync.android.Activation;
+import io.sourcesync.android.components.ActivationPreview;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.render.ActivationMetrics;
+import io.sourcesync.android.render.FrameAlignedReveal;
+import io.sourcesync.android.render.RenderLatencyEstimator;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timeline listener that drives an {@link Activation}: the most recently entered cue is
+ * shown as the preview and hidden again when it exits, falling back to any cue that is
+ * still active underneath it.
+ *
+ * With latency compensation enabled the timeline enters cues early by the device's
+ * measured render latency. The preview is built hidden at that point and revealed on the
+ * vsync closest to the cue's start, and the resulting skew is reported to
+ * {@link ActivationMetrics}.
+ */
+public class ActivationTimelineBinder implements ActivationTimeline.Listener {
+    private static final String TAG = "SourceSync.timeline";
+    private static final long FRAME_MARGIN_MS = 17L;
+
+    public interface OnCueClickListener {
+        void onCueClick(ActivationCue cue);
+    }
+
+    private final Activation activation;
+    private final OnCueClickListener clickListener;
+    private final PreparationScheduler scheduler;
+    private final List<ActivationCue> stack = new ArrayList<>();
+    private ActivationTimeline compensatedTimeline;
+    private ActivationCue shown;
+    private ActivationCue revealing;
+    private ActivationPreview revealingPreview;
+    private FrameAlignedReveal pendingReveal;
+
+    public ActivationTimelineBinder(Activation activation, OnCueClickListener clickListener) {
+        this(activation, clickListener, null);
+    }
+
+    /**
+     * @param scheduler optional source of previews prepared ahead of their cue
+     */
+    public ActivationTimelineBinder(Activation activation, OnCueClickListener clickListener,
+                                    PreparationScheduler scheduler) {
+        this.activation = activation;
+        this.clickListener = clickListener;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Enter cues on {@code timeline} early by the estimated render latency and reveal them
+     * frame-aligned at their start time. The lead follows the estimate as it is refined.
+     */
+    public void enableLatencyCompensation(ActivationTimeline timeline) {
+        this.compensatedTimeline = timeline;
+        updateLead();
+    }
+
+    public ActivationCue getShownCue() {
+        return shown;
+    }
+
+    @Override
+    public void onCueEnter(ActivationCue cue) {
+        stack.add(cue);
+        show(cue);
+    }
+
+    @Override
+    public void onCueExit(ActivationCue cue) {
+        stack.remove(cue);
+        if (cue == revealing) {
+            cancelReveal();
+        }
+        if (cue != shown) return;
+
+        if (stack.isEmpty()) {
+            shown = null;
+            activation.hidePreview();
+        } else {
+            show(stack.get(stack.size() - 1));
+        }
+    }
+
+    /**
+     * Swap the new content of a cue that is showing into its preview in place, so the
+     * preview neither flickers nor restarts its impression.
+     */
+    @Override
+    public void onCueUpdated(ActivationCue cue) {
+        if (scheduler != null) {
+            scheduler.invalidate(cue);
+        }
+        if (cue == revealing) {
+            // Not on screen yet: prepare it again from the new content
+            show(cue);
+        } else if (cue == shown) {
+            JSONObject previewData = cue.getPreviewData();
+            if (previewData != null) {
+                activation.updatePreview(previewData);
+            }
+        }
+    }
+
+    private void show(ActivationCue cue) {
+        cancelReveal();
+        try {
+            OnClickListener onClick = v -> {
+                if (clickListener != null) clickListener.onCueClick(cue);
+            };
+            ActivationPreview prepared = scheduler != null ? scheduler.takePrepared(cue) : null;
+            activation.setActivationId(cue.id);
+
+            long untilStartNanos = nanosUntilStart(cue);
+            if (compensatedTimeline != null && untilStartNanos > 0) {
+                if (prepared == null) {
+                    prepared = activation.preparePreview(cue.getPreviewData());
+                }
+                revealAt(cue, prepared, onClick, System.nanoTime() + untilStartNanos);
+                return;
+            }
+
+            if (prepared != null) {
+                activation.showPreparedPreview(prepared, onClick);
+            } else {
+                activation.showPreview(cue.getPreviewData(), onClick);
+            }
+            shown = cue;
+            if (compensatedTimeline != null) {
+                ActivationMetrics.getInstance().recordCueSkew(cue.id, -untilStartNanos / 1_000_000L);
+            }
+        } catch (RuntimeException e) {
+            SdkLog.e(TAG, "Failed to show cue {}", cue.id, e);
+        }
+    }
+
+    private void revealAt(ActivationCue cue, ActivationPreview prepared, OnClickListener onClick,
+                          long targetNanos) {
+        revealing = cue;
+        revealingPreview = prepared;
+        pendingReveal = FrameAlignedReveal.schedule(targetNanos, frameTimeNanos -> {
+            pendingReveal = null;
+            revealing = null;
+            revealingPreview = null;
+            activation.setActivationId(cue.id);
+            activation.showPreparedPreview(prepared, onClick);
+            shown = cue;
+            ActivationMetrics.getInstance().recordCueSkew(cue.id,
+                (frameTimeNanos - targetNanos) / 1_000_000L);
+            updateLead();
+        });
+    }
+
+    private void cancelReveal() {
+        if (pendingReveal == null) return;
+        pendingReveal.cancel();
+        activation.discardPreparedPreview(revealingPreview);
+        pendingReveal = null;
+        revealing = null;
+        revealingPreview = null;
+    }
+
+    /**
+     * Wall-clock time until the cue's start at the timeline's last position and rate;
+     * negative when the cue started in the past.
+     */
+    private long nanosUntilStart(ActivationCue cue) {
+        ActivationTimeline timeline = compensatedTimeline;
+        if (timeline == null || timeline.getPositionMs() < 0) return 0L;
+        float mediaMs = cue.startMs - timeline.getPositionMs();
+        return (long) (mediaMs / timeline.getPlaybackRate() * 1_000_000L);
+    }
+
+    private void updateLead() {
+        if (compensatedTimeline == null) return;
+        long estimateMs = RenderLatencyEstimator.getInstance().getEstimateMs() + FRAME_MARGIN_MS;
+        compensatedTimeline.setEnterLeadMs(Math.round(estimateMs * compensatedTimeline.getPlaybackRate()));
+    }
+}
@@ -0,0 +1,306 @@
+package io.sourcesync.android.timeline;
+
+import io.sourcesync.android.Activation;
+import io.sourcesync.android.components.ActivationPreview;
+import io.sourcesync.android.executor.SdkExecutors;
+import io.sourcesync.android.executor.TaskExecutor;
+import io.sourcesync.android.image.ImageLoader;
+import io.sourcesync.android.log.SdkLog;
+import io.sourcesync.android.render.AsyncRender;
+import io.sourcesync.android.render.RenderPlan;
+import io.sourcesync.android.resource.ManagedResource;
+import io.sourcesync.android.resource.ResourceManager;
+import io.sourcesync.android.segment.SegmentTree;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prepares cues a configurable lead time before they start, so that when the timeline
+ * enters a cue its data is already parsed and planned (guarded and optimized) on a
+ * background thread, its images are in the memory cache and, optionally, its preview is
+ * already built from that plan and attached invisibly.
+ *
+ * Preparations run one at a time in cue start order. A seek cancels every preparation
+ * outside the new look-ahead window and the remaining ones are re-ordered relative to
+ * the new position. Feed it the same positions as the {@link ActivationTimeline} and
+ * pass it to {@link ActivationTimelineBinder} so prepared previews are used.
+ *
+ * Prebuilt previews are registered with {@link ResourceManager} and discarded under
+ * memory pressure; their cues are then built when they start, as without a scheduler.
+ *
+ * All methods are expected to be called from the main thread. A preparation whose
+ * callback is lost, for example dropped by an executor, releases the scheduler so the
+ * next cue can be prepared.
+ */
+public class PreparationScheduler implements ManagedResource {
+    private static final String TAG = "SourceSync.prepare";
+    public static final long DEFAULT_LEAD_TIME_MS = 3000L;
+
+    private enum State { PENDING, COMPILING, PREFETCHING, READY, CANCELLED }
+
+    private static class Preparation {
+        final ActivationCue cue;
+        State state = State.PENDING;
+        RenderPlan plan;
+        int remainingImages;
+        ActivationPreview preview;
+
+        Preparation(ActivationCue cue) {
+            this.cue = cue;
+        }
+    }
+
+    /** A cue's preview plan and the images it shows, made on a background thread. */
+    private static class Compiled {
+        final RenderPlan plan;
+        final List<String> imageUrls = new ArrayList<>();
+
+        Compiled(RenderPlan plan) {
+            this.plan = plan;
+        }
+    }
+
+    private final ActivationTimeline timeline;
+    private final Activation activation;
+    private final ImageLoader imageLoader;
+    private final TaskExecutor cpuExecutor;
+    private final TaskExecutor mainExecutor;
+    private final Map<ActivationCue, Preparation> preparations = new HashMap<>();
+    private final PriorityQueue<Preparation> pending =
+        new PriorityQueue<>(Comparator.comparingLong((Preparation p) -> p.cue.startMs));
+
+    private long leadTimeMs = DEFAULT_LEAD_TIME_MS;
+    private boolean prebuildViews = true;
+    private long lastPositionMs = -1L;
+    // Cleared from any thread when a callback is lost, otherwise confined to the main thread
+    private final AtomicReference<Preparation> running = new AtomicReference<>();
+
+    public PreparationScheduler(ActivationTimeline timeline, Activation activation) {
+        this.timeline = timeline;
+        this.activation = activation;
+        this.imageLoader = ImageLoader.getInstance();
+        this.cpuExecutor = SdkExecutors.getInstance().cpu();
+        this.mainExecutor = SdkExecutors.getInstance().main();
+        ResourceManager.getInstance().register(this);
+    }
+
+    public void setLeadTimeMs(long leadTimeMs) {
+        this.leadTimeMs = Math.max(0L, leadTimeMs);
+    }
+
+    /**
+     * When disabled, only planning and image prefetch happen ahead of the cue.
+     */
+    public void setPrebuildViews(boolean prebuildViews) {
+        this.prebuildViews = prebuildViews;
+    }
+
+    public void onPositionChanged(long positionMs) {
+        boolean seeked = lastPositionMs < 0
+            || positionMs < lastPositionMs
+            || positionMs - lastPositionMs > ActivationTimeline.DEFAULT_SEEK_THRESHOLD_MS;
+        lastPositionMs = positionMs;
+
+        long windowEnd = positionMs + leadTimeMs;
+        Iterator<Preparation> it = preparations.values().iterator();
+        while (it.hasNext()) {
+            Preparation preparation = it.next();
+            boolean expired = preparation.cue.endMs <= positionMs;
+            boolean outsideWindow = preparation.cue.startMs < positionMs
+                || preparation.cue.startMs >= windowEnd;
+            if (expired || (seeked && outsideWindow)) {
+                cancel(preparation);
+                it.remove();
+            }
+        }
+
+        // Cues starting right now are entered by the timeline in this same update
+        for (ActivationCue cue : timeline.cuesStartingBetween(positionMs + 1, windowEnd)) {
+            if (!preparations.containsKey(cue)) {
+                Preparation preparation = new Preparation(cue);
+                preparations.put(cue, preparation);
+                pending.add(preparation);
+            }
+        }
+        pump();
+    }
+
+    /**
+     * Hand over the prebuilt preview for a cue, or null if it is not ready. Any
+     * unfinished preparation for the cue is cancelled either way.
+     */
+    public ActivationPreview takePrepared(ActivationCue cue) {
+        Preparation preparation = preparations.remove(cue);
+        if (preparation == null) return null;
+
+        if (preparation.state == State.READY && preparation.preview != null) {
+            ActivationPreview preview = preparation.preview;
+            preparation.preview = null;
+            return preview;
+        }
+        cancel(preparation);
+        return null;
+    }
+
+    /**
+     * Drop what was prepared for {@code cue}, whose content changed. It is prepared again
+     * on the next position update if it is still ahead.
+     */
+    public void invalidate(ActivationCue cue) {
+        Preparation preparation = preparations.remove(cue);
+        if (preparation != null) {
+            cancel(preparation);
+        }
+    }
+
+    public boolean isPrepared(ActivationCue cue) {
+        Preparation preparation = preparations.get(cue);
+        return preparation != null && preparation.state == State.READY;
+    }
+
+    /**
+     * Cancel everything still pending.
+     */
+    public void release() {
+        for (Preparation preparation : preparations.values()) {
+            cancel(preparation);
+        }
+        preparations.clear();
+    }
+
+    @Override
+    public String getResourceName() {
+        return "prepared previews";
+    }
+
+    @Override
+    public long getResourceBytes() {
+        // Their bitmaps are accounted for by the image cache
+        return 0L;
+    }
+
+    @Override
+    public int getResourceCount() {
+        int count = 0;
+        for (Preparation preparation : preparations.values()) {
+            if (preparation.preview != null) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void trimResources(int tier) {
+        for (Preparation preparation : preparations.values()) {
+            if (preparation.preview != null) {
+                activation.discardPreparedPreview(preparation.preview);
+                preparation.preview = null;
+            }
+        }
+        if (tier >= ResourceManager.TIER_ALL) {
+            release();
+        }
+    }
+
+    private void pump() {
+        if (running.get() != null) return;
+        Preparation next = pending.poll();
+        if (next == null) return;
+
+        running.set(next);
+        next.state = State.COMPILING;
+        // Parsing, guarding and optimizing all happen here, as in RenderPlan.forPreviewAsync
+        AsyncRender.supply(() -> {
+            Compiled compiled = new Compiled(RenderPlan.forPreview(next.cue.getPreviewData()));
+            SegmentTree.collectImageUrls(compiled.plan.template, compiled.imageUrls);
+            return compiled;
+        }, cpuExecutor).whenComplete((compiled, error) -> {
+            if (error != null) {
+                SdkLog.w(TAG, "Failed to compile cue {}", next.cue.id, error);
+            }
+            mainExecutor.execute(new TaskExecutor.Droppable() {
+                @Override
+                public void run() {
+                    onCompiled(next, compiled);
+                }
+
+                @Override
+                public void onDropped() {
+                    lost(next);
+                }
+            });
+        });
+    }
+
+    private void onCompiled(Preparation preparation, Compiled compiled) {
+        if (preparation.state == State.CANCELLED || compiled == null) {
+            finish(preparation);
+            return;
+        }
+        List<String> urls = compiled.imageUrls;
+        preparation.plan = compiled.plan;
+        preparation.state = State.PREFETCHING;
+        preparation.remainingImages = urls.size();
+        if (urls.isEmpty()) {
+            onPrefetched(preparation);
+            return;
+        }
+        for (String url : urls) {
+            imageLoader.prefetch(url, new TaskExecutor.Droppable() {
+                @Override
+                public void run() {
+                    if (--preparation.remainingImages == 0) {
+                        onPrefetched(preparation);
+                    }
+                }
+
+                @Override
+                public void onDropped() {
+                    lost(preparation);
+                }
+            });
+        }
+    }
+
+    private void onPrefetched(Preparation preparation) {
+        if (preparation.state != State.CANCELLED) {
+            if (prebuildViews) {
+                try {
+                    preparation.preview = activation.preparePreview(preparation.plan);
+                } catch (RuntimeException e) {
+                    SdkLog.w(TAG, "Failed to prebuild cue {}", preparation.cue.id, e);
+                }
+            }
+            preparation.state = State.READY;
+        }
+        finish(preparation);
+    }
+
+    private void finish(Preparation preparation) {
+        running.compareAndSet(preparation, null);
+        pump();
+    }
+
+    /**
+     * A callback for {@code preparation} will never run. It is left unfinished, and the
+     * next position update prepares the next cue. Called on any thread.
+     */
+    private void lost(Preparation preparation) {
+        running.compareAndSet(preparation, null);
+    }
+
+    private void cancel(Preparation preparation) {
+        running.compareAndSet(preparation, null);
+        pending.remove(preparation);
+        preparation.state = State.CANCELLED;
+        if (preparation.preview != null) {
+            activation.discardPreparedPreview(preparation.preview);
+            preparation.preview = null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.sourcesync.android;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ActivationHostTest {
+    private long sequence;
+
+    private ActivationHost.Entry entry(String id, ActivationHost.Slot slot, int z, int segments, long imageBytes) {
+        return new ActivationHost.Entry(id, slot, z, sequence++, segments, imageBytes);
+    }
+
+    @Test
+    public void overlaysInTheSameSlotOrWithTheSameIdAreReplaced() {
+        List<ActivationHost.Entry> showing = List.of(
+            entry("product", ActivationHost.Slot.LOWER_THIRD, 0, 10, 0),
+            entry("poll", ActivationHost.Slot.TOP_RIGHT, 0, 10, 0));
+
+        assertEquals(List.of("product"), ActivationHost.evictions(showing,
+            entry("offer", ActivationHost.Slot.LOWER_THIRD, 0, 10, 0), 3, 100, 100));
+        assertEquals(List.of("poll"), ActivationHost.evictions(showing,
+            entry("poll", ActivationHost.Slot.TOP_LEFT, 0, 10, 0), 3, 100, 100));
+        assertEquals(List.of(), ActivationHost.evictions(showing,
+            entry("score", ActivationHost.Slot.BOTTOM_LEFT, 0, 10, 0), 3, 100, 100));
+    }
+
+    @Test
+    public void lowestAndOldestOverlaysMakeRoomFirst() {
+        List<ActivationHost.Entry> showing = List.of(
+            entry("old", ActivationHost.Slot.TOP_LEFT, 1, 10, 0),
+            entry("low", ActivationHost.Slot.TOP_RIGHT, 0, 10, 0),
+            entry("newer", ActivationHost.Slot.BOTTOM_LEFT, 1, 10, 0));
+
+        // Count cap: one has to go
+        assertEquals(List.of("low"), ActivationHost.evictions(showing,
+            entry("corner", ActivationHost.Slot.BOTTOM_RIGHT, 1, 10, 0), 3, 100, 100));
+        // Segment cap: 56 segments against 45 need two of them gone
+        assertEquals(List.of("low", "old"), ActivationHost.evictions(showing,
+            entry("big", ActivationHost.Slot.BOTTOM_RIGHT, 1, 26, 0), 4, 45, 100));
+    }
+
+    @Test
+    public void overlaysAboveTheNewOneAreNeverHidden() {
+        List<ActivationHost.Entry> showing = List.of(
+            entry("alert", ActivationHost.Slot.TOP_LEFT, 5, 10, 60));
+
+        assertNull(ActivationHost.evictions(showing,
+            entry("poll", ActivationHost.Slot.TOP_RIGHT, 0, 10, 60), 3, 100, 100));
+        assertEquals(List.of("alert"), ActivationHost.evictions(showing,
+            entry("urgent", ActivationHost.Slot.TOP_RIGHT, 5, 10, 60), 3, 100, 100));
+        // Too expensive on its own
+        assertNull(ActivationHost.evictions(List.of(),
+            entry("huge", ActivationHost.Slot.FULL, 9, 200, 0), 3, 100, 100));
+    }
+
+    @Test
+    public void openDetailsCountTowardsTheCaps() {
+        ActivationHost.Entry product = entry("product", ActivationHost.Slot.LOWER_THIRD, 0, 10, 0);
+        product.detailSegments = 40;
+        List<ActivationHost.Entry> showing = List.of(product);
+
+        // 10 + 40 + 10 is over 55 only because of the detail
+        assertEquals(List.of("product"), ActivationHost.evictions(showing,
+            entry("poll", ActivationHost.Slot.TOP_RIGHT, 0, 10, 0), 3, 55, 100));
+
+        // Opening a detail replaces the overlay's own open one
+        ActivationHost.Entry withDetail = new ActivationHost.Entry("product", ActivationHost.Slot.LOWER_THIRD,
+            0, product.sequence, 10, 0);
+        withDetail.detailSegments = 45;
+        assertEquals(List.of("product"), ActivationHost.evictions(showing, withDetail, 3, 55, 100));
+        withDetail.detailSegments = 50;
+        assertNull(ActivationHost.evictions(showing, withDetail, 3, 55, 100));
+    }
+}
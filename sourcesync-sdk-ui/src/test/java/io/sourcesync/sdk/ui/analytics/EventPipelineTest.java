@@ -0,0 +1,164 @@
+package io.sourcesync.android.analytics;
+
+import io.sourcesync.android.testing.FakeEventTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EventPipelineTest {
+    private File directory;
+    private final FakeEventTransport transport = new FakeEventTransport();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("events").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+
+    private EventPipeline pipeline() throws IOException {
+        EventPipeline pipeline = new EventPipeline(directory, transport, executor);
+        pipeline.setFlushIntervalMs(TimeUnit.HOURS.toMillis(1));
+        return pipeline;
+    }
+
+    @Test
+    public void sendsOneGzippedBatchWhenTheSizeBoundIsReached() throws Exception {
+        EventPipeline pipeline = pipeline();
+        pipeline.setMaxBatchEvents(3);
+        pipeline.record(AnalyticsEvent.of(AnalyticsEvent.PREVIEW_SHOWN, "a"));
+        pipeline.record(AnalyticsEvent.click("a", "preview"));
+        assertEquals(2, pipeline.pendingCount());
+        assertTrue(transport.getBatches().isEmpty());
+
+        pipeline.record(AnalyticsEvent.dwell(AnalyticsEvent.DETAIL_DWELL, "a\"b", 1500));
+        assertEquals(0, pipeline.pendingCount());
+        assertEquals(1, transport.getBatches().size());
+        String batch = transport.getBatches().get(0);
+        assertTrue(batch, batch.startsWith("[{\"type\":\"preview_shown\",\"activationId\":\"a\""));
+        assertTrue(batch, batch.contains("\"type\":\"click\",\"activationId\":\"a\""));
+        assertTrue(batch, batch.contains("\"activationId\":\"a\\\"b\",\"time\":"));
+        assertTrue(batch, batch.contains("\"durationMs\":1500"));
+        assertTrue(batch, batch.contains("\"sessionId\":\"" + pipeline.getSessionId() + "\""));
+        pipeline.close();
+    }
+
+    @Test
+    public void timerFlushesPartialBatches() throws Exception {
+        EventPipeline pipeline = pipeline();
+        pipeline.record(AnalyticsEvent.of(AnalyticsEvent.DETAIL_OPENED, "a"));
+        pipeline.setFlushIntervalMs(20);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transport.getDeliveredCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, transport.getDeliveredCount());
+        pipeline.close();
+    }
+
+    @Test
+    public void failedBatchesStayQueuedAndSurviveRestart() throws Exception {
+        EventPipeline first = pipeline();
+        transport.failNext(1);
+        first.record(AnalyticsEvent.of(AnalyticsEvent.PREVIEW_SHOWN, "a"));
+        first.record(AnalyticsEvent.of(AnalyticsEvent.PREVIEW_SHOWN, "b"));
+        assertEquals(Integer.valueOf(0), first.flush().get());
+        assertEquals(2, first.pendingCount());
+        first.close();
+
+        EventPipeline second = pipeline();
+        assertEquals(2, second.pendingCount());
+        assertEquals(Integer.valueOf(2), second.flush().get());
+        assertEquals(0, second.pendingCount());
+        second.close();
+    }
+
+    @Test
+    public void fullBatchesWaitForTheTimerWhileBackingOff() throws Exception {
+        EventPipeline pipeline = pipeline();
+        pipeline.setMaxBatchEvents(1);
+        transport.failNext(1);
+        pipeline.record(AnalyticsEvent.of(AnalyticsEvent.PREVIEW_SHOWN, "a"));
+        pipeline.record(AnalyticsEvent.of(AnalyticsEvent.PREVIEW_SHOWN, "b"));
+        pipeline.record(AnalyticsEvent.of(AnalyticsEvent.PREVIEW_SHOWN, "c"));
+        assertEquals(3, pipeline.pendingCount());
+        assertEquals(1, transport.getAttemptCount());
+
+        // An explicit flush still sends, and ends the backoff
+        assertEquals(Integer.valueOf(3), pipeline.flush().get());
+        pipeline.record(AnalyticsEvent.of(AnalyticsEvent.PREVIEW_SHOWN, "d"));
+        assertEquals(0, pipeline.pendingCount());
+        assertEquals(4, transport.getDeliveredCount());
+        pipeline.close();
+    }
+
+    @Test
+    public void failingTimerKeepsOneRetryChain() throws Exception {
+        EventPipeline pipeline = pipeline();
+        transport.failNext(Integer.MAX_VALUE);
+        pipeline.record(AnalyticsEvent.of(AnalyticsEvent.PREVIEW_SHOWN, "a"));
+        pipeline.setFlushIntervalMs(20);
+        // Retries at about 20, 60, 140 and 300 ms; every extra timer chain would double them
+        Thread.sleep(600);
+        pipeline.close();
+        assertTrue(String.valueOf(transport.getAttemptCount()), transport.getAttemptCount() <= 5);
+        assertTrue(transport.getAttemptCount() >= 2);
+    }
+
+    @Test
+    public void byteBoundSplitsBatches() throws Exception {
+        EventPipeline pipeline = pipeline();
+        pipeline.setMaxBatchBytes(200);
+        for (int i = 0; i < 5; i++) {
+            pipeline.record(AnalyticsEvent.of(AnalyticsEvent.PREVIEW_SHOWN, "activation-" + i));
+        }
+        assertEquals(Integer.valueOf(5), pipeline.flush().get());
+        assertTrue(transport.getBatches().size() > 1);
+        assertEquals(5, transport.getDeliveredCount());
+        pipeline.close();
+    }
+
+    @Test
+    public void queueDropsTornRecordAndCompacts() throws Exception {
+        EventQueue queue = new EventQueue(directory);
+        queue.append("one");
+        queue.append("two");
+        queue.append("three");
+        File log = directory.listFiles((dir, name) -> name.endsWith(".log"))[0];
+        try (FileOutputStream out = new FileOutputStream(log, true)) {
+            out.write("{\"torn".getBytes(StandardCharsets.UTF_8));
+        }
+
+        EventQueue reopened = new EventQueue(directory);
+        assertEquals(3, reopened.size());
+        EventQueue.Batch batch = reopened.peek(2, Integer.MAX_VALUE);
+        assertEquals(Arrays.asList("one", "two"), batch.records);
+        reopened.commit(batch);
+        reopened.append("four");
+
+        EventQueue again = new EventQueue(directory);
+        assertEquals(Arrays.asList("three", "four"), again.peek(10, Integer.MAX_VALUE).records);
+        assertEquals(1, directory.listFiles((dir, name) -> name.endsWith(".log")).length);
+    }
+}
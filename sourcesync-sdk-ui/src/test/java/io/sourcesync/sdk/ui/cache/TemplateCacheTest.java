@@ -0,0 +1,140 @@
+package io.sourcesync.android.cache;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TemplateCacheTest {
+    private HttpServer server;
+    private String baseUrl;
+    private File directory;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> conditionalRequests = Collections.synchronizedList(new ArrayList<>());
+    private volatile String body = "{\"template\":[]}";
+    private volatile String etag = "\"v1\"";
+    private volatile String cacheControl = "max-age=0";
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("template-cache").toFile();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null) {
+                conditionalRequests.add(ifNoneMatch);
+            }
+            exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Last-Modified", "Mon, 19 Oct 2026 00:00:00 GMT");
+            if (etag.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void missFetchesThenFreshHitSkipsNetwork() throws IOException {
+        cacheControl = "max-age=3600";
+        TemplateCache cache = new TemplateCache(directory, Runnable::run);
+
+        TemplateCache.Result first = cache.get(baseUrl + "/a");
+        assertFalse(first.fromCache);
+        assertEquals(body, new String(first.body, StandardCharsets.UTF_8));
+
+        TemplateCache.Result second = cache.get(baseUrl + "/a");
+        assertTrue(second.fromCache);
+        assertFalse(second.stale);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void staleEntryIsServedAndRevalidatedWithEtag() throws IOException {
+        TemplateCache cache = new TemplateCache(directory, Runnable::run);
+        List<String> updates = new ArrayList<>();
+        cache.setListener((url, updated) -> updates.add(new String(updated, StandardCharsets.UTF_8)));
+        cache.get(baseUrl + "/a");
+
+        TemplateCache.Result unchanged = cache.get(baseUrl + "/a");
+        assertTrue(unchanged.fromCache);
+        assertTrue(unchanged.stale);
+        assertEquals(Collections.singletonList("\"v1\""), conditionalRequests);
+        assertTrue(updates.isEmpty());
+
+        body = "{\"template\":[{\"type\":\"text\"}]}";
+        etag = "\"v2\"";
+        TemplateCache.Result old = cache.get(baseUrl + "/a");
+        assertEquals("{\"template\":[]}", new String(old.body, StandardCharsets.UTF_8));
+        assertEquals(Collections.singletonList(body), updates);
+        assertEquals(body, new String(cache.peek(baseUrl + "/a"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void survivesAcrossInstancesAndOriginOutage() throws IOException {
+        new TemplateCache(directory, Runnable::run).get(baseUrl + "/a");
+        server.stop(0);
+
+        TemplateCache reopened = new TemplateCache(directory, Runnable::run);
+        TemplateCache.Result result = reopened.get(baseUrl + "/a");
+        assertTrue(result.fromCache);
+        assertEquals(body, new String(result.body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void leavesNoTemporaryFilesAndIgnoresCorruptEntries() throws IOException {
+        TemplateCache cache = new TemplateCache(directory, Runnable::run);
+        cache.get(baseUrl + "/a");
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        assertFalse(files[0].getName().endsWith(".tmp"));
+
+        Files.write(files[0].toPath(), new byte[] { 0, 0, 0, 1, 0 });
+        assertNull(cache.peek(baseUrl + "/a"));
+        assertFalse(cache.get(baseUrl + "/a").fromCache);
+    }
+
+    @Test
+    public void trimsToDiskBudget() throws IOException {
+        TemplateCache cache = new TemplateCache(directory, Runnable::run);
+        body = new String(new char[1000]).replace('\0', 'x');
+        cache.setMaxBytes(2500);
+        cache.get(baseUrl + "/a");
+        cache.get(baseUrl + "/b");
+        cache.get(baseUrl + "/c");
+        assertEquals(2, directory.listFiles().length);
+    }
+}
@@ -0,0 +1,186 @@
+package io.sourcesync.android.executor;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TaskExecutorTest {
+    /** Holds dispatched tasks until the test runs them. */
+    private static class ManualExecutor implements java.util.concurrent.Executor {
+        final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            pending.add(command);
+        }
+
+        void runAll() {
+            while (!pending.isEmpty()) {
+                pending.poll().run();
+            }
+        }
+    }
+
+    private static class Recorder implements TaskExecutor.Droppable {
+        final String name;
+        final List<String> log;
+
+        Recorder(String name, List<String> log) {
+            this.name = name;
+            this.log = log;
+        }
+
+        @Override
+        public void run() {
+            log.add(name);
+        }
+
+        @Override
+        public void onDropped() {
+            log.add("dropped:" + name);
+        }
+    }
+
+    @Test
+    public void limitsConcurrencyAndRunsHigherPrioritiesFirst() {
+        ManualExecutor delegate = new ManualExecutor();
+        TaskExecutor executor = new TaskExecutor("test", delegate, 1, 16);
+        List<String> log = new ArrayList<>();
+
+        executor.execute(new Recorder("first", log), TaskExecutor.PRIORITY_LOW, null);
+        executor.execute(new Recorder("low", log), TaskExecutor.PRIORITY_LOW, null);
+        executor.execute(new Recorder("normal", log), TaskExecutor.PRIORITY_NORMAL, null);
+        executor.execute(new Recorder("high", log), TaskExecutor.PRIORITY_HIGH, null);
+
+        assertEquals(1, delegate.pending.size());
+        assertEquals(3, executor.getStats().queued);
+        assertEquals(1, executor.getStats().running);
+
+        delegate.runAll();
+        assertEquals(List.of("first", "high", "normal", "low"), log);
+
+        TaskExecutor.Stats stats = executor.getStats();
+        assertEquals(4, stats.submitted);
+        assertEquals(4, stats.completed);
+        assertEquals(0, stats.running);
+        assertEquals(3, stats.peakQueued);
+    }
+
+    @Test
+    public void overflowDropsOldestLowestPriorityTask() {
+        ManualExecutor delegate = new ManualExecutor();
+        TaskExecutor executor = new TaskExecutor("test", delegate, 1, 2);
+        List<String> log = new ArrayList<>();
+
+        executor.execute(new Recorder("running", log), TaskExecutor.PRIORITY_NORMAL, null);
+        executor.execute(new Recorder("low1", log), TaskExecutor.PRIORITY_LOW, null);
+        executor.execute(new Recorder("low2", log), TaskExecutor.PRIORITY_LOW, null);
+        assertTrue(executor.execute(new Recorder("normal", log), TaskExecutor.PRIORITY_NORMAL, null));
+        assertEquals(List.of("dropped:low1"), log);
+
+        delegate.runAll();
+        assertEquals(List.of("dropped:low1", "running", "normal", "low2"), log);
+        assertEquals(1, executor.getStats().dropped);
+    }
+
+    @Test
+    public void lowerPriorityTaskIsRejectedWhenQueueIsFullOfHigherWork() {
+        ManualExecutor delegate = new ManualExecutor();
+        TaskExecutor executor = new TaskExecutor("test", delegate, 1, 1);
+        List<String> log = new ArrayList<>();
+
+        executor.execute(new Recorder("running", log), TaskExecutor.PRIORITY_HIGH, null);
+        executor.execute(new Recorder("high", log), TaskExecutor.PRIORITY_HIGH, null);
+        assertFalse(executor.execute(new Recorder("low", log), TaskExecutor.PRIORITY_LOW, null));
+
+        delegate.runAll();
+        assertEquals(List.of("dropped:low", "running", "high"), log);
+    }
+
+    @Test
+    public void collapseKeyReplacesQueuedTask() {
+        ManualExecutor delegate = new ManualExecutor();
+        TaskExecutor executor = new TaskExecutor("test", delegate, 1, 16);
+        List<String> log = new ArrayList<>();
+        Object view = new Object();
+
+        executor.execute(new Recorder("running", log), TaskExecutor.PRIORITY_NORMAL, null);
+        executor.execute(new Recorder("bind1", log), TaskExecutor.PRIORITY_LOW, view);
+        executor.execute(new Recorder("other", log), TaskExecutor.PRIORITY_NORMAL, null);
+        executor.execute(new Recorder("bind2", log), TaskExecutor.PRIORITY_HIGH, view);
+
+        delegate.runAll();
+        assertEquals(List.of("dropped:bind1", "running", "bind2", "other"), log);
+        assertEquals(1, executor.getStats().collapsed);
+        assertEquals(0, executor.getStats().dropped);
+    }
+
+    @Test
+    public void reprioritizeMovesQueuedTaskBetweenLevels() {
+        ManualExecutor delegate = new ManualExecutor();
+        TaskExecutor executor = new TaskExecutor("test", delegate, 1, 16);
+        List<String> log = new ArrayList<>();
+        Object below = new Object();
+        Object onScreen = new Object();
+
+        executor.execute(new Recorder("running", log));
+        executor.execute(new Recorder("onScreen", log), TaskExecutor.PRIORITY_LOW, onScreen);
+        executor.execute(new Recorder("below", log), TaskExecutor.PRIORITY_HIGH, below);
+
+        assertTrue(executor.reprioritize(onScreen, TaskExecutor.PRIORITY_HIGH));
+        assertTrue(executor.reprioritize(below, TaskExecutor.PRIORITY_LOW));
+        assertFalse(executor.reprioritize(new Object(), TaskExecutor.PRIORITY_HIGH));
+
+        delegate.runAll();
+        assertEquals(List.of("running", "onScreen", "below"), log);
+        assertFalse(executor.reprioritize(onScreen, TaskExecutor.PRIORITY_LOW));
+    }
+
+    @Test
+    public void clearDropsQueuedTasks() {
+        ManualExecutor delegate = new ManualExecutor();
+        TaskExecutor executor = new TaskExecutor("test", delegate, 1, 16);
+        List<String> log = new ArrayList<>();
+
+        executor.execute(new Recorder("running", log));
+        executor.execute(new Recorder("queued", log));
+        executor.clear();
+        delegate.runAll();
+
+        assertEquals(List.of("dropped:queued", "running"), log);
+        assertEquals(0, executor.getStats().queued);
+    }
+
+    @Test
+    public void unboundedQueueKeepsEveryTask() {
+        ManualExecutor delegate = new ManualExecutor();
+        TaskExecutor executor = new TaskExecutor("test", delegate, 1, TaskExecutor.UNBOUNDED);
+        List<String> log = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(executor.execute(new Recorder("task", log), TaskExecutor.PRIORITY_LOW, null));
+        }
+        delegate.runAll();
+
+        assertEquals(2000, log.size());
+        assertFalse(log.contains("dropped:task"));
+        assertEquals(0, executor.getStats().dropped);
+    }
+
+    @Test
+    public void rejectedDispatchTellsTheTask() {
+        TaskExecutor executor = new TaskExecutor("test", task -> {
+            throw new java.util.concurrent.RejectedExecutionException();
+        }, 1, TaskExecutor.UNBOUNDED);
+        List<String> log = new ArrayList<>();
+
+        executor.execute(new Recorder("refused", log));
+
+        assertEquals(List.of("dropped:refused"), log);
+        assertEquals(1, executor.getStats().dropped);
+    }
+}
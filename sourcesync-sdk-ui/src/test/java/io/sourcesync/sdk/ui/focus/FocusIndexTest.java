@@ -0,0 +1,136 @@
+package io.sourcesync.android.focus;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FocusIndexTest {
+    /** A 3x3 grid of 100x50 buttons with 10px gaps, named by row and column. */
+    private static FocusIndex<String> grid() {
+        FocusIndex<String> index = new FocusIndex<>();
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                int left = col * 110;
+                int top = row * 60;
+                index.put("" + row + col, left, top, left + 100, top + 50);
+            }
+        }
+        return index;
+    }
+
+    @Test
+    public void movesToNeighboursInEachDirection() {
+        FocusIndex<String> index = grid();
+        assertEquals("21", index.next("11", FocusIndex.DOWN));
+        assertEquals("01", index.next("11", FocusIndex.UP));
+        assertEquals("10", index.next("11", FocusIndex.LEFT));
+        assertEquals("12", index.next("11", FocusIndex.RIGHT));
+    }
+
+    @Test
+    public void returnsNullAtTheEdges() {
+        FocusIndex<String> index = grid();
+        assertNull(index.next("00", FocusIndex.UP));
+        assertNull(index.next("00", FocusIndex.LEFT));
+        assertNull(index.next("22", FocusIndex.DOWN));
+        assertNull(index.next("22", FocusIndex.RIGHT));
+        assertNull(index.next("missing", FocusIndex.DOWN));
+    }
+
+    @Test
+    public void prefersItemsInTheBeam() {
+        FocusIndex<String> index = new FocusIndex<>();
+        index.put("wide", 0, 0, 400, 50);
+        // Overlaps the right edge, but is further down than the one just past it
+        index.put("overlapping", 390, 100, 490, 150);
+        index.put("past", 410, 90, 510, 140);
+        assertEquals("overlapping", index.next("wide", FocusIndex.DOWN));
+    }
+
+    @Test
+    public void followsRemovalsAndMoves() {
+        FocusIndex<String> index = grid();
+        assertTrue(index.remove("21"));
+        assertEquals("20", index.next("11", FocusIndex.DOWN));
+
+        index.put("21", 110, 120, 210, 170);
+        assertEquals("21", index.next("11", FocusIndex.DOWN));
+        assertFalse(index.put("21", 110, 120, 210, 170));
+
+        // Moved to the top of the column
+        index.put("21", 110, -100, 210, -50);
+        assertEquals("21", index.next("01", FocusIndex.UP));
+        assertEquals(9, index.size());
+    }
+
+    @Test
+    public void matchesExhaustiveSearchOnRandomLayouts() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            FocusIndex<Integer> index = new FocusIndex<>();
+            int count = 40;
+            int[][] rects = new int[count][];
+            for (int i = 0; i < count; i++) {
+                int left = random.nextInt(1000);
+                int top = random.nextInt(3000);
+                rects[i] = new int[] { left, top, left + 20 + random.nextInt(200), top + 20 + random.nextInt(100) };
+                index.put(i, rects[i][0], rects[i][1], rects[i][2], rects[i][3]);
+            }
+            for (int from = 0; from < count; from++) {
+                for (int direction = 0; direction < 4; direction++) {
+                    Integer expected = exhaustive(rects, from, direction);
+                    Integer actual = index.next(from, direction);
+                    if (expected == null) {
+                        assertNull(actual);
+                    } else {
+                        assertNotNull(actual);
+                        assertEquals(score(rects[from], rects[expected], direction),
+                            score(rects[from], rects[actual], direction));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Integer exhaustive(int[][] rects, int from, int direction) {
+        Integer best = null;
+        long bestScore = Long.MAX_VALUE;
+        for (int i = 0; i < rects.length; i++) {
+            if (i == from || !isCandidate(rects[from], rects[i], direction)) continue;
+            long score = score(rects[from], rects[i], direction);
+            if (score < bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isCandidate(int[] s, int[] c, int direction) {
+        switch (direction) {
+            case FocusIndex.DOWN: return c[1] > s[1] && c[3] > s[3];
+            case FocusIndex.UP: return c[3] < s[3] && c[1] < s[1];
+            case FocusIndex.RIGHT: return c[0] > s[0] && c[2] > s[2];
+            default: return c[2] < s[2] && c[0] < s[0];
+        }
+    }
+
+    private static long score(int[] s, int[] c, int direction) {
+        long major;
+        boolean inBeam;
+        long minor;
+        if (direction == FocusIndex.DOWN || direction == FocusIndex.UP) {
+            major = Math.max(0, direction == FocusIndex.DOWN ? c[1] - s[3] : s[1] - c[3]);
+            inBeam = c[0] < s[2] && c[2] > s[0];
+            minor = Math.abs((c[0] + c[2]) / 2 - (s[0] + s[2]) / 2);
+        } else {
+            major = Math.max(0, direction == FocusIndex.RIGHT ? c[0] - s[2] : s[0] - c[2]);
+            inBeam = c[1] < s[3] && c[3] > s[1];
+            minor = Math.abs((c[1] + c[3]) / 2 - (s[1] + s[3]) / 2);
+        }
+        if (inBeam) minor = 0;
+        return 13 * major * major + minor * minor;
+    }
+}
@@ -0,0 +1,138 @@
+package io.sourcesync.android.font;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class TypefaceRegistryTest {
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            pending.add(command);
+        }
+
+        void runAll() {
+            while (!pending.isEmpty()) {
+                pending.poll().run();
+            }
+        }
+    }
+
+    @Test
+    public void fontsAreKeyedByFamilyAndWeight() {
+        assertEquals("brand sans|normal", TypefaceRegistry.key(" Brand Sans", false));
+        assertEquals("brand sans|bold", TypefaceRegistry.key("brand sans", true));
+        assertTrue(TypefaceRegistry.isSource("asset:fonts/Brand.ttf"));
+        assertTrue(TypefaceRegistry.isSource("https://cdn.example.com/brand.woff"));
+        assertTrue(TypefaceRegistry.isSource("fonts/Brand.OTF"));
+        assertFalse(TypefaceRegistry.isSource("serif"));
+    }
+
+    @Test
+    public void concurrentRequestsShareOneLoad() {
+        ManualExecutor executor = new ManualExecutor();
+        List<String> loaded = new ArrayList<>();
+        TypefaceRegistry registry = new TypefaceRegistry(executor, source -> {
+            loaded.add(source);
+            return null;
+        });
+        registry.register("Brand", "asset:fonts/Brand-Regular.ttf");
+        registry.register("Brand", "bold", "asset:fonts/Brand-Bold.ttf");
+
+        CompletableFuture<?> first = registry.load("Brand", false);
+        CompletableFuture<?> second = registry.load("brand", false);
+        registry.load("Brand", true);
+        assertSame(first, second);
+        assertFalse(first.isDone());
+
+        executor.runAll();
+        assertEquals(List.of("asset:fonts/Brand-Regular.ttf", "asset:fonts/Brand-Bold.ttf"), loaded);
+        assertTrue(first.isDone());
+
+        // Loaded fonts are kept
+        registry.load("Brand", false);
+        assertTrue(executor.pending.isEmpty());
+    }
+
+    @Test
+    public void racingThreadsStartOneLoad() throws Exception {
+        ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        TypefaceRegistry registry = new TypefaceRegistry(pending::add, source -> null);
+        registry.register("Brand", "asset:fonts/Brand-Regular.ttf");
+
+        CountDownLatch go = new CountDownLatch(1);
+        Set<CompletableFuture<?>> loads = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            boolean bold = i % 2 == 0;
+            Thread thread = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                loads.add(registry.load("Brand", bold));
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // One regular load, one bold made from it
+        assertEquals(2, loads.size());
+        assertEquals(1, pending.size());
+    }
+
+    @Test
+    public void boldWithoutABoldSourceReusesTheRegularLoad() {
+        ManualExecutor executor = new ManualExecutor();
+        List<String> loaded = new ArrayList<>();
+        TypefaceRegistry registry = new TypefaceRegistry(executor, source -> {
+            loaded.add(source);
+            return null;
+        });
+
+        String url = "https://cdn.example.com/Brand.ttf";
+        CompletableFuture<?> bold = registry.load(url, true);
+        registry.load(url, false);
+        executor.runAll();
+
+        assertEquals(List.of(url), loaded);
+        assertTrue(bold.isDone());
+    }
+
+    @Test
+    public void failedLoadsAreRetriedOnTheNextRequest() {
+        ManualExecutor executor = new ManualExecutor();
+        int[] attempts = {0};
+        TypefaceRegistry registry = new TypefaceRegistry(executor, source -> {
+            if (attempts[0]++ == 0) throw new IOException("offline");
+            return null;
+        });
+
+        CompletableFuture<?> failed = registry.load("asset:Brand.ttf", false);
+        executor.runAll();
+        assertTrue(failed.isCompletedExceptionally());
+        assertNull(registry.getLoaded("asset:Brand.ttf", false));
+
+        executor.runAll();
+        assertEquals(2, attempts[0]);
+        assertFalse(registry.load("asset:Brand.ttf", false).isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,78 @@
+package io.sourcesync.android.image;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BitmapBudgetTest {
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void fullQualityWhenItFits() {
+        BitmapBudget budget = new BitmapBudget(8 * MB);
+        BitmapBudget.DecodePlan plan = budget.plan("a", 1000, 1000, null);
+        assertFalse(plan.isReduced());
+        assertEquals(4_000_000, plan.bytes);
+    }
+
+    @Test
+    public void sharedBitmapIsChargedOnceUntilUncachedAndUnbound() {
+        BitmapBudget budget = new BitmapBudget(8 * MB);
+        Object bitmap = new Object();
+        budget.onCached(bitmap, MB);
+        budget.onBound(bitmap, MB);
+        budget.onBound(bitmap, MB);
+        assertEquals(MB, budget.getUsedBytes());
+
+        budget.onEvicted(bitmap);
+        budget.onUnbound(bitmap);
+        assertEquals(MB, budget.getUsedBytes());
+        budget.onUnbound(bitmap);
+        assertEquals(0, budget.getUsedBytes());
+        assertEquals(MB, budget.getStats().peakBytes);
+    }
+
+    @Test
+    public void evictsBeforeDownscaling() {
+        BitmapBudget budget = new BitmapBudget(8 * MB);
+        Object cached = new Object();
+        budget.onCached(cached, 6 * MB);
+
+        BitmapBudget.DecodePlan plan = budget.plan("a", 1000, 1000, bytes -> budget.onEvicted(cached));
+        assertFalse(plan.isReduced());
+        assertEquals(0, budget.getStats().downscaled);
+        assertEquals(1, budget.getStats().evictions);
+    }
+
+    @Test
+    public void fallsBackToRgb565ThenLowerResolution() {
+        BitmapBudget budget = new BitmapBudget(8 * MB);
+        Object shown = new Object();
+        budget.onBound(shown, 6 * MB);
+        List<BitmapBudget.DecodePlan> events = new ArrayList<>();
+        budget.setListener((url, width, height, plan) -> events.add(plan));
+
+        BitmapBudget.DecodePlan rgb565 = budget.plan("a", 1000, 1000, bytes -> {});
+        assertEquals(1, rgb565.sampleSize);
+        assertTrue(rgb565.rgb565);
+        assertEquals(2_000_000, rgb565.bytes);
+
+        BitmapBudget.DecodePlan halved = budget.plan("b", 4000, 3000, bytes -> {});
+        assertTrue(halved.rgb565);
+        assertEquals(4, halved.sampleSize);
+        assertTrue(halved.bytes <= 2 * MB);
+
+        assertEquals(2, events.size());
+        assertEquals(2, budget.getStats().downscaled);
+    }
+
+    @Test
+    public void neverDownscalesBelowMinimumDimension() {
+        BitmapBudget.DecodePlan plan = BitmapBudget.reduce(1024, 512, 0);
+        assertEquals(16, plan.sampleSize);
+        assertEquals(64 * 32 * 2, plan.bytes);
+    }
+}
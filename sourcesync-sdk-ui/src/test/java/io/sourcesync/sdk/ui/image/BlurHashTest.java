@@ -0,0 +1,54 @@
+package io.sourcesync.android.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlurHashTest {
+    private static final String ALPHABET =
+        "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+    private static final String SAMPLE = "LEHV6nWB2yk8pyo0adR*.7kCMdnj";
+
+    private static String encode83(int value, int length) {
+        StringBuilder out = new StringBuilder();
+        for (int i = length - 1; i >= 0; i--) {
+            int divisor = (int) Math.pow(83, i);
+            out.append(ALPHABET.charAt(value / divisor % 83));
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void validatesLengthAgainstComponentCount() {
+        assertTrue(BlurHash.isValid(SAMPLE));
+        assertFalse(BlurHash.isValid(SAMPLE.substring(0, SAMPLE.length() - 2)));
+        assertFalse(BlurHash.isValid("LEHV6nWB2yk8pyo0adR*.7kCMdn\""));
+        assertFalse(BlurHash.isValid(null));
+        assertFalse(BlurHash.isValid("#FF0000"));
+    }
+
+    @Test
+    public void singleComponentDecodesToItsColor() {
+        String hash = "00" + encode83(0x3A5F7D, 4);
+        int[] pixels = BlurHash.decode(hash, 4, 3, 1f);
+        assertEquals(12, pixels.length);
+        for (int pixel : pixels) {
+            assertEquals(0xFF3A5F7D, pixel);
+        }
+    }
+
+    @Test
+    public void decodesOpaquePixelsThatVaryAcrossTheImage() {
+        int[] pixels = BlurHash.decode(SAMPLE, 32, 32, 1f);
+        assertEquals(32 * 32, pixels.length);
+        for (int pixel : pixels) {
+            assertEquals(0xFF, pixel >>> 24);
+        }
+        assertNotEquals(pixels[0], pixels[pixels.length - 1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedHash() {
+        BlurHash.decode("LEHV6n", 8, 8, 1f);
+    }
+}
@@ -0,0 +1,46 @@
+package io.sourcesync.android.image;
+
+import io.sourcesync.android.executor.TaskExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ViewportImageLoaderTest {
+    @Test
+    public void visibleImagesComeFirstThenTheNextScreen() {
+        // Viewport covers 1000..2000
+        assertEquals(TaskExecutor.PRIORITY_HIGH, ViewportImageLoader.priorityFor(1900, 2100, 1000, 2000));
+        assertEquals(TaskExecutor.PRIORITY_HIGH, ViewportImageLoader.priorityFor(800, 1000, 1000, 2000));
+        assertEquals(TaskExecutor.PRIORITY_NORMAL, ViewportImageLoader.priorityFor(2500, 2700, 1000, 2000));
+        assertEquals(TaskExecutor.PRIORITY_NORMAL, ViewportImageLoader.priorityFor(100, 300, 1000, 2000));
+        assertEquals(TaskExecutor.PRIORITY_LOW, ViewportImageLoader.priorityFor(5000, 5200, 1000, 2000));
+    }
+
+    @Test
+    public void distanceIsZeroOnScreenAndGrowsAwayFromIt() {
+        assertEquals(0, ViewportImageLoader.distanceTo(1500, 1600, 1000, 2000));
+        assertEquals(300, ViewportImageLoader.distanceTo(2300, 2500, 1000, 2000));
+        assertEquals(700, ViewportImageLoader.distanceTo(100, 300, 1000, 2000));
+    }
+
+    @Test
+    public void pausedGateHoldsDecodesUntilResumed() {
+        DecodeGate gate = new DecodeGate();
+        List<String> started = new ArrayList<>();
+
+        assertFalse(gate.park(() -> started.add("a")));
+        gate.pause();
+        assertTrue(gate.park(() -> started.add("b")));
+        assertTrue(gate.park(() -> started.add("c")));
+        assertEquals(2, gate.getParkedCount());
+        assertTrue(started.isEmpty());
+
+        gate.resume();
+        assertEquals(List.of("b", "c"), started);
+        assertEquals(0, gate.getParkedCount());
+        assertFalse(gate.isPaused());
+    }
+}
@@ -0,0 +1,118 @@
+package io.sourcesync.android.layout;
+
+import io.sourcesync.android.segment.SegmentSize;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BoxLayoutTest {
+    /** Text is 10 px per character and 20 px per line; images are 100x50. */
+    private static final BoxLayout.Measurer MEASURER = (node, maxWidth) -> {
+        if ("image".equals(node.getType())) {
+            return new SegmentSize(100, 50);
+        }
+        int width = node.getContent().length() * 10;
+        int lines = maxWidth > 0 ? Math.max(1, (width + maxWidth - 1) / maxWidth) : 1;
+        return new SegmentSize(Math.min(width, maxWidth), lines * 20);
+    };
+
+    private static Frame layout(List<LayoutNode> segments, int width, int height) {
+        return new BoxLayout(1f, MEASURER).layout(segments, width, height);
+    }
+
+    @Test
+    public void segmentsStackDownTheViewport() {
+        Frame root = layout(List.of(
+            new LayoutNode("text").content("Hello"),
+            new LayoutNode("text").content("A line that wraps"),
+            new LayoutNode("button").content("Buy")), 100, 400);
+
+        assertEquals(3, root.children.size());
+        Frame title = root.children.get(0);
+        assertEquals(0, title.y);
+        assertEquals(100, title.width);
+        assertEquals(20, title.height);
+
+        Frame wrapped = root.children.get(1);
+        assertEquals(20, wrapped.y);
+        assertEquals(40, wrapped.height);
+
+        // Buttons keep their measured width and center by default
+        Frame button = root.children.get(2);
+        assertEquals(30, button.width);
+        assertEquals(35, button.x);
+        assertEquals(60, button.y);
+        assertEquals(80, root.height);
+    }
+
+    @Test
+    public void rowGivesPercentagesFirstAndSharesTheRestBetweenColumns() {
+        LayoutNode row = new LayoutNode("row")
+            .add(new LayoutNode("text").width(0.5f).content("Half"))
+            .add(new LayoutNode("column").add(new LayoutNode("text").content("a")))
+            .add(new LayoutNode("column").add(new LayoutNode("text").content("b")));
+        Frame frame = layout(List.of(row), 300, 400).children.get(0);
+
+        assertEquals(150, frame.children.get(0).width);
+        assertEquals(0, frame.children.get(0).x);
+        assertEquals(75, frame.children.get(1).width);
+        assertEquals(150, frame.children.get(1).x);
+        assertEquals(75, frame.children.get(2).width);
+        assertEquals(225, frame.children.get(2).x);
+        // Column content is centered within each column
+        assertEquals(225, frame.children.get(2).children.get(0).x);
+    }
+
+    @Test
+    public void rowAlignmentPlacesMeasuredChildrenAndSpacingSeparatesThem() {
+        LayoutNode centered = new LayoutNode("row").spaced(true)
+            .add(new LayoutNode("button").content("Yes"))
+            .add(new LayoutNode("button").content("No"));
+        LayoutNode right = new LayoutNode("row").alignment("right")
+            .add(new LayoutNode("text").content("Tall text here"))
+            .add(new LayoutNode("button").content("Go"));
+        Frame root = layout(List.of(centered, right), 100, 400);
+
+        Frame first = root.children.get(0);
+        // 30 + 8 + 20 = 58 wide, centered in 100
+        assertEquals(21, first.children.get(0).x);
+        assertEquals(59, first.children.get(1).x);
+
+        Frame second = root.children.get(1);
+        assertEquals(20, second.y);
+        // The text wraps to the 100 px it was offered, leaving the button no room
+        assertEquals(100, second.children.get(0).width);
+        assertEquals(40, second.height);
+        assertEquals(0, second.children.get(1).width);
+        // Right-aligned rows put children at the top
+        assertEquals(20, second.children.get(1).y);
+    }
+
+    @Test
+    public void heightsAreAPercentageOfTheParentOrTheViewport() {
+        LayoutNode column = new LayoutNode("column").height(0.5f)
+            .add(new LayoutNode("image").height(0.5f).width(0.5f))
+            .add(new LayoutNode("text").content("x"));
+        LayoutNode row = new LayoutNode("row").add(column);
+        Frame root = layout(List.of(row, new LayoutNode("image")), 200, 400);
+
+        Frame columnFrame = root.children.get(0).children.get(0);
+        assertEquals(200, columnFrame.width);
+        assertEquals(200, columnFrame.height);
+        Frame image = columnFrame.children.get(0);
+        assertEquals(100, image.width);
+        assertEquals(100, image.height);
+        assertEquals(50, image.x);
+        // 120 px of content centered in 200
+        assertEquals(40, image.y);
+        assertEquals(140, columnFrame.children.get(1).y);
+
+        Frame intrinsic = root.children.get(1);
+        assertEquals(200, intrinsic.y);
+        assertEquals(100, intrinsic.width);
+        assertEquals(50, intrinsic.height);
+        assertEquals(50, intrinsic.x);
+    }
+}
@@ -0,0 +1,206 @@
+package io.sourcesync.android.live;
+
+import io.sourcesync.android.manifest.ManifestEntry;
+import io.sourcesync.android.manifest.ManifestLoader;
+import io.sourcesync.android.template.BinaryManifestEntry;
+import io.sourcesync.android.template.BinaryTemplate;
+import io.sourcesync.android.template.BinaryTemplateEncoder;
+import io.sourcesync.android.timeline.ActivationCue;
+import io.sourcesync.android.timeline.ActivationTimeline;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static io.sourcesync.android.live.LoopbackEventServer.activation;
+import static io.sourcesync.android.live.LoopbackEventServer.event;
+import static org.junit.Assert.*;
+
+public class LiveUpdateClientTest {
+    /** Frames are run by the test, so it decides when a batch is delivered. */
+    private final BlockingQueue<Runnable> frames = new LinkedBlockingQueue<>();
+    private final List<List<LiveUpdate>> batches = new ArrayList<>();
+    private final UpdateBatcher batcher = new UpdateBatcher(batches::add, frames::add);
+
+    @Test
+    public void parsesEventStreamFields() {
+        List<String> events = new ArrayList<>();
+        SseParser parser = new SseParser((id, type, data) -> events.add(id + "|" + type + "|" + data));
+        for (String line : (": keep-alive\nid: 1\nevent: add\ndata: a\ndata:b\n\n"
+                + "data: no type\n\nretry: 2500\nid\n\nevent: ignored\n\n").split("\n", -1)) {
+            parser.feedLine(line);
+        }
+        assertEquals(Arrays.asList("1|add|a\nb", "1|message|no type"), events);
+        assertEquals(2500L, parser.getRetryMs());
+        assertEquals("", parser.getLastEventId());
+    }
+
+    @Test
+    public void burstCollapsesToOneBatchPerFrame() throws Exception {
+        batcher.add(LiveUpdate.parse("1", "add", activation("a", 0, 1000, "A1")));
+        batcher.add(LiveUpdate.parse("2", "add", activation("b", 0, 1000, "B")));
+        batcher.add(LiveUpdate.parse("3", "update", activation("a", 0, 1000, "A2")));
+        assertEquals(1, frames.size());
+        frames.take().run();
+
+        assertEquals(1, batches.size());
+        List<LiveUpdate> batch = batches.get(0);
+        assertEquals(2, batch.size());
+        assertEquals("b", batch.get(0).id);
+        assertEquals("3", batch.get(1).eventId);
+        assertEquals("{\"title\":\"A2\"}", new String(batch.get(1).entry.getRawPreview(), StandardCharsets.UTF_8));
+
+        batcher.add(LiveUpdate.parse("4", "remove", "{\"id\":\"b\"}"));
+        assertEquals(1, frames.size());
+    }
+
+    @Test
+    public void resumesFromLastEventIdAfterDisconnect() throws Exception {
+        try (LoopbackEventServer server = new LoopbackEventServer()) {
+            server.respond(200, event("7", "add", activation("a", 0, 1000, "A"))
+                + event("8", "add", activation("b", 500, 1500, "B")));
+            server.respond(200, event("9", "remove", "{\"id\":\"a\"}"));
+
+            LiveUpdateClient client = new LiveUpdateClient(server.url(), batcher);
+            client.setReconnectDelays(5, 20);
+            client.setLastEventId("6");
+            client.start();
+            try {
+                // The idle poll after the scripted responses means they were all read
+                server.awaitRequests(4);
+            } finally {
+                client.stop();
+            }
+
+            assertEquals(Arrays.asList("6", "8", "9"), server.lastEventIds.subList(0, 3));
+            assertEquals("9", client.getLastEventId());
+            List<String> delivered = drain();
+            assertEquals(Arrays.asList("ADD b", "REMOVE a"), delivered);
+        }
+    }
+
+    @Test
+    public void backsOffAndRecoversFromServerErrors() throws Exception {
+        try (LoopbackEventServer server = new LoopbackEventServer()) {
+            server.respond(503, "");
+            server.respond(500, "");
+            server.respond(200, event("1", "add", activation("a", 0, 1000, "A")));
+
+            LiveUpdateClient client = new LiveUpdateClient(server.url(), batcher);
+            client.setReconnectDelays(5, 20);
+            client.start();
+            try {
+                // The idle poll after the scripted responses means they were all read
+                server.awaitRequests(4);
+            } finally {
+                client.stop();
+            }
+            assertEquals(Collections.singletonList("ADD a"), drain());
+        }
+    }
+
+    @Test
+    public void updaterSwapsCuesIntoTheTimeline() throws Exception {
+        ManifestEntry original = LiveUpdate.parse("1", "add", activation("a", 0, 10_000, "A")).entry;
+        ActivationTimeline timeline = new ActivationTimeline(Collections.singletonList(original));
+        List<String> events = new ArrayList<>();
+        timeline.addListener(new ActivationTimeline.Listener() {
+            @Override
+            public void onCueEnter(ActivationCue cue) {
+                events.add("+" + cue.id);
+            }
+
+            @Override
+            public void onCueExit(ActivationCue cue) {
+                events.add("-" + cue.id);
+            }
+        });
+        timeline.onPositionChanged(5000);
+
+        LiveTimelineUpdater updater = new LiveTimelineUpdater(timeline, Collections.singletonList(original));
+        updater.onUpdates(Arrays.asList(
+            LiveUpdate.parse("2", "remove", "{\"id\":\"a\"}"),
+            LiveUpdate.parse("3", "add", activation("b", 4000, 6000, "B"))));
+
+        assertEquals(Arrays.asList("+a", "-a", "+b"), events);
+        assertNull(updater.get("a"));
+        assertEquals(1, updater.size());
+    }
+
+    @Test
+    public void contentUpdatesKeepTheActiveCue() throws Exception {
+        ManifestEntry original = LiveUpdate.parse("1", "add", activation("a", 0, 10_000, "A")).entry;
+        ActivationTimeline timeline = new ActivationTimeline(Collections.singletonList(original));
+        List<String> events = new ArrayList<>();
+        timeline.addListener(new ActivationTimeline.Listener() {
+            @Override
+            public void onCueEnter(ActivationCue cue) {
+                events.add("+" + cue.id);
+            }
+
+            @Override
+            public void onCueExit(ActivationCue cue) {
+                events.add("-" + cue.id);
+            }
+
+            @Override
+            public void onCueUpdated(ActivationCue cue) {
+                events.add("~" + cue.id);
+            }
+        });
+        timeline.onPositionChanged(5000);
+        events.clear();
+
+        LiveTimelineUpdater updater = new LiveTimelineUpdater(timeline, Collections.singletonList(original));
+        ManifestEntry changed = LiveUpdate.parse("2", "update", activation("a", 0, 10_000, "A2")).entry;
+        updater.onUpdates(Collections.singletonList(new LiveUpdate(LiveUpdate.Type.UPDATE, "a", "2", changed)));
+
+        assertEquals(Collections.singletonList("~a"), events);
+        assertSame(original, updater.get("a"));
+        assertSame(original, timeline.getActiveCues().iterator().next());
+        assertArrayEquals(changed.getRawPreview(), original.getRawPreview());
+
+        // Unchanged content is not reported; new timing is a new cue
+        events.clear();
+        updater.onUpdates(Collections.singletonList(LiveUpdate.parse("3", "update", activation("a", 0, 10_000, "A2"))));
+        assertEquals(Collections.emptyList(), events);
+        updater.onUpdates(Collections.singletonList(LiveUpdate.parse("4", "update", activation("a", 1000, 10_000, "A2"))));
+        assertEquals(Arrays.asList("-a", "+a"), events);
+    }
+
+    @Test
+    public void contentUpdatesReachBinaryBackedEntries() throws Exception {
+        String json = "{\"activations\":[" + activation("a", 0, 10_000, "A") + "]}";
+        ManifestEntry original = BinaryTemplate.wrap(BinaryTemplateEncoder.encodeManifest(
+            ManifestLoader.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))))
+            .toManifest().get("a");
+        ActivationTimeline timeline = new ActivationTimeline(Collections.singletonList(original));
+        LiveTimelineUpdater updater = new LiveTimelineUpdater(timeline, Collections.singletonList(original));
+
+        updater.onUpdates(Collections.singletonList(LiveUpdate.parse("2", "update", activation("a", 0, 10_000, "A2"))));
+
+        assertSame(original, updater.get("a"));
+        assertEquals("{\"title\":\"A2\"}", new String(original.getRawPreview(), StandardCharsets.UTF_8));
+        assertEquals("A2", ((BinaryManifestEntry) original).getBinaryPreview().get("title").asString());
+        assertFalse(original.hasDetail());
+    }
+
+    private List<String> drain() throws InterruptedException {
+        Runnable frame;
+        while ((frame = frames.poll(100, TimeUnit.MILLISECONDS)) != null) {
+            frame.run();
+        }
+        List<String> delivered = new ArrayList<>();
+        for (List<LiveUpdate> batch : batches) {
+            for (LiveUpdate update : batch) delivered.add(update.toString());
+        }
+        return delivered;
+    }
+}
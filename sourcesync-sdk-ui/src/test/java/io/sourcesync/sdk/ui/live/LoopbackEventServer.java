@@ -0,0 +1,95 @@
+package io.sourcesync.android.live;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event-stream origin on the loopback interface. Each request takes the next scripted
+ * response; once the script runs out, requests get 204 as from an idle long poll.
+ */
+class LoopbackEventServer implements AutoCloseable {
+    static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private final HttpServer server;
+    private final BlockingQueue<Response> script = new LinkedBlockingQueue<>();
+    /** Last-Event-ID header of every request received, "" when absent. */
+    final List<String> lastEventIds = Collections.synchronizedList(new ArrayList<>());
+    private final BlockingQueue<Integer> requests = new LinkedBlockingQueue<>();
+
+    LoopbackEventServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+            lastEventIds.add(lastEventId != null ? lastEventId : "");
+            Response response = script.poll();
+            if (response == null) {
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                exchange.sendResponseHeaders(response.status, bytes.length == 0 ? -1 : bytes.length);
+                if (bytes.length > 0) {
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(bytes);
+                    }
+                }
+            }
+            exchange.close();
+            requests.add(lastEventIds.size());
+        });
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/events";
+    }
+
+    LoopbackEventServer respond(int status, String body) {
+        script.add(new Response(status, body));
+        return this;
+    }
+
+    /**
+     * Block until at least {@code count} requests have been answered.
+     */
+    void awaitRequests(int count) throws InterruptedException {
+        while (true) {
+            Integer seen = requests.poll(5, TimeUnit.SECONDS);
+            if (seen == null) throw new AssertionError("Timed out waiting for request " + count);
+            if (seen >= count) return;
+        }
+    }
+
+    static String event(String id, String type, String data) {
+        return "id: " + id + "\nevent: " + type + "\ndata: " + data + "\n\n";
+    }
+
+    static String activation(String id, long start, long end, String title) {
+        return "{\"id\":\"" + id + "\",\"start\":" + start + ",\"end\":" + end
+            + ",\"preview\":{\"title\":\"" + title + "\"}}";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
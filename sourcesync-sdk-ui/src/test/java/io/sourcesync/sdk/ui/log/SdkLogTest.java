@@ -0,0 +1,78 @@
+package io.sourcesync.android.log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SdkLogTest {
+    private final List<String> lines = new ArrayList<>();
+    private int previousLevel;
+
+    @Before
+    public void setUp() {
+        previousLevel = SdkLog.getLevel();
+        SdkLog.setSink((level, tag, message, error) -> lines.add(level + " " + tag + " " + message
+            + (error != null ? " " + error.getMessage() : "")));
+    }
+
+    @After
+    public void tearDown() {
+        SdkLog.setSink(null);
+        SdkLog.setLevel(previousLevel);
+    }
+
+    @Test
+    public void placeholdersAreFilledInOrder() {
+        assertEquals("3x4", SdkLog.format("{}x{}", 3, 4));
+        assertEquals("a and {}", SdkLog.format("{} and {}", "a"));
+        assertEquals("no placeholders", SdkLog.format("no placeholders", "extra"));
+        assertEquals("null!", SdkLog.format("{}!", (Object) null));
+    }
+
+    @Test
+    public void aTrailingThrowableIsTheCause() {
+        Exception error = new Exception("offline");
+        SdkLog.w("T", "Could not load {}", "font", error);
+        SdkLog.e("T", "Error building {} segment {}", "detail", 3, error);
+        assertEquals(List.of(SdkLog.WARN + " T Could not load font offline",
+            SdkLog.ERROR + " T Error building detail segment 3 offline"), lines);
+    }
+
+    @Test
+    public void disabledLevelsNeitherFormatNorCallSuppliers() {
+        SdkLog.setLevel(SdkLog.WARN);
+        Object expensive = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("formatted while disabled");
+            }
+        };
+        SdkLog.d("T", "value {}", expensive);
+        SdkLog.v("T", () -> {
+            throw new AssertionError("supplier called while disabled");
+        });
+        SdkLog.i("T", "info");
+        assertTrue(lines.isEmpty());
+
+        SdkLog.w("T", "careful", new IllegalStateException("boom"));
+        assertEquals(List.of("5 T careful boom"), lines);
+    }
+
+    @Test
+    public void runtimeLevelTurnsTracesOn() {
+        SdkLog.setLevel(SdkLog.VERBOSE);
+        assertTrue(SdkLog.isLoggable(SdkLog.VERBOSE));
+        SdkLog.v("Image", "Calculated dimensions: {}x{}", 640, 360);
+        SdkLog.d("Preview", () -> "built");
+        assertEquals(List.of("2 Image Calculated dimensions: 640x360", "3 Preview built"), lines);
+
+        SdkLog.setLevel(SdkLog.NONE);
+        SdkLog.e("T", "error");
+        assertEquals(2, lines.size());
+    }
+}
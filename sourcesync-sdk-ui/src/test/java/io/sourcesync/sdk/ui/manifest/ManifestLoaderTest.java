@@ -0,0 +1,86 @@
+package io.sourcesync.android.manifest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ManifestLoaderTest {
+    private static ActivationManifest load(String json) throws IOException {
+        return ManifestLoader.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void keepsPayloadsAsOriginalBytes() throws IOException {
+        String preview = "{\"title\":\"Brace } and \\\"quote\\\" é\",\"template\":[{\"type\":\"text\",\"content\":\"]\"}]}";
+        ActivationManifest manifest = load("{\"version\":1,\"videoId\":\"v1\",\"activations\":["
+            + "{\"id\":\"a\",\"start\":1000,\"end\":2000,\"preview\":" + preview + ",\"detail\":null},"
+            + "{\"id\":\"b\",\"extra\":{\"ignored\":[1,2,{}]},\"start\":3000,\"end\":4500.0,"
+            + "\"preview\":{},\"detail\":{\"template\":[]}}"
+            + "]}");
+
+        assertEquals("v1", manifest.getVideoId());
+        assertEquals(2, manifest.size());
+
+        ManifestEntry a = manifest.get("a");
+        assertEquals(1000L, a.startMs);
+        assertEquals(2000L, a.endMs);
+        assertEquals(preview, new String(a.getRawPreview(), StandardCharsets.UTF_8));
+        assertFalse(a.hasDetail());
+
+        ManifestEntry b = manifest.get("b");
+        assertEquals(4500L, b.endMs);
+        assertEquals("{\"template\":[]}", new String(b.getRawDetail(), StandardCharsets.UTF_8));
+        assertEquals(2, manifest.createTimeline().size());
+    }
+
+    @Test
+    public void streamsEntriesInOrder() throws IOException {
+        StringBuilder json = new StringBuilder("{\"activations\":[");
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":\"a").append(i).append("\",\"start\":").append(i * 7000)
+                .append(",\"end\":").append(i * 7000 + 5000)
+                .append(",\"preview\":{\"title\":\"Activation ").append(i).append("\"}}");
+        }
+        json.append("]}");
+
+        List<String> ids = new ArrayList<>();
+        String videoId = ManifestLoader.stream(
+            new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)),
+            entry -> ids.add(entry.id));
+
+        assertNull(videoId);
+        assertEquals(500, ids.size());
+        assertEquals("a0", ids.get(0));
+        assertEquals("a499", ids.get(499));
+    }
+
+    @Test
+    public void decodesEscapesInScalars() throws IOException {
+        ActivationManifest manifest = load("{\"activations\":[{\"id\":\"caf\\u00e9 \\ud83d\\ude00\\n\","
+            + "\"start\":0,\"end\":1,\"preview\":{}}]}");
+        assertEquals("café 😀\n", manifest.getEntries().get(0).id);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsDuplicateIds() throws IOException {
+        load("{\"activations\":[{\"id\":\"a\",\"start\":0,\"end\":1,\"preview\":{}},"
+            + "{\"id\":\"a\",\"start\":2,\"end\":3,\"preview\":{}}]}");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsEntriesWithoutTiming() throws IOException {
+        load("{\"activations\":[{\"id\":\"a\",\"preview\":{}}]}");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedInput() throws IOException {
+        load("{\"activations\":[{\"id\":\"a\",\"start\":0,\"end\":1,\"preview\":{\"title\":");
+    }
+}
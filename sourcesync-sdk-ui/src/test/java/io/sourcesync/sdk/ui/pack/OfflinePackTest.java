@@ -0,0 +1,85 @@
+package io.sourcesync.android.pack;
+
+import io.sourcesync.android.manifest.ActivationManifest;
+import io.sourcesync.android.manifest.ManifestLoader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class OfflinePackTest {
+    private static final String MANIFEST = "{\"videoId\":\"video-1\",\"activations\":["
+        + "{\"id\":\"late\",\"start\":9000,\"end\":12000,\"preview\":{\"title\":\"Late\"}},"
+        + "{\"id\":\"early\",\"start\":0,\"end\":1000,\"preview\":{\"title\":\"Early\"},"
+        + "\"detail\":{\"template\":[{\"type\":\"text\",\"content\":\"é\"}]}},"
+        + "{\"id\":\"middle\",\"start\":4000,\"end\":5000,\"preview\":{\"title\":\"Middle\"}}]}";
+
+    @Test
+    public void looksUpByIdAndStartOrder() throws IOException {
+        OfflinePack pack = OfflinePack.open(buildPack());
+
+        assertEquals(3, pack.size());
+        assertEquals("video-1", pack.getVideoId());
+        assertEquals("early", pack.get(0).id);
+        assertEquals("middle", pack.get(1).id);
+        assertEquals("late", pack.get(2).id);
+
+        OfflinePack.PackEntry middle = pack.find("middle");
+        assertEquals(4000L, middle.startMs);
+        assertEquals(5000L, middle.endMs);
+        assertNull(pack.find("missing"));
+        assertNull(pack.find("midd"));
+    }
+
+    @Test
+    public void payloadsRoundTrip() throws IOException {
+        OfflinePack pack = OfflinePack.open(buildPack());
+
+        OfflinePack.PackEntry early = pack.find("early");
+        assertEquals("{\"title\":\"Early\"}", new String(early.getRawPreview(), StandardCharsets.UTF_8));
+        assertTrue(early.hasDetail());
+        assertEquals("é", early.getBinaryDetail().get("template").get(0).get("content").asString());
+        assertFalse(pack.find("late").hasDetail());
+
+        ActivationManifest manifest = pack.toManifest();
+        assertEquals(3, manifest.size());
+        assertEquals(9000L, manifest.get("late").startMs);
+    }
+
+    @Test
+    public void updatedEntriesServeTheNewerPayloads() throws IOException {
+        OfflinePack pack = OfflinePack.open(buildPack());
+        OfflinePack.PackEntry early = pack.find("early");
+        ActivationManifest newer = ManifestLoader.load(new ByteArrayInputStream(
+            "{\"activations\":[{\"id\":\"early\",\"start\":0,\"end\":1000,\"preview\":{\"title\":\"Now\"}}]}"
+                .getBytes(StandardCharsets.UTF_8)));
+
+        early.updatePayload(newer.get("early"));
+
+        assertEquals("{\"title\":\"Now\"}", new String(early.getRawPreview(), StandardCharsets.UTF_8));
+        assertFalse(early.hasDetail());
+        assertNull(early.getBinaryDetail());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignFiles() throws IOException {
+        File file = Files.createTempFile("not-a-pack", ".sspk").toFile();
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[64]);
+        OfflinePack.open(file);
+    }
+
+    private static File buildPack() throws IOException {
+        ActivationManifest manifest = ManifestLoader.load(
+            new ByteArrayInputStream(MANIFEST.getBytes(StandardCharsets.UTF_8)));
+        File file = Files.createTempFile("activations", ".sspk").toFile();
+        file.deleteOnExit();
+        OfflinePackBuilder.build(manifest, file);
+        return file;
+    }
+}
@@ -0,0 +1,114 @@
+package io.sourcesync.android.render;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class AsyncRenderTest {
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            pending.add(command);
+        }
+
+        void runAll() {
+            while (!pending.isEmpty()) {
+                pending.poll().run();
+            }
+        }
+    }
+
+    @Test
+    public void preparedValueIsMountedOnTheMainExecutor() throws Exception {
+        ManualExecutor background = new ManualExecutor();
+        ManualExecutor main = new ManualExecutor();
+        List<String> mounted = new ArrayList<>();
+
+        CompletableFuture<Void> handle = AsyncRender.mount(
+            AsyncRender.supply(() -> "plan", background), main, mounted::add);
+        assertTrue(main.pending.isEmpty());
+
+        background.runAll();
+        assertTrue(mounted.isEmpty());
+        assertFalse(handle.isDone());
+
+        main.runAll();
+        assertEquals(List.of("plan"), mounted);
+        assertTrue(handle.isDone());
+        assertNull(handle.get());
+    }
+
+    @Test
+    public void cancellingBeforePreparingSkipsBothSteps() {
+        ManualExecutor background = new ManualExecutor();
+        ManualExecutor main = new ManualExecutor();
+        List<String> prepared = new ArrayList<>();
+        List<String> mounted = new ArrayList<>();
+
+        CompletableFuture<Void> handle = AsyncRender.mount(AsyncRender.supply(() -> {
+            prepared.add("plan");
+            return "plan";
+        }, background), main, mounted::add);
+        assertTrue(handle.cancel(false));
+
+        background.runAll();
+        main.runAll();
+        assertTrue(prepared.isEmpty());
+        assertTrue(mounted.isEmpty());
+    }
+
+    @Test
+    public void cancellingAfterPreparingSkipsTheMount() {
+        ManualExecutor background = new ManualExecutor();
+        ManualExecutor main = new ManualExecutor();
+        List<String> mounted = new ArrayList<>();
+
+        CompletableFuture<Void> handle = AsyncRender.mount(
+            AsyncRender.supply(() -> "plan", background), main, mounted::add);
+        background.runAll();
+        handle.cancel(false);
+        main.runAll();
+
+        assertTrue(mounted.isEmpty());
+        assertTrue(handle.isCancelled());
+    }
+
+    @Test
+    public void failuresCompleteTheHandleExceptionally() throws Exception {
+        ManualExecutor background = new ManualExecutor();
+        ManualExecutor main = new ManualExecutor();
+
+        CompletableFuture<Void> failedPrepare = AsyncRender.mount(AsyncRender.<String>supply(() -> {
+            throw new IOException("bad json");
+        }, background), main, value -> fail());
+        CompletableFuture<Void> failedMount = AsyncRender.mount(
+            AsyncRender.supply(() -> "plan", background), main, value -> {
+                throw new IllegalStateException("detached");
+            });
+        background.runAll();
+        main.runAll();
+
+        try {
+            failedPrepare.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            failedMount.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package io.sourcesync.android.render;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RenderWatchdogTest {
+    private static final long MS = 1_000_000L;
+
+    /** Clock that only moves when a segment is built. */
+    private static class FakeClock {
+        long now;
+    }
+
+    private static class ManualExecutor implements java.util.concurrent.Executor {
+        final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            pending.add(command);
+        }
+
+        void runNext() {
+            pending.poll().run();
+        }
+    }
+
+    @Test
+    public void budgetFollowsTheRefreshRate() {
+        assertEquals(33, RenderWatchdog.budgetForRefreshRate(60f));
+        assertEquals(17, RenderWatchdog.budgetForRefreshRate(120f));
+        assertEquals(33, RenderWatchdog.budgetForRefreshRate(0f));
+    }
+
+    @Test
+    public void renderWithinBudgetFinishesInOneSliceWithoutReport() throws Exception {
+        FakeClock clock = new FakeClock();
+        ManualExecutor reporter = new ManualExecutor();
+        RenderWatchdog watchdog = new RenderWatchdog(() -> clock.now, reporter);
+        watchdog.setBudgetMs(10);
+        ManualExecutor frames = new ManualExecutor();
+        List<Integer> built = new ArrayList<>();
+
+        RenderWatchdog.Session session = watchdog.begin("preview");
+        session.run(4, index -> {
+            built.add(index);
+            clock.now += 2 * MS;
+        }, frames);
+
+        assertEquals(List.of(0, 1, 2, 3), built);
+        assertTrue(session.isFinished());
+        assertTrue(frames.pending.isEmpty());
+        assertTrue(reporter.pending.isEmpty());
+    }
+
+    @Test
+    public void remainingSegmentsAreBuiltInLaterSlicesAndReported() throws Exception {
+        FakeClock clock = new FakeClock();
+        ManualExecutor reporter = new ManualExecutor();
+        RenderWatchdog watchdog = new RenderWatchdog(() -> clock.now, reporter);
+        watchdog.setBudgetMs(10);
+        List<RenderWatchdog.Report> reports = new ArrayList<>();
+        watchdog.setListener(reports::add);
+        ManualExecutor frames = new ManualExecutor();
+        List<Integer> built = new ArrayList<>();
+
+        RenderWatchdog.Session session = watchdog.begin("detail");
+        // Parsing before the first segment counts towards the first slice
+        clock.now += 4 * MS;
+        session.run(6, index -> {
+            built.add(index);
+            clock.now += (index == 4 ? 15 : 4) * MS;
+        }, frames);
+
+        assertEquals(List.of(0, 1), built);
+        assertFalse(session.isFinished());
+
+        frames.runNext();
+        assertEquals(List.of(0, 1, 2, 3, 4), built);
+        frames.runNext();
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), built);
+        assertTrue(session.isFinished());
+        assertTrue(frames.pending.isEmpty());
+
+        reporter.runNext();
+        assertEquals(1, reports.size());
+        RenderWatchdog.Report report = reports.get(0);
+        assertEquals("detail", report.surface);
+        assertEquals(3, report.slices);
+        assertEquals(23, report.longestSliceMs);
+        assertEquals(39, report.totalMs);
+        assertEquals(6, report.segments);
+        assertEquals(4, report.slowest.get(0).index);
+        assertEquals(15_000, report.slowest.get(0).micros);
+        assertEquals(5, report.slowest.size());
+    }
+
+    @Test
+    public void cancelledSessionStopsBuilding() throws Exception {
+        FakeClock clock = new FakeClock();
+        RenderWatchdog watchdog = new RenderWatchdog(() -> clock.now, new ManualExecutor());
+        watchdog.setBudgetMs(5);
+        ManualExecutor frames = new ManualExecutor();
+        List<Integer> built = new ArrayList<>();
+
+        RenderWatchdog.Session session = watchdog.begin("detail");
+        session.run(3, index -> {
+            built.add(index);
+            clock.now += 10 * MS;
+        }, frames);
+        assertEquals(List.of(0), built);
+
+        session.cancel();
+        frames.runNext();
+        assertEquals(List.of(0), built);
+        assertFalse(session.isFinished());
+    }
+
+    @Test
+    public void failureInALaterSliceFinishesTheSessionAndIsReported() throws Exception {
+        FakeClock clock = new FakeClock();
+        ManualExecutor reporter = new ManualExecutor();
+        RenderWatchdog watchdog = new RenderWatchdog(() -> clock.now, reporter);
+        watchdog.setBudgetMs(5);
+        List<RenderWatchdog.Report> failures = new ArrayList<>();
+        watchdog.setListener(new RenderWatchdog.Listener() {
+            @Override
+            public void onBudgetExceeded(RenderWatchdog.Report report) {
+                fail("reported as an overrun");
+            }
+
+            @Override
+            public void onRenderFailed(RenderWatchdog.Report report, JSONException error) {
+                failures.add(report);
+            }
+        });
+        ManualExecutor frames = new ManualExecutor();
+        List<Integer> built = new ArrayList<>();
+
+        RenderWatchdog.Session session = watchdog.begin("detail");
+        session.run(3, index -> {
+            if (index == 1) throw new JSONException("bad segment");
+            built.add(index);
+            clock.now += 10 * MS;
+        }, frames);
+        assertFalse(session.isFinished());
+
+        frames.runNext();
+        assertEquals(List.of(0), built);
+        assertTrue(session.isFinished());
+        assertTrue(session.isFailed());
+        assertTrue(frames.pending.isEmpty());
+
+        reporter.runNext();
+        assertEquals(1, failures.size());
+        assertEquals(1, failures.get(0).failedSegment);
+        assertEquals(2, failures.get(0).slices);
+    }
+}
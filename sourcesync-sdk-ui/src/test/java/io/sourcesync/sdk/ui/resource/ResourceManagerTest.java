@@ -0,0 +1,111 @@
+package io.sourcesync.android.resource;
+
+import android.content.ComponentCallbacks2;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResourceManagerTest {
+    private static class FakeResource implements ManagedResource {
+        final String name;
+        long bytes;
+        final List<Integer> trims = new ArrayList<>();
+
+        FakeResource(String name, long bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getResourceName() {
+            return name;
+        }
+
+        @Override
+        public long getResourceBytes() {
+            return bytes;
+        }
+
+        @Override
+        public int getResourceCount() {
+            return bytes > 0 ? 1 : 0;
+        }
+
+        @Override
+        public void trimResources(int tier) {
+            trims.add(tier);
+            if (tier >= ResourceManager.TIER_CACHES) bytes = 0;
+        }
+    }
+
+    @Test
+    public void trimLevelsMapToTiers() {
+        assertEquals(ResourceManager.TIER_NONE, ResourceManager.tierFor(0));
+        assertEquals(ResourceManager.TIER_SPECULATIVE,
+            ResourceManager.tierFor(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(ResourceManager.TIER_CACHES,
+            ResourceManager.tierFor(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(ResourceManager.TIER_ALL,
+            ResourceManager.tierFor(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL));
+        assertEquals(ResourceManager.TIER_SPECULATIVE,
+            ResourceManager.tierFor(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(ResourceManager.TIER_CACHES,
+            ResourceManager.tierFor(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND));
+        assertEquals(ResourceManager.TIER_ALL,
+            ResourceManager.tierFor(ComponentCallbacks2.TRIM_MEMORY_MODERATE));
+        assertEquals(ResourceManager.TIER_ALL,
+            ResourceManager.tierFor(ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+    }
+
+    @Test
+    public void trimReachesEveryResourceAndUsageReflectsIt() {
+        ResourceManager manager = new ResourceManager();
+        FakeResource cache = new FakeResource("cache", 4096);
+        FakeResource pool = new FakeResource("pool", 1024);
+        manager.register(cache);
+        manager.register(pool);
+        manager.register(cache);
+
+        assertEquals(5120, manager.getTotalBytes());
+        assertEquals(2, manager.getUsage().size());
+
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(List.of(ResourceManager.TIER_SPECULATIVE), cache.trims);
+        assertEquals(5120, manager.getTotalBytes());
+
+        manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(List.of(ResourceManager.TIER_SPECULATIVE, ResourceManager.TIER_CACHES), pool.trims);
+        assertEquals(0, manager.getTotalBytes());
+    }
+
+    @Test
+    public void failingResourceDoesNotStopOthers() {
+        ResourceManager manager = new ResourceManager();
+        manager.register(new FakeResource("broken", 0) {
+            @Override
+            public void trimResources(int tier) {
+                throw new IllegalStateException();
+            }
+        });
+        FakeResource cache = new FakeResource("cache", 100);
+        manager.register(cache);
+
+        manager.onLowMemory();
+        assertEquals(List.of(ResourceManager.TIER_ALL), cache.trims);
+    }
+
+    @Test
+    public void unregisteredResourcesAreNotTrimmed() {
+        ResourceManager manager = new ResourceManager();
+        FakeResource cache = new FakeResource("cache", 100);
+        manager.register(cache);
+        manager.unregister(cache);
+
+        manager.trim(ResourceManager.TIER_ALL);
+        assertTrue(cache.trims.isEmpty());
+        assertEquals(0, manager.getUsage().size());
+    }
+}
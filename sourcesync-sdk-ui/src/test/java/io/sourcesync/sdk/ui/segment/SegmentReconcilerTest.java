@@ -0,0 +1,63 @@
+package io.sourcesync.android.segment;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SegmentReconcilerTest {
+    private static List<String> ids(String... typesAndKeys) {
+        String[] types = new String[typesAndKeys.length];
+        String[] keys = new String[typesAndKeys.length];
+        for (int i = 0; i < typesAndKeys.length; i++) {
+            String[] parts = typesAndKeys[i].split("=");
+            types[i] = parts[0];
+            keys[i] = parts.length > 1 ? parts[1] : null;
+        }
+        return SegmentReconciler.identities(Arrays.asList(types), Arrays.asList(keys));
+    }
+
+    @Test
+    public void unchangedTemplateMatchesInPlace() {
+        List<String> template = ids("text", "image", "text", "row");
+        assertArrayEquals(new int[] { 0, 1, 2, 3 }, SegmentReconciler.match(template, template));
+    }
+
+    @Test
+    public void insertingADifferentTypeKeepsOtherSiblingsMatched() {
+        int[] matches = SegmentReconciler.match(
+            ids("text", "image", "text"),
+            ids("button", "text", "image", "text"));
+        assertArrayEquals(new int[] { -1, 0, 1, 2 }, matches);
+    }
+
+    @Test
+    public void removingAnUnkeyedSiblingShiftsLaterOnesOfTheSameType() {
+        int[] matches = SegmentReconciler.match(
+            ids("text", "text", "text"),
+            ids("text", "text"));
+        assertArrayEquals(new int[] { 0, 1 }, matches);
+    }
+
+    @Test
+    public void keyedSiblingsFollowTheirKeyAcrossReorders() {
+        int[] matches = SegmentReconciler.match(
+            ids("text=price", "text=title", "image=hero"),
+            ids("image=hero", "text=title", "text=countdown", "text=price"));
+        assertArrayEquals(new int[] { 2, 1, -1, 0 }, matches);
+    }
+
+    @Test
+    public void reusedKeyWithNewTypeIsANewSegment() {
+        int[] matches = SegmentReconciler.match(ids("text=cta"), ids("button=cta"));
+        assertArrayEquals(new int[] { -1 }, matches);
+    }
+
+    @Test
+    public void duplicateKeysMatchInOrder() {
+        int[] matches = SegmentReconciler.match(ids("text=a", "text=a"), ids("text=a", "text=a", "text=a"));
+        assertArrayEquals(new int[] { 0, 1, -1 }, matches);
+    }
+}
@@ -0,0 +1,69 @@
+package io.sourcesync.android.segment;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TemplateGuardTest {
+    @Test
+    public void deepSegmentsAreRejectedWithoutUsingTheSegmentBudget() {
+        TemplateGuard.Budget budget = new TemplateGuard.Budget(new TemplateLimits().maxDepth(3));
+        assertTrue(budget.enter(1));
+        assertTrue(budget.enter(3));
+        assertFalse(budget.enter(4));
+        assertFalse(budget.exhausted);
+        assertTrue(budget.enter(2));
+
+        assertEquals(3, budget.segments);
+        assertEquals(3, budget.deepest);
+        assertEquals(List.of("maxDepth 3"), budget.violations);
+    }
+
+    @Test
+    public void segmentLimitStopsTheWalk() {
+        TemplateGuard.Budget budget = new TemplateGuard.Budget(new TemplateLimits().maxSegments(2));
+        assertTrue(budget.enter(1));
+        assertTrue(budget.enter(2));
+        assertFalse(budget.enter(1));
+        assertTrue(budget.exhausted);
+        // Nothing after the limit is kept, whatever its depth
+        assertFalse(budget.enter(1));
+        assertEquals(List.of("maxSegments 2"), budget.violations);
+    }
+
+    @Test
+    public void textIsCutWhereTheBudgetRunsOut() {
+        TemplateGuard.Budget budget = new TemplateGuard.Budget(new TemplateLimits().maxTextLength(10));
+        assertEquals(6, budget.text(6));
+        assertTrue(budget.violations.isEmpty());
+        assertEquals(4, budget.text(6));
+        assertEquals(0, budget.text(1));
+        assertEquals(0, budget.text(0));
+        assertEquals(10, budget.textLength);
+        assertEquals(List.of("maxTextLength 10"), budget.violations);
+    }
+
+    @Test
+    public void imagesAreCountedAndEstimated() {
+        TemplateLimits limits = new TemplateLimits()
+            .maxImages(3)
+            .maxImageBytes(4_800)
+            .assumedImageSize(40, 20);
+        assertEquals(3_200, limits.estimateImageBytes(null, null));
+        assertEquals(800, limits.estimateImageBytes("50%", "50%"));
+        assertEquals(3_200, limits.estimateImageBytes("wide", null));
+
+        TemplateGuard.Budget budget = new TemplateGuard.Budget(limits);
+        assertTrue(budget.image(3_200));
+        assertFalse(budget.image(3_200));
+        assertTrue(budget.image(800));
+        assertTrue(budget.image(800));
+        assertFalse(budget.image(0));
+
+        assertEquals(3, budget.images);
+        assertEquals(4_800, budget.imageBytes);
+        assertEquals(List.of("maxImageBytes 4800", "maxImages 3"), budget.violations);
+    }
+}
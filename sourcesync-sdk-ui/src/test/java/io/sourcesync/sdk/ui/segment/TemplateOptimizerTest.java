@@ -0,0 +1,158 @@
+package io.sourcesync.android.segment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TemplateOptimizerTest {
+    private static Map<String, Object> attrs(String... keysAndValues) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static TemplateOptimizer.Node text(String content, Map<String, Object> attributes) {
+        return new TemplateOptimizer.Node("text", content, attributes);
+    }
+
+    private static TemplateOptimizer.Node node(String type, Map<String, Object> attributes,
+                                               TemplateOptimizer.Node... children) {
+        TemplateOptimizer.Node node = new TemplateOptimizer.Node(type, null, attributes);
+        for (TemplateOptimizer.Node child : children) {
+            node.child(child);
+        }
+        return node;
+    }
+
+    private static List<TemplateOptimizer.Node> optimize(TemplateOptimizer.Stats stats,
+                                                         TemplateOptimizer.Node... nodes) {
+        return TemplateOptimizer.optimize(new ArrayList<>(Arrays.asList(nodes)), false, stats);
+    }
+
+    private static List<TemplateOptimizer.Node> optimizeMerging(TemplateOptimizer.Stats stats,
+                                                                TemplateOptimizer.Node... nodes) {
+        return TemplateOptimizer.optimize(new ArrayList<>(Arrays.asList(nodes)), true, stats);
+    }
+
+    @Test
+    public void singleChildRowsCollapseIntoTheirChild() {
+        TemplateOptimizer.Stats stats = new TemplateOptimizer.Stats();
+        TemplateOptimizer.Node title = text("Title", attrs("size", "lg"));
+        List<TemplateOptimizer.Node> result = optimize(stats,
+            node("row", attrs("alignment", "center"), node("row", null, title)));
+
+        assertEquals(1, result.size());
+        assertSame(title, result.get(0));
+        assertEquals(3, stats.nodesBefore);
+        assertEquals(1, stats.nodesAfter);
+        assertEquals(2, stats.collapsed);
+    }
+
+    @Test
+    public void rowsWhoseChildDoesNotFillThemAreKept() {
+        TemplateOptimizer.Stats stats = new TemplateOptimizer.Stats();
+        List<TemplateOptimizer.Node> result = optimize(stats,
+            // A text without attributes wraps its content, so the row centers it
+            node("row", null, text("Centered", null)),
+            node("row", null, text("Half", attrs("width", "50%"))),
+            node("row", attrs("width", "80%"), text("Narrow", attrs("size", "sm"))));
+
+        assertEquals(3, result.size());
+        assertEquals(0, stats.collapsed);
+        assertEquals(stats.nodesBefore, stats.nodesAfter);
+    }
+
+    @Test
+    public void columnWithAWidthWrappingARowBecomesARowWithTheColumnsWidth() {
+        TemplateOptimizer.Stats stats = new TemplateOptimizer.Stats();
+        TemplateOptimizer.Node inner = node("row", attrs("alignment", "left"),
+            text("a", null), text("b", null));
+        List<TemplateOptimizer.Node> result = optimize(stats,
+            node("row", null,
+                node("column", attrs("width", "30%"), inner),
+                node("column", null, node("row", null, text("c", null), text("d", null)))));
+
+        TemplateOptimizer.Node row = result.get(0);
+        assertEquals(2, row.children.size());
+        assertSame(inner, row.children.get(0));
+        assertEquals("30%", inner.attributes.get("width"));
+        assertEquals("left", inner.attributes.get("alignment"));
+        // Without a width the column keeps its weight of 1 and no width is made up
+        TemplateOptimizer.Node column = row.children.get(1);
+        assertEquals("column", column.type);
+        assertNull(column.attributes);
+        assertNull(column.children.get(0).attributes);
+        assertEquals(1, stats.collapsed);
+    }
+
+    @Test
+    public void adjacentTextMergesIntoSpansWhenParagraphAttributesMatch() {
+        TemplateOptimizer.Stats stats = new TemplateOptimizer.Stats();
+        List<TemplateOptimizer.Node> result = optimizeMerging(stats,
+            text("Title", attrs("size", "lg", "weight", "bold", "alignment", "left")),
+            text("Subtitle", attrs("size", "md", "style", "italic", "alignment", "left")),
+            text("Price", attrs("color", "#FFFFFF", "alignment", "left")),
+            text("Centered", attrs("alignment", "center")));
+
+        assertEquals(2, result.size());
+        TemplateOptimizer.Node merged = result.get(0);
+        assertEquals("Title\nSubtitle\nPrice", merged.content);
+        assertEquals(attrs("alignment", "left"), merged.attributes);
+        assertEquals(3, merged.spans.size());
+        assertEquals(attrs("size", "md", "style", "italic"), merged.spans.get(1).attributes);
+        assertEquals(2, stats.merged);
+        assertEquals(4, stats.nodesBefore);
+        assertEquals(2, stats.nodesAfter);
+    }
+
+    @Test
+    public void textIsOnlyMergedWhenAskedTo() {
+        TemplateOptimizer.Stats stats = new TemplateOptimizer.Stats();
+        TemplateOptimizer.Node title = text("Title", attrs("alignment", "left"));
+        TemplateOptimizer.Node subtitle = text("Subtitle", attrs("alignment", "left"));
+        List<TemplateOptimizer.Node> result = optimize(stats, title, subtitle);
+
+        assertEquals(Arrays.asList(title, subtitle), result);
+        assertEquals(0, stats.merged);
+    }
+
+    @Test
+    public void keyedTextAndTextInRowsAreNotMerged() {
+        TemplateOptimizer.Stats stats = new TemplateOptimizer.Stats();
+        TemplateOptimizer.Node countdown = text("10:00", null);
+        countdown.key = "countdown";
+        List<TemplateOptimizer.Node> result = optimizeMerging(stats,
+            text("Ends in", null),
+            countdown,
+            node("row", null, text("Left", null), text("Right", null)));
+
+        assertEquals(3, result.size());
+        assertEquals(2, result.get(2).children.size());
+        assertEquals(0, stats.merged);
+    }
+
+    @Test
+    public void emptyContainersAndImagesWithoutUrlAreDropped() {
+        TemplateOptimizer.Stats stats = new TemplateOptimizer.Stats();
+        TemplateOptimizer.Node spacer = node("column", null);
+        List<TemplateOptimizer.Node> result = optimize(stats,
+            node("row", null),
+            node("column", null, new TemplateOptimizer.Node("image", "", null)),
+            // Takes a share of the row's width, so it stays
+            node("row", null, text("a", attrs("width", "50%")), spacer));
+
+        assertEquals(1, result.size());
+        assertSame(spacer, result.get(0).children.get(1));
+        assertEquals(3, stats.dropped);
+        assertEquals(6, stats.nodesBefore);
+        assertEquals(3, stats.nodesAfter);
+    }
+}
@@ -0,0 +1,101 @@
+package io.sourcesync.android.template;
+
+import io.sourcesync.android.manifest.ActivationManifest;
+import io.sourcesync.android.manifest.ManifestLoader;
+import io.sourcesync.android.testing.StressCorpus;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class BinaryTemplateTest {
+    @Test
+    public void corpusRoundTripsAndShrinks() throws IOException {
+        for (StressCorpus corpus : StressCorpus.values()) {
+            String json = corpus.generate().json;
+            byte[] binary = BinaryTemplateEncoder.encode(json);
+
+            assertEquals(corpus.name(), json, BinaryTemplate.wrap(binary).root().toJsonString());
+            assertTrue(corpus.name() + " " + binary.length + " >= " + json.length(),
+                binary.length < json.getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+
+    @Test
+    public void resolvesColorsPercentagesAndNumbers() throws IOException {
+        BinaryTemplate template = BinaryTemplate.wrap(BinaryTemplateEncoder.encode(
+            "{\"color\":\"#80FF0000\",\"textColor\":\"#00ff00\",\"width\":\"12.5%\",\"odd\":\"12.345%\","
+                + "\"n\":-42,\"big\":12345678901234,\"pi\":3.25,\"on\":true,\"none\":null,\"label\":\"é\"}"));
+        BinaryTemplate.Value root = template.root();
+
+        assertEquals(0x80FF0000, root.get("color").asColor());
+        assertEquals(0xFF00FF00, root.get("textColor").asColor());
+        assertEquals("#00FF00", root.get("textColor").asString());
+        assertEquals(0.125f, root.get("width").asFraction(), 1e-6);
+        assertEquals("12.5%", root.get("width").asString());
+        assertFalse(root.get("odd").isPercent());
+        assertEquals("12.345%", root.get("odd").asString());
+        assertEquals(-42L, root.get("n").asLong());
+        assertEquals(12345678901234L, root.get("big").asLong());
+        assertEquals(3.25, root.get("pi").asDouble(), 0);
+        assertTrue(root.get("on").asBoolean());
+        assertTrue(root.get("none").isNull());
+        assertEquals("é", root.get("label").asString());
+        assertNull(root.get("missing"));
+    }
+
+    @Test
+    public void colorAndPercentLikeTextRoundTripsAsWritten() throws IOException {
+        String json = "[{\"type\":\"text\",\"content\":\"#bada55\",\"attributes\":{\"color\":\"#bada55\"}},"
+            + "{\"type\":\"text\",\"content\":\"1.50%\",\"attributes\":{\"width\":\"1.50%\"}}]";
+        BinaryTemplate.Value root = BinaryTemplate.wrap(BinaryTemplateEncoder.encode(json)).root();
+
+        assertEquals("#bada55", root.get(0).get("content").asString());
+        assertEquals("#BADA55", root.get(0).get("attributes").get("color").asString());
+        assertEquals("1.50%", root.get(1).get("content").asString());
+        assertTrue(root.get(1).get("attributes").get("width").isPercent());
+        assertEquals("1.5%", root.get(1).get("attributes").get("width").asString());
+    }
+
+    @Test
+    public void decodesFromBufferOffsetWithoutCopying() throws IOException {
+        byte[] encoded = BinaryTemplateEncoder.encode("[{\"type\":\"text\",\"content\":\"a\"},{\"type\":\"row\",\"children\":[]}]");
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.length + 3);
+        buffer.position(3);
+        buffer.put(encoded);
+        buffer.position(3);
+
+        BinaryTemplate.Value root = BinaryTemplate.wrap(buffer).root();
+        assertEquals(2, root.size());
+        assertEquals("row", root.get(1).get("type").asString());
+        assertEquals(0, root.get(1).get("children").size());
+    }
+
+    @Test
+    public void manifestRoundTrips() throws IOException {
+        String json = "{\"videoId\":\"v\",\"activations\":["
+            + "{\"id\":\"a\",\"start\":0,\"end\":1000,\"preview\":{\"title\":\"A\"},\"detail\":{\"template\":[]}},"
+            + "{\"id\":\"b\",\"start\":500,\"end\":1500,\"preview\":{\"title\":\"B\"}}]}";
+        ActivationManifest manifest = ManifestLoader.load(
+            new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        ActivationManifest decoded = BinaryTemplate.wrap(
+            BinaryTemplateEncoder.encodeManifest(manifest)).toManifest();
+
+        assertEquals("v", decoded.getVideoId());
+        assertEquals(2, decoded.size());
+        assertEquals(500L, decoded.get("b").startMs);
+        assertEquals("{\"title\":\"A\"}", new String(decoded.get("a").getRawPreview(), StandardCharsets.UTF_8));
+        assertTrue(decoded.get("a").hasDetail());
+        assertFalse(decoded.get("b").hasDetail());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignData() throws IOException {
+        BinaryTemplate.wrap("{\"json\":true}".getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,73 @@
+package io.sourcesync.android.testing;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class StressCorpusTest {
+    @Test
+    public void checkedInCorpusMatchesGenerator() throws IOException {
+        for (StressCorpus corpus : StressCorpus.values()) {
+            assertEquals(corpus.fileName, readResource(corpus.fileName), corpus.generate().json);
+        }
+    }
+
+    @Test
+    public void generatorIsDeterministicPerSeed() {
+        TemplateGenerator.Spec spec = new TemplateGenerator.Spec().seed(7L).segmentCount(200).maxDepth(4);
+        assertEquals(TemplateGenerator.generate(spec).json, TemplateGenerator.generate(spec).json);
+        assertNotEquals(TemplateGenerator.generate(spec).json,
+            TemplateGenerator.generate(spec.seed(8L)).json);
+    }
+
+    @Test
+    public void generatorHonoursShapeKnobs() {
+        TemplateGenerator.Result result = TemplateGenerator.generate(new TemplateGenerator.Spec()
+            .seed(3L)
+            .segmentCount(300)
+            .maxDepth(6)
+            .containerRatio(0.3f)
+            .rowRatio(1f)
+            .imageCount(25)
+            .textLength(12)
+            .percentageDensity(0f));
+
+        assertEquals(300, result.segmentCount);
+        assertEquals(6, result.depth);
+        assertEquals(25, result.imageCount);
+        assertEquals(0, result.columnCount);
+        assertEquals(0, result.percentageCount);
+        assertEquals(result.textCount * 12, result.textCharacters);
+    }
+
+    @Test
+    public void pathologicalCasesHaveAdvertisedShape() {
+        TemplateGenerator.Result deep = StressCorpus.DEEP_WEIGHTED_ROWS.generate();
+        assertEquals(10, deep.depth);
+        assertEquals(0, deep.columnCount);
+
+        TemplateGenerator.Result texts = StressCorpus.THOUSAND_TEXT.generate();
+        assertEquals(1000, texts.textCount);
+        assertEquals(1000, texts.segmentCount);
+
+        assertEquals(100, StressCorpus.HUNDRED_IMAGES.generate().imageCount);
+    }
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream in = StressCorpusTest.class.getResourceAsStream("/" + name)) {
+            assertNotNull("Missing corpus file " + name, in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
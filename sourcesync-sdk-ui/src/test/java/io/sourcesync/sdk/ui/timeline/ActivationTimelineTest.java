@@ -0,0 +1,128 @@
+package io.sourcesync.android.timeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ActivationTimelineTest {
+    private final List<String> events = new ArrayList<>();
+
+    private ActivationTimeline timeline(ActivationCue... cues) {
+        ActivationTimeline timeline = new ActivationTimeline(Arrays.asList(cues));
+        timeline.addListener(new ActivationTimeline.Listener() {
+            @Override
+            public void onCueEnter(ActivationCue cue) {
+                events.add("+" + cue.id);
+            }
+
+            @Override
+            public void onCueExit(ActivationCue cue) {
+                events.add("-" + cue.id);
+            }
+        });
+        return timeline;
+    }
+
+    private static ActivationCue cue(String id, long start, long end) {
+        return new ActivationCue(id, start, end, null);
+    }
+
+    @Test
+    public void playbackEmitsEnterAndExitInOrder() {
+        ActivationTimeline timeline = timeline(cue("a", 1000, 2000), cue("b", 1500, 3000));
+        for (long t = 0; t <= 3500; t += 250) {
+            timeline.onPositionChanged(t);
+        }
+        assertEquals(Arrays.asList("+a", "+b", "-a", "-b"), events);
+    }
+
+    @Test
+    public void replacingCuesResyncsAtLastPosition() {
+        ActivationCue kept = cue("kept", 0, 10_000);
+        ActivationTimeline timeline = timeline(kept, cue("gone", 0, 10_000), cue("changed", 0, 10_000));
+        timeline.onPositionChanged(5000);
+        events.clear();
+
+        timeline.setCues(Arrays.asList(kept, cue("changed", 0, 10_000), cue("added", 4000, 6000)));
+        assertEquals(Arrays.asList("-gone", "-changed", "+changed", "+added"), events);
+
+        events.clear();
+        timeline.onPositionChanged(6000);
+        assertEquals(Arrays.asList("-added"), events);
+    }
+
+    @Test
+    public void backToBackCuesHandOverAtBoundary() {
+        ActivationTimeline timeline = timeline(cue("a", 0, 1000), cue("b", 1000, 2000));
+        timeline.onPositionChanged(500);
+        timeline.onPositionChanged(1000);
+        assertEquals(Arrays.asList("+a", "-a", "+b"), events);
+    }
+
+    @Test
+    public void seekOnlyReportsTheDifference() {
+        ActivationTimeline timeline = timeline(
+            cue("long", 0, 100_000), cue("early", 1000, 2000), cue("late", 50_000, 60_000));
+        timeline.onPositionChanged(1500);
+        events.clear();
+
+        timeline.onPositionChanged(55_000);
+        assertEquals(Arrays.asList("-early", "+late"), events);
+
+        events.clear();
+        timeline.onPositionChanged(1200);
+        assertEquals(Arrays.asList("-late", "+early"), events);
+    }
+
+    @Test
+    public void pauseAndRepeatedPositionsAreNoOps() {
+        ActivationTimeline timeline = timeline(cue("a", 0, 1000));
+        timeline.onPositionChanged(100);
+        timeline.onPositionChanged(100);
+        timeline.onPositionChanged(100);
+        assertEquals(Arrays.asList("+a"), events);
+    }
+
+    @Test
+    public void fastRateDoesNotLookLikeSeek() {
+        ActivationTimeline timeline = timeline(cue("a", 0, 10_000), cue("short", 1100, 1200));
+        timeline.setPlaybackRate(4f);
+        timeline.onPositionChanged(0);
+        timeline.onPositionChanged(2000);
+        // "short" started and ended within one step and is skipped rather than flashed
+        assertEquals(Arrays.asList("+a"), events);
+        assertEquals(2000L, timeline.millisUntilNextBoundary());
+    }
+
+    @Test
+    public void activeSetMatchesBruteForceAfterRandomMoves() {
+        Random random = new Random(27);
+        List<ActivationCue> cues = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long start = random.nextInt(3_600_000);
+            cues.add(cue("c" + i, start, start + 1 + random.nextInt(60_000)));
+        }
+        ActivationTimeline timeline = new ActivationTimeline(cues);
+
+        long position = 0;
+        for (int step = 0; step < 2000; step++) {
+            position = random.nextInt(10) == 0
+                ? random.nextInt(3_700_000)
+                : position + random.nextInt(500);
+            timeline.onPositionChanged(position);
+
+            Set<ActivationCue> expected = new HashSet<>();
+            for (ActivationCue cue : cues) {
+                if (cue.isActiveAt(position)) expected.add(cue);
+            }
+            assertEquals(expected, new HashSet<>(timeline.getActiveCues()));
+        }
+    }
+}
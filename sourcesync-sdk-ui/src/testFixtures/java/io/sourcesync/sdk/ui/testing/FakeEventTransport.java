@@ -0,0 +1,78 @@
+package io.sourcesync.android.testing;
+
+import io.sourcesync.android.analytics.EventTransport;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-memory {@link EventTransport} for tests and offline demos. Keeps every delivered
+ * batch decompressed, and can be told to fail to exercise retries.
+ */
+public class FakeEventTransport implements EventTransport {
+    private final List<String> batches = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> counts = Collections.synchronizedList(new ArrayList<>());
+    private volatile int failuresRemaining;
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    /**
+     * Make the next {@code count} sends throw.
+     */
+    public void failNext(int count) {
+        failuresRemaining = count;
+    }
+
+    @Override
+    public void send(byte[] gzippedBody, int eventCount) throws IOException {
+        attempts.incrementAndGet();
+        if (failuresRemaining > 0) {
+            failuresRemaining--;
+            throw new IOException("Simulated transport failure");
+        }
+        batches.add(gunzip(gzippedBody));
+        counts.add(eventCount);
+    }
+
+    /**
+     * Delivered batches as JSON array text, in delivery order.
+     */
+    public List<String> getBatches() {
+        synchronized (batches) {
+            return new ArrayList<>(batches);
+        }
+    }
+
+    /**
+     * Sends tried, including failed ones.
+     */
+    public int getAttemptCount() {
+        return attempts.get();
+    }
+
+    public int getDeliveredCount() {
+        int total = 0;
+        synchronized (counts) {
+            for (int count : counts) total += count;
+        }
+        return total;
+    }
+
+    private static String gunzip(byte[] body) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
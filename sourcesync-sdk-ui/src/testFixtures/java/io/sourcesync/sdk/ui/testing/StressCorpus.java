@@ -0,0 +1,67 @@
+package io.sourcesync.android.testing;
+
+/**
+ * Named worst-case templates. Each case is fully described by its generator spec; the
+ * checked-in copies under {@code stress-corpus/} are the output of {@link #generate()}
+ * and are kept in sync by {@code StressCorpusTest}.
+ */
+public enum StressCorpus {
+    DEEP_WEIGHTED_ROWS("deep_weighted_rows.json", new TemplateGenerator.Spec()
+        .seed(10L)
+        .segmentCount(40)
+        .maxDepth(10)
+        .containerRatio(0.5f)
+        .rowRatio(1f)
+        .imageCount(0)
+        .percentageDensity(1f)),
+
+    THOUSAND_TEXT("thousand_text.json", new TemplateGenerator.Spec()
+        .seed(1000L)
+        .segmentCount(1000)
+        .maxDepth(1)
+        .imageCount(0)
+        .buttonRatio(0f)
+        .textLength(48)
+        .percentageDensity(0f)),
+
+    HUNDRED_IMAGES("hundred_images.json", new TemplateGenerator.Spec()
+        .seed(100L)
+        .segmentCount(120)
+        .maxDepth(3)
+        .containerRatio(1f / 6f)
+        .rowRatio(0.5f)
+        .imageCount(100)
+        .percentageDensity(0.5f)),
+
+    LONG_TEXT("long_text.json", new TemplateGenerator.Spec()
+        .seed(5000L)
+        .segmentCount(20)
+        .maxDepth(2)
+        .containerRatio(0.1f)
+        .imageCount(0)
+        .buttonRatio(0f)
+        .textLength(5000)
+        .percentageDensity(0f)),
+
+    WIDE_MIXED("wide_mixed.json", new TemplateGenerator.Spec()
+        .seed(42L)
+        .segmentCount(500)
+        .maxDepth(5)
+        .containerRatio(0.25f)
+        .rowRatio(0.5f)
+        .imageCount(40)
+        .buttonRatio(0.2f)
+        .percentageDensity(0.8f));
+
+    public final String fileName;
+    private final TemplateGenerator.Spec spec;
+
+    StressCorpus(String fileName, TemplateGenerator.Spec spec) {
+        this.fileName = fileName;
+        this.spec = spec;
+    }
+
+    public TemplateGenerator.Result generate() {
+        return TemplateGenerator.generate(spec);
+    }
+}
@@ -0,0 +1,341 @@
+package io.sourcesync.android.testing;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded generator for synthetic detail templates.
+ * The same {@link Spec} always produces the same JSON, so generated templates can be
+ * checked in, diffed and shared between unit tests and on-device benchmarks.
+ */
+public class TemplateGenerator {
+    private static final String[] WORDS = {
+        "source", "sync", "activation", "preview", "detail", "segment", "offer",
+        "limited", "today", "watch", "shop", "now", "product", "sponsor", "live"
+    };
+
+    /**
+     * Knobs for a generated template. Every setter returns the spec so cases can be
+     * declared inline.
+     */
+    public static class Spec {
+        long seed = 1L;
+        int segmentCount = 20;
+        int maxDepth = 3;
+        float containerRatio = 0.2f;
+        float rowRatio = 0.5f;
+        int imageCount = 2;
+        float buttonRatio = 0.1f;
+        int textLength = 24;
+        float percentageDensity = 0.3f;
+
+        public Spec seed(long seed) { this.seed = seed; return this; }
+
+        /** Total number of segments, containers included. */
+        public Spec segmentCount(int count) { this.segmentCount = Math.max(1, count); return this; }
+
+        /** Maximum nesting depth; 1 means a flat template. The deepest path always reaches it. */
+        public Spec maxDepth(int depth) { this.maxDepth = Math.max(1, depth); return this; }
+
+        /** Fraction of segments that are rows or columns. */
+        public Spec containerRatio(float ratio) { this.containerRatio = clamp(ratio); return this; }
+
+        /** Fraction of containers that are rows; the rest are columns. */
+        public Spec rowRatio(float ratio) { this.rowRatio = clamp(ratio); return this; }
+
+        /** Exact number of image segments, capped at the number of leaves. */
+        public Spec imageCount(int count) { this.imageCount = Math.max(0, count); return this; }
+
+        /** Fraction of non-image leaves that are buttons; the rest are text. */
+        public Spec buttonRatio(float ratio) { this.buttonRatio = clamp(ratio); return this; }
+
+        /** Characters of content per text segment. */
+        public Spec textLength(int length) { this.textLength = Math.max(1, length); return this; }
+
+        /** Probability that a segment carries percentage width/height attributes. */
+        public Spec percentageDensity(float density) { this.percentageDensity = clamp(density); return this; }
+
+        private static float clamp(float value) {
+            return Math.max(0f, Math.min(1f, value));
+        }
+    }
+
+    /**
+     * A generated template together with what was actually produced, so callers can
+     * assert on shape without parsing the JSON back.
+     */
+    public static class Result {
+        public final String json;
+        public final int segmentCount;
+        public final int depth;
+        public final int rowCount;
+        public final int columnCount;
+        public final int textCount;
+        public final int buttonCount;
+        public final int imageCount;
+        public final int percentageCount;
+        public final int textCharacters;
+
+        Result(String json, Node[] roots, int depth) {
+            int[] counts = new int[7];
+            for (Node root : roots) {
+                count(root, counts);
+            }
+            this.json = json;
+            this.depth = depth;
+            this.rowCount = counts[0];
+            this.columnCount = counts[1];
+            this.textCount = counts[2];
+            this.buttonCount = counts[3];
+            this.imageCount = counts[4];
+            this.percentageCount = counts[5];
+            this.textCharacters = counts[6];
+            this.segmentCount = rowCount + columnCount + textCount + buttonCount + imageCount;
+        }
+
+        public JSONArray toJsonArray() throws JSONException {
+            return new JSONArray(json);
+        }
+
+        private static void count(Node node, int[] counts) {
+            switch (node.type) {
+                case "row": counts[0]++; break;
+                case "column": counts[1]++; break;
+                case "text": counts[2]++; counts[6] += node.content.length(); break;
+                case "button": counts[3]++; break;
+                case "image": counts[4]++; break;
+            }
+            if (node.width != null) counts[5]++;
+            for (Node child : node.children) {
+                count(child, counts);
+            }
+        }
+    }
+
+    private static class Node {
+        final String type;
+        final int depth;
+        final List<Node> children = new ArrayList<>();
+        String content;
+        String width;
+        String height;
+
+        Node(String type, int depth) {
+            this.type = type;
+            this.depth = depth;
+        }
+    }
+
+    public static Result generate(Spec spec) {
+        Random random = new Random(spec.seed);
+        List<Node> roots = new ArrayList<>();
+        List<Node> containers = new ArrayList<>();
+
+        int containerCount = Math.round(spec.segmentCount * spec.containerRatio);
+        int spineLength = Math.min(spec.maxDepth - 1, spec.segmentCount - 1);
+        containerCount = Math.max(containerCount, spineLength);
+        containerCount = Math.min(containerCount, spec.segmentCount - 1);
+        if (spec.maxDepth == 1) {
+            containerCount = 0;
+        }
+
+        // A spine of nested containers guarantees the requested depth is reached.
+        Node parent = null;
+        for (int i = 0; i < spineLength; i++) {
+            Node container = newContainer(spec, random, parent == null ? 1 : parent.depth + 1);
+            attach(roots, parent, container);
+            containers.add(container);
+            parent = container;
+        }
+
+        for (int i = spineLength; i < containerCount; i++) {
+            Node target = pickParent(random, roots, containers, spec.maxDepth - 1);
+            Node container = newContainer(spec, random, target == null ? 1 : target.depth + 1);
+            attach(roots, target, container);
+            containers.add(container);
+        }
+
+        int leafCount = spec.segmentCount - containerCount;
+        List<String> leafTypes = new ArrayList<>(leafCount);
+        int images = Math.min(spec.imageCount, leafCount);
+        for (int i = 0; i < leafCount; i++) {
+            if (i < images) {
+                leafTypes.add("image");
+            } else {
+                leafTypes.add(random.nextFloat() < spec.buttonRatio ? "button" : "text");
+            }
+        }
+        Collections.shuffle(leafTypes, random);
+
+        // The deepest container always gets the first leaf so depth is observable.
+        for (int i = 0; i < leafCount; i++) {
+            Node target = i == 0 && parent != null
+                ? parent
+                : pickParent(random, roots, containers, spec.maxDepth);
+            Node leaf = newLeaf(spec, random, leafTypes.get(i), target == null ? 1 : target.depth + 1);
+            attach(roots, target, leaf);
+        }
+
+        int depth = 0;
+        for (Node root : roots) {
+            depth = Math.max(depth, depthOf(root));
+        }
+
+        StringBuilder json = new StringBuilder();
+        writeArray(json, roots);
+        return new Result(json.toString(), roots.toArray(new Node[0]), depth);
+    }
+
+    private static Node newContainer(Spec spec, Random random, int depth) {
+        Node node = new Node(random.nextFloat() < spec.rowRatio ? "row" : "column", depth);
+        maybeAddPercentages(spec, random, node);
+        return node;
+    }
+
+    private static Node newLeaf(Spec spec, Random random, String type, int depth) {
+        Node node = new Node(type, depth);
+        switch (type) {
+            case "image":
+                node.content = "https://picsum.photos/seed/" + random.nextInt(100000) + "/320/180";
+                if (random.nextFloat() < spec.percentageDensity) {
+                    node.width = randomPercentage(random);
+                    node.height = randomPercentage(random);
+                }
+                break;
+            case "button":
+                node.content = words(random, Math.min(spec.textLength, 16));
+                maybeAddPercentages(spec, random, node);
+                break;
+            default:
+                node.content = words(random, spec.textLength);
+                maybeAddPercentages(spec, random, node);
+                break;
+        }
+        return node;
+    }
+
+    private static void maybeAddPercentages(Spec spec, Random random, Node node) {
+        if (random.nextFloat() < spec.percentageDensity) {
+            node.width = randomPercentage(random);
+        }
+    }
+
+    private static String randomPercentage(Random random) {
+        return (10 + random.nextInt(91)) + "%";
+    }
+
+    private static Node pickParent(Random random, List<Node> roots, List<Node> containers, int maxParentDepth) {
+        int eligible = 0;
+        for (Node container : containers) {
+            if (container.depth < maxParentDepth) eligible++;
+        }
+        // Top level is one more candidate alongside every eligible container
+        int choice = random.nextInt(eligible + 1);
+        if (choice == eligible) return null;
+        for (Node container : containers) {
+            if (container.depth < maxParentDepth && choice-- == 0) {
+                return container;
+            }
+        }
+        return null;
+    }
+
+    private static void attach(List<Node> roots, Node parent, Node child) {
+        if (parent == null) {
+            roots.add(child);
+        } else {
+            parent.children.add(child);
+        }
+    }
+
+    private static int depthOf(Node node) {
+        int depth = node.depth;
+        for (Node child : node.children) {
+            depth = Math.max(depth, depthOf(child));
+        }
+        return depth;
+    }
+
+    private static String words(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            if (builder.length() > 0) builder.append(' ');
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        builder.setLength(length);
+        return builder.toString();
+    }
+
+    private static void writeArray(StringBuilder out, List<Node> nodes) {
+        out.append('[');
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) out.append(',');
+            writeNode(out, nodes.get(i));
+        }
+        out.append(']');
+    }
+
+    private static void writeNode(StringBuilder out, Node node) {
+        out.append("{\"type\":");
+        quote(out, node.type);
+        if (node.content != null) {
+            out.append(",\"content\":");
+            quote(out, node.content);
+        }
+
+        boolean isText = "text".equals(node.type) || "button".equals(node.type);
+        if (node.width != null || isText) {
+            out.append(",\"attributes\":{");
+            boolean first = true;
+            if ("image".equals(node.type) && node.width != null) {
+                out.append("\"size\":{\"width\":");
+                quote(out, node.width);
+                out.append(",\"height\":");
+                quote(out, node.height);
+                out.append('}');
+                first = false;
+            } else if (node.width != null) {
+                out.append("\"width\":");
+                quote(out, node.width);
+                first = false;
+            }
+            if ("text".equals(node.type)) {
+                if (!first) out.append(',');
+                out.append("\"size\":\"md\",\"color\":\"#FFFFFF\"");
+            } else if ("button".equals(node.type)) {
+                if (!first) out.append(',');
+                out.append("\"backgroundColor\":\"#4CAF50\",\"textColor\":\"#FFFFFF\"");
+            }
+            out.append('}');
+        }
+
+        if (!node.children.isEmpty() || "row".equals(node.type) || "column".equals(node.type)) {
+            out.append(",\"children\":");
+            writeArray(out, node.children);
+        }
+        out.append('}');
+    }
+
+    private static void quote(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}